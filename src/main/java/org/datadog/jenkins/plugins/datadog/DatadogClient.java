@@ -30,8 +30,9 @@ import hudson.model.Run;
 import hudson.util.Secret;
 import io.opentracing.Tracer;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
-import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -89,7 +90,8 @@ public interface DatadogClient {
      * Sends an event to the Datadog API, including the event payload.
      *
      * @param event - a DatadogEvent object
-     * @return a boolean to signify the success or failure of the HTTP POST request.
+     * @return a boolean to signify the success or failure of the submission. Clients that send the event
+     * asynchronously, such as the HTTP client, return true once it is queued: the result of the request is only logged.
      */
     public boolean event(DatadogEvent event);
 
@@ -116,7 +118,8 @@ public interface DatadogClient {
      * @param value    - A long containing the value to submit.
      * @param hostname - A String with the hostname to submit.
      * @param tags     - A Map containing the tags to submit.
-     * @return a boolean to signify the success or failure of the HTTP POST request.
+     * @return a boolean to signify the success or failure of the submission. Clients that send the metric
+     * asynchronously, such as the HTTP client, return true once it is queued: the result of the request is only logged.
      */
     public boolean gauge(String name, long value, String hostname, Map<String, Set<String>> tags);
 
@@ -127,7 +130,8 @@ public interface DatadogClient {
      * @param status   - An Status with the status code to record for this service check.
      * @param hostname - A String with the hostname to submit.
      * @param tags     - A Map containing the tags to submit.
-     * @return a boolean to signify the success or failure of the HTTP POST request.
+     * @return a boolean to signify the success or failure of the submission. Clients that send the service check
+     * asynchronously, such as the HTTP client, return true once it is queued: the result of the request is only logged.
      */
     public boolean serviceCheck(String name, Status status, String hostname, Map<String, Set<String>> tags);
 
@@ -138,6 +142,13 @@ public interface DatadogClient {
      */
     public boolean sendLogs(String payload);
 
+    /**
+     * Send several log messages. The messages are sent in a single compressed request when the client allows it.
+     * @param payloads log payloads to submit, JSON objects as String
+     * @return a boolean to signify the success or failure of the request.
+     */
+    public boolean sendLogBatch(List<String> payloads);
+
     /**
      * Start the trace of a certain Jenkins build.
      * @param buildData
@@ -156,9 +167,9 @@ public interface DatadogClient {
     /**
      * Send all traces related to a certain Jenkins pipeline.
      * @param run a particular execution of a Jenkins build
-     * @param flowNode current flowNode
+     * @param flowNode snapshot of the current flowNode
      * @return a boolean to signify the success or failure of the request.
      */
-    boolean sendPipelineTrace(Run<?, ?> run, FlowNode flowNode);
+    boolean sendPipelineTrace(Run<?, ?> run, FlowNodeSnapshot flowNode);
 
 }
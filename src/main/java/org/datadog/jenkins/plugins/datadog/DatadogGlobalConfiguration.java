@@ -36,6 +36,9 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.StringUtils;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogHttpClient;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionMode;
+import org.datadog.jenkins.plugins.datadog.logs.LongLogLineMode;
+import org.datadog.jenkins.plugins.datadog.logs.LogOverflowPolicy;
 import org.datadog.jenkins.plugins.datadog.util.SuppressFBWarnings;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -81,6 +84,34 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
     private static String EMIT_SYSTEM_EVENTS_PROPERTY = "DATADOG_JENKINS_PLUGIN_EMIT_SYSTEM_EVENTS";
     private static String COLLECT_BUILD_LOGS_PROPERTY = "DATADOG_JENKINS_PLUGIN_COLLECT_BUILD_LOGS";
     private static String COLLECT_BUILD_TRACES_PROPERTY = "DATADOG_JENKINS_PLUGIN_COLLECT_BUILD_TRACES";
+    private static String TARGET_TRACE_INTAKE_URL_PROPERTY = "DATADOG_JENKINS_PLUGIN_TARGET_TRACE_INTAKE_URL";
+    private static String TRACE_WRITER_BUFFER_SIZE_PROPERTY = "DATADOG_JENKINS_PLUGIN_TRACE_WRITER_BUFFER_SIZE";
+    private static String TRACE_WRITER_FLUSH_INTERVAL_PROPERTY = "DATADOG_JENKINS_PLUGIN_TRACE_WRITER_FLUSH_INTERVAL";
+    private static String TRACE_PARTIAL_FLUSH_MIN_SPANS_PROPERTY = "DATADOG_JENKINS_PLUGIN_TRACE_PARTIAL_FLUSH_MIN_SPANS";
+    private static String COLLAPSE_INTERNAL_TRACE_SPANS_PROPERTY = "DATADOG_JENKINS_PLUGIN_COLLAPSE_INTERNAL_TRACE_SPANS";
+    private static String MIN_TRACE_STEP_DURATION_PROPERTY = "DATADOG_JENKINS_PLUGIN_MIN_TRACE_STEP_DURATION";
+    private static String TRACE_SAMPLING_RULES_PROPERTY = "DATADOG_JENKINS_PLUGIN_TRACE_SAMPLING_RULES";
+    private static String MAX_PENDING_SPANS_PER_RUN_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_PENDING_SPANS_PER_RUN";
+    private static String HOIST_PIPELINE_TRACE_TAGS_PROPERTY = "DATADOG_JENKINS_PLUGIN_HOIST_PIPELINE_TRACE_TAGS";
+    private static String MAX_TRACE_TAG_LENGTH_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_TRACE_TAG_LENGTH";
+    private static String MAX_TRACE_ARGS_LENGTH_PER_SPAN_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_TRACE_ARGS_LENGTH_PER_SPAN";
+    private static String MAX_TRACE_ERROR_STACK_DEPTH_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_TRACE_ERROR_STACK_DEPTH";
+    private static String LOG_COLLECTION_MODE_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_COLLECTION_MODE";
+    private static String LOG_BUFFER_SIZE_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_BUFFER_SIZE";
+    private static String LOG_OVERFLOW_POLICY_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_OVERFLOW_POLICY";
+    private static String LOG_OVERFLOW_TIMEOUT_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_OVERFLOW_TIMEOUT";
+    private static String LOG_EVENT_START_PATTERN_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_EVENT_START_PATTERN";
+    private static String MAX_LOG_EVENT_LINES_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_LOG_EVENT_LINES";
+    private static String MAX_LOG_EVENT_SIZE_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_LOG_EVENT_SIZE";
+    private static String LOG_EVENT_FLUSH_TIMEOUT_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_EVENT_FLUSH_TIMEOUT";
+    private static String LOG_RATE_LIMIT_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_RATE_LIMIT";
+    private static String LOG_RATE_LIMIT_BURST_PROPERTY = "DATADOG_JENKINS_PLUGIN_LOG_RATE_LIMIT_BURST";
+    private static String MAX_REPEATED_LOG_LINES_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_REPEATED_LOG_LINES";
+    private static String MAX_LOG_LINE_LENGTH_PROPERTY = "DATADOG_JENKINS_PLUGIN_MAX_LOG_LINE_LENGTH";
+    private static String LONG_LOG_LINE_MODE_PROPERTY = "DATADOG_JENKINS_PLUGIN_LONG_LOG_LINE_MODE";
+    private static String SHIP_LOGS_FROM_AGENTS_PROPERTY = "DATADOG_JENKINS_PLUGIN_SHIP_LOGS_FROM_AGENTS";
+    private static String MERGE_JSON_LOG_LINES_PROPERTY = "DATADOG_JENKINS_PLUGIN_MERGE_JSON_LOG_LINES";
+    private static String COLLECT_LOG_VOLUME_METRICS_PROPERTY = "DATADOG_JENKINS_PLUGIN_COLLECT_LOG_VOLUME_METRICS";
 
     private static String DEFAULT_REPORT_WITH_VALUE = DatadogClient.ClientType.HTTP.name();
     private static String DEFAULT_TARGET_API_URL_VALUE = "https://api.datadoghq.com/api/";
@@ -95,6 +126,33 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
     private static boolean DEFAULT_EMIT_SYSTEM_EVENTS_VALUE = true;
     private static boolean DEFAULT_COLLECT_BUILD_LOGS_VALUE = false;
     private static boolean DEFAULT_COLLECT_BUILD_TRACES_VALUE = false;
+    private static Integer DEFAULT_TRACE_WRITER_BUFFER_SIZE_VALUE = 1024;
+    private static Integer DEFAULT_TRACE_WRITER_FLUSH_INTERVAL_VALUE = 1;
+    private static Integer DEFAULT_TRACE_PARTIAL_FLUSH_MIN_SPANS_VALUE = 1000;
+    private static Integer DEFAULT_MAX_PENDING_SPANS_PER_RUN_VALUE = 10000;
+    private static boolean DEFAULT_COLLAPSE_INTERNAL_TRACE_SPANS_VALUE = false;
+    private static Integer DEFAULT_MIN_TRACE_STEP_DURATION_VALUE = 0;
+    private static boolean DEFAULT_HOIST_PIPELINE_TRACE_TAGS_VALUE = false;
+    private static Integer DEFAULT_MAX_TRACE_TAG_LENGTH_VALUE = 5000;
+    private static Integer DEFAULT_MAX_TRACE_ARGS_LENGTH_PER_SPAN_VALUE = 20000;
+    private static Integer DEFAULT_MAX_TRACE_ERROR_STACK_DEPTH_VALUE = 50;
+    private static String DEFAULT_LOG_COLLECTION_MODE_VALUE = LogCollectionMode.STREAMING.name();
+    private static Integer DEFAULT_LOG_BUFFER_SIZE_VALUE = 10000;
+    private static String DEFAULT_LOG_OVERFLOW_POLICY_VALUE = LogOverflowPolicy.BLOCK.name();
+    private static Integer DEFAULT_LOG_OVERFLOW_TIMEOUT_VALUE = 100;
+    // Multi-line log events are opt-in, every console line is sent as a log.
+    private static String DEFAULT_LOG_EVENT_START_PATTERN_VALUE = "";
+    private static Integer DEFAULT_MAX_LOG_EVENT_LINES_VALUE = 500;
+    private static Integer DEFAULT_MAX_LOG_EVENT_SIZE_VALUE = 65536;
+    private static Integer DEFAULT_LOG_EVENT_FLUSH_TIMEOUT_VALUE = 1000;
+    private static Integer DEFAULT_LOG_RATE_LIMIT_VALUE = 0;
+    private static Integer DEFAULT_LOG_RATE_LIMIT_BURST_VALUE = 10000;
+    private static Integer DEFAULT_MAX_REPEATED_LOG_LINES_VALUE = 0;
+    private static Integer DEFAULT_MAX_LOG_LINE_LENGTH_VALUE = 65536;
+    private static String DEFAULT_LONG_LOG_LINE_MODE_VALUE = LongLogLineMode.SPLIT.name();
+    private static boolean DEFAULT_SHIP_LOGS_FROM_AGENTS_VALUE = false;
+    private static boolean DEFAULT_MERGE_JSON_LOG_LINES_VALUE = false;
+    private static boolean DEFAULT_COLLECT_LOG_VOLUME_METRICS_VALUE = true;
 
     // Default IdGenerationStrategy from the Java Tracer. Do not change.
     private static final IdGenerationStrategy DEFAULT_TRACE_IDS_GENERATOR = IdGenerationStrategy.RANDOM;
@@ -118,6 +176,34 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
     private boolean emitSystemEvents = DEFAULT_EMIT_SYSTEM_EVENTS_VALUE;
     private boolean collectBuildLogs = DEFAULT_COLLECT_BUILD_LOGS_VALUE;
     private boolean collectBuildTraces = DEFAULT_COLLECT_BUILD_TRACES_VALUE;
+    private String targetTraceIntakeURL = null;
+    private Integer traceWriterBufferSize = DEFAULT_TRACE_WRITER_BUFFER_SIZE_VALUE;
+    private Integer traceWriterFlushInterval = DEFAULT_TRACE_WRITER_FLUSH_INTERVAL_VALUE;
+    private Integer tracePartialFlushMinSpans = DEFAULT_TRACE_PARTIAL_FLUSH_MIN_SPANS_VALUE;
+    private boolean collapseInternalTraceSpans = DEFAULT_COLLAPSE_INTERNAL_TRACE_SPANS_VALUE;
+    private Integer minTraceStepDuration = DEFAULT_MIN_TRACE_STEP_DURATION_VALUE;
+    private String traceSamplingRules = null;
+    private Integer maxPendingSpansPerRun = DEFAULT_MAX_PENDING_SPANS_PER_RUN_VALUE;
+    private boolean hoistPipelineTraceTags = DEFAULT_HOIST_PIPELINE_TRACE_TAGS_VALUE;
+    private Integer maxTraceTagLength = DEFAULT_MAX_TRACE_TAG_LENGTH_VALUE;
+    private Integer maxTraceArgsLengthPerSpan = DEFAULT_MAX_TRACE_ARGS_LENGTH_PER_SPAN_VALUE;
+    private Integer maxTraceErrorStackDepth = DEFAULT_MAX_TRACE_ERROR_STACK_DEPTH_VALUE;
+    private String logCollectionMode = DEFAULT_LOG_COLLECTION_MODE_VALUE;
+    private Integer logBufferSize = DEFAULT_LOG_BUFFER_SIZE_VALUE;
+    private String logOverflowPolicy = DEFAULT_LOG_OVERFLOW_POLICY_VALUE;
+    private Integer logOverflowTimeout = DEFAULT_LOG_OVERFLOW_TIMEOUT_VALUE;
+    private String logEventStartPattern = DEFAULT_LOG_EVENT_START_PATTERN_VALUE;
+    private Integer maxLogEventLines = DEFAULT_MAX_LOG_EVENT_LINES_VALUE;
+    private Integer maxLogEventSize = DEFAULT_MAX_LOG_EVENT_SIZE_VALUE;
+    private Integer logEventFlushTimeout = DEFAULT_LOG_EVENT_FLUSH_TIMEOUT_VALUE;
+    private Integer logRateLimit = DEFAULT_LOG_RATE_LIMIT_VALUE;
+    private Integer logRateLimitBurst = DEFAULT_LOG_RATE_LIMIT_BURST_VALUE;
+    private Integer maxRepeatedLogLines = DEFAULT_MAX_REPEATED_LOG_LINES_VALUE;
+    private Integer maxLogLineLength = DEFAULT_MAX_LOG_LINE_LENGTH_VALUE;
+    private String longLogLineMode = DEFAULT_LONG_LOG_LINE_MODE_VALUE;
+    private boolean shipLogsFromAgents = DEFAULT_SHIP_LOGS_FROM_AGENTS_VALUE;
+    private boolean mergeJsonLogLines = DEFAULT_MERGE_JSON_LOG_LINES_VALUE;
+    private boolean collectLogVolumeMetrics = DEFAULT_COLLECT_LOG_VOLUME_METRICS_VALUE;
     private IdGenerationStrategy traceIdsGenerator = DEFAULT_TRACE_IDS_GENERATOR;
 
     @DataBoundConstructor
@@ -235,6 +321,146 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
         if(StringUtils.isNotBlank(collectBuildTracesEnvVar)){
             this.collectBuildTraces = Boolean.valueOf(collectBuildTraces);
         }
+
+        String targetTraceIntakeURLEnvVar = System.getenv(TARGET_TRACE_INTAKE_URL_PROPERTY);
+        if(StringUtils.isNotBlank(targetTraceIntakeURLEnvVar)) {
+            this.targetTraceIntakeURL = targetTraceIntakeURLEnvVar;
+        }
+
+        String traceWriterBufferSizeEnvVar = System.getenv(TRACE_WRITER_BUFFER_SIZE_PROPERTY);
+        if(StringUtils.isNotBlank(traceWriterBufferSizeEnvVar) && StringUtils.isNumeric(traceWriterBufferSizeEnvVar)) {
+            this.traceWriterBufferSize = Integer.valueOf(traceWriterBufferSizeEnvVar);
+        }
+
+        String traceWriterFlushIntervalEnvVar = System.getenv(TRACE_WRITER_FLUSH_INTERVAL_PROPERTY);
+        if(StringUtils.isNotBlank(traceWriterFlushIntervalEnvVar) && StringUtils.isNumeric(traceWriterFlushIntervalEnvVar)) {
+            this.traceWriterFlushInterval = Integer.valueOf(traceWriterFlushIntervalEnvVar);
+        }
+
+        String tracePartialFlushMinSpansEnvVar = System.getenv(TRACE_PARTIAL_FLUSH_MIN_SPANS_PROPERTY);
+        if(StringUtils.isNotBlank(tracePartialFlushMinSpansEnvVar) && StringUtils.isNumeric(tracePartialFlushMinSpansEnvVar)) {
+            this.tracePartialFlushMinSpans = Integer.valueOf(tracePartialFlushMinSpansEnvVar);
+        }
+
+        String logCollectionModeEnvVar = System.getenv(LOG_COLLECTION_MODE_PROPERTY);
+        if(StringUtils.isNotBlank(logCollectionModeEnvVar)) {
+            this.logCollectionMode = logCollectionModeEnvVar;
+        }
+
+        String logBufferSizeEnvVar = System.getenv(LOG_BUFFER_SIZE_PROPERTY);
+        if(StringUtils.isNotBlank(logBufferSizeEnvVar) && StringUtils.isNumeric(logBufferSizeEnvVar)) {
+            this.logBufferSize = Integer.valueOf(logBufferSizeEnvVar);
+        }
+
+        String logOverflowPolicyEnvVar = System.getenv(LOG_OVERFLOW_POLICY_PROPERTY);
+        if(StringUtils.isNotBlank(logOverflowPolicyEnvVar)) {
+            this.logOverflowPolicy = logOverflowPolicyEnvVar;
+        }
+
+        String logOverflowTimeoutEnvVar = System.getenv(LOG_OVERFLOW_TIMEOUT_PROPERTY);
+        if(StringUtils.isNotBlank(logOverflowTimeoutEnvVar) && StringUtils.isNumeric(logOverflowTimeoutEnvVar)) {
+            this.logOverflowTimeout = Integer.valueOf(logOverflowTimeoutEnvVar);
+        }
+
+        String logEventStartPatternEnvVar = System.getenv(LOG_EVENT_START_PATTERN_PROPERTY);
+        if(StringUtils.isNotBlank(logEventStartPatternEnvVar)) {
+            this.logEventStartPattern = logEventStartPatternEnvVar;
+        }
+
+        String maxLogEventLinesEnvVar = System.getenv(MAX_LOG_EVENT_LINES_PROPERTY);
+        if(StringUtils.isNotBlank(maxLogEventLinesEnvVar) && StringUtils.isNumeric(maxLogEventLinesEnvVar)) {
+            this.maxLogEventLines = Integer.valueOf(maxLogEventLinesEnvVar);
+        }
+
+        String maxLogEventSizeEnvVar = System.getenv(MAX_LOG_EVENT_SIZE_PROPERTY);
+        if(StringUtils.isNotBlank(maxLogEventSizeEnvVar) && StringUtils.isNumeric(maxLogEventSizeEnvVar)) {
+            this.maxLogEventSize = Integer.valueOf(maxLogEventSizeEnvVar);
+        }
+
+        String logEventFlushTimeoutEnvVar = System.getenv(LOG_EVENT_FLUSH_TIMEOUT_PROPERTY);
+        if(StringUtils.isNotBlank(logEventFlushTimeoutEnvVar) && StringUtils.isNumeric(logEventFlushTimeoutEnvVar)) {
+            this.logEventFlushTimeout = Integer.valueOf(logEventFlushTimeoutEnvVar);
+        }
+
+        String logRateLimitEnvVar = System.getenv(LOG_RATE_LIMIT_PROPERTY);
+        if(StringUtils.isNotBlank(logRateLimitEnvVar) && StringUtils.isNumeric(logRateLimitEnvVar)) {
+            this.logRateLimit = Integer.valueOf(logRateLimitEnvVar);
+        }
+
+        String logRateLimitBurstEnvVar = System.getenv(LOG_RATE_LIMIT_BURST_PROPERTY);
+        if(StringUtils.isNotBlank(logRateLimitBurstEnvVar) && StringUtils.isNumeric(logRateLimitBurstEnvVar)) {
+            this.logRateLimitBurst = Integer.valueOf(logRateLimitBurstEnvVar);
+        }
+
+        String maxRepeatedLogLinesEnvVar = System.getenv(MAX_REPEATED_LOG_LINES_PROPERTY);
+        if(StringUtils.isNotBlank(maxRepeatedLogLinesEnvVar) && StringUtils.isNumeric(maxRepeatedLogLinesEnvVar)) {
+            this.maxRepeatedLogLines = Integer.valueOf(maxRepeatedLogLinesEnvVar);
+        }
+
+        String maxLogLineLengthEnvVar = System.getenv(MAX_LOG_LINE_LENGTH_PROPERTY);
+        if(StringUtils.isNotBlank(maxLogLineLengthEnvVar) && StringUtils.isNumeric(maxLogLineLengthEnvVar)) {
+            this.maxLogLineLength = Integer.valueOf(maxLogLineLengthEnvVar);
+        }
+
+        String longLogLineModeEnvVar = System.getenv(LONG_LOG_LINE_MODE_PROPERTY);
+        if(StringUtils.isNotBlank(longLogLineModeEnvVar)) {
+            this.longLogLineMode = longLogLineModeEnvVar;
+        }
+
+        String shipLogsFromAgentsEnvVar = System.getenv(SHIP_LOGS_FROM_AGENTS_PROPERTY);
+        if(StringUtils.isNotBlank(shipLogsFromAgentsEnvVar)) {
+            this.shipLogsFromAgents = Boolean.valueOf(shipLogsFromAgentsEnvVar);
+        }
+
+        String mergeJsonLogLinesEnvVar = System.getenv(MERGE_JSON_LOG_LINES_PROPERTY);
+        if(StringUtils.isNotBlank(mergeJsonLogLinesEnvVar)) {
+            this.mergeJsonLogLines = Boolean.valueOf(mergeJsonLogLinesEnvVar);
+        }
+
+        String collectLogVolumeMetricsEnvVar = System.getenv(COLLECT_LOG_VOLUME_METRICS_PROPERTY);
+        if(StringUtils.isNotBlank(collectLogVolumeMetricsEnvVar)) {
+            this.collectLogVolumeMetrics = Boolean.valueOf(collectLogVolumeMetricsEnvVar);
+        }
+
+        String collapseInternalTraceSpansEnvVar = System.getenv(COLLAPSE_INTERNAL_TRACE_SPANS_PROPERTY);
+        if(StringUtils.isNotBlank(collapseInternalTraceSpansEnvVar)) {
+            this.collapseInternalTraceSpans = Boolean.valueOf(collapseInternalTraceSpansEnvVar);
+        }
+
+        String minTraceStepDurationEnvVar = System.getenv(MIN_TRACE_STEP_DURATION_PROPERTY);
+        if(StringUtils.isNotBlank(minTraceStepDurationEnvVar) && StringUtils.isNumeric(minTraceStepDurationEnvVar)) {
+            this.minTraceStepDuration = Integer.valueOf(minTraceStepDurationEnvVar);
+        }
+
+        String traceSamplingRulesEnvVar = System.getenv(TRACE_SAMPLING_RULES_PROPERTY);
+        if(StringUtils.isNotBlank(traceSamplingRulesEnvVar)) {
+            this.traceSamplingRules = traceSamplingRulesEnvVar;
+        }
+
+        String maxPendingSpansPerRunEnvVar = System.getenv(MAX_PENDING_SPANS_PER_RUN_PROPERTY);
+        if(StringUtils.isNotBlank(maxPendingSpansPerRunEnvVar) && StringUtils.isNumeric(maxPendingSpansPerRunEnvVar)) {
+            this.maxPendingSpansPerRun = Integer.valueOf(maxPendingSpansPerRunEnvVar);
+        }
+
+        String hoistPipelineTraceTagsEnvVar = System.getenv(HOIST_PIPELINE_TRACE_TAGS_PROPERTY);
+        if(StringUtils.isNotBlank(hoistPipelineTraceTagsEnvVar)) {
+            this.hoistPipelineTraceTags = Boolean.valueOf(hoistPipelineTraceTagsEnvVar);
+        }
+
+        String maxTraceTagLengthEnvVar = System.getenv(MAX_TRACE_TAG_LENGTH_PROPERTY);
+        if(StringUtils.isNotBlank(maxTraceTagLengthEnvVar) && StringUtils.isNumeric(maxTraceTagLengthEnvVar)) {
+            this.maxTraceTagLength = Integer.valueOf(maxTraceTagLengthEnvVar);
+        }
+
+        String maxTraceArgsLengthPerSpanEnvVar = System.getenv(MAX_TRACE_ARGS_LENGTH_PER_SPAN_PROPERTY);
+        if(StringUtils.isNotBlank(maxTraceArgsLengthPerSpanEnvVar) && StringUtils.isNumeric(maxTraceArgsLengthPerSpanEnvVar)) {
+            this.maxTraceArgsLengthPerSpan = Integer.valueOf(maxTraceArgsLengthPerSpanEnvVar);
+        }
+
+        String maxTraceErrorStackDepthEnvVar = System.getenv(MAX_TRACE_ERROR_STACK_DEPTH_PROPERTY);
+        if(StringUtils.isNotBlank(maxTraceErrorStackDepthEnvVar) && StringUtils.isNumeric(maxTraceErrorStackDepthEnvVar)) {
+            this.maxTraceErrorStackDepth = Integer.valueOf(maxTraceErrorStackDepthEnvVar);
+        }
     }
 
     /**
@@ -493,6 +719,39 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
             this.setEmitSystemEvents(formData.getBoolean("emitSystemEvents"));
             this.setCollectBuildLogs(formData.getBoolean("collectBuildLogs"));
 
+            // As there is no public UI to configure the log shipping properties,
+            // their current values are kept if they are not present in the form.
+            if(formData.has("logCollectionMode")) {
+                this.setLogCollectionMode(formData.getString("logCollectionMode"));
+            }
+            this.setLogBufferSize(getIntegerFormValue(formData, "logBufferSize", this.getLogBufferSize()));
+            this.setLogOverflowTimeout(getIntegerFormValue(formData, "logOverflowTimeout", this.getLogOverflowTimeout()));
+            if(formData.has("logOverflowPolicy")) {
+                this.setLogOverflowPolicy(formData.getString("logOverflowPolicy"));
+            }
+            if(formData.has("logEventStartPattern")) {
+                this.setLogEventStartPattern(formData.getString("logEventStartPattern"));
+            }
+            this.setMaxLogEventLines(getIntegerFormValue(formData, "maxLogEventLines", this.getMaxLogEventLines()));
+            this.setMaxLogEventSize(getIntegerFormValue(formData, "maxLogEventSize", this.getMaxLogEventSize()));
+            this.setLogEventFlushTimeout(getIntegerFormValue(formData, "logEventFlushTimeout", this.getLogEventFlushTimeout()));
+            this.setLogRateLimit(getIntegerFormValue(formData, "logRateLimit", this.getLogRateLimit()));
+            this.setLogRateLimitBurst(getIntegerFormValue(formData, "logRateLimitBurst", this.getLogRateLimitBurst()));
+            this.setMaxRepeatedLogLines(getIntegerFormValue(formData, "maxRepeatedLogLines", this.getMaxRepeatedLogLines()));
+            this.setMaxLogLineLength(getIntegerFormValue(formData, "maxLogLineLength", this.getMaxLogLineLength()));
+            if(formData.has("longLogLineMode")) {
+                this.setLongLogLineMode(formData.getString("longLogLineMode"));
+            }
+            if(formData.has("shipLogsFromAgents")) {
+                this.setShipLogsFromAgents(formData.getBoolean("shipLogsFromAgents"));
+            }
+            if(formData.has("mergeJsonLogLines")) {
+                this.setMergeJsonLogLines(formData.getBoolean("mergeJsonLogLines"));
+            }
+            if(formData.has("collectLogVolumeMetrics")) {
+                this.setCollectLogVolumeMetrics(formData.getBoolean("collectLogVolumeMetrics"));
+            }
+
             try {
                 this.setCollectBuildTraces(formData.getBoolean("collectBuildTraces"));
             } catch (Exception e) {
@@ -505,6 +764,30 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
                 this.setCollectBuildTraces(false);
             }
 
+            // As there is no public UI to configure the following trace properties,
+            // their current values are kept if they are not present in the form.
+            // NOTE: Change this when APM Traces was released as public feature.
+            if(formData.has("targetTraceIntakeURL")) {
+                this.setTargetTraceIntakeURL(formData.getString("targetTraceIntakeURL"));
+            }
+            this.setTraceWriterBufferSize(getIntegerFormValue(formData, "traceWriterBufferSize", this.getTraceWriterBufferSize()));
+            this.setTraceWriterFlushInterval(getIntegerFormValue(formData, "traceWriterFlushInterval", this.getTraceWriterFlushInterval()));
+            this.setTracePartialFlushMinSpans(getIntegerFormValue(formData, "tracePartialFlushMinSpans", this.getTracePartialFlushMinSpans()));
+            this.setMinTraceStepDuration(getIntegerFormValue(formData, "minTraceStepDuration", this.getMinTraceStepDuration()));
+            this.setMaxPendingSpansPerRun(getIntegerFormValue(formData, "maxPendingSpansPerRun", this.getMaxPendingSpansPerRun()));
+            this.setMaxTraceTagLength(getIntegerFormValue(formData, "maxTraceTagLength", this.getMaxTraceTagLength()));
+            this.setMaxTraceArgsLengthPerSpan(getIntegerFormValue(formData, "maxTraceArgsLengthPerSpan", this.getMaxTraceArgsLengthPerSpan()));
+            this.setMaxTraceErrorStackDepth(getIntegerFormValue(formData, "maxTraceErrorStackDepth", this.getMaxTraceErrorStackDepth()));
+            if(formData.has("hoistPipelineTraceTags")) {
+                this.setHoistPipelineTraceTags(formData.getBoolean("hoistPipelineTraceTags"));
+            }
+            if(formData.has("collapseInternalTraceSpans")) {
+                this.setCollapseInternalTraceSpans(formData.getBoolean("collapseInternalTraceSpans"));
+            }
+            if(formData.has("traceSamplingRules")) {
+                this.setTraceSamplingRules(formData.getString("traceSamplingRules"));
+            }
+
             //When form is saved....
             DatadogClient client = ClientFactory.getClient(DatadogClient.ClientType.valueOf(this.getReportWith()),
                     this.getTargetApiURL(), this.getTargetLogIntakeURL(), this.getTargetApiKey(), this.getTargetHost(),
@@ -529,6 +812,27 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
         }
 
     }
+
+    /**
+     * Returns the value of a numeric field of the form.
+     * @param formData the form
+     * @param key the name of the field
+     * @param currentValue the value to keep if the field is not present in the form or it is not a number
+     * @return the value of the field.
+     */
+    private static Integer getIntegerFormValue(final JSONObject formData, final String key, final Integer currentValue) {
+        try {
+            final String value = formData.getString(key);
+            if(StringUtils.isNotBlank(value) && StringUtils.isNumeric(value)) {
+                return Integer.valueOf(value);
+            }
+        } catch (Exception e) {
+            // formData.getString throws an exception
+            // if the key to search does not exist.
+        }
+        return currentValue;
+    }
+
     public boolean reportWithEquals(String value){
         return this.reportWith.equals(value);
     }
@@ -705,6 +1009,257 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
         this.traceServiceName = traceServiceName;
     }
 
+    /**
+     * Getter function for the targetTraceIntakeURL global configuration.
+     * When reporting with the HTTP client, traces are sent to this URL, as there is no Datadog Agent to send them to.
+     * The traces are sent using the MessagePack format of the v0.4 traces API, compressed using gzip.
+     *
+     * @return a String containing the targetTraceIntakeURL global configuration.
+     */
+    public String getTargetTraceIntakeURL() {
+        return targetTraceIntakeURL;
+    }
+
+    /**
+     * Setter function for the targetTraceIntakeURL global configuration.
+     *
+     * @param targetTraceIntakeURL = A string containing the trace intake URL
+     */
+    @DataBoundSetter
+    public void setTargetTraceIntakeURL(String targetTraceIntakeURL) {
+        this.targetTraceIntakeURL = targetTraceIntakeURL;
+    }
+
+    /**
+     * Getter function for the traceWriterBufferSize global configuration.
+     * Number of traces the trace writer keeps in memory waiting to be sent. Traces are dropped once it is full.
+     *
+     * @return an int containing the traceWriterBufferSize global configuration.
+     */
+    public int getTraceWriterBufferSize() {
+        return (traceWriterBufferSize != null && traceWriterBufferSize > 0) ? traceWriterBufferSize : DEFAULT_TRACE_WRITER_BUFFER_SIZE_VALUE;
+    }
+
+    /**
+     * Setter function for the traceWriterBufferSize global configuration.
+     *
+     * @param traceWriterBufferSize = An Integer containing the number of traces kept by the trace writer
+     */
+    @DataBoundSetter
+    public void setTraceWriterBufferSize(Integer traceWriterBufferSize) {
+        this.traceWriterBufferSize = traceWriterBufferSize;
+    }
+
+    /**
+     * Getter function for the traceWriterFlushInterval global configuration.
+     * Number of seconds between two flushes of the trace writer.
+     *
+     * @return an int containing the traceWriterFlushInterval global configuration.
+     */
+    public int getTraceWriterFlushInterval() {
+        return (traceWriterFlushInterval != null && traceWriterFlushInterval > 0) ? traceWriterFlushInterval : DEFAULT_TRACE_WRITER_FLUSH_INTERVAL_VALUE;
+    }
+
+    /**
+     * Setter function for the traceWriterFlushInterval global configuration.
+     *
+     * @param traceWriterFlushInterval = An Integer containing the number of seconds between two flushes
+     */
+    @DataBoundSetter
+    public void setTraceWriterFlushInterval(Integer traceWriterFlushInterval) {
+        this.traceWriterFlushInterval = traceWriterFlushInterval;
+    }
+
+    /**
+     * Getter function for the tracePartialFlushMinSpans global configuration.
+     * Once a trace has this number of finished spans, they are sent before the rest of the trace is finished.
+     * A value of 0 disables partial flushes.
+     *
+     * @return an int containing the tracePartialFlushMinSpans global configuration.
+     */
+    public int getTracePartialFlushMinSpans() {
+        return (tracePartialFlushMinSpans != null) ? tracePartialFlushMinSpans : DEFAULT_TRACE_PARTIAL_FLUSH_MIN_SPANS_VALUE;
+    }
+
+    /**
+     * Setter function for the tracePartialFlushMinSpans global configuration.
+     *
+     * @param tracePartialFlushMinSpans = An Integer containing the number of finished spans that triggers a partial flush
+     */
+    @DataBoundSetter
+    public void setTracePartialFlushMinSpans(Integer tracePartialFlushMinSpans) {
+        this.tracePartialFlushMinSpans = tracePartialFlushMinSpans;
+    }
+
+    /**
+     * Getter function for the collapseInternalTraceSpans global configuration.
+     * If enabled, the spans of the internal blocks (e.g. withEnv, dir or timeout) are not sent,
+     * and the spans of their children are sent as children of the enclosing block.
+     *
+     * @return a boolean containing the collapseInternalTraceSpans global configuration.
+     */
+    public boolean isCollapseInternalTraceSpans() {
+        return collapseInternalTraceSpans;
+    }
+
+    /**
+     * Setter function for the collapseInternalTraceSpans global configuration.
+     *
+     * @param collapseInternalTraceSpans = A boolean indicating if the spans of the internal blocks are collapsed
+     */
+    @DataBoundSetter
+    public void setCollapseInternalTraceSpans(boolean collapseInternalTraceSpans) {
+        this.collapseInternalTraceSpans = collapseInternalTraceSpans;
+    }
+
+    /**
+     * Getter function for the minTraceStepDuration global configuration.
+     * Spans of the steps that took less than this number of milliseconds are not sent, unless the step failed.
+     * A value of 0 keeps every step.
+     *
+     * @return an int containing the minTraceStepDuration global configuration.
+     */
+    public int getMinTraceStepDuration() {
+        return (minTraceStepDuration != null) ? minTraceStepDuration : DEFAULT_MIN_TRACE_STEP_DURATION_VALUE;
+    }
+
+    /**
+     * Setter function for the minTraceStepDuration global configuration.
+     *
+     * @param minTraceStepDuration = An Integer containing the minimum duration of the step spans in milliseconds
+     */
+    @DataBoundSetter
+    public void setMinTraceStepDuration(Integer minTraceStepDuration) {
+        this.minTraceStepDuration = minTraceStepDuration;
+    }
+
+    /**
+     * Getter function for the traceSamplingRules global configuration.
+     * Comma separated list of {@code <job name regex>:<sample rate>} rules used to decide
+     * if the step spans of a run are sent. Stage and pipeline spans are always sent.
+     *
+     * @return a String containing the traceSamplingRules global configuration.
+     */
+    public String getTraceSamplingRules() {
+        return traceSamplingRules;
+    }
+
+    /**
+     * Setter function for the traceSamplingRules global configuration.
+     *
+     * @param traceSamplingRules = A string containing the trace sampling rules
+     */
+    @DataBoundSetter
+    public void setTraceSamplingRules(String traceSamplingRules) {
+        this.traceSamplingRules = traceSamplingRules;
+    }
+
+    /**
+     * Getter function for the maxPendingSpansPerRun global configuration.
+     * Once a run has more pending spans in memory than this value, the spans of
+     * the steps that have already finished are sent before the end of the run.
+     * A value of 0 disables the limit.
+     *
+     * @return an int containing the maxPendingSpansPerRun global configuration.
+     */
+    public int getMaxPendingSpansPerRun() {
+        return (maxPendingSpansPerRun != null) ? maxPendingSpansPerRun : DEFAULT_MAX_PENDING_SPANS_PER_RUN_VALUE;
+    }
+
+    /**
+     * Setter function for the maxPendingSpansPerRun global configuration.
+     *
+     * @param maxPendingSpansPerRun = An Integer containing the maximum number of pending spans per run
+     */
+    @DataBoundSetter
+    public void setMaxPendingSpansPerRun(Integer maxPendingSpansPerRun) {
+        this.maxPendingSpansPerRun = maxPendingSpansPerRun;
+    }
+
+    /**
+     * Getter function for the hoistPipelineTraceTags global configuration.
+     * If enabled, the pipeline level tags (Git info, user, workspace and pipeline name and ID)
+     * are only set in the pipeline span, and in the spans of the nodes where they have a different value.
+     *
+     * @return a boolean containing the hoistPipelineTraceTags global configuration.
+     */
+    public boolean isHoistPipelineTraceTags() {
+        return hoistPipelineTraceTags;
+    }
+
+    /**
+     * Setter function for the hoistPipelineTraceTags global configuration.
+     *
+     * @param hoistPipelineTraceTags = A boolean indicating if the pipeline level tags are only set in the pipeline span
+     */
+    @DataBoundSetter
+    public void setHoistPipelineTraceTags(boolean hoistPipelineTraceTags) {
+        this.hoistPipelineTraceTags = hoistPipelineTraceTags;
+    }
+
+    /**
+     * Getter function for the maxTraceTagLength global configuration.
+     * Step arguments, scripts and error messages and stacks longer than this number of bytes (encoded in UTF-8) are truncated.
+     * A value of 0 disables the limit.
+     *
+     * @return an int containing the maxTraceTagLength global configuration.
+     */
+    public int getMaxTraceTagLength() {
+        return (maxTraceTagLength != null) ? maxTraceTagLength : DEFAULT_MAX_TRACE_TAG_LENGTH_VALUE;
+    }
+
+    /**
+     * Setter function for the maxTraceTagLength global configuration.
+     *
+     * @param maxTraceTagLength = An Integer containing the maximum length of a trace tag
+     */
+    @DataBoundSetter
+    public void setMaxTraceTagLength(Integer maxTraceTagLength) {
+        this.maxTraceTagLength = maxTraceTagLength;
+    }
+
+    /**
+     * Getter function for the maxTraceArgsLengthPerSpan global configuration.
+     * Once the step arguments of a span add up to this number of bytes (encoded in UTF-8), the rest of them are not sent.
+     * A value of 0 disables the limit.
+     *
+     * @return an int containing the maxTraceArgsLengthPerSpan global configuration.
+     */
+    public int getMaxTraceArgsLengthPerSpan() {
+        return (maxTraceArgsLengthPerSpan != null) ? maxTraceArgsLengthPerSpan : DEFAULT_MAX_TRACE_ARGS_LENGTH_PER_SPAN_VALUE;
+    }
+
+    /**
+     * Setter function for the maxTraceArgsLengthPerSpan global configuration.
+     *
+     * @param maxTraceArgsLengthPerSpan = An Integer containing the maximum length of the step arguments of a span
+     */
+    @DataBoundSetter
+    public void setMaxTraceArgsLengthPerSpan(Integer maxTraceArgsLengthPerSpan) {
+        this.maxTraceArgsLengthPerSpan = maxTraceArgsLengthPerSpan;
+    }
+
+    /**
+     * Getter function for the maxTraceErrorStackDepth global configuration.
+     * Maximum number of stack frames sent in the error stack of a span, including its causes.
+     * A value of 0 disables the limit.
+     *
+     * @return an int containing the maxTraceErrorStackDepth global configuration.
+     */
+    public int getMaxTraceErrorStackDepth() {
+        return (maxTraceErrorStackDepth != null) ? maxTraceErrorStackDepth : DEFAULT_MAX_TRACE_ERROR_STACK_DEPTH_VALUE;
+    }
+
+    /**
+     * Setter function for the maxTraceErrorStackDepth global configuration.
+     *
+     * @param maxTraceErrorStackDepth = An Integer containing the maximum number of stack frames of an error
+     */
+    @DataBoundSetter
+    public void setMaxTraceErrorStackDepth(Integer maxTraceErrorStackDepth) {
+        this.maxTraceErrorStackDepth = maxTraceErrorStackDepth;
+    }
+
     /**
      * Getter function for the hostname global configuration.
      *
@@ -917,6 +1472,351 @@ public class DatadogGlobalConfiguration extends GlobalConfiguration {
         this.collectBuildLogs = collectBuildLogs;
     }
 
+    /**
+     * Getter function for the logCollectionMode global configuration.
+     * STREAMING ships the console lines while the build runs, POST_BUILD uploads
+     * the console log file once the build is finalized. Unknown values fall back to STREAMING.
+     *
+     * @return a LogCollectionMode containing the logCollectionMode global configuration.
+     */
+    public LogCollectionMode getLogCollectionMode() {
+        try {
+            return LogCollectionMode.valueOf(logCollectionMode.trim().toUpperCase());
+        } catch (Exception e) {
+            return LogCollectionMode.valueOf(DEFAULT_LOG_COLLECTION_MODE_VALUE);
+        }
+    }
+
+    /**
+     * Setter function for the logCollectionMode global configuration.
+     *
+     * @param logCollectionMode = A string containing STREAMING or POST_BUILD
+     */
+    @DataBoundSetter
+    public void setLogCollectionMode(String logCollectionMode) {
+        this.logCollectionMode = logCollectionMode;
+    }
+
+    /**
+     * Getter function for the logBufferSize global configuration.
+     * Maximum number of log lines waiting to be shipped, shared by every build.
+     * Changes are applied after Jenkins is restarted.
+     *
+     * @return an int containing the logBufferSize global configuration.
+     */
+    public int getLogBufferSize() {
+        return (logBufferSize != null) ? logBufferSize : DEFAULT_LOG_BUFFER_SIZE_VALUE;
+    }
+
+    /**
+     * Setter function for the logBufferSize global configuration.
+     *
+     * @param logBufferSize = An Integer containing the maximum number of log lines waiting to be shipped
+     */
+    @DataBoundSetter
+    public void setLogBufferSize(Integer logBufferSize) {
+        this.logBufferSize = logBufferSize;
+    }
+
+    /**
+     * Getter function for the logOverflowPolicy global configuration.
+     * What to do with new log lines when the log buffer is full. Unknown values fall back to BLOCK.
+     *
+     * @return a LogOverflowPolicy containing the logOverflowPolicy global configuration.
+     */
+    public LogOverflowPolicy getLogOverflowPolicy() {
+        try {
+            return LogOverflowPolicy.valueOf(logOverflowPolicy.trim().toUpperCase());
+        } catch (Exception e) {
+            return LogOverflowPolicy.valueOf(DEFAULT_LOG_OVERFLOW_POLICY_VALUE);
+        }
+    }
+
+    /**
+     * Setter function for the logOverflowPolicy global configuration.
+     *
+     * @param logOverflowPolicy = A string containing DROP_OLDEST, DROP_NEWEST or BLOCK
+     */
+    @DataBoundSetter
+    public void setLogOverflowPolicy(String logOverflowPolicy) {
+        this.logOverflowPolicy = logOverflowPolicy;
+    }
+
+    /**
+     * Getter function for the logOverflowTimeout global configuration.
+     * Milliseconds a log line waits for room in the log buffer before being dropped, when the policy is BLOCK.
+     *
+     * @return an int containing the logOverflowTimeout global configuration.
+     */
+    public int getLogOverflowTimeout() {
+        return (logOverflowTimeout != null) ? logOverflowTimeout : DEFAULT_LOG_OVERFLOW_TIMEOUT_VALUE;
+    }
+
+    /**
+     * Setter function for the logOverflowTimeout global configuration.
+     *
+     * @param logOverflowTimeout = An Integer containing the maximum wait in milliseconds
+     */
+    @DataBoundSetter
+    public void setLogOverflowTimeout(Integer logOverflowTimeout) {
+        this.logOverflowTimeout = logOverflowTimeout;
+    }
+
+    /**
+     * Getter function for the logEventStartPattern global configuration.
+     * Regular expression found in the console lines that start a new log event.
+     * The other lines are appended to the event of the previous line. A blank pattern disables the multi-line events.
+     *
+     * @return a String containing the logEventStartPattern global configuration.
+     */
+    public String getLogEventStartPattern() {
+        return logEventStartPattern;
+    }
+
+    /**
+     * Setter function for the logEventStartPattern global configuration.
+     *
+     * @param logEventStartPattern = A string containing the regular expression of the first line of a log event
+     */
+    @DataBoundSetter
+    public void setLogEventStartPattern(String logEventStartPattern) {
+        this.logEventStartPattern = logEventStartPattern;
+    }
+
+    /**
+     * Getter function for the maxLogEventLines global configuration.
+     * Maximum number of console lines merged in a single log event.
+     *
+     * @return an int containing the maxLogEventLines global configuration.
+     */
+    public int getMaxLogEventLines() {
+        return (maxLogEventLines != null) ? maxLogEventLines : DEFAULT_MAX_LOG_EVENT_LINES_VALUE;
+    }
+
+    /**
+     * Setter function for the maxLogEventLines global configuration.
+     *
+     * @param maxLogEventLines = An Integer containing the maximum number of lines of a log event
+     */
+    @DataBoundSetter
+    public void setMaxLogEventLines(Integer maxLogEventLines) {
+        this.maxLogEventLines = maxLogEventLines;
+    }
+
+    /**
+     * Getter function for the maxLogEventSize global configuration.
+     * Maximum number of characters of the console lines merged in a single log event.
+     *
+     * @return an int containing the maxLogEventSize global configuration.
+     */
+    public int getMaxLogEventSize() {
+        return (maxLogEventSize != null) ? maxLogEventSize : DEFAULT_MAX_LOG_EVENT_SIZE_VALUE;
+    }
+
+    /**
+     * Setter function for the maxLogEventSize global configuration.
+     *
+     * @param maxLogEventSize = An Integer containing the maximum number of characters of a log event
+     */
+    @DataBoundSetter
+    public void setMaxLogEventSize(Integer maxLogEventSize) {
+        this.maxLogEventSize = maxLogEventSize;
+    }
+
+    /**
+     * Getter function for the logEventFlushTimeout global configuration.
+     * Milliseconds a log event waits for its next lines before being sent.
+     *
+     * @return an int containing the logEventFlushTimeout global configuration.
+     */
+    public int getLogEventFlushTimeout() {
+        return (logEventFlushTimeout != null) ? logEventFlushTimeout : DEFAULT_LOG_EVENT_FLUSH_TIMEOUT_VALUE;
+    }
+
+    /**
+     * Setter function for the logEventFlushTimeout global configuration.
+     *
+     * @param logEventFlushTimeout = An Integer containing the maximum wait in milliseconds
+     */
+    @DataBoundSetter
+    public void setLogEventFlushTimeout(Integer logEventFlushTimeout) {
+        this.logEventFlushTimeout = logEventFlushTimeout;
+    }
+
+    /**
+     * Getter function for the logRateLimit global configuration.
+     * Maximum number of console lines per second sent for a build, 0 for no limit (the default).
+     * It can be overridden for a pipeline with the datadog step.
+     *
+     * @return an int containing the logRateLimit global configuration.
+     */
+    public int getLogRateLimit() {
+        return (logRateLimit != null) ? logRateLimit : DEFAULT_LOG_RATE_LIMIT_VALUE;
+    }
+
+    /**
+     * Setter function for the logRateLimit global configuration.
+     *
+     * @param logRateLimit = An Integer containing the maximum number of lines per second of a build
+     */
+    @DataBoundSetter
+    public void setLogRateLimit(Integer logRateLimit) {
+        this.logRateLimit = logRateLimit;
+    }
+
+    /**
+     * Getter function for the logRateLimitBurst global configuration.
+     * Number of console lines a build can send at once before the rate limit applies.
+     *
+     * @return an int containing the logRateLimitBurst global configuration.
+     */
+    public int getLogRateLimitBurst() {
+        return (logRateLimitBurst != null) ? logRateLimitBurst : DEFAULT_LOG_RATE_LIMIT_BURST_VALUE;
+    }
+
+    /**
+     * Setter function for the logRateLimitBurst global configuration.
+     *
+     * @param logRateLimitBurst = An Integer containing the number of lines a build can send at once
+     */
+    @DataBoundSetter
+    public void setLogRateLimitBurst(Integer logRateLimitBurst) {
+        this.logRateLimitBurst = logRateLimitBurst;
+    }
+
+    /**
+     * Getter function for the maxRepeatedLogLines global configuration.
+     * Number of consecutive similar console lines sent before the next ones are collapsed
+     * into a "Previous line repeated N more times" line, 0 to send every line (the default).
+     * Lines are similar when they only differ by their numbers, like progress messages.
+     * It can be overridden for a pipeline with the datadog step.
+     *
+     * @return an int containing the maxRepeatedLogLines global configuration.
+     */
+    public int getMaxRepeatedLogLines() {
+        return (maxRepeatedLogLines != null) ? maxRepeatedLogLines : DEFAULT_MAX_REPEATED_LOG_LINES_VALUE;
+    }
+
+    /**
+     * Setter function for the maxRepeatedLogLines global configuration.
+     *
+     * @param maxRepeatedLogLines = An Integer containing the number of similar lines sent before collapsing them
+     */
+    @DataBoundSetter
+    public void setMaxRepeatedLogLines(Integer maxRepeatedLogLines) {
+        this.maxRepeatedLogLines = maxRepeatedLogLines;
+    }
+
+    /**
+     * Getter function for the maxLogLineLength global configuration.
+     * Maximum number of bytes of a console line sent as a log event. It also bounds the memory
+     * used to buffer the console lines of every stream, whatever the build prints.
+     *
+     * @return an int containing the maxLogLineLength global configuration.
+     */
+    public int getMaxLogLineLength() {
+        return (maxLogLineLength != null && maxLogLineLength > 0) ? maxLogLineLength : DEFAULT_MAX_LOG_LINE_LENGTH_VALUE;
+    }
+
+    /**
+     * Setter function for the maxLogLineLength global configuration.
+     *
+     * @param maxLogLineLength = An Integer containing the maximum number of bytes of a log line
+     */
+    @DataBoundSetter
+    public void setMaxLogLineLength(Integer maxLogLineLength) {
+        this.maxLogLineLength = maxLogLineLength;
+    }
+
+    /**
+     * Getter function for the longLogLineMode global configuration.
+     * What to do with the console lines longer than maxLogLineLength. Unknown values fall back to SPLIT.
+     *
+     * @return a LongLogLineMode containing the longLogLineMode global configuration.
+     */
+    public LongLogLineMode getLongLogLineMode() {
+        try {
+            return LongLogLineMode.valueOf(longLogLineMode.trim().toUpperCase());
+        } catch (Exception e) {
+            return LongLogLineMode.valueOf(DEFAULT_LONG_LOG_LINE_MODE_VALUE);
+        }
+    }
+
+    /**
+     * Setter function for the longLogLineMode global configuration.
+     *
+     * @param longLogLineMode = A string containing SPLIT or TRUNCATE
+     */
+    @DataBoundSetter
+    public void setLongLogLineMode(String longLogLineMode) {
+        this.longLogLineMode = longLogLineMode;
+    }
+
+    /**
+     * Getter function for the shipLogsFromAgents global configuration.
+     * If enabled, the console lines of the pipeline steps running on an agent are sent from the agent,
+     * directly to the Datadog Agent, instead of going through the controller.
+     * The log collection settings are sent to the agents with the steps. As the agents must not receive
+     * the API key, this setting is ignored unless the logs are reported to the Datadog Agent (DSD).
+     *
+     * @return a boolean containing the shipLogsFromAgents global configuration.
+     */
+    public boolean isShipLogsFromAgents() {
+        return shipLogsFromAgents;
+    }
+
+    /**
+     * Setter function for the shipLogsFromAgents global configuration.
+     *
+     * @param shipLogsFromAgents = A boolean indicating if the logs of the steps are sent from the agents
+     */
+    @DataBoundSetter
+    public void setShipLogsFromAgents(boolean shipLogsFromAgents) {
+        this.shipLogsFromAgents = shipLogsFromAgents;
+    }
+
+    /**
+     * Getter function for the mergeJsonLogLines global configuration.
+     * If enabled, the fields of the console lines which are JSON objects are sent as attributes of their log messages,
+     * unless they conflict with the attributes of the build. Disabled by default.
+     *
+     * @return a boolean containing the mergeJsonLogLines global configuration.
+     */
+    public boolean isMergeJsonLogLines() {
+        return mergeJsonLogLines;
+    }
+
+    /**
+     * Setter function for the mergeJsonLogLines global configuration.
+     *
+     * @param mergeJsonLogLines = A boolean indicating if the fields of the JSON console lines are sent as attributes
+     */
+    @DataBoundSetter
+    public void setMergeJsonLogLines(boolean mergeJsonLogLines) {
+        this.mergeJsonLogLines = mergeJsonLogLines;
+    }
+
+    /**
+     * Getter function for the collectLogVolumeMetrics global configuration.
+     * If enabled, the bytes and lines written to the console of the builds are counted,
+     * whether their logs are collected or not, and sent as metrics of the builds and of their stages.
+     *
+     * @return a boolean containing the collectLogVolumeMetrics global configuration.
+     */
+    public boolean isCollectLogVolumeMetrics() {
+        return collectLogVolumeMetrics;
+    }
+
+    /**
+     * Setter function for the collectLogVolumeMetrics global configuration.
+     *
+     * @param collectLogVolumeMetrics = A boolean indicating if the console output of the builds is counted
+     */
+    @DataBoundSetter
+    public void setCollectLogVolumeMetrics(boolean collectLogVolumeMetrics) {
+        this.collectLogVolumeMetrics = collectLogVolumeMetrics;
+    }
+
     /**
      * @return - A {@link Boolean} indicating if the user has configured Datadog to collect traces.
      */
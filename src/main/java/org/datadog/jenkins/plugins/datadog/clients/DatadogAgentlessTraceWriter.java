@@ -0,0 +1,271 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.clients;
+
+import datadog.trace.common.writer.Writer;
+import datadog.trace.core.DDSpan;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import org.datadog.jenkins.plugins.datadog.traces.TraceMsgPackEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Trace writer used when there is no Datadog Agent to send the traces to.
+ * Finished traces are encoded as soon as they are written, so the spans are not kept in memory,
+ * and queued until they are sent in batches (with traces of any run) to the trace intake,
+ * compressed using gzip. Traces are dropped if the queue is full or the intake cannot be reached.
+ */
+public class DatadogAgentlessTraceWriter implements Writer {
+
+    private static final Logger logger = Logger.getLogger(DatadogAgentlessTraceWriter.class.getName());
+
+    // Uncompressed size of the traces sent in a single request.
+    private static final int MAX_PAYLOAD_BYTES = 2 * 1024 * 1024;
+
+    private final String url;
+    private final Secret apiKey;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<byte[]> queue;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong enqueuedTraces = new AtomicLong();
+    private final AtomicLong enqueuedSpans = new AtomicLong();
+    private final AtomicLong sentTraces = new AtomicLong();
+    private final AtomicLong droppedTraces = new AtomicLong();
+    private final AtomicLong serializationNanos = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestNanos = new AtomicLong();
+    // Only one thread sends traces at a time, so they are batched as much as possible.
+    private final Object sendLock = new Object();
+    private ScheduledExecutorService executor;
+
+    public DatadogAgentlessTraceWriter(final String url, final Secret apiKey, final int queueCapacity, final long flushIntervalMillis) {
+        this.url = url;
+        this.apiKey = apiKey;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @Override
+    public void write(final List<DDSpan> trace) {
+        if(trace == null || trace.isEmpty()) {
+            return;
+        }
+
+        final byte[] encodedTrace;
+        final long start = System.nanoTime();
+        try {
+            encodedTrace = TraceMsgPackEncoder.encode(trace);
+        } catch (Exception e) {
+            logger.fine("Unable to encode trace. Error: " + e);
+            droppedTraces.incrementAndGet();
+            return;
+        } finally {
+            serializationNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        if(!queue.offer(encodedTrace)) {
+            droppedTraces.incrementAndGet();
+            return;
+        }
+        enqueuedTraces.incrementAndGet();
+        enqueuedSpans.addAndGet(trace.size());
+
+        if(queuedBytes.addAndGet(encodedTrace.length) >= MAX_PAYLOAD_BYTES) {
+            scheduleSend();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if(executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "Datadog Agentless Trace Writer"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sendPendingTraces();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean flush() {
+        return sendPendingTraces();
+    }
+
+    @Override
+    public void close() {
+        final ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+
+        if(executor != null) {
+            executor.shutdown();
+        }
+        sendPendingTraces();
+    }
+
+    public void incrementTraceCount() {
+        // Traces are counted when they are sent or dropped.
+    }
+
+    /**
+     * @return the number of traces waiting to be sent.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of traces enqueued since the last call.
+     */
+    public long getAndResetEnqueuedTraces() {
+        return enqueuedTraces.getAndSet(0);
+    }
+
+    /**
+     * @return the number of spans enqueued since the last call.
+     */
+    public long getAndResetEnqueuedSpans() {
+        return enqueuedSpans.getAndSet(0);
+    }
+
+    /**
+     * @return the time spent encoding traces since the last call, in milliseconds.
+     */
+    public long getAndResetSerializationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(serializationNanos.getAndSet(0));
+    }
+
+    /**
+     * @return the average latency of the requests to the trace intake since the last call, in milliseconds.
+     */
+    public long getAndResetAverageRequestMillis() {
+        final long count = requests.getAndSet(0);
+        final long nanos = requestNanos.getAndSet(0);
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(nanos / count) : 0;
+    }
+
+    /**
+     * @return the number of traces sent since the last call.
+     */
+    public long getAndResetSentTraces() {
+        return sentTraces.getAndSet(0);
+    }
+
+    /**
+     * @return the number of traces dropped since the last call, because the queue
+     * was full or the traces could not be sent.
+     */
+    public long getAndResetDroppedTraces() {
+        return droppedTraces.getAndSet(0);
+    }
+
+    private synchronized void scheduleSend() {
+        if(executor == null) {
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendPendingTraces();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The writer is being closed, the pending traces are sent by close().
+        }
+    }
+
+    /**
+     * Sends the queued traces, splitting them in several requests if they are too big.
+     * @return true if all the requests succeeded.
+     */
+    private boolean sendPendingTraces() {
+        synchronized (sendLock) {
+            boolean success = true;
+            final List<byte[]> batch = new ArrayList<>();
+            long batchBytes = 0;
+            byte[] encodedTrace;
+            while((encodedTrace = queue.poll()) != null) {
+                queuedBytes.addAndGet(-encodedTrace.length);
+                batch.add(encodedTrace);
+                batchBytes += encodedTrace.length;
+                if(batchBytes >= MAX_PAYLOAD_BYTES) {
+                    success &= send(batch);
+                    batch.clear();
+                    batchBytes = 0;
+                }
+            }
+
+            if(!batch.isEmpty()) {
+                success &= send(batch);
+            }
+            return success;
+        }
+    }
+
+    private boolean send(final List<byte[]> batch) {
+        boolean sent;
+        try {
+            final byte[] payload = DatadogHttpClient.gzip(TraceMsgPackEncoder.encodePayload(batch));
+            final long start = System.nanoTime();
+            try {
+                sent = DatadogHttpClient.postTraces(url, apiKey, payload, batch.size());
+            } finally {
+                requestNanos.addAndGet(System.nanoTime() - start);
+                requests.incrementAndGet();
+            }
+        } catch (Exception e) {
+            logger.fine("Unable to send " + batch.size() + " traces. Error: " + e);
+            sent = false;
+        }
+
+        if(sent) {
+            sentTraces.addAndGet(batch.size());
+        } else {
+            droppedTraces.addAndGet(batch.size());
+        }
+        return sent;
+    }
+}
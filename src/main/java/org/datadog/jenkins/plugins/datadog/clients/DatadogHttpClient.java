@@ -25,6 +25,9 @@ THE SOFTWARE.
 
 package org.datadog.jenkins.plugins.datadog.clients;
 
+import datadog.opentracing.DDTracer;
+import datadog.trace.api.sampling.PrioritySampling;
+import datadog.trace.common.sampling.ForcePrioritySampler;
 import hudson.ProxyConfiguration;
 import hudson.model.Run;
 import hudson.util.Secret;
@@ -35,22 +38,30 @@ import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogEvent;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
+import org.datadog.jenkins.plugins.datadog.traces.DatadogTraceBuildLogic;
+import org.datadog.jenkins.plugins.datadog.traces.DatadogTracePipelineLogic;
 import org.datadog.jenkins.plugins.datadog.util.SuppressFBWarnings;
 import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
 import org.apache.commons.lang.StringUtils;
-import org.jenkinsci.plugins.workflow.graph.FlowNode;
 
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * This class is used to collect all methods that has to do with transmitting
@@ -58,7 +69,8 @@ import java.util.logging.Logger;
  */
 public class DatadogHttpClient implements DatadogClient {
 
-    private static DatadogHttpClient instance = null;
+    // Read by the sender lanes, which send the queued payloads with the current client.
+    private static volatile DatadogHttpClient instance = null;
     // Used to determine if the instance failed last validation last time, so
     // we do not keep retrying to create the instance and logging the same error
     private static boolean failedLastValidation = false;
@@ -70,6 +82,13 @@ public class DatadogHttpClient implements DatadogClient {
     private static final String SERVICECHECK = "v1/check_run";
     private static final String VALIDATE = "v1/validate";
 
+    // The events and the service checks, such as the status of the jobs, never wait behind the metrics.
+    // The logs and the traces have their own senders (see DatadogLogShipper and DatadogAgentlessTraceWriter).
+    private static final DatadogSenderLane<Runnable> criticalLane = new DatadogSenderLane<>(
+            "Datadog Critical Sender", 1000, 1, DatadogHttpClient::runAll, Level.WARNING);
+    private static final DatadogSenderLane<PendingMetric> metricsLane = new DatadogSenderLane<>(
+            "Datadog Metrics Sender", 10000, 500, DatadogHttpClient::postMetrics);
+
     private static final Integer HTTP_FORBIDDEN = 403;
     private static final Integer BAD_REQUEST = 400;
 
@@ -86,6 +105,10 @@ public class DatadogHttpClient implements DatadogClient {
     private boolean defaultIntakeConnectionBroken = false;
     private boolean logIntakeConnectionBroken = false;
 
+    private DatadogAgentlessTraceWriter agentlessTraceWriter;
+    private DatadogTraceBuildLogic traceBuildLogic;
+    private DatadogTracePipelineLogic tracePipelineLogic;
+
     /**
      * NOTE: Use ClientFactory.getClient method to instantiate the client in the Jenkins Plugin
      * This method is not recommended to be used because it misses some validations.
@@ -277,7 +300,7 @@ public class DatadogHttpClient implements DatadogClient {
             payload.put("source_type_name", "jenkins");
             payload.put("priority", event.getPriority().name().toLowerCase());
             payload.put("alert_type", event.getAlertType().name().toLowerCase());
-            status = post(payload, EVENT);
+            status = criticalLane.submit(() -> getCurrentClient(this).post(payload, EVENT));
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
             status = false;
@@ -352,24 +375,70 @@ public class DatadogHttpClient implements DatadogClient {
             logger.fine(tags.toString());
             metric.put("tags", TagsUtil.convertTagsToJSONArray(tags));
         }
-        // Place metric as item of series list
-        JSONArray series = new JSONArray();
-        series.add(metric);
 
-        // Add series to payload
-        JSONObject payload = new JSONObject();
-        payload.put("series", series);
+        // The metrics are sent in batches by the metrics lane.
+        return metricsLane.submit(new PendingMetric(this, metric));
+    }
 
-        logger.fine(String.format("payload: %s", payload.toString()));
+    /**
+     * The payloads are queued before being sent, so the client that queued them may have been
+     * replaced by a new configuration when they are sent.
+     * @param client the client that queued the payload
+     * @return the current client, or the given client if there is none.
+     */
+    private static DatadogHttpClient getCurrentClient(DatadogHttpClient client) {
+        DatadogHttpClient current = instance;
+        return current != null ? current : client;
+    }
 
-        boolean status;
-        try {
-            status = post(payload, METRIC);
-        } catch (Exception e) {
-            DatadogUtilities.severe(logger, e, null);
-            status = false;
+    private static void runAll(List<Runnable> batch) {
+        for (Runnable task : batch) {
+            task.run();
+        }
+    }
+
+    private static void postMetrics(List<PendingMetric> batch) {
+        // Consecutive metrics of the same client are sent together, as items of the series list.
+        int start = 0;
+        while (start < batch.size()) {
+            DatadogHttpClient client = getCurrentClient(batch.get(start).client);
+            JSONArray series = new JSONArray();
+            int end = start;
+            while (end < batch.size() && getCurrentClient(batch.get(end).client) == client) {
+                series.add(batch.get(end).metric);
+                end++;
+            }
+
+            JSONObject payload = new JSONObject();
+            payload.put("series", series);
+            logger.fine(String.format("payload: %s", payload.toString()));
+            try {
+                client.post(payload, METRIC);
+            } catch (Exception e) {
+                DatadogUtilities.severe(logger, e, null);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * @return the sender lanes of the events and service checks, and of the metrics, by lane name.
+     */
+    public static Map<String, DatadogSenderLane<?>> getSenderLanes() {
+        Map<String, DatadogSenderLane<?>> lanes = new LinkedHashMap<>();
+        lanes.put("critical", criticalLane);
+        lanes.put("metrics", metricsLane);
+        return lanes;
+    }
+
+    private static class PendingMetric {
+        private final DatadogHttpClient client;
+        private final JSONObject metric;
+
+        PendingMetric(DatadogHttpClient client, JSONObject metric) {
+            this.client = client;
+            this.metric = metric;
         }
-        return status;
     }
 
     @Override
@@ -389,7 +458,7 @@ public class DatadogHttpClient implements DatadogClient {
             payload.put("tags", TagsUtil.convertTagsToJSONArray(tags));
         }
 
-        return post(payload, SERVICECHECK);
+        return criticalLane.submit(() -> getCurrentClient(this).post(payload, SERVICECHECK));
     }
 
     /**
@@ -482,6 +551,91 @@ public class DatadogHttpClient implements DatadogClient {
         return postLogs(this.getLogIntakeUrl(), getApiKey(), payload);
     }
 
+    @Override
+    public boolean sendLogBatch(List<String> payloads) {
+        if(this.isLogIntakeConnectionBroken()){
+            logger.severe("Your client is not initialized properly");
+            return false;
+        }
+
+        if(this.getLogIntakeUrl() == null || this.getLogIntakeUrl().isEmpty()){
+            logger.severe("Datadog Log Intake URL is not set properly");
+            return false;
+        }
+
+        try {
+            return postLogBatch(this.getLogIntakeUrl(), getApiKey(), payloads, String.format("Datadog/%s/jenkins Java/%s Jenkins/%s",
+                    getDatadogPluginVersion(),
+                    getJavaRuntimeVersion(),
+                    getJenkinsVersion()));
+        } catch (IOException e) {
+            DatadogUtilities.severe(logger, e, "Unable to send " + payloads.size() + " log messages");
+            return false;
+        }
+    }
+
+    /**
+     * Posts a batch of log messages to the log intake, compressed using gzip.
+     *
+     * @param url - the log intake url
+     * @param apiKey - Secret api Key
+     * @param payloads - the log messages, as JSON objects
+     * @param userAgent - the User-Agent header of the request
+     * @return a boolean to signify the success or failure of the HTTP POST request.
+     * @throws IOException if the HTTP POST request could not be sent.
+     */
+    private static boolean postLogBatch(final String url, final Secret apiKey, final List<String> payloads, final String userAgent) throws IOException {
+        if(payloads.isEmpty()) {
+            return true;
+        }
+
+        // The log intake accepts a JSON array of log messages.
+        final StringBuilder array = new StringBuilder();
+        for(final String payload : payloads) {
+            array.append(array.length() == 0 ? '[' : ',').append(payload);
+        }
+        array.append(']');
+        final byte[] payload = gzip(array.toString().getBytes("utf-8"));
+
+        HttpURLConnection conn = null;
+        try {
+            conn = getHttpURLConnection(new URL(url));
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setRequestProperty("DD-API-KEY", Secret.toString(apiKey));
+            conn.setRequestProperty("User-Agent", userAgent);
+            conn.setUseCaches(false);
+            conn.setDoInput(true);
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(payload.length);
+
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(payload);
+            }
+
+            final int responseCode = conn.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                logger.severe(String.format("Logs API call failed with status code %d", responseCode));
+                return false;
+            }
+            logger.fine(String.format("%d log messages were sent successfully!", payloads.size()));
+            return true;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    static byte[] gzip(final byte[] payload) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        return compressed.toByteArray();
+    }
+
     @SuppressFBWarnings("REC_CATCH_EXCEPTION")
     private boolean postLogs(String url, Secret apiKey, String payload) {
         if(payload == null){
@@ -557,7 +711,7 @@ public class DatadogHttpClient implements DatadogClient {
         HttpURLConnection conn = null;
         ProxyConfiguration proxyConfig = null;
 
-        Jenkins jenkins = Jenkins.getInstance();
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
         if(jenkins != null){
             proxyConfig = jenkins.proxy;
         }
@@ -656,22 +810,147 @@ public class DatadogHttpClient implements DatadogClient {
         return this.jenkinsVersion;
     }
 
+    /**
+     * Posts a batch of traces to the trace intake, using the user configured apiKey.
+     *
+     * @param url - the trace intake url
+     * @param apiKey - Secret api Key
+     * @param payload - the traces, encoded with MessagePack and compressed using gzip
+     * @param traceCount - the number of traces in the payload
+     * @return a boolean to signify the success or failure of the HTTP POST request.
+     * @throws IOException if the HTTP POST request could not be sent.
+     */
+    static boolean postTraces(final String url, final Secret apiKey, final byte[] payload, final int traceCount) throws IOException {
+        HttpURLConnection conn = null;
+        try {
+            conn = getHttpURLConnection(new URL(url));
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/msgpack");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            conn.setRequestProperty("DD-API-KEY", Secret.toString(apiKey));
+            conn.setRequestProperty("X-Datadog-Trace-Count", String.valueOf(traceCount));
+            conn.setUseCaches(false);
+            conn.setDoInput(true);
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(payload.length);
+
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(payload);
+            }
+
+            final int responseCode = conn.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                logger.severe(String.format("Traces API call failed with status code %d", responseCode));
+                return false;
+            }
+            logger.fine(String.format("%d traces were sent successfully!", traceCount));
+            return true;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Returns the writer used to send the traces to the trace intake.
+     *
+     * @return the agentless trace writer, or null if the traces are not collected.
+     */
+    public DatadogAgentlessTraceWriter getAgentlessTraceWriter() {
+        return agentlessTraceWriter;
+    }
+
+    private synchronized boolean reinitializeTracer(boolean force) {
+        if(this.traceBuildLogic != null && this.tracePipelineLogic != null && !force) {
+            return true;
+        }
+
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if(!datadogConfig.isCollectBuildTraces()) {
+            return false;
+        }
+
+        final String traceIntakeUrl = datadogConfig.getTargetTraceIntakeURL();
+        if(StringUtils.isBlank(traceIntakeUrl)) {
+            logger.fine("Traces are only available using Datadog Agent or setting a trace intake URL.");
+            return false;
+        }
+
+        try {
+            logger.info("Re/Initialize Datadog-Plugin Tracer: traceIntakeUrl = " + traceIntakeUrl);
+            if(this.agentlessTraceWriter != null) {
+                this.agentlessTraceWriter.close();
+            }
+            this.agentlessTraceWriter = new DatadogAgentlessTraceWriter(traceIntakeUrl, this.getApiKey(),
+                    datadogConfig.getTraceWriterBufferSize(), TimeUnit.SECONDS.toMillis(datadogConfig.getTraceWriterFlushInterval()));
+
+            final Tracer ddTracer = DDTracer.builder()
+                    .sampler(new ForcePrioritySampler(PrioritySampling.SAMPLER_KEEP))
+                    .partialFlushMinSpans(datadogConfig.getTracePartialFlushMinSpans())
+                    .writer(this.agentlessTraceWriter)
+                    .build();
+            this.traceBuildLogic = new DatadogTraceBuildLogic(ddTracer);
+            this.tracePipelineLogic = new DatadogTracePipelineLogic(ddTracer);
+            return true;
+        } catch (Exception e) {
+            logger.severe("Unable to create DDTracer. " + e);
+            return false;
+        }
+    }
+
     @Override
     public boolean startBuildTrace(BuildData buildData, Run run) {
-        logger.fine("Traces are only available using Datadog Agent.");
-        return false;
+        try {
+            boolean status = reinitializeTracer(false);
+            if(!status) {
+                return false;
+            }
+
+            logger.fine("Started build trace");
+            this.traceBuildLogic.startBuildTrace(buildData, run);
+            return true;
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, null);
+            reinitializeTracer(true);
+            return false;
+        }
     }
 
     @Override
     public boolean finishBuildTrace(BuildData buildData, Run<?, ?> run) {
-        logger.fine("Traces are only available using Datadog Agent.");
-        return false;
+        try {
+            boolean status = reinitializeTracer(false);
+            if(!status) {
+                return false;
+            }
+
+            logger.fine("Finished build trace");
+            this.traceBuildLogic.finishBuildTrace(buildData, run);
+            return true;
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, null);
+            reinitializeTracer(true);
+            return false;
+        }
     }
 
     @Override
-    public boolean sendPipelineTrace(Run<?, ?> run, FlowNode flowNode) {
-        logger.fine("Traces are only available using Datadog Agent.");
-        return false;
+    public boolean sendPipelineTrace(Run<?, ?> run, FlowNodeSnapshot flowNode) {
+        try {
+            boolean status = reinitializeTracer(false);
+            if(!status) {
+                return false;
+            }
+
+            logger.fine("Send pipeline traces.");
+            this.tracePipelineLogic.execute(run, flowNode);
+            return true;
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, null);
+            reinitializeTracer(true);
+            return false;
+        }
     }
 
 }
@@ -0,0 +1,155 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.clients;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of payloads with its own sender thread, so the payloads of a lane never wait
+ * for the payloads of another lane, whatever their volume or the latency of their intake.
+ * When the queue is full, the oldest payload of the lane is dropped, so a lane never evicts
+ * the payloads of another lane.
+ * @param <T> the type of the payloads
+ */
+public class DatadogSenderLane<T> {
+
+    private static final Logger logger = Logger.getLogger(DatadogSenderLane.class.getName());
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int maxBatchSize;
+    private final BatchSender<T> sender;
+    private final Level dropLogLevel;
+    private final AtomicLong droppedPayloads = new AtomicLong();
+    private volatile Thread thread;
+
+    /**
+     * @param name the name of the sender thread
+     * @param capacity the maximum number of payloads waiting to be sent
+     * @param maxBatchSize the maximum number of payloads given to the sender at once
+     * @param sender sends the payloads
+     */
+    public DatadogSenderLane(final String name, final int capacity, final int maxBatchSize, final BatchSender<T> sender) {
+        this(name, capacity, maxBatchSize, sender, Level.FINE);
+    }
+
+    /**
+     * @param name the name of the sender thread
+     * @param capacity the maximum number of payloads waiting to be sent
+     * @param maxBatchSize the maximum number of payloads given to the sender at once
+     * @param sender sends the payloads
+     * @param dropLogLevel the level at which the payloads dropped because the queue is full are logged
+     */
+    public DatadogSenderLane(final String name, final int capacity, final int maxBatchSize, final BatchSender<T> sender, final Level dropLogLevel) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.sender = sender;
+        this.dropLogLevel = dropLogLevel;
+    }
+
+    /**
+     * Adds a payload to the queue, dropping the oldest payload if it is full.
+     * The sender thread is started on first use.
+     * @param payload the payload
+     * @return true once the payload is queued.
+     */
+    public boolean submit(final T payload) {
+        if(thread == null) {
+            start();
+        }
+        while(!queue.offer(payload)) {
+            if(queue.poll() != null) {
+                droppedPayloads.incrementAndGet();
+                logger.log(dropLogLevel, "Dropped the oldest payload of " + name + ", its queue is full.");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of payloads waiting to be sent.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of payloads dropped because the queue was full since the last call.
+     */
+    public long getAndResetDroppedPayloads() {
+        return droppedPayloads.getAndSet(0);
+    }
+
+    private synchronized void start() {
+        if(thread != null) {
+            return;
+        }
+        thread = new NamingThreadFactory(new DaemonThreadFactory(), name).newThread(new Runnable() {
+            @Override
+            public void run() {
+                sendPayloads();
+            }
+        });
+        thread.start();
+    }
+
+    private void sendPayloads() {
+        final List<T> batch = new ArrayList<>(maxBatchSize);
+        while(true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                logger.fine(name + " interrupted");
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            try {
+                sender.send(batch);
+            } catch (RuntimeException e) {
+                logger.severe("Unable to send " + batch.size() + " payloads. Error: " + e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Sends the payloads of a lane. The list is reused after the call.
+     * @param <T> the type of the payloads
+     */
+    public interface BatchSender<T> {
+        void send(List<T> batch);
+    }
+}
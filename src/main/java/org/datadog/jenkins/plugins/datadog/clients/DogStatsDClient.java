@@ -34,6 +34,7 @@ import datadog.trace.api.sampling.PrioritySampling;
 import datadog.trace.bootstrap.instrumentation.api.SamplerConstants;
 import datadog.trace.common.sampling.ForcePrioritySampler;
 import datadog.trace.common.writer.DDAgentWriter;
+import datadog.trace.core.monitor.HealthMetrics;
 import datadog.trace.core.monitor.Monitoring;
 import hudson.model.Run;
 import hudson.util.Secret;
@@ -41,16 +42,18 @@ import io.opentracing.Tracer;
 import org.apache.commons.lang.StringUtils;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogEvent;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
 import org.datadog.jenkins.plugins.datadog.traces.DatadogTraceBuildLogic;
 import org.datadog.jenkins.plugins.datadog.traces.DatadogTracePipelineLogic;
 import org.datadog.jenkins.plugins.datadog.util.SuppressFBWarnings;
 import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
-import org.jenkinsci.plugins.workflow.graph.FlowNode;
 
 import java.net.ConnectException;
 import java.net.UnknownHostException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Handler;
@@ -258,13 +261,24 @@ public class DogStatsDClient implements DatadogClient {
 
         try {
             logger.info("Re/Initialize Datadog-Plugin Tracer: hostname = " + this.hostname + ", traceCollectionPort = " + this.traceCollectionPort);
+            final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+            final DDAgentWriter.DDAgentWriterBuilder writerBuilder = DDAgentWriter.builder()
+                    .agentHost(this.hostname)
+                    .traceAgentPort(traceCollectionPort)
+                    .traceBufferSize(datadogConfig.getTraceWriterBufferSize())
+                    .flushFrequencySeconds(datadogConfig.getTraceWriterFlushInterval())
+                    .monitoring(Monitoring.DISABLED);
+            if(this.statsd != null) {
+                // The writer reports its health (enqueued and dropped traces, serialization
+                // time and Agent responses) as datadog.tracer.* metrics using the DogStatsD client.
+                writerBuilder.healthMetrics(new HealthMetrics(this.statsd));
+            }
+
             final DDTracer.DDTracerBuilder tracerBuilder = DDTracer.builder();
             tracerBuilder
                     .sampler(new ForcePrioritySampler(PrioritySampling.SAMPLER_KEEP))
-                    .writer(DDAgentWriter.builder()
-                    .agentHost(this.hostname)
-                    .traceAgentPort(traceCollectionPort)
-                    .monitoring(Monitoring.DISABLED).build());
+                    .partialFlushMinSpans(datadogConfig.getTracePartialFlushMinSpans())
+                    .writer(writerBuilder.build());
 
             final Tracer ddTracer = tracerBuilder.build();
             traceBuildLogic = new DatadogTraceBuildLogic(ddTracer);
@@ -440,6 +454,17 @@ public class DogStatsDClient implements DatadogClient {
         }
     }
 
+    @Override
+    public boolean sendLogBatch(List<String> payloads) {
+        // The Datadog Agent receives the log messages one by one.
+        for(final String payload : payloads) {
+            if(!sendLogs(payload) && !sendLogs(payload)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean sendLogs(String payload) {
         if(logCollectionPort == null){
@@ -524,7 +549,7 @@ public class DogStatsDClient implements DatadogClient {
     }
 
     @Override
-    public boolean sendPipelineTrace(Run<?, ?> run, FlowNode flowNode) {
+    public boolean sendPipelineTrace(Run<?, ?> run, FlowNodeSnapshot flowNode) {
         try {
             boolean status = reinitializeTracer(false);
             if(!status) {
@@ -28,8 +28,6 @@ package org.datadog.jenkins.plugins.datadog.listeners;
 import static org.datadog.jenkins.plugins.datadog.traces.TraceStepEnvironmentContributor.SPAN_ID_ENVVAR_KEY;
 import static org.datadog.jenkins.plugins.datadog.traces.TraceStepEnvironmentContributor.TRACE_ID_ENVVAR_KEY;
 
-import com.cloudbees.workflow.rest.external.RunExt;
-import com.cloudbees.workflow.rest.external.StageNodeExt;
 import hudson.Extension;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
@@ -42,13 +40,20 @@ import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogEvent;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.events.BuildAbortedEventImpl;
 import org.datadog.jenkins.plugins.datadog.events.BuildFinishedEventImpl;
 import org.datadog.jenkins.plugins.datadog.events.BuildStartedEventImpl;
+import org.datadog.jenkins.plugins.datadog.logs.DatadogLogUploader;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionAction;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionMode;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.JobReliabilityIndex;
+import org.datadog.jenkins.plugins.datadog.model.PauseDurationAction;
 import org.datadog.jenkins.plugins.datadog.model.TimeInQueueAction;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
 import org.datadog.jenkins.plugins.datadog.traces.BuildSpanAction;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
@@ -158,12 +163,12 @@ public class DatadogBuildListener extends RunListener<Run> {
      */
     @Override
     public void onStarted(Run run, TaskListener listener) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             // Process only if job is NOT in excluded and is in included
             if (!DatadogUtilities.isJobTracked(run.getParent().getFullName())) {
                 return;
             }
-            logger.fine("Start DatadogBuildListener#onStarted");
 
             // Get Datadog Client Instance
             DatadogClient client = getDatadogClient();
@@ -171,40 +176,51 @@ public class DatadogBuildListener extends RunListener<Run> {
                 return;
             }
 
-            // Collect Build Data
-            BuildData buildData;
-            try {
-                buildData = new BuildData(run, listener);
-            } catch (IOException | InterruptedException e) {
-                DatadogUtilities.severe(logger, e, null);
-                return;
-            }
-
-            // Send an event
-            DatadogEvent event = new BuildStartedEventImpl(buildData);
-            client.event(event);
-
-            // Send an metric
+            // The queue item is gone once the build is running, so the time in queue is computed now.
             // item.getInQueueSince() may raise a NPE if a worker node is spinning up to run the job.
             // This could be expected behavior with ec2 spot instances/ecs containers, meaning no waiting
             // queue times if the plugin is spinning up an instance/container for one/first job.
+            Long waiting = null;
             Queue queue = getQueue();
             Queue.Item item = queue.getItem(run.getQueueId());
-            Map<String, Set<String>> tags = buildData.getTags();
-            String hostname = buildData.getHostname("unknown");
             try {
-                long waiting = (DatadogUtilities.currentTimeMillis() - item.getInQueueSince()) / 1000;
-                client.gauge("jenkins.job.waiting", waiting, hostname, tags);
+                waiting = (DatadogUtilities.currentTimeMillis() - item.getInQueueSince()) / 1000;
                 run.addAction(new TimeInQueueAction(waiting));
             } catch (NullPointerException e) {
                 logger.warning("Unable to compute 'waiting' metric. " +
                         "item.getInQueueSince() unavailable, possibly due to worker instance provisioning");
             }
+            final Long timeInQueue = waiting;
 
-            // Submit counter
-            client.incrementCounter("jenkins.job.started", hostname, tags);
+            // Only the state of the run is captured on the callback thread. The build data is collected by the task,
+            // as reading the environment of the run may call the agents and run the EnvironmentContributors.
+            final RunState runState = new RunState(run);
 
-            logger.fine("End DatadogBuildListener#onStarted");
+            DatadogEventDispatcher.getInstance().dispatchSequentially("DatadogBuildListener#onStarted", run, callbackStartNanos, () -> {
+                logger.fine("Start DatadogBuildListener#onStarted");
+
+                // Collect Build Data
+                final BuildData buildData = runState.toBuildData(run, listener);
+                if (buildData == null) {
+                    return;
+                }
+
+                // Send an event
+                DatadogEvent event = new BuildStartedEventImpl(buildData);
+                client.event(event);
+
+                // Send an metric
+                Map<String, Set<String>> tags = buildData.getTags();
+                String hostname = buildData.getHostname("unknown");
+                if (timeInQueue != null) {
+                    client.gauge("jenkins.job.waiting", timeInQueue, hostname, tags);
+                }
+
+                // Submit counter
+                client.incrementCounter("jenkins.job.started", hostname, tags);
+
+                logger.fine("End DatadogBuildListener#onStarted");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -220,12 +236,12 @@ public class DatadogBuildListener extends RunListener<Run> {
 
     @Override
     public void onCompleted(Run run, @Nonnull TaskListener listener) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             // Process only if job in NOT in excluded and is in included
             if (!DatadogUtilities.isJobTracked(run.getParent().getFullName())) {
                 return;
             }
-            logger.fine("Start DatadogBuildListener#onCompleted");
 
             // Get Datadog Client Instance
             DatadogClient client = getDatadogClient();
@@ -233,88 +249,96 @@ public class DatadogBuildListener extends RunListener<Run> {
                 return;
             }
 
-            // Collect Build Data
-            BuildData buildData;
-            try {
-                buildData = new BuildData(run, listener);
-            } catch (IOException | InterruptedException e) {
-                DatadogUtilities.severe(logger, e, null);
-                return;
-            }
+            // Only the state of the run is captured on the callback thread, which may be finalizing the run.
+            final RunState runState = new RunState(run);
+            final long runDuration = run.getDuration();
+            final boolean success = runState.result == Result.SUCCESS;
 
-            // Send an event
-            DatadogEvent event = new BuildFinishedEventImpl(buildData);
-            client.event(event);
-
-            // Send a metric
-            Map<String, Set<String>> tags = buildData.getTags();
-            String hostname = buildData.getHostname("unknown");
-            client.gauge("jenkins.job.duration", buildData.getDuration(0L) / 1000, hostname, tags);
-            logger.fine(String.format("[%s]: Duration: %s", buildData.getJobName(null), toTimeString(buildData.getDuration(0L))));
-
-            if (run instanceof WorkflowRun) {
-                RunExt extRun = getRunExtForRun((WorkflowRun) run);
-                long pauseDuration = 0;
-                for (StageNodeExt stage : extRun.getStages()) {
-                    pauseDuration += stage.getPauseDurationMillis();
-                }
-                client.gauge("jenkins.job.pause_duration", pauseDuration / 1000, hostname, tags);
-                logger.fine(String.format("[%s]: Pause Duration: %s", buildData.getJobName(null), toTimeString(pauseDuration)));
-                long buildDuration = run.getDuration() - pauseDuration;
-                client.gauge("jenkins.job.build_duration", buildDuration / 1000, hostname, tags);
-                logger.fine(
-                        String.format("[%s]: Build Duration (without pause): %s", buildData.getJobName(null), toTimeString(buildDuration)));
-            }
+            // The completion of the run is dispatched to the same queue as its finalization, so they are processed in order.
+            DatadogEventDispatcher.getInstance().dispatchSequentially("DatadogBuildListener#onCompleted", run, callbackStartNanos, () -> {
+                logger.fine("Start DatadogBuildListener#onCompleted");
 
-            // Submit counter
-            client.incrementCounter("jenkins.job.completed", hostname, tags);
-
-            // Send a service check
-            String buildResult = buildData.getResult(Result.NOT_BUILT.toString());
-            DatadogClient.Status status = DatadogClient.Status.UNKNOWN;
-            if (Result.SUCCESS.toString().equals(buildResult)) {
-                status = DatadogClient.Status.OK;
-            } else if (Result.UNSTABLE.toString().equals(buildResult) ||
-                    Result.ABORTED.toString().equals(buildResult) ||
-                    Result.NOT_BUILT.toString().equals(buildResult)) {
-                status = DatadogClient.Status.WARNING;
-            } else if (Result.FAILURE.toString().equals(buildResult)) {
-                status = DatadogClient.Status.CRITICAL;
-            }
-            // Get all tags from buildData except the result tag that is used as the SC status.
-            Map<String, Set<String>> serviceCheckTags = buildData.getTags();
-            serviceCheckTags.remove("result");
-
-            client.serviceCheck("jenkins.job.status", status, hostname, serviceCheckTags);
-
-            if (run.getResult() == Result.SUCCESS) {
-                long mttr = getMeanTimeToRecovery(run);
-                long cycleTime = getCycleTime(run);
-                long leadTime = run.getDuration() + mttr;
-
-                client.gauge("jenkins.job.leadtime", leadTime / 1000, hostname, tags);
-                logger.fine(String.format("[%s]: Lead time: %s", buildData.getJobName(null), toTimeString(leadTime)));
-                if (cycleTime > 0) {
-                    client.gauge("jenkins.job.cycletime", cycleTime / 1000, hostname, tags);
-                    logger.fine(String.format("[%s]: Cycle Time: %s", buildData.getJobName(null), toTimeString(cycleTime)));
+                // Collect Build Data
+                final BuildData buildData = runState.toBuildData(run, listener);
+                if (buildData == null) {
+                    return;
                 }
-                if (mttr > 0) {
-                    client.gauge("jenkins.job.mttr", mttr / 1000, hostname, tags);
-                    logger.fine(String.format("[%s]: MTTR: %s", buildData.getJobName(null), toTimeString(mttr)));
+                // The index is updated when the builds of the job are processed. Builds processed
+                // out of order fall back to the build history (see JobReliabilityIndex#record).
+                final JobReliabilityIndex.ReliabilityMetrics reliabilityMetrics = JobReliabilityIndex.get(run.getParent()).record(run);
+
+                // The pause duration is updated by the tasks of the flow nodes of the run, which were queued before.
+                final Long pauseDuration = run instanceof WorkflowRun ? getPauseDurationMillis((WorkflowRun) run) : null;
+
+                // Send an event
+                DatadogEvent event = new BuildFinishedEventImpl(buildData);
+                client.event(event);
+
+                // Send a metric
+                Map<String, Set<String>> tags = buildData.getTags();
+                String hostname = buildData.getHostname("unknown");
+                client.gauge("jenkins.job.duration", buildData.getDuration(0L) / 1000, hostname, tags);
+                logger.fine(String.format("[%s]: Duration: %s", buildData.getJobName(null), toTimeString(buildData.getDuration(0L))));
+
+                if (pauseDuration != null) {
+                    client.gauge("jenkins.job.pause_duration", pauseDuration / 1000, hostname, tags);
+                    logger.fine(String.format("[%s]: Pause Duration: %s", buildData.getJobName(null), toTimeString(pauseDuration)));
+                    long buildDuration = runDuration - pauseDuration;
+                    client.gauge("jenkins.job.build_duration", buildDuration / 1000, hostname, tags);
+                    logger.fine(
+                            String.format("[%s]: Build Duration (without pause): %s", buildData.getJobName(null), toTimeString(buildDuration)));
                 }
-            } else {
-                long feedbackTime = run.getDuration();
-                long mtbf = getMeanTimeBetweenFailure(run);
-
-                client.gauge("jenkins.job.feedbacktime", feedbackTime / 1000, hostname, tags);
-                logger.fine(String.format("[%s]: Feedback Time: %s", buildData.getJobName(null), toTimeString(feedbackTime)));
-                if (mtbf > 0) {
-                    client.gauge("jenkins.job.mtbf", mtbf / 1000, hostname, tags);
-                    logger.fine(String.format("[%s]: MTBF: %s", buildData.getJobName(null), toTimeString(mtbf)));
+
+                // Submit counter
+                client.incrementCounter("jenkins.job.completed", hostname, tags);
+
+                // Send a service check
+                String buildResult = buildData.getResult(Result.NOT_BUILT.toString());
+                DatadogClient.Status status = DatadogClient.Status.UNKNOWN;
+                if (Result.SUCCESS.toString().equals(buildResult)) {
+                    status = DatadogClient.Status.OK;
+                } else if (Result.UNSTABLE.toString().equals(buildResult) ||
+                        Result.ABORTED.toString().equals(buildResult) ||
+                        Result.NOT_BUILT.toString().equals(buildResult)) {
+                    status = DatadogClient.Status.WARNING;
+                } else if (Result.FAILURE.toString().equals(buildResult)) {
+                    status = DatadogClient.Status.CRITICAL;
+                }
+                // Get all tags from buildData except the result tag that is used as the SC status.
+                Map<String, Set<String>> serviceCheckTags = buildData.getTags();
+                serviceCheckTags.remove("result");
+
+                client.serviceCheck("jenkins.job.status", status, hostname, serviceCheckTags);
+
+                if (success) {
+                    long mttr = reliabilityMetrics.getMeanTimeToRecovery();
+                    long cycleTime = reliabilityMetrics.getCycleTime();
+                    long leadTime = runDuration + mttr;
+
+                    client.gauge("jenkins.job.leadtime", leadTime / 1000, hostname, tags);
+                    logger.fine(String.format("[%s]: Lead time: %s", buildData.getJobName(null), toTimeString(leadTime)));
+                    if (cycleTime > 0) {
+                        client.gauge("jenkins.job.cycletime", cycleTime / 1000, hostname, tags);
+                        logger.fine(String.format("[%s]: Cycle Time: %s", buildData.getJobName(null), toTimeString(cycleTime)));
+                    }
+                    if (mttr > 0) {
+                        client.gauge("jenkins.job.mttr", mttr / 1000, hostname, tags);
+                        logger.fine(String.format("[%s]: MTTR: %s", buildData.getJobName(null), toTimeString(mttr)));
+                    }
+                } else {
+                    long feedbackTime = runDuration;
+                    long mtbf = reliabilityMetrics.getMeanTimeBetweenFailure();
+
+                    client.gauge("jenkins.job.feedbacktime", feedbackTime / 1000, hostname, tags);
+                    logger.fine(String.format("[%s]: Feedback Time: %s", buildData.getJobName(null), toTimeString(feedbackTime)));
+                    if (mtbf > 0) {
+                        client.gauge("jenkins.job.mtbf", mtbf / 1000, hostname, tags);
+                        logger.fine(String.format("[%s]: MTBF: %s", buildData.getJobName(null), toTimeString(mtbf)));
+                    }
                 }
-            }
 
-            logger.fine("End DatadogBuildListener#onCompleted");
+                logger.fine("End DatadogBuildListener#onCompleted");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -327,12 +351,12 @@ public class DatadogBuildListener extends RunListener<Run> {
      */
     @Override
     public void onFinalized(Run run) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             // Process only if job in NOT in excluded and is in included
             if (!DatadogUtilities.isJobTracked(run.getParent().getFullName())) {
                 return;
             }
-            logger.fine("Start DatadogBuildListener#onFinalized");
 
             // Get Datadog Client Instance
             DatadogClient client = getDatadogClient();
@@ -340,18 +364,55 @@ public class DatadogBuildListener extends RunListener<Run> {
                 return;
             }
 
-            // Collect Build Data
-            BuildData buildData;
-            try {
-                buildData = new BuildData(run, null);
-            } catch (IOException | InterruptedException e) {
-                DatadogUtilities.severe(logger, e, null);
-                return;
-            }
+            // Only the state of the run is captured on the callback thread, the build data is collected by the task.
+            final RunState runState = new RunState(run);
+            // Console lines suppressed while the logs were streamed, and console volume of the run.
+            final LogCollectionAction logCollectionAction = run.getAction(LogCollectionAction.class);
+            final long[] logCounters = logCollectionAction == null ? null : new long[] {
+                    logCollectionAction.getRateLimitedLines(), logCollectionAction.getCollapsedLines(),
+                    logCollectionAction.getConsoleBytes(), logCollectionAction.getConsoleLines()};
+            final boolean streamedLogs = isStreamingLogs(run);
+            final boolean uploadLogs = DatadogLogUploader.isEnabledFor(run);
+
+            // The build span is finished after the pending flow nodes of the run have been processed
+            // by the DatadogGraphListener, as they update the data reported in the build span.
+            // The run is read by the task to collect its build data, to upload its logs and to remove
+            // the trace actions, which do not change once the run is finalized.
+            DatadogEventDispatcher.getInstance().dispatchSequentially("DatadogBuildListener#onFinalized", run, callbackStartNanos, () -> {
+                logger.fine("Start DatadogBuildListener#onFinalized");
+
+                // Collect Build Data
+                final BuildData buildData = runState.toBuildData(run, null);
+                if (buildData == null) {
+                    return;
+                }
+
+                if (logCounters != null) {
+                    Map<String, Set<String>> tags = buildData.getTags();
+                    String hostname = buildData.getHostname("unknown");
+                    // The lines are only rate limited and collapsed while they are streamed.
+                    if (streamedLogs) {
+                        client.gauge("jenkins.job.log_lines.rate_limited", logCounters[0], hostname, tags);
+                        client.gauge("jenkins.job.log_lines.collapsed", logCounters[1], hostname, tags);
+                    }
+
+                    // Console output of the run, counted even if its logs are not collected.
+                    if (DatadogUtilities.getDatadogGlobalDescriptor().isCollectLogVolumeMetrics()) {
+                        client.gauge("jenkins.job.log_bytes", logCounters[2], hostname, tags);
+                        client.gauge("jenkins.job.log_lines", logCounters[3], hostname, tags);
+                    }
+                }
+
+                // Logs collected once the build is finalized.
+                // The upload is scheduled before the trace is finished, as the BuildData keeps the trace of the run.
+                if (uploadLogs) {
+                    DatadogLogUploader.get().schedule(run, buildData);
+                }
 
-            // APM Traces
-            client.finishBuildTrace(buildData, run);
-            logger.fine("End DatadogBuildListener#onFinalized");
+                // APM Traces
+                client.finishBuildTrace(buildData, run);
+                logger.fine("End DatadogBuildListener#onFinalized");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -360,12 +421,12 @@ public class DatadogBuildListener extends RunListener<Run> {
 
     @Override
     public void onDeleted(Run run) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             // Process only if job is NOT in excluded and is in included
             if (!DatadogUtilities.isJobTracked(run.getParent().getFullName())) {
                 return;
             }
-            logger.fine("Start DatadogBuildListener#onDeleted");
 
             // Get Datadog Client Instance
             DatadogClient client = getDatadogClient();
@@ -374,7 +435,8 @@ public class DatadogBuildListener extends RunListener<Run> {
             }
 
             // Collect Build Data
-            BuildData buildData;
+            // The data is captured on the callback thread, as the run is gone by the time the task runs.
+            final BuildData buildData;
             try {
                 buildData = new BuildData(run, null);
             } catch (IOException | InterruptedException e) {
@@ -382,86 +444,114 @@ public class DatadogBuildListener extends RunListener<Run> {
                 return;
             }
 
-            // If the build already complete, this could be a Jenkins cleanup operation
-            if (buildData.isCompleted()) {
-                String result = buildData.getResult(null);
-                String number = buildData.getBuildNumber("unknown");
-                String jobName = buildData.getJobName("unknown");
+            DatadogEventDispatcher.getInstance().dispatchSequentially("DatadogBuildListener#onDeleted", run, callbackStartNanos, () -> {
+                logger.fine("Start DatadogBuildListener#onDeleted");
 
-                // Build title
-                // eg: `job_name build #1 aborted on hostname`
-                String text = "Ignoring deletion event for completed Job " + jobName +
-                        " build #" + number + " with result " + result;
+                // If the build already complete, this could be a Jenkins cleanup operation
+                if (buildData.isCompleted()) {
+                    String result = buildData.getResult(null);
+                    String number = buildData.getBuildNumber("unknown");
+                    String jobName = buildData.getJobName("unknown");
 
-                logger.fine(text);
-                return;
-            }
+                    // Build title
+                    // eg: `job_name build #1 aborted on hostname`
+                    String text = "Ignoring deletion event for completed Job " + jobName +
+                            " build #" + number + " with result " + result;
+
+                    logger.fine(text);
+                    return;
+                }
 
-            // Get the list of global tags to apply
-            String hostname = buildData.getHostname("unknown");
+                // Get the list of global tags to apply
+                String hostname = buildData.getHostname("unknown");
 
-            // Send an event
-            DatadogEvent event = new BuildAbortedEventImpl(buildData);
-            client.event(event);
+                // Send an event
+                DatadogEvent event = new BuildAbortedEventImpl(buildData);
+                client.event(event);
 
-            // Submit counter
-            Map<String, Set<String>> tags = buildData.getTags();
-            client.incrementCounter("jenkins.job.aborted", hostname, tags);
+                // Submit counter
+                Map<String, Set<String>> tags = buildData.getTags();
+                client.incrementCounter("jenkins.job.aborted", hostname, tags);
 
-            logger.fine("End DatadogBuildListener#onDeleted");
+                logger.fine("End DatadogBuildListener#onDeleted");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
     }
 
-    private String toTimeString(long millis) {
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis);
-        long totalSeconds = TimeUnit.MILLISECONDS.toSeconds(millis);
-        long seconds = totalSeconds - TimeUnit.MINUTES.toSeconds(minutes);
-        return String.format("%d min, %d sec", minutes, seconds);
-    }
-
-    private long getMeanTimeBetweenFailure(Run<?, ?> run) {
-        Run<?, ?> lastGreenRun = run.getPreviousNotFailedBuild();
-        if (lastGreenRun != null) {
-            return DatadogUtilities.getRunStartTimeInMillis(run) -
-                    DatadogUtilities.getRunStartTimeInMillis(lastGreenRun);
+    /**
+     * @param run the run
+     * @return true if the console lines of the run are shipped while it runs.
+     */
+    private static boolean isStreamingLogs(final Run<?, ?> run) {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if (datadogConfig.getLogCollectionMode() == LogCollectionMode.POST_BUILD) {
+            return false;
         }
-        return 0;
-    }
 
-    private long getCycleTime(Run<?, ?> run) {
-        Run<?, ?> previousSuccessfulBuild = run.getPreviousSuccessfulBuild();
-        if (previousSuccessfulBuild != null) {
-            return (DatadogUtilities.getRunStartTimeInMillis(run) + run.getDuration()) -
-                    (DatadogUtilities.getRunStartTimeInMillis(previousSuccessfulBuild) +
-                            previousSuccessfulBuild.getDuration());
-        }
-        return 0;
+        final DatadogPipelineAction pipelineAction = run.getAction(DatadogPipelineAction.class);
+        return datadogConfig.isCollectBuildLogs() || (pipelineAction != null && pipelineAction.isCollectLogs());
     }
 
-    private long getMeanTimeToRecovery(Run<?, ?> run) {
-        if (isFailedBuild(run.getPreviousBuiltBuild())) {
-            Run<?, ?> firstFailedRun = run.getPreviousBuiltBuild();
+    /**
+     * The state of a run when a callback is invoked. The build data of the run is collected in the background,
+     * when the run may have progressed, so its result and timing are set from the state captured by the callback.
+     */
+    private static final class RunState {
+        private final Result result;
+        private final long startTimeMillis;
+        private final long durationMillis;
+
+        RunState(final Run<?, ?> run) {
+            this.result = run.getResult();
+            this.startTimeMillis = run.getStartTimeInMillis();
+            final long duration = run.getDuration();
+            this.durationMillis = (duration == 0 && startTimeMillis != 0) ? System.currentTimeMillis() - startTimeMillis : duration;
+        }
 
-            while (firstFailedRun != null && isFailedBuild(firstFailedRun.getPreviousBuiltBuild())) {
-                firstFailedRun = firstFailedRun.getPreviousBuiltBuild();
+        /**
+         * @param run the run
+         * @param listener the listener of the callback, whose stream ignores the messages once it is closed,
+         *                 or null to log the messages
+         * @return the build data of the run with the captured state, or null if it cannot be collected.
+         */
+        BuildData toBuildData(final Run<?, ?> run, final TaskListener listener) {
+            final BuildData buildData;
+            try {
+                buildData = new BuildData(run, listener);
+            } catch (IOException | InterruptedException e) {
+                DatadogUtilities.severe(logger, e, null);
+                return null;
             }
-            if (firstFailedRun != null) {
-                return DatadogUtilities.getRunStartTimeInMillis(run) -
-                        DatadogUtilities.getRunStartTimeInMillis(firstFailedRun);
+
+            buildData.setResult(result == null ? null : result.toString());
+            buildData.setCompleted(result != null && result.completeBuild);
+            buildData.setDuration(durationMillis);
+            if (durationMillis != 0 && startTimeMillis != 0) {
+                buildData.setEndTime(startTimeMillis + durationMillis);
             }
+            return buildData;
         }
-        return 0;
     }
 
-
-    private boolean isFailedBuild(Run<?, ?> run) {
-        return run != null && run.getResult() != Result.SUCCESS;
+    private String toTimeString(long millis) {
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis);
+        long totalSeconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        long seconds = totalSeconds - TimeUnit.MINUTES.toSeconds(minutes);
+        return String.format("%d min, %d sec", minutes, seconds);
     }
 
-    public RunExt getRunExtForRun(WorkflowRun run) {
-        return RunExt.create(run);
+    /**
+     * Returns the time the pipeline spent paused, as accumulated by the DatadogGraphListener
+     * while the pipeline was running.
+     */
+    private long getPauseDurationMillis(WorkflowRun run) {
+        PauseDurationAction pauseDurationAction = run.getAction(PauseDurationAction.class);
+        if (pauseDurationAction == null) {
+            return 0;
+        }
+        return pauseDurationAction.getPauseDurationMillis();
     }
 
     public Queue getQueue() {
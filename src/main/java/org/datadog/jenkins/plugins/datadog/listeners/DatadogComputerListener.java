@@ -59,12 +59,12 @@ public class DatadogComputerListener extends ComputerListener {
 
     @Override
     public void onOnline(Computer computer, TaskListener listener) throws IOException, InterruptedException {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogComputerListener#onOnline");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -72,20 +72,24 @@ public class DatadogComputerListener extends ComputerListener {
                 return;
             }
 
-            // Get the list of tags to apply
-            Map<String, Set<String>> tags = TagsUtil.merge(
-                    DatadogUtilities.getTagsFromGlobalTags(),
-                    DatadogUtilities.getComputerTags(computer));
+            DatadogEventDispatcher.getInstance().dispatch("DatadogComputerListener#onOnline", computer, callbackStartNanos, () -> {
+                logger.fine("Start DatadogComputerListener#onOnline");
 
-            // Send event
-            DatadogEvent event = new ComputerOnlineEventImpl(computer, listener, tags, false);
-            client.event(event);
+                // Get the list of tags to apply
+                Map<String, Set<String>> tags = TagsUtil.merge(
+                        DatadogUtilities.getTagsFromGlobalTags(),
+                        DatadogUtilities.getComputerTags(computer));
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.computer.online", hostname, tags);
+                // Send event
+                DatadogEvent event = new ComputerOnlineEventImpl(computer, listener, tags, false);
+                client.event(event);
 
-            logger.fine("End DatadogComputerListener#onOnline");
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.computer.online", hostname, tags);
+
+                logger.fine("End DatadogComputerListener#onOnline");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -93,12 +97,12 @@ public class DatadogComputerListener extends ComputerListener {
 
     @Override
     public void onOffline(@Nonnull Computer computer, @CheckForNull OfflineCause cause) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogComputerListener#onOffline");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -106,20 +110,24 @@ public class DatadogComputerListener extends ComputerListener {
                 return;
             }
 
-            // Get the list of tags to apply
-            Map<String, Set<String>> tags = TagsUtil.merge(
-                    DatadogUtilities.getTagsFromGlobalTags(),
-                    DatadogUtilities.getComputerTags(computer));
+            DatadogEventDispatcher.getInstance().dispatch("DatadogComputerListener#onOffline", computer, callbackStartNanos, () -> {
+                logger.fine("Start DatadogComputerListener#onOffline");
+
+                // Get the list of tags to apply
+                Map<String, Set<String>> tags = TagsUtil.merge(
+                        DatadogUtilities.getTagsFromGlobalTags(),
+                        DatadogUtilities.getComputerTags(computer));
 
-            // Send event
-            DatadogEvent event = new ComputerOfflineEventImpl(computer, cause, tags, false);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ComputerOfflineEventImpl(computer, cause, tags, false);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.computer.offline", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.computer.offline", hostname, tags);
 
-            logger.fine("End DatadogComputerListener#onOffline");
+                logger.fine("End DatadogComputerListener#onOffline");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -127,12 +135,12 @@ public class DatadogComputerListener extends ComputerListener {
 
     @Override
     public void onTemporarilyOnline(Computer computer) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogComputerListener#onTemporarilyOnline");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -140,20 +148,24 @@ public class DatadogComputerListener extends ComputerListener {
                 return;
             }
 
-            // Get the list of tags to apply
-            Map<String, Set<String>> tags = TagsUtil.merge(
-                    DatadogUtilities.getTagsFromGlobalTags(),
-                    DatadogUtilities.getComputerTags(computer));
+            DatadogEventDispatcher.getInstance().dispatch("DatadogComputerListener#onTemporarilyOnline", computer, callbackStartNanos, () -> {
+                logger.fine("Start DatadogComputerListener#onTemporarilyOnline");
+
+                // Get the list of tags to apply
+                Map<String, Set<String>> tags = TagsUtil.merge(
+                        DatadogUtilities.getTagsFromGlobalTags(),
+                        DatadogUtilities.getComputerTags(computer));
 
-            // Send event
-            DatadogEvent event = new ComputerOnlineEventImpl(computer, null, tags, true);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ComputerOnlineEventImpl(computer, null, tags, true);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.computer.temporarily_online", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.computer.temporarily_online", hostname, tags);
 
-            logger.fine("End DatadogComputerListener#onTemporarilyOnline");
+                logger.fine("End DatadogComputerListener#onTemporarilyOnline");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -161,12 +173,12 @@ public class DatadogComputerListener extends ComputerListener {
 
     @Override
     public void onTemporarilyOffline(Computer computer, OfflineCause cause) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogComputerListener#onTemporarilyOffline");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -174,20 +186,24 @@ public class DatadogComputerListener extends ComputerListener {
                 return;
             }
 
-            // Get the list of tags to apply
-            Map<String, Set<String>> tags = TagsUtil.merge(
-                    DatadogUtilities.getTagsFromGlobalTags(),
-                    DatadogUtilities.getComputerTags(computer));
+            DatadogEventDispatcher.getInstance().dispatch("DatadogComputerListener#onTemporarilyOffline", computer, callbackStartNanos, () -> {
+                logger.fine("Start DatadogComputerListener#onTemporarilyOffline");
 
-            // Send event
-            DatadogEvent event = new ComputerOfflineEventImpl(computer, cause, tags, true);
-            client.event(event);
+                // Get the list of tags to apply
+                Map<String, Set<String>> tags = TagsUtil.merge(
+                        DatadogUtilities.getTagsFromGlobalTags(),
+                        DatadogUtilities.getComputerTags(computer));
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.computer.temporarily_offline", hostname, tags);
+                // Send event
+                DatadogEvent event = new ComputerOfflineEventImpl(computer, cause, tags, true);
+                client.event(event);
 
-            logger.fine("End DatadogComputerListener#onTemporarilyOffline");
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.computer.temporarily_offline", hostname, tags);
+
+                logger.fine("End DatadogComputerListener#onTemporarilyOffline");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -195,12 +211,12 @@ public class DatadogComputerListener extends ComputerListener {
 
     @Override
     public void onLaunchFailure(Computer computer, TaskListener taskListener) throws IOException, InterruptedException {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogComputerListener#onLaunchFailure");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -208,20 +224,24 @@ public class DatadogComputerListener extends ComputerListener {
                 return;
             }
 
-            // Get the list of tags to apply
-            Map<String, Set<String>> tags = TagsUtil.merge(
-                    DatadogUtilities.getTagsFromGlobalTags(),
-                    DatadogUtilities.getComputerTags(computer));
+            DatadogEventDispatcher.getInstance().dispatch("DatadogComputerListener#onLaunchFailure", computer, callbackStartNanos, () -> {
+                logger.fine("Start DatadogComputerListener#onLaunchFailure");
+
+                // Get the list of tags to apply
+                Map<String, Set<String>> tags = TagsUtil.merge(
+                        DatadogUtilities.getTagsFromGlobalTags(),
+                        DatadogUtilities.getComputerTags(computer));
 
-            // Send event
-            DatadogEvent event = new ComputerLaunchFailedEventImpl(computer, taskListener, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ComputerLaunchFailedEventImpl(computer, taskListener, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.computer.launch_failure", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.computer.launch_failure", hostname, tags);
 
-            logger.fine("End DatadogComputerListener#onLaunchFailure");
+                logger.fine("End DatadogComputerListener#onLaunchFailure");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
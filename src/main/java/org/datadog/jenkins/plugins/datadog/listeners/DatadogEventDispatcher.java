@@ -0,0 +1,423 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.listeners;
+
+import hudson.init.Terminator;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.util.SuppressFBWarnings;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches the work triggered by the Jenkins listeners (tag computation, event construction,
+ * network sends) to a bounded pool of worker threads, so that the Jenkins callback threads
+ * only capture what they need and return.
+ *
+ * Tasks submitted with the same ordering key are executed in submission order, on the same worker.
+ * Tasks run with the authentication of the thread that dispatched them, so the user id reported
+ * in the events is the same as if they had been processed inline.
+ *
+ * Work that must never be dropped, such as the lifecycle callbacks of a run and the flow nodes
+ * of a pipeline, is dispatched to per-key sequential queues instead. Each queue is drained by at most
+ * one thread of a shared pool at a time, so tasks with the same key are executed in order while
+ * different keys run in parallel. When a queue is full, the dispatching thread waits for it to drain,
+ * so the memory used by a key is bounded without dropping any of its tasks. As the dispatching thread
+ * may be the one finalizing a build, it only waits for a limited time, and then runs the task itself.
+ *
+ * The pools are shut down when Jenkins terminates, once the tasks already dispatched are processed.
+ */
+public class DatadogEventDispatcher {
+
+    private static final Logger logger = Logger.getLogger(DatadogEventDispatcher.class.getName());
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int WORKER_QUEUE_CAPACITY = 1000;
+    private static final int SEQUENTIAL_QUEUE_CAPACITY = 10000;
+    private static final long SEQUENTIAL_QUEUE_TIMEOUT_MILLIS = 2000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static DatadogEventDispatcher instance;
+    // Only used for tests
+    private static boolean synchronous = false;
+
+    private final ThreadPoolExecutor[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final AtomicLong droppedTasks = new AtomicLong();
+    private final AtomicLong inlineTasks = new AtomicLong();
+    private final ConcurrentMap<String, CallbackLatency> callbackLatencies = new ConcurrentHashMap<>();
+    private final ExecutorService sequentialPool;
+    private final ConcurrentMap<Object, SequentialQueue> sequentialQueues = new ConcurrentHashMap<>();
+    private final AtomicLong pendingSequentialTasks = new AtomicLong();
+
+    private final int sequentialQueueCapacity;
+    private final long sequentialQueueTimeoutMillis;
+
+    private DatadogEventDispatcher() {
+        this(SEQUENTIAL_QUEUE_CAPACITY, SEQUENTIAL_QUEUE_TIMEOUT_MILLIS);
+    }
+
+    // Only used for tests
+    DatadogEventDispatcher(int sequentialQueueCapacity, long sequentialQueueTimeoutMillis) {
+        this.sequentialQueueCapacity = sequentialQueueCapacity;
+        this.sequentialQueueTimeoutMillis = sequentialQueueTimeoutMillis;
+        this.workers = new ThreadPoolExecutor[WORKER_COUNT];
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            this.workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(WORKER_QUEUE_CAPACITY),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Datadog Event Dispatcher " + i));
+        }
+        this.sequentialPool = Executors.newFixedThreadPool(WORKER_COUNT,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Datadog Sequential Dispatcher"));
+    }
+
+    @SuppressFBWarnings(value="DC_DOUBLECHECK")
+    public static DatadogEventDispatcher getInstance() {
+        if (instance == null) {
+            synchronized (DatadogEventDispatcher.class) {
+                if (instance == null) {
+                    instance = new DatadogEventDispatcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts the worker pools down when Jenkins terminates, after the tasks already dispatched
+     * have been processed. A new dispatcher is created if a task is dispatched afterwards.
+     */
+    @Terminator
+    public static void shutdown() {
+        final DatadogEventDispatcher dispatcher;
+        synchronized (DatadogEventDispatcher.class) {
+            dispatcher = instance;
+            instance = null;
+        }
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    // Only used for tests
+    void close() {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        sequentialPool.shutdown();
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+            for (ThreadPoolExecutor worker : workers) {
+                worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            if (!sequentialPool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                logger.warning("Unable to process the pending Datadog tasks before Jenkins terminates. Pending tasks: " + getQueueSize());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Process the dispatched tasks on the calling thread. Only used for tests.
+     * @param synchronous - true to run the tasks inline.
+     */
+    public static void setSynchronous(boolean synchronous) {
+        DatadogEventDispatcher.synchronous = synchronous;
+    }
+
+    /**
+     * Hands a task over to the worker pool.
+     *
+     * @param callback - Name of the Jenkins callback dispatching the task, used to report its latency.
+     * @param orderingKey - Tasks with equal keys are processed in order. May be null if ordering is not needed.
+     * @param callbackStartNanos - Value of {@link System#nanoTime()} when the callback was invoked.
+     * @param task - The work to do.
+     */
+    public void dispatch(final String callback, final Object orderingKey, final long callbackStartNanos,
+                         final Runnable task) {
+        if (synchronous) {
+            runTask(callback, task);
+            recordLatency(callback, System.nanoTime() - callbackStartNanos);
+            return;
+        }
+
+        final Authentication authentication = Jenkins.getAuthentication();
+        final Runnable runnable = () -> {
+            try (ACLContext ignored = ACL.as(authentication)) {
+                runTask(callback, task);
+            }
+        };
+        try {
+            workerFor(orderingKey).execute(runnable);
+        } catch (RejectedExecutionException e) {
+            // The drops are reported with the dispatcher metrics, and logged once until they are reported.
+            final Level level = droppedTasks.incrementAndGet() == 1 ? Level.WARNING : Level.FINE;
+            logger.log(level, "Dropped " + callback + " task, the event dispatcher queue is full or the dispatcher is shut down");
+        }
+        recordLatency(callback, System.nanoTime() - callbackStartNanos);
+    }
+
+    /**
+     * Hands a task over to the sequential queue of a certain key. Tasks are never dropped:
+     * if the queue of the key is full, the calling thread waits until there is room for the task.
+     * If the queue is still full after a while, or the dispatcher is shut down, the task is run
+     * by the calling thread, before the tasks of the key that are still queued.
+     *
+     * @param callback - Name of the Jenkins callback dispatching the task, used to report its latency.
+     * @param key - Tasks with equal keys are processed one at a time, in submission order.
+     * @param callbackStartNanos - Value of {@link System#nanoTime()} when the callback was invoked.
+     * @param task - The work to do.
+     */
+    public void dispatchSequentially(final String callback, final Object key, final long callbackStartNanos,
+                                     final Runnable task) {
+        if (synchronous) {
+            runTask(callback, task);
+            recordLatency(callback, System.nanoTime() - callbackStartNanos);
+            return;
+        }
+
+        final SequentialQueue current = sequentialQueues.get(key);
+        if (sequentialPool.isShutdown() || (current != null && !current.awaitCapacity(sequentialQueueTimeoutMillis))) {
+            runInline(callback, task);
+            recordLatency(callback, System.nanoTime() - callbackStartNanos);
+            return;
+        }
+
+        final Authentication authentication = Jenkins.getAuthentication();
+        final Runnable runnable = () -> {
+            try (ACLContext ignored = ACL.as(authentication)) {
+                runTask(callback, task);
+            }
+        };
+        final boolean[] schedule = new boolean[1];
+        final SequentialQueue queue = sequentialQueues.compute(key, (k, q) -> {
+            if (q == null) {
+                q = new SequentialQueue(k);
+            }
+            q.tasks.add(runnable);
+            q.size = q.tasks.size();
+            if (!q.scheduled) {
+                q.scheduled = true;
+                schedule[0] = true;
+            }
+            return q;
+        });
+        pendingSequentialTasks.incrementAndGet();
+        if (schedule[0]) {
+            try {
+                sequentialPool.execute(queue);
+            } catch (RejectedExecutionException e) {
+                // Shut down in the meantime, the queue is drained by the calling thread.
+                queue.run();
+            }
+        }
+        recordLatency(callback, System.nanoTime() - callbackStartNanos);
+    }
+
+    private void runInline(final String callback, final Runnable task) {
+        // The inline tasks are reported with the dispatcher metrics, and logged once until they are reported.
+        final Level level = inlineTasks.incrementAndGet() == 1 ? Level.WARNING : Level.FINE;
+        logger.log(level, "Processing " + callback + " task on the callback thread, the event dispatcher queue is full or the dispatcher is shut down");
+        runTask(callback, task);
+    }
+
+    private void runTask(final String callback, final Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, "Failed to process " + callback);
+        }
+    }
+
+    private ThreadPoolExecutor workerFor(final Object orderingKey) {
+        int index;
+        if (orderingKey == null) {
+            index = nextWorker.getAndIncrement();
+        } else {
+            index = orderingKey.hashCode();
+        }
+        return workers[Math.floorMod(index, workers.length)];
+    }
+
+    private void recordLatency(final String callback, final long latencyNanos) {
+        CallbackLatency latency = callbackLatencies.get(callback);
+        if (latency == null) {
+            callbackLatencies.putIfAbsent(callback, new CallbackLatency());
+            latency = callbackLatencies.get(callback);
+        }
+        latency.record(latencyNanos);
+    }
+
+    /**
+     * @return the number of tasks waiting to be processed.
+     */
+    public long getQueueSize() {
+        long size = pendingSequentialTasks.get();
+        for (ThreadPoolExecutor worker : workers) {
+            size += worker.getQueue().size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of tasks dropped because the queues were full since the last call.
+     */
+    public long getAndResetDroppedTasks() {
+        return droppedTasks.getAndSet(0);
+    }
+
+    /**
+     * @return the number of tasks processed on the callback threads because the sequential queues were full since the last call.
+     */
+    public long getAndResetInlineTasks() {
+        return inlineTasks.getAndSet(0);
+    }
+
+    /**
+     * @return the latency of the Jenkins callbacks, by callback name, since the last call.
+     */
+    public Map<String, CallbackLatency> getAndResetCallbackLatencies() {
+        Map<String, CallbackLatency> result = new HashMap<>();
+        for (String callback : callbackLatencies.keySet()) {
+            CallbackLatency latency = callbackLatencies.remove(callback);
+            if (latency != null) {
+                result.put(callback, latency);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tasks of a certain key. The queue is removed from the map, under the map lock,
+     * as soon as it is drained, so a new one is scheduled for the next task of that key.
+     */
+    private class SequentialQueue implements Runnable {
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        // Number of tasks in the queue, updated under the map lock.
+        private volatile int size;
+
+        SequentialQueue(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            final Runnable[] next = new Runnable[1];
+            while (true) {
+                next[0] = null;
+                sequentialQueues.computeIfPresent(key, (k, q) -> {
+                    next[0] = q.tasks.poll();
+                    q.size = q.tasks.size();
+                    return next[0] == null ? null : q;
+                });
+                if (next[0] == null) {
+                    return;
+                }
+                pendingSequentialTasks.decrementAndGet();
+                if (size == sequentialQueueCapacity - 1) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+                next[0].run();
+            }
+        }
+
+        /**
+         * Blocks the calling thread while the queue is full, for at most a certain time.
+         * @param timeoutMillis the maximum time to wait
+         * @return true if the queue has room for another task.
+         */
+        boolean awaitCapacity(final long timeoutMillis) {
+            if (size < sequentialQueueCapacity) {
+                return true;
+            }
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (this) {
+                try {
+                    long remaining = timeoutMillis;
+                    while (size >= sequentialQueueCapacity && remaining > 0) {
+                        wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return size < sequentialQueueCapacity;
+        }
+    }
+
+    /**
+     * Time spent on the Jenkins callback threads, before handing the task over to the workers.
+     */
+    public static class CallbackLatency {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void record(long latencyNanos) {
+            count++;
+            totalNanos += latencyNanos;
+            maxNanos = Math.max(maxNanos, latencyNanos);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getAverageMicros() {
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / count);
+        }
+
+        public synchronized long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+        }
+    }
+}
@@ -28,10 +28,15 @@ package org.datadog.jenkins.plugins.datadog.listeners;
 import hudson.Extension;
 import hudson.model.Queue;
 import hudson.model.Run;
+import hudson.model.TaskListener;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionAction;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
+import org.datadog.jenkins.plugins.datadog.model.PauseDurationAction;
+import org.datadog.jenkins.plugins.datadog.traces.BuildSpanAction;
 import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
 import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
 import org.jenkinsci.plugins.workflow.actions.TimingAction;
@@ -42,6 +47,7 @@ import org.jenkinsci.plugins.workflow.flow.GraphListener;
 import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.support.actions.PauseAction;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -61,55 +67,187 @@ public class DatadogGraphListener implements GraphListener {
 
     @Override
     public void onNewHead(FlowNode flowNode) {
-        //APM Traces
-        DatadogClient client = ClientFactory.getClient();
-        if (client == null){
-            return;
-        }
+        final long callbackStartNanos = System.nanoTime();
+        try {
+            DatadogClient client = ClientFactory.getClient();
+            if (client == null){
+                return;
+            }
 
-        client.sendPipelineTrace(runFor(flowNode.getExecution()), flowNode);
+            Run<?, ?> run = runFor(flowNode.getExecution());
+            if (run == null) {
+                return;
+            }
 
-        if (!isMonitored(flowNode)) {
-            return;
+            // This callback runs on the CPS VM thread of the pipeline, which keeps updating the flow graph,
+            // so only the data that changes afterwards is captured here: the ids of the node and its enclosing blocks
+            // with the StepData of the steps, and the console volume of the run when a stage starts or ends.
+            // The rest of the work is done in the background, where the nodes of a run are processed
+            // one at a time, in the order they arrived. The pause duration of the run is updated there too,
+            // before the build listener reads it in the task of the completed run.
+            final FlowNodeSnapshot nodeSnapshot = isTraced(run) ? FlowNodeSnapshot.ofNewHead(flowNode) : null;
+            final long[] consoleVolume = getConsoleVolume(run, flowNode);
+            DatadogEventDispatcher.getInstance().dispatchSequentially("DatadogGraphListener#onNewHead", run,
+                    callbackStartNanos, () -> processNewHead(client, run, flowNode, nodeSnapshot, consoleVolume));
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, null);
         }
+    }
 
-        StepEndNode endNode = (StepEndNode) flowNode;
-        StepStartNode startNode = endNode.getStartNode();
-        int stageDepth = 0;
-        String directParentName = null;
-        for (BlockStartNode node : startNode.iterateEnclosingBlocks()) {
-            if (DatadogUtilities.isStageNode(node)) {
-                if(directParentName == null){
-                    directParentName = getStageName(node);
-                }
-                stageDepth++;
-            }
-        }
-        if(directParentName == null){
-            directParentName = "root";
+    private void processNewHead(DatadogClient client, Run<?, ?> run, FlowNode flowNode, FlowNodeSnapshot nodeSnapshot, long[] consoleVolume) {
+        updatePauseDuration(run, flowNode);
+        // The console volume of the stages is measured when they start and end.
+        long[] stageLogVolume = updateStageLogVolume(run, flowNode, consoleVolume);
+
+        //APM Traces
+        if (nodeSnapshot != null) {
+            client.sendPipelineTrace(run, nodeSnapshot);
         }
-        WorkflowRun run = getRun(flowNode);
-        if(run == null){
+
+        if (!(run instanceof WorkflowRun) || !isMonitored(flowNode)) {
             return;
         }
 
+        CompletedStage stage = new CompletedStage((StepEndNode) flowNode, stageLogVolume);
         try {
-            String result = DatadogUtilities.getResultTag(endNode);
-            BuildData buildData = new BuildData(run, flowNode.getExecution().getOwner().getListener());
+            // The build listener may be closed by the time the node is processed.
+            BuildData buildData = new BuildData(run, TaskListener.NULL);
             String hostname = buildData.getHostname("");
             Map<String, Set<String>> tags = buildData.getTags();
-            TagsUtil.addTagToTags(tags, "stage_name", getStageName(startNode));
-            TagsUtil.addTagToTags(tags, "parent_stage_name", directParentName);
-            TagsUtil.addTagToTags(tags, "stage_depth", String.valueOf(stageDepth));
+            TagsUtil.addTagToTags(tags, "stage_name", stage.name);
+            TagsUtil.addTagToTags(tags, "parent_stage_name", stage.parentName);
+            TagsUtil.addTagToTags(tags, "stage_depth", String.valueOf(stage.depth));
             // Add custom result tag
-            TagsUtil.addTagToTags(tags, "result", result);
-            client.gauge("jenkins.job.stage_duration", getTime(startNode, endNode), hostname, tags);
+            TagsUtil.addTagToTags(tags, "result", stage.result);
+            client.gauge("jenkins.job.stage_duration", stage.duration, hostname, tags);
             client.incrementCounter("jenkins.job.stage_completed", hostname, tags);
+            if (stage.logVolume != null) {
+                client.gauge("jenkins.job.stage_log_bytes", stage.logVolume[0], hostname, tags);
+                client.gauge("jenkins.job.stage_log_lines", stage.logVolume[1], hostname, tags);
+            }
         } catch (IOException | InterruptedException e) {
-            DatadogUtilities.severe(logger, e, "Unable to submit the stage duration metric for " + getStageName(startNode));
+            DatadogUtilities.severe(logger, e, "Unable to submit the stage duration metric for " + stage.name);
         }
     }
 
+    /**
+     * Data of a stage that just completed, used to submit its metrics.
+     */
+    private class CompletedStage {
+        private final String name;
+        private final String parentName;
+        private final int depth;
+        private final String result;
+        private final long duration;
+        private final long[] logVolume;
+
+        CompletedStage(StepEndNode endNode, long[] logVolume) {
+            StepStartNode startNode = endNode.getStartNode();
+            int stageDepth = 0;
+            String directParentName = null;
+            for (BlockStartNode node : startNode.iterateEnclosingBlocks()) {
+                if (DatadogUtilities.isStageNode(node)) {
+                    if(directParentName == null){
+                        directParentName = getStageName(node);
+                    }
+                    stageDepth++;
+                }
+            }
+            this.name = getStageName(startNode);
+            this.parentName = directParentName != null ? directParentName : "root";
+            this.depth = stageDepth;
+            this.result = DatadogUtilities.getResultTag(endNode);
+            this.duration = getTime(startNode, endNode);
+            this.logVolume = logVolume;
+        }
+    }
+
+    /**
+     * Adds the time spent paused by the nodes that just completed (e.g. input steps)
+     * to the pause duration of the run. Only pauses inside a stage are accounted for.
+     */
+    private void updatePauseDuration(Run<?, ?> run, FlowNode flowNode) {
+        long pauseDuration = 0;
+        for (FlowNode parent : flowNode.getParents()) {
+            long parentPauseDuration = PauseAction.getPauseDuration(parent);
+            if (parentPauseDuration > 0 && isInsideStage(parent)) {
+                pauseDuration += parentPauseDuration;
+            }
+        }
+        if (pauseDuration == 0 || !(run instanceof WorkflowRun)) {
+            return;
+        }
+
+        PauseDurationAction pauseDurationAction = run.getAction(PauseDurationAction.class);
+        if (pauseDurationAction == null) {
+            pauseDurationAction = new PauseDurationAction();
+            run.addAction(pauseDurationAction);
+        }
+        pauseDurationAction.addPauseDuration(pauseDuration);
+    }
+
+    /**
+     * Returns the bytes and lines written to the consoles of the run so far if the node may be
+     * the start or the end of a stage, so the console volume of the stage can be measured in the background.
+     */
+    private static long[] getConsoleVolume(Run<?, ?> run, FlowNode flowNode) {
+        if (!(flowNode instanceof BlockStartNode) && !(flowNode instanceof StepEndNode)) {
+            return null;
+        }
+
+        LogCollectionAction logCollectionAction = run.getAction(LogCollectionAction.class);
+        return logCollectionAction != null ? logCollectionAction.getConsoleVolume() : null;
+    }
+
+    /**
+     * Records the console volume of the run when a stage starts, and returns the bytes and lines
+     * written to its consoles while the stage was running when it ends.
+     * The output of parallel branches cannot be told apart, so the stages inside them are not measured.
+     */
+    private long[] updateStageLogVolume(Run<?, ?> run, FlowNode flowNode, long[] consoleVolume) {
+        LogCollectionAction logCollectionAction = run.getAction(LogCollectionAction.class);
+        if (logCollectionAction == null || consoleVolume == null) {
+            return null;
+        }
+
+        if (flowNode instanceof BlockStartNode && DatadogUtilities.isStageNode((BlockStartNode) flowNode)) {
+            if (!isInsideParallelBranch(flowNode)) {
+                logCollectionAction.onStageStarted(flowNode.getId(), consoleVolume);
+            }
+            return null;
+        }
+
+        if (flowNode instanceof StepEndNode) {
+            StepStartNode startNode = ((StepEndNode) flowNode).getStartNode();
+            if (DatadogUtilities.isStageNode(startNode)) {
+                return logCollectionAction.onStageCompleted(startNode.getId(), consoleVolume);
+            }
+        }
+        return null;
+    }
+
+    private boolean isInsideParallelBranch(FlowNode flowNode) {
+        for (BlockStartNode node : flowNode.iterateEnclosingBlocks()) {
+            if (node.getAction(ThreadNameAction.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInsideStage(FlowNode flowNode) {
+        for (BlockStartNode node : flowNode.iterateEnclosingBlocks()) {
+            if (DatadogUtilities.isStageNode(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTraced(Run<?, ?> run) {
+        return DatadogUtilities.getDatadogGlobalDescriptor().isCollectBuildTraces() && run.getAction(BuildSpanAction.class) != null;
+    }
+
     private boolean isMonitored(FlowNode flowNode) {
         // Filter the node out if it is not the end of step
         // Timing information is only available once the step has completed.
@@ -71,12 +71,12 @@ public class DatadogItemListener extends ItemListener {
     }
 
     private void onCRUD(Item item, String action) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogItemListener#on" + action);
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -84,21 +84,25 @@ public class DatadogItemListener extends ItemListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogItemListener#on" + action, item, callbackStartNanos, () -> {
+                logger.fine("Start DatadogItemListener#on" + action);
 
-            // Send event
-            DatadogEvent event = new ItemCRUDEventImpl(item, action, tags);
-            client.event(event);
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.item." + action.toLowerCase(), hostname, tags);
+                // Send event
+                DatadogEvent event = new ItemCRUDEventImpl(item, action, tags);
+                client.event(event);
 
-            logger.fine("End DatadogItemListener#on" + action);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.item." + action.toLowerCase(), hostname, tags);
+
+                logger.fine("End DatadogItemListener#on" + action);
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -106,12 +110,12 @@ public class DatadogItemListener extends ItemListener {
 
     @Override
     public void onCopied(Item src, Item item) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogItemListener#onCopied");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -119,21 +123,25 @@ public class DatadogItemListener extends ItemListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogItemListener#onCopied", item, callbackStartNanos, () -> {
+                logger.fine("Start DatadogItemListener#onCopied");
+
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Send event
-            DatadogEvent event = new ItemCopiedEventImpl(src, item, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ItemCopiedEventImpl(src, item, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.item.copied", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.item.copied", hostname, tags);
 
-            logger.fine("End DatadogItemListener#onCopied");
+                logger.fine("End DatadogItemListener#onCopied");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -141,12 +149,12 @@ public class DatadogItemListener extends ItemListener {
 
     @Override
     public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogItemListener#onLocationChanged");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -154,21 +162,25 @@ public class DatadogItemListener extends ItemListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogItemListener#onLocationChanged", item, callbackStartNanos, () -> {
+                logger.fine("Start DatadogItemListener#onLocationChanged");
+
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Send event
-            DatadogEvent event = new ItemLocationChangedEventImpl(item, oldFullName, newFullName, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ItemLocationChangedEventImpl(item, oldFullName, newFullName, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.item.location_changed", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.item.location_changed", hostname, tags);
 
-            logger.fine("End DatadogItemListener#onLocationChanged");
+                logger.fine("End DatadogItemListener#onLocationChanged");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
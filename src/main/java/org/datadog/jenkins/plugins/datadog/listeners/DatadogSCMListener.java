@@ -70,6 +70,7 @@ public class DatadogSCMListener extends SCMListener {
     @Override
     public void onCheckout(Run<?, ?> build, SCM scm, FilePath workspace, TaskListener listener,
                            File changelogFile, SCMRevisionState pollingBaseline) throws Exception {
+        final long callbackStartNanos = System.nanoTime();
         try {
             // Process only if job is NOT in excluded and is in included
             DatadogJobProperty prop = DatadogUtilities.getDatadogJobProperties(build);
@@ -77,7 +78,6 @@ public class DatadogSCMListener extends SCMListener {
                     && prop != null && prop.isEmitSCMEvents())) {
                 return;
             }
-            logger.fine("Start DatadogSCMListener#onCheckout");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -85,25 +85,30 @@ public class DatadogSCMListener extends SCMListener {
                 return;
             }
 
-            // Collect Build Data
-            BuildData buildData;
-            try {
-                buildData = new BuildData(build, listener);
-            } catch (IOException | InterruptedException e) {
-                DatadogUtilities.severe(logger, e, null);
-                return;
-            }
-
-            // Send event
-            DatadogEvent event = new SCMCheckoutCompletedEventImpl(buildData);
-            client.event(event);
-
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            Map<String, Set<String>> tags = buildData.getTags();
-            client.incrementCounter("jenkins.scm.checkout", hostname, tags);
-
-            logger.fine("End DatadogSCMListener#onCheckout");
+            DatadogEventDispatcher.getInstance().dispatch("DatadogSCMListener#onCheckout", build.getParent().getFullName(), callbackStartNanos, () -> {
+                logger.fine("Start DatadogSCMListener#onCheckout");
+
+                // Collect Build Data
+                // The build listener may be closed by the time the task runs.
+                BuildData buildData;
+                try {
+                    buildData = new BuildData(build, TaskListener.NULL);
+                } catch (IOException | InterruptedException e) {
+                    DatadogUtilities.severe(logger, e, null);
+                    return;
+                }
+
+                // Send event
+                DatadogEvent event = new SCMCheckoutCompletedEventImpl(buildData);
+                client.event(event);
+
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                Map<String, Set<String>> tags = buildData.getTags();
+                client.incrementCounter("jenkins.scm.checkout", hostname, tags);
+
+                logger.fine("End DatadogSCMListener#onCheckout");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
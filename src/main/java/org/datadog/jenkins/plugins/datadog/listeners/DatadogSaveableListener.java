@@ -36,6 +36,7 @@ import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.events.ConfigChangedEventImpl;
 import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -50,14 +51,36 @@ public class DatadogSaveableListener  extends SaveableListener {
 
     private static final Logger logger = Logger.getLogger(DatadogSaveableListener.class.getName());
 
+    // Object being saved by the plugin itself on the current thread, which is not reported as a config change.
+    private static final ThreadLocal<Saveable> internalSave = new ThreadLocal<>();
+
+    /**
+     * Saves an object updated by the plugin, e.g. a run whose trace actions have been removed,
+     * without reporting it as a configuration change.
+     * @param saveable - The object to save.
+     * @throws IOException if the object cannot be saved.
+     */
+    public static void saveInternalChange(Saveable saveable) throws IOException {
+        internalSave.set(saveable);
+        try {
+            saveable.save();
+        } finally {
+            internalSave.remove();
+        }
+    }
+
     @Override
     public void onChange(Saveable config, XmlFile file) {
+        final long callbackStartNanos = System.nanoTime();
         try {
+            if (internalSave.get() == config) {
+                return;
+            }
+
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSystemEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogSaveableListener#onChange");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -65,21 +88,25 @@ public class DatadogSaveableListener  extends SaveableListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogSaveableListener#onChange", null, callbackStartNanos, () -> {
+                logger.fine("Start DatadogSaveableListener#onChange");
+
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Send event
-            DatadogEvent event = new ConfigChangedEventImpl(config, file, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new ConfigChangedEventImpl(config, file, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.config.changed", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.config.changed", hostname, tags);
 
-            logger.fine("End DatadogSaveableListener#onChange");
+                logger.fine("End DatadogSaveableListener#onChange");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -54,12 +54,12 @@ public class DatadogSecurityListener extends SecurityListener {
 
     @Override
     protected void authenticated(@Nonnull UserDetails details) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSecurityEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogSecurityListener#authenticated");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -67,22 +67,26 @@ public class DatadogSecurityListener extends SecurityListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogSecurityListener#authenticated", details.getUsername(), callbackStartNanos, () -> {
+                logger.fine("Start DatadogSecurityListener#authenticated");
 
-            // Send event
-            DatadogEvent event = new UserAuthenticationEventImpl(details.getUsername(),
-                    UserAuthenticationEventImpl.LOGIN, tags);
-            client.event(event);
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.user.authenticated", hostname, tags);
+                // Send event
+                DatadogEvent event = new UserAuthenticationEventImpl(details.getUsername(),
+                        UserAuthenticationEventImpl.LOGIN, tags);
+                client.event(event);
 
-            logger.fine("End DatadogSecurityListener#authenticated");
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.user.authenticated", hostname, tags);
+
+                logger.fine("End DatadogSecurityListener#authenticated");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -90,12 +94,12 @@ public class DatadogSecurityListener extends SecurityListener {
 
     @Override
     protected void failedToAuthenticate(@Nonnull String username) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSecurityEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogSecurityListener#failedToAuthenticate");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -103,21 +107,25 @@ public class DatadogSecurityListener extends SecurityListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogSecurityListener#failedToAuthenticate", username, callbackStartNanos, () -> {
+                logger.fine("Start DatadogSecurityListener#failedToAuthenticate");
+
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Send event
-            DatadogEvent event = new UserAuthenticationEventImpl(username, UserAuthenticationEventImpl.ACCESS_DENIED, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new UserAuthenticationEventImpl(username, UserAuthenticationEventImpl.ACCESS_DENIED, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.user.access_denied", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.user.access_denied", hostname, tags);
 
-            logger.fine("End DatadogSecurityListener#failedToAuthenticate");
+                logger.fine("End DatadogSecurityListener#failedToAuthenticate");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -135,12 +143,12 @@ public class DatadogSecurityListener extends SecurityListener {
 
     @Override
     protected void loggedOut(@Nonnull String username) {
+        final long callbackStartNanos = System.nanoTime();
         try {
             final boolean emitSystemEvents = DatadogUtilities.getDatadogGlobalDescriptor().isEmitSecurityEvents();
             if (!emitSystemEvents) {
                 return;
             }
-            logger.fine("Start DatadogSecurityListener#loggedOut");
 
             // Get Datadog Client Instance
             DatadogClient client = ClientFactory.getClient();
@@ -148,21 +156,25 @@ public class DatadogSecurityListener extends SecurityListener {
                 return;
             }
 
-            // Get the list of global tags to apply
-            Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
-            // Add userId and JenkinsUrl Tags
-            tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
-            tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
+            DatadogEventDispatcher.getInstance().dispatch("DatadogSecurityListener#loggedOut", username, callbackStartNanos, () -> {
+                logger.fine("Start DatadogSecurityListener#loggedOut");
+
+                // Get the list of global tags to apply
+                Map<String, Set<String>> tags = DatadogUtilities.getTagsFromGlobalTags();
+                // Add userId and JenkinsUrl Tags
+                tags = TagsUtil.addTagToTags(tags, "user_id", DatadogUtilities.getUserId());
+                tags = TagsUtil.addTagToTags(tags, "jenkins_url", DatadogUtilities.getJenkinsUrl());
 
-            // Send event
-            DatadogEvent event = new UserAuthenticationEventImpl(username, UserAuthenticationEventImpl.LOGOUT, tags);
-            client.event(event);
+                // Send event
+                DatadogEvent event = new UserAuthenticationEventImpl(username, UserAuthenticationEventImpl.LOGOUT, tags);
+                client.event(event);
 
-            // Submit counter
-            String hostname = DatadogUtilities.getHostname(null);
-            client.incrementCounter("jenkins.user.logout", hostname, tags);
+                // Submit counter
+                String hostname = DatadogUtilities.getHostname(null);
+                client.incrementCounter("jenkins.user.logout", hostname, tags);
 
-            logger.fine("End DatadogSecurityListener#loggedOut");
+                logger.fine("End DatadogSecurityListener#loggedOut");
+            });
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -0,0 +1,132 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import org.apache.commons.lang.StringUtils;
+import org.datadog.jenkins.plugins.datadog.DatadogClient;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the log collection settings, taken on the controller when a pipeline console is decorated,
+ * and sent to the agents with the decorator, so the agents ship the console lines of the steps
+ * without reading the global configuration.
+ * The settings are serialized to the agents and persisted with the pipeline, so they must not hold any secret:
+ * the agents only ship the lines to the Datadog Agent, which does not need the API key.
+ */
+class AgentLogSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final Integer logCollectionPort;
+    private final int bufferSize;
+    private final int maxLineLength;
+    private final LongLogLineMode longLineMode;
+    private final int maxRepeatedLines;
+    private final int rateLimit;
+    private final int rateLimitBurst;
+    private final boolean mergeJsonLines;
+
+    private AgentLogSettings(final String host, final Integer logCollectionPort,
+                             final DatadogGlobalConfiguration datadogConfig, final DatadogPipelineAction pipelineAction) {
+        this.host = host;
+        this.logCollectionPort = logCollectionPort;
+        this.bufferSize = datadogConfig.getLogBufferSize();
+        this.maxLineLength = datadogConfig.getMaxLogLineLength();
+        this.longLineMode = datadogConfig.getLongLogLineMode();
+        this.maxRepeatedLines = (pipelineAction != null && pipelineAction.getMaxRepeatedLogLines() != null)
+                ? pipelineAction.getMaxRepeatedLogLines() : datadogConfig.getMaxRepeatedLogLines();
+        this.rateLimit = (pipelineAction != null && pipelineAction.getLogRateLimit() != null)
+                ? pipelineAction.getLogRateLimit() : datadogConfig.getLogRateLimit();
+        this.rateLimitBurst = datadogConfig.getLogRateLimitBurst();
+        this.mergeJsonLines = datadogConfig.isMergeJsonLogLines();
+    }
+
+    /**
+     * The logs are only sent from the agents when they are reported to the Datadog Agent, as the agents
+     * must not receive the API key used to send them to the log intake.
+     * @param datadogConfig the global configuration
+     * @param pipelineAction the options of the datadog step of the pipeline, if any
+     * @return the settings, or null if the logs cannot be sent from the agents.
+     */
+    static AgentLogSettings fromConfig(final DatadogGlobalConfiguration datadogConfig, final DatadogPipelineAction pipelineAction) {
+        if(!DatadogClient.ClientType.DSD.name().equals(datadogConfig.getReportWith())) {
+            return null;
+        }
+
+        if(StringUtils.isBlank(datadogConfig.getTargetHost()) || datadogConfig.getTargetLogCollectionPort() == null) {
+            return null;
+        }
+        return new AgentLogSettings(datadogConfig.getTargetHost(), datadogConfig.getTargetLogCollectionPort(),
+                datadogConfig, pipelineAction);
+    }
+
+    /**
+     * @return the destination of the logs, which identifies the shipper of the agent.
+     */
+    String getTarget() {
+        return host + ":" + logCollectionPort;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    Integer getLogCollectionPort() {
+        return logCollectionPort;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    LongLogLineMode getLongLineMode() {
+        return longLineMode;
+    }
+
+    int getMaxRepeatedLines() {
+        return maxRepeatedLines;
+    }
+
+    int getRateLimit() {
+        return rateLimit;
+    }
+
+    int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    boolean isMergeJsonLines() {
+        return mergeJsonLines;
+    }
+}
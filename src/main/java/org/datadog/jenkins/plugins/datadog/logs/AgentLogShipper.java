@@ -0,0 +1,182 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ships the console lines of the pipeline steps from the JVM of an agent, directly to the Datadog Agent
+ * set in the {@link AgentLogSettings} received from the controller.
+ * The lines are kept in a bounded {@link LogRingBuffer}, dropping the oldest lines when it is full,
+ * and they are sent in batches from a background thread.
+ * There is one shipper per destination in the JVM.
+ */
+class AgentLogShipper {
+
+    private static final Logger logger = Logger.getLogger(AgentLogShipper.class.getName());
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_BATCH_LINES = 1000;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int SOCKET_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final Map<String, AgentLogShipper> shippers = new HashMap<>();
+
+    private final AgentLogSettings settings;
+    private final LogRingBuffer<String> buffer;
+    private final Thread thread;
+    private volatile boolean idle;
+    // Connection to the Datadog Agent, only used by the shipper thread.
+    private Socket socket;
+
+    /**
+     * Returns the shipper of the destination of the settings, starting it on first use.
+     * @param settings the settings received from the controller
+     * @return the log shipper.
+     */
+    static AgentLogShipper get(final AgentLogSettings settings) {
+        synchronized (shippers) {
+            AgentLogShipper shipper = shippers.get(settings.getTarget());
+            if(shipper == null) {
+                shipper = new AgentLogShipper(settings);
+                shipper.thread.start();
+                shippers.put(settings.getTarget(), shipper);
+            }
+            return shipper;
+        }
+    }
+
+    private AgentLogShipper(final AgentLogSettings settings) {
+        this.settings = settings;
+        this.buffer = new LogRingBuffer<>(settings.getBufferSize());
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shipLines();
+            }
+        }, "Datadog Agent Log Shipper");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Adds a log line to the buffer, dropping the oldest line if it is full.
+     * @param payload the JSON payload of the line
+     */
+    void submit(final String payload) {
+        if(!buffer.offer(payload)) {
+            buffer.poll();
+            if(!buffer.offer(payload)) {
+                return;
+            }
+        }
+        if(idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void shipLines() {
+        final List<String> batch = new ArrayList<>();
+        int batchBytes = 0;
+        while(true) {
+            final String payload = buffer.poll();
+            if(payload != null) {
+                batch.add(payload);
+                batchBytes += payload.length();
+                if(batch.size() < MAX_BATCH_LINES && batchBytes < MAX_BATCH_BYTES) {
+                    continue;
+                }
+            }
+
+            if(!batch.isEmpty()) {
+                ship(batch);
+                batch.clear();
+                batchBytes = 0;
+                continue;
+            }
+
+            idle = true;
+            // The flag is set before checking the buffer again, so a line added meanwhile wakes the shipper up.
+            if(buffer.size() == 0) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private void ship(final List<String> batch) {
+        // we try again in case a connection has to be re-established.
+        for(int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                sendToAgent(batch);
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.FINE, "Unable to send " + batch.size() + " log messages", e);
+                closeSocket();
+            }
+        }
+        logger.warning("Dropped " + batch.size() + " log messages which could not be sent");
+    }
+
+    private void sendToAgent(final List<String> batch) throws IOException {
+        if(socket == null) {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(settings.getHost(), settings.getLogCollectionPort()), SOCKET_TIMEOUT_MILLIS);
+            socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+        }
+
+        // The Datadog Agent receives one log message per line.
+        final StringBuilder messages = new StringBuilder();
+        for(final String payload : batch) {
+            messages.append(payload).append('\n');
+        }
+        final OutputStream out = socket.getOutputStream();
+        out.write(messages.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void closeSocket() {
+        if(socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.fine("Unable to close the connection to the Datadog Agent. Error: " + e);
+            }
+            socket = null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.util.Set;
+
+/**
+ * Sends the console lines of a step from the agent running it, with the {@link AgentLogShipper}.
+ * The payload of every line is the envelope built by the controller for the run, with the message of the line,
+ * so the agent does not need the run nor the global configuration.
+ * Similar lines are collapsed and the lines are rate limited as on the controller, but per console stream,
+ * and the multi-line events are not merged.
+ *
+ * An instance must only be used by one stream.
+ */
+class AgentLogWriter implements DatadogOutputStream.LineWriter {
+
+    private final AgentLogSettings settings;
+    private final String payloadPrefix;
+    private final Set<String> reservedKeys;
+    private final AgentLogShipper shipper;
+    private final RepeatedLineCollapser collapser;
+    private final LogRateLimiter rateLimiter;
+
+    /**
+     * @param settings the settings received from the controller
+     * @param envelope the JSON object with the attributes of the log messages of the run
+     * @param shipper the log shipper
+     */
+    AgentLogWriter(final AgentLogSettings settings, final String envelope, final AgentLogShipper shipper) {
+        this.settings = settings;
+        this.payloadPrefix = JsonLogLines.toPayloadPrefix(envelope);
+        this.reservedKeys = settings.isMergeJsonLines() ? JsonLogLines.getKeys(envelope) : null;
+        this.shipper = shipper;
+        this.collapser = new RepeatedLineCollapser(this::limit);
+        this.rateLimiter = (settings.getRateLimit() > 0)
+                ? new LogRateLimiter(settings.getRateLimit(), settings.getRateLimitBurst(), System.nanoTime())
+                : null;
+    }
+
+    @Override
+    public void write(final String line) {
+        if(line.isEmpty()) {
+            return;
+        }
+        collapser.add(line, settings.getMaxRepeatedLines());
+    }
+
+    @Override
+    public void close() {
+        collapser.flush();
+    }
+
+    private void limit(final String line) {
+        if(rateLimiter != null && !rateLimiter.tryAcquire(System.nanoTime())) {
+            return;
+        }
+        final String payload = JsonLogLines.toStructuredPayload(payloadPrefix, reservedKeys, line);
+        shipper.submit((payload != null) ? payload : JsonLogLines.toPayload(payloadPrefix, line));
+    }
+}
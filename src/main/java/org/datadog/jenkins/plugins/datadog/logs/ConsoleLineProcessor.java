@@ -0,0 +1,225 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import hudson.console.ConsoleNote;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns the raw bytes of a console line into the message sent to Datadog:
+ * the console notes are removed and the leading and trailing whitespace is trimmed,
+ * as {@code ConsoleNote.removeNotes(line).trim()} does, but working on the bytes,
+ * so only the resulting message is decoded.
+ *
+ * The buffers and the decoder are reused between lines, so an instance must only be used by one stream.
+ * Charsets that do not encode the ASCII characters as single bytes (e.g. UTF-16)
+ * are processed by decoding the whole line first.
+ */
+class ConsoleLineProcessor {
+
+    /** Appended to the message of a line which has been truncated. */
+    static final String TRUNCATED_MARKER = " [truncated]";
+
+    private static final byte ESC = 0x1B;
+    private static final byte[] PREAMBLE = ConsoleNote.PREAMBLE;
+    private static final byte[] POSTAMBLE = ConsoleNote.POSTAMBLE;
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private final boolean utf8;
+    private final CharsetDecoder decoder;
+    private byte[] bytes = new byte[256];
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    ConsoleLineProcessor(final Charset charset) {
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * @param b the bytes of the line
+     * @param len the length of the line
+     * @return the message of the line, which is empty if there is nothing to send.
+     */
+    String process(final byte[] b, final int len) {
+        return process(b, 0, len);
+    }
+
+    /**
+     * @param b the buffer containing the line
+     * @param off the offset of the line in the buffer
+     * @param len the length of the line
+     * @return the message of the line, which is empty if there is nothing to send.
+     */
+    String process(final byte[] b, final int off, final int len) {
+        if(!asciiCompatible) {
+            return ConsoleNote.removeNotes(new String(b, off, len, charset)).trim();
+        }
+
+        byte[] line = b;
+        int start = off;
+        int end = off + len;
+        if(indexOf(b, start, end, ESC) >= 0) {
+            start = 0;
+            end = removeNotes(b, off, len);
+            line = bytes;
+        }
+
+        while(start < end && (line[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while(end > start && (line[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if(start == end) {
+            return "";
+        }
+        return decode(line, start, end);
+    }
+
+    /**
+     * Finds where a line longer than the maximum length is split, so the first part
+     * does not end in the middle of a UTF-8 character.
+     * @param b the buffer containing the line
+     * @param off the offset of the line in the buffer
+     * @param len the maximum length of the first part
+     * @return the length of the first part.
+     */
+    int splitLength(final byte[] b, final int off, final int len) {
+        if(!utf8) {
+            return len;
+        }
+
+        // A UTF-8 character is at most 4 bytes long, its continuation bytes are 10xxxxxx.
+        int length = len;
+        while(length > 0 && len - length < 4 && (b[off + length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return (length > 0) ? length : len;
+    }
+
+    /**
+     * Copies the line without the console notes in the reusable buffer.
+     * @return the length of the line without the console notes.
+     */
+    private int removeNotes(final byte[] b, final int off, final int len) {
+        if(bytes.length < len) {
+            bytes = new byte[Math.max(len, bytes.length * 2)];
+        }
+
+        final int end = off + len;
+        int length = 0;
+        int from = off;
+        while(from < end) {
+            final int note = indexOf(b, from, end, PREAMBLE);
+            final int noteEnd = (note < 0) ? -1 : indexOf(b, note, end, POSTAMBLE);
+            if(noteEnd < 0) {
+                // Without a complete note, the rest of the line is kept as it is.
+                System.arraycopy(b, from, bytes, length, end - from);
+                length += end - from;
+                break;
+            }
+
+            System.arraycopy(b, from, bytes, length, note - from);
+            length += note - from;
+            from = noteEnd + POSTAMBLE.length;
+        }
+        return length;
+    }
+
+    private String decode(final byte[] line, final int start, final int end) {
+        final int length = end - start;
+        if(chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+
+        final char[] array = chars.array();
+        int i = start;
+        while(i < end && line[i] >= 0) {
+            array[i - start] = (char) line[i];
+            i++;
+        }
+        if(i == end) {
+            // Only ASCII characters.
+            return new String(array, 0, length);
+        }
+
+        final int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if(chars.capacity() < maxChars) {
+            chars = CharBuffer.allocate(maxChars);
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(line, start, length), chars, true);
+        decoder.flush(chars);
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    private static int indexOf(final byte[] b, final int from, final int to, final byte value) {
+        for(int i = from; i < to; i++) {
+            if(b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final byte[] b, final int from, final int to, final byte[] value) {
+        final int last = to - value.length;
+        int i = from;
+        while((i = indexOf(b, i, last + 1, value[0])) >= 0) {
+            int j = 1;
+            while(j < value.length && b[i + j] == value[j]) {
+                j++;
+            }
+            if(j == value.length) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiCompatible(final Charset charset) {
+        final String probe = new String(PREAMBLE, StandardCharsets.US_ASCII) + " \t\r\n" + new String(POSTAMBLE, StandardCharsets.US_ASCII);
+        try {
+            return Arrays.equals(probe.getBytes(StandardCharsets.US_ASCII), probe.getBytes(charset));
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+}
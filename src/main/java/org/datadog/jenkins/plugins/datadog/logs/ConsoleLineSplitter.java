@@ -0,0 +1,133 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.io.IOException;
+
+/**
+ * Buffers the bytes of the current console line, up to the maximum log line length,
+ * so the memory used for a console stream is bounded whatever the build prints.
+ * A longer line is either split in several messages of the maximum length,
+ * or truncated: its beginning is sent with a marker and the rest of the line is dropped.
+ *
+ * An instance must only be used by one stream.
+ */
+class ConsoleLineSplitter {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ConsoleLineProcessor processor;
+    private final int maxLineLength;
+    private final boolean truncate;
+    private final LineConsumer consumer;
+    // The buffer keeps one more byte than the maximum length, to find where a long line is split.
+    private byte[] line;
+    private int length;
+    // True while the rest of a truncated line is dropped.
+    private boolean discarding;
+
+    ConsoleLineSplitter(final ConsoleLineProcessor processor, final int maxLineLength, final LongLogLineMode mode, final LineConsumer consumer) {
+        this.processor = processor;
+        this.maxLineLength = Math.max(maxLineLength, 1);
+        this.truncate = mode == LongLogLineMode.TRUNCATE;
+        this.consumer = consumer;
+        this.line = new byte[Math.min(INITIAL_CAPACITY, this.maxLineLength + 1)];
+    }
+
+    /**
+     * @param b the buffer containing a part of the current line, without new line
+     * @param off the offset of the part in the buffer
+     * @param len the length of the part
+     * @throws IOException if the consumer fails
+     */
+    void append(final byte[] b, int off, int len) throws IOException {
+        while(len > 0 && !discarding) {
+            if(length == maxLineLength) {
+                line[length++] = b[off++];
+                len--;
+                splitLine();
+                continue;
+            }
+
+            final int count = Math.min(len, maxLineLength - length);
+            if(line.length < length + count) {
+                final byte[] newLine = new byte[Math.min(Math.max(length + count, line.length * 2), maxLineLength + 1)];
+                System.arraycopy(line, 0, newLine, 0, length);
+                line = newLine;
+            }
+            System.arraycopy(b, off, line, length, count);
+            length += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Sends the current line.
+     * @throws IOException if the consumer fails
+     */
+    void endLine() throws IOException {
+        final boolean discarded = discarding;
+        final int lineLength = length;
+        length = 0;
+        discarding = false;
+        if(!discarded) {
+            send(lineLength, false, true);
+        }
+    }
+
+    private void splitLine() throws IOException {
+        final int splitLength = processor.splitLength(line, 0, maxLineLength);
+        send(splitLength, truncate, false);
+        if(truncate) {
+            discarding = true;
+            length = 0;
+        } else {
+            length -= splitLength;
+            System.arraycopy(line, splitLength, line, 0, length);
+        }
+    }
+
+    private void send(final int len, final boolean truncated, final boolean endOfLine) throws IOException {
+        if(len == 0) {
+            return;
+        }
+
+        final String message = processor.process(line, len);
+        if(!message.isEmpty()) {
+            consumer.accept(truncated ? message + ConsoleLineProcessor.TRUNCATED_MARKER : message, endOfLine);
+        }
+    }
+
+    interface LineConsumer {
+        /**
+         * @param message the message of the line, or of a part of a long line
+         * @param endOfLine true if the message ends the console line
+         * @throws IOException if the message cannot be processed
+         */
+        void accept(String message, boolean endOfLine) throws IOException;
+    }
+}
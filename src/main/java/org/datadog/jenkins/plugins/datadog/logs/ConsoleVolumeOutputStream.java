@@ -0,0 +1,97 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import hudson.model.Run;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes and lines written to the console of a run which logs are not sent by a DatadogOutputStream,
+ * for the console volume metrics of the run (see LogCollectionAction).
+ */
+class ConsoleVolumeOutputStream extends OutputStream {
+
+    private final OutputStream delegate;
+    private final LogCollectionAction logCollectionAction;
+
+    private ConsoleVolumeOutputStream(final OutputStream delegate, final LogCollectionAction logCollectionAction) {
+        this.delegate = delegate;
+        this.logCollectionAction = logCollectionAction;
+    }
+
+    /**
+     * @param run the run
+     * @param outputStream the console stream
+     * @return the console stream counting its output, or the console stream itself if the output is not counted.
+     */
+    static OutputStream decorate(final Run<?, ?> run, final OutputStream outputStream) {
+        if(!isEnabled()) {
+            return outputStream;
+        }
+        return new ConsoleVolumeOutputStream(outputStream, LogCollectionAction.of(run));
+    }
+
+    static boolean isEnabled() {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        return datadogConfig != null && datadogConfig.isCollectLogVolumeMetrics();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        delegate.write(b);
+        logCollectionAction.addConsoleOutput(1, (b == '\n') ? 1 : 0);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        delegate.write(b, off, len);
+        logCollectionAction.addConsoleOutput(len, countLines(b, off, len));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    static int countLines(final byte[] b, final int off, final int len) {
+        int lines = 0;
+        for(int i = off; i < off + len; i++) {
+            if(b[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -55,7 +55,12 @@ public class DatadogConsoleLogFilter extends ConsoleLogFilter implements Seriali
         try {
             if (!DatadogUtilities.getDatadogGlobalDescriptor().isCollectBuildLogs()) {
                 logger.fine("Log Collection disabled");
-                return outputStream;
+                return decorateVolume(build, outputStream);
+            }
+
+            if (DatadogUtilities.getDatadogGlobalDescriptor().getLogCollectionMode() == LogCollectionMode.POST_BUILD) {
+                // The log is uploaded once the build is finalized (see DatadogLogUploader).
+                return decorateVolume(build, outputStream);
             }
 
             if (build != null) {
@@ -73,6 +78,14 @@ public class DatadogConsoleLogFilter extends ConsoleLogFilter implements Seriali
         return outputStream;
     }
 
+    private OutputStream decorateVolume(Run<?, ?> build, OutputStream outputStream) {
+        // Pipelines are decorated by the DatadogTaskListenerDecorator, which is given the run.
+        if (build != null) {
+            return ConsoleVolumeOutputStream.decorate(build, outputStream);
+        }
+        return outputStream;
+    }
+
     @Override
     public OutputStream decorateLogger(AbstractBuild abstractBuild, OutputStream outputStream) throws IOException, InterruptedException {
         return decorateLogger((Run) abstractBuild, outputStream);
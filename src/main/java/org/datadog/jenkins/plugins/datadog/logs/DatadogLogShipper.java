@@ -0,0 +1,286 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import org.datadog.jenkins.plugins.datadog.DatadogClient;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Ships the log lines of the builds to Datadog from a background thread,
+ * so the threads writing the console of the builds never wait for the log intake.
+ * The lines are kept in a bounded {@link LogRingBuffer} shared by every build.
+ * When the buffer is full, the configured {@link LogOverflowPolicy} is applied.
+ * The lines are sent in batches, so the shipper keeps up with builds that write many short lines.
+ */
+public class DatadogLogShipper {
+
+    private static final Logger logger = Logger.getLogger(DatadogLogShipper.class.getName());
+
+    // How long the shipper waits for new lines when the buffer is empty, unless it is woken up.
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_BATCH_LINES = 1000;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    // How long a producer waits between attempts when the policy is BLOCK.
+    private static final long BLOCKED_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    // Other producers may fill the slot freed by dropping the oldest line, so the attempts are limited.
+    private static final int MAX_DROP_OLDEST_ATTEMPTS = 8;
+
+    private static volatile DatadogLogShipper instance;
+
+    private final LogRingBuffer<LogEntry> buffer;
+    private final Thread thread;
+    private volatile boolean idle;
+    // Lines added to the buffer and lines taken out of it (shipped or dropped).
+    private final AtomicLong enqueuedLines = new AtomicLong();
+    private final AtomicLong processedLines = new AtomicLong();
+    private final AtomicLong shippedLines = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    /**
+     * Returns the shipper, starting it on first use. The size of the buffer is read when the shipper is started.
+     * @return the log shipper.
+     */
+    public static DatadogLogShipper get() {
+        DatadogLogShipper shipper = instance;
+        if(shipper == null) {
+            synchronized (DatadogLogShipper.class) {
+                shipper = instance;
+                if(shipper == null) {
+                    shipper = new DatadogLogShipper(DatadogUtilities.getDatadogGlobalDescriptor().getLogBufferSize());
+                    shipper.start();
+                    instance = shipper;
+                }
+            }
+        }
+        return shipper;
+    }
+
+    /**
+     * @return the shipper if it has been started, null otherwise.
+     */
+    public static DatadogLogShipper getIfStarted() {
+        return instance;
+    }
+
+    DatadogLogShipper(final int bufferSize) {
+        this.buffer = new LogRingBuffer<>(bufferSize);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shipLines();
+            }
+        }, "Datadog Log Shipper");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Adds a log line to the buffer, applying the configured overflow policy if it is full.
+     * @param payload the JSON payload of the line
+     * @param action the counters of the run of the line
+     */
+    public void submit(final String payload, final LogCollectionAction action) {
+        final LogEntry entry = new LogEntry(payload, action);
+        if(offer(entry)) {
+            return;
+        }
+
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        onOverflow(entry, datadogConfig.getLogOverflowPolicy(), datadogConfig.getLogOverflowTimeout());
+    }
+
+    void submit(final LogEntry entry, final LogOverflowPolicy policy, final long timeoutMillis) {
+        if(!offer(entry)) {
+            onOverflow(entry, policy, timeoutMillis);
+        }
+    }
+
+    private void onOverflow(final LogEntry entry, final LogOverflowPolicy policy, final long timeoutMillis) {
+        switch (policy) {
+            case DROP_OLDEST:
+                for(int i = 0; i < MAX_DROP_OLDEST_ATTEMPTS; i++) {
+                    final LogEntry oldest = buffer.poll();
+                    if(oldest != null) {
+                        drop(oldest);
+                        processedLines.incrementAndGet();
+                    }
+                    if(offer(entry)) {
+                        return;
+                    }
+                }
+                break;
+            case BLOCK:
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                do {
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(this, BLOCKED_WAIT_NANOS);
+                    if(offer(entry)) {
+                        return;
+                    }
+                } while(System.nanoTime() - deadline < 0);
+                break;
+            default:
+                break;
+        }
+        drop(entry);
+    }
+
+    /**
+     * Waits until the lines submitted before the call have been shipped or dropped.
+     * @param timeoutMillis the maximum time to wait
+     * @return true if the lines have been processed before the timeout.
+     */
+    public boolean flush(final long timeoutMillis) {
+        final long target = enqueuedLines.get();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while(processedLines.get() < target) {
+            if(System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of lines waiting to be shipped.
+     */
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    /**
+     * @return the number of lines shipped since the last call.
+     */
+    public long getAndResetShippedLines() {
+        return shippedLines.getAndSet(0);
+    }
+
+    /**
+     * @return the number of lines dropped since the last call.
+     */
+    public long getAndResetDroppedLines() {
+        return droppedLines.getAndSet(0);
+    }
+
+    private boolean offer(final LogEntry entry) {
+        if(!buffer.offer(entry)) {
+            return false;
+        }
+        enqueuedLines.incrementAndGet();
+        if(idle) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private void drop(final LogEntry entry) {
+        droppedLines.incrementAndGet();
+        entry.action.onDropped();
+    }
+
+    private void shipLines() {
+        final List<LogEntry> batch = new ArrayList<>();
+        int batchBytes = 0;
+        while(true) {
+            final LogEntry entry = buffer.poll();
+            if(entry != null) {
+                batch.add(entry);
+                batchBytes += entry.payload.length();
+                if(batch.size() < MAX_BATCH_LINES && batchBytes < MAX_BATCH_BYTES) {
+                    continue;
+                }
+            }
+
+            if(!batch.isEmpty()) {
+                ship(batch);
+                processedLines.addAndGet(batch.size());
+                batch.clear();
+                batchBytes = 0;
+                continue;
+            }
+
+            idle = true;
+            // The flag is set before checking the buffer again, so a line added meanwhile wakes the shipper up.
+            if(buffer.size() == 0) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private void ship(final List<LogEntry> batch) {
+        final List<String> payloads = new ArrayList<>(batch.size());
+        for(final LogEntry entry : batch) {
+            payloads.add(entry.payload);
+        }
+
+        boolean shipped = false;
+        try {
+            DatadogClient client = ClientFactory.getClient();
+            if(client != null) {
+                // we try again in case a connection has to be re-established.
+                shipped = client.sendLogBatch(payloads) || client.sendLogBatch(payloads);
+            }
+        } catch (Exception e) {
+            DatadogUtilities.severe(logger, e, "Unable to send " + batch.size() + " log messages");
+        }
+
+        if(shipped) {
+            shippedLines.addAndGet(batch.size());
+        }
+        for(final LogEntry entry : batch) {
+            if(shipped) {
+                entry.action.onShipped();
+            } else {
+                drop(entry);
+            }
+        }
+    }
+
+    static final class LogEntry {
+        private final String payload;
+        private final LogCollectionAction action;
+
+        LogEntry(final String payload, final LogCollectionAction action) {
+            this.payload = payload;
+            this.action = action;
+        }
+    }
+}
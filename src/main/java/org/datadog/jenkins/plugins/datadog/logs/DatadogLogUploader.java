@@ -0,0 +1,403 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.datadog.jenkins.plugins.datadog.DatadogClient;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
+import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Uploads the console log of the builds once they are finalized, when the logs are collected in
+ * {@link LogCollectionMode#POST_BUILD} mode, so nothing is intercepted while the builds run.
+ *
+ * The log file is read in large chunks from a background thread, and the lines are sent in compressed batches.
+ * The offset of the first line not sent yet is stored for every pending run in the Jenkins home directory,
+ * so the uploads are resumed from that offset after a restart.
+ */
+public class DatadogLogUploader {
+
+    private static final Logger logger = Logger.getLogger(DatadogLogUploader.class.getName());
+
+    private static final String STATE_FILE_NAME = "datadog-log-uploads.xml";
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    // Limits of a single request to the log intake.
+    private static final int MAX_BATCH_LINES = 1000;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_SECONDS = 60;
+
+    private static final DatadogLogUploader INSTANCE = new DatadogLogUploader();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Datadog Log Uploader"));
+    // Offset of the first line not sent yet, by externalizable id of the run.
+    private final Map<String, Long> offsets = new LinkedHashMap<>();
+
+    public static DatadogLogUploader get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param run the finalized run
+     * @return true if the log of the run must be uploaded.
+     */
+    public static boolean isEnabledFor(final Run<?, ?> run) {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if(datadogConfig.getLogCollectionMode() != LogCollectionMode.POST_BUILD) {
+            return false;
+        }
+
+        final DatadogPipelineAction pipelineAction = run.getAction(DatadogPipelineAction.class);
+        return datadogConfig.isCollectBuildLogs() || (pipelineAction != null && pipelineAction.isCollectLogs());
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resumePendingUploads() {
+        INSTANCE.resume();
+    }
+
+    /**
+     * Schedules the upload of the log of a finalized run.
+     * @param run the run
+     * @param buildData the data of the run, which still has the trace of the run
+     */
+    public void schedule(final Run<?, ?> run, final BuildData buildData) {
+        final String runId = run.getExternalizableId();
+        synchronized (offsets) {
+            if(offsets.containsKey(runId)) {
+                return;
+            }
+            offsets.put(runId, 0L);
+            saveState();
+        }
+        submit(runId, run, buildData, 1, 0);
+    }
+
+    private void resume() {
+        final XmlFile stateFile = getStateFile();
+        if(stateFile == null || !stateFile.exists()) {
+            return;
+        }
+
+        final List<String> runIds;
+        synchronized (offsets) {
+            try {
+                final Object state = stateFile.read();
+                if(state instanceof Map) {
+                    for(final Map.Entry<?, ?> entry : ((Map<?, ?>) state).entrySet()) {
+                        offsets.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).longValue());
+                    }
+                }
+            } catch (IOException | ClassCastException e) {
+                logger.warning("Unable to read the pending log uploads. Error: " + e);
+            }
+            runIds = new ArrayList<>(offsets.keySet());
+        }
+
+        logger.fine("Resuming " + runIds.size() + " pending log uploads");
+        for(final String runId : runIds) {
+            submit(runId, null, null, 1, 0);
+        }
+    }
+
+    private void submit(final String runId, final Run<?, ?> run, final BuildData buildData, final int attempt, final long delaySeconds) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                upload(runId, (run != null) ? run : findRun(runId), buildData, attempt);
+            }
+        }, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private static Run<?, ?> findRun(final String runId) {
+        try (ACLContext ignored = ACL.as(ACL.SYSTEM)) {
+            return Run.fromExternalizableId(runId);
+        } catch (Exception e) {
+            logger.fine("Unable to find the run " + runId + ". Error: " + e);
+            return null;
+        }
+    }
+
+    private void upload(final String runId, final Run<?, ?> run, final BuildData data, final int attempt) {
+        if(run == null) {
+            // The run has been deleted.
+            remove(runId);
+            return;
+        }
+
+        final LogCollectionAction logCollectionAction = LogCollectionAction.of(run);
+        try {
+            final BuildData buildData = (data != null) ? data : new BuildData(run, null);
+            final String envelope = buildPayload(buildData).toString();
+            final String payloadPrefix = JsonLogLines.toPayloadPrefix(envelope);
+            final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+            final Set<String> envelopeKeys = datadogConfig.isMergeJsonLogLines() ? JsonLogLines.getKeys(envelope) : null;
+            final DatadogClient client = ClientFactory.getClient();
+            if(client == null) {
+                throw new IOException("Datadog client is not available");
+            }
+
+            final long offset = getOffset(runId);
+            try (ReadableByteChannel channel = openLog(run.getLogFile(), offset)) {
+                readLines(channel, offset, new ConsoleLineProcessor(run.getCharset()), MultiLineAggregator.getSettings(),
+                        datadogConfig.getMaxLogLineLength(), datadogConfig.getLongLogLineMode(), CHUNK_SIZE, (lines, endOffset) -> {
+                    final List<String> payloads = new ArrayList<>(lines.size());
+                    for(final String line : lines) {
+                        final String payload = JsonLogLines.toStructuredPayload(payloadPrefix, envelopeKeys, line);
+                        payloads.add((payload != null) ? payload : JsonLogLines.toPayload(payloadPrefix, line));
+                    }
+                    if(!client.sendLogBatch(payloads)) {
+                        throw new IOException("Unable to send " + payloads.size() + " log messages");
+                    }
+                    logCollectionAction.addShippedLines(lines.size());
+                    setOffset(runId, endOffset);
+                });
+            }
+            remove(runId);
+            run.save();
+        } catch (Exception e) {
+            if(attempt < MAX_ATTEMPTS) {
+                logger.fine("Unable to upload the log of " + runId + ", retrying in " + RETRY_DELAY_SECONDS + "s. Error: " + e);
+                submit(runId, null, data, attempt + 1, RETRY_DELAY_SECONDS);
+            } else {
+                DatadogUtilities.severe(logger, e, "Unable to upload the log of " + runId);
+                remove(runId);
+            }
+        }
+    }
+
+    static JSONObject buildPayload(final BuildData buildData) {
+        JSONObject payload = new JSONObject();
+        payload.put("ddtags", String.join(",", TagsUtil.convertTagsToArray(buildData.getTags())));
+        payload = buildData.addLogAttributes(payload);
+        payload.put("ddsource", "jenkins");
+        payload.put("service", "jenkins");
+        return payload;
+    }
+
+    private static ReadableByteChannel openLog(final File logFile, final long offset) throws IOException {
+        if(logFile.getName().endsWith(".gz")) {
+            // Compressed logs cannot be read from an offset, so the lines already sent are skipped.
+            final InputStream in = new GZIPInputStream(new FileInputStream(logFile), 64 * 1024);
+            long skipped = 0;
+            while(skipped < offset) {
+                final long count = in.skip(offset - skipped);
+                if(count <= 0) {
+                    break;
+                }
+                skipped += count;
+            }
+            return Channels.newChannel(in);
+        }
+        return FileChannel.open(logFile.toPath(), StandardOpenOption.READ).position(offset);
+    }
+
+    /**
+     * Reads the lines of a log and passes them in batches to the consumer,
+     * with the offset of the log after the last line of each batch.
+     * When the lines are merged in multi-line events, the offset of a batch is the offset
+     * of the first line of the event not sent yet, so that event is read again when an upload is resumed.
+     * The same goes for the parts of a long line which are sent in several batches.
+     * @param channel the log, positioned at the offset
+     * @param offset the offset of the log where the reading starts
+     * @param processor the processor of the lines
+     * @param multiLineSettings the settings of the multi-line events, or null to send every line as an event
+     * @param maxLineLength the maximum length of a line
+     * @param longLineMode what to do with the lines longer than the maximum length
+     * @param chunkSize the size of the chunks read from the log
+     * @param consumer the consumer of the batches
+     * @throws IOException if the log cannot be read, or the consumer fails.
+     */
+    static void readLines(final ReadableByteChannel channel, final long offset, final ConsoleLineProcessor processor,
+                          final MultiLineAggregator.Settings multiLineSettings, final int maxLineLength,
+                          final LongLogLineMode longLineMode, final int chunkSize,
+                          final LineBatchConsumer consumer) throws IOException {
+        new LogReader(offset, processor, multiLineSettings, maxLineLength, longLineMode, consumer).read(channel, chunkSize);
+    }
+
+    private long getOffset(final String runId) {
+        synchronized (offsets) {
+            final Long offset = offsets.get(runId);
+            return (offset != null) ? offset : 0L;
+        }
+    }
+
+    private void setOffset(final String runId, final long offset) {
+        synchronized (offsets) {
+            offsets.put(runId, offset);
+            saveState();
+        }
+    }
+
+    private void remove(final String runId) {
+        synchronized (offsets) {
+            offsets.remove(runId);
+            saveState();
+        }
+    }
+
+    private void saveState() {
+        final XmlFile stateFile = getStateFile();
+        if(stateFile == null) {
+            return;
+        }
+
+        try {
+            stateFile.write(new LinkedHashMap<>(offsets));
+        } catch (IOException e) {
+            logger.warning("Unable to save the pending log uploads. Error: " + e);
+        }
+    }
+
+    private static XmlFile getStateFile() {
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if(jenkins == null) {
+            return null;
+        }
+        return new XmlFile(new File(jenkins.getRootDir(), STATE_FILE_NAME));
+    }
+
+    private static final class LogReader {
+        private final LineBatchConsumer consumer;
+        private final ConsoleLineSplitter splitter;
+        private final MultiLineAggregator aggregator;
+        private final List<String> lines = new ArrayList<>();
+        private int batchBytes;
+        // Offset of the first byte of the current line.
+        private long lineOffset;
+        // Offset of the log after the current line, once its end has been read.
+        private long lineEndOffset;
+        // Offset of the first line of the event which is not complete yet.
+        private long eventOffset;
+
+        private LogReader(final long offset, final ConsoleLineProcessor processor, final MultiLineAggregator.Settings multiLineSettings,
+                          final int maxLineLength, final LongLogLineMode longLineMode, final LineBatchConsumer consumer) {
+            this.consumer = consumer;
+            this.splitter = new ConsoleLineSplitter(processor, maxLineLength, longLineMode, this::onLine);
+            this.aggregator = (multiLineSettings != null) ? new MultiLineAggregator(multiLineSettings, lines::add) : null;
+            this.lineOffset = offset;
+            this.eventOffset = offset;
+        }
+
+        private void read(final ReadableByteChannel channel, final int chunkSize) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            final byte[] bytes = buffer.array();
+            // Offset of the first byte of the buffer.
+            long position = lineOffset;
+            while(channel.read(buffer) >= 0) {
+                final int limit = buffer.position();
+                int lineStart = 0;
+                for(int i = 0; i < limit; i++) {
+                    if(bytes[i] == '\n') {
+                        splitter.append(bytes, lineStart, i - lineStart);
+                        lineEndOffset = position + i + 1;
+                        splitter.endLine();
+                        lineOffset = lineEndOffset;
+                        lineStart = i + 1;
+                    }
+                }
+                // The incomplete line is kept by the splitter.
+                splitter.append(bytes, lineStart, limit - lineStart);
+                buffer.clear();
+                position += limit;
+            }
+
+            lineEndOffset = position;
+            splitter.endLine();
+            if(aggregator != null) {
+                aggregator.flush();
+            }
+            if(!lines.isEmpty()) {
+                consumer.accept(lines, position);
+            }
+        }
+
+        private void onLine(final String line, final boolean endOfLine) throws IOException {
+            if(aggregator == null) {
+                lines.add(line);
+            } else if(aggregator.add(line)) {
+                eventOffset = lineOffset;
+            }
+            batchBytes += line.length();
+
+            if(!lines.isEmpty() && (lines.size() >= MAX_BATCH_LINES || batchBytes >= MAX_BATCH_BYTES)) {
+                final boolean pendingEvent = aggregator != null && aggregator.hasPendingEvent();
+                final long endOffset;
+                if(pendingEvent) {
+                    endOffset = eventOffset;
+                } else {
+                    endOffset = endOfLine ? lineEndOffset : lineOffset;
+                }
+                consumer.accept(lines, endOffset);
+                lines.clear();
+                batchBytes = pendingEvent ? aggregator.getPendingSize() : 0;
+            }
+        }
+    }
+
+    interface LineBatchConsumer {
+        /**
+         * @param lines the lines of the batch
+         * @param endOffset the offset of the log after the last line of the batch
+         * @throws IOException if the batch cannot be processed
+         */
+        void accept(List<String> lines, long endOffset) throws IOException;
+    }
+}
@@ -25,42 +25,111 @@ THE SOFTWARE.
 
 package org.datadog.jenkins.plugins.datadog.logs;
 
-import hudson.console.ConsoleNote;
-import hudson.console.LineTransformationOutputStream;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the console output to the delegate stream, and sends its lines to the DatadogWriter,
+ * or to the AgentLogWriter when the logs are sent from the agent running the step.
+ * The lines are buffered by a ConsoleLineSplitter, so the memory used by the stream is bounded
+ * whatever the build prints.
+ */
+public class DatadogOutputStream extends OutputStream {
+    private static final int DEFAULT_MAX_LINE_LENGTH = 65536;
 
-public class DatadogOutputStream extends LineTransformationOutputStream {
     private OutputStream delegate;
-    private DatadogWriter writer;
+    private LineWriter writer;
+    private ConsoleLineSplitter lineSplitter;
+    // Counts the console volume of the run, null when it is not counted.
+    private LogCollectionAction volumeCounter;
+    private final byte[] singleByte = new byte[1];
 
 
     public DatadogOutputStream(OutputStream delegate, DatadogWriter writer) {
+        this(delegate, writer.getCharset(), getMaxLineLength(), getLongLineMode(), writer,
+                ConsoleVolumeOutputStream.isEnabled() ? writer.getLogCollectionAction() : null);
+    }
+
+    DatadogOutputStream(OutputStream delegate, Charset charset, int maxLineLength, LongLogLineMode longLineMode,
+                        LineWriter writer, LogCollectionAction volumeCounter) {
         super();
         this.delegate = delegate;
         this.writer = writer;
+        this.volumeCounter = volumeCounter;
+        this.lineSplitter = new ConsoleLineSplitter(new ConsoleLineProcessor(charset), maxLineLength, longLineMode,
+                (message, endOfLine) -> writer.write(message));
+    }
+
+    private static int getMaxLineLength() {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        return (datadogConfig != null) ? datadogConfig.getMaxLogLineLength() : DEFAULT_MAX_LINE_LENGTH;
+    }
+
+    private static LongLogLineMode getLongLineMode() {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        return (datadogConfig != null) ? datadogConfig.getLongLogLineMode() : LongLogLineMode.SPLIT;
     }
 
     @Override
-    protected void eol(byte[] b, int len) throws IOException {
-        delegate.write(b, 0, len);
-        this.flush();
+    public void write(int b) throws IOException {
+        // The delegate is flushed by the owner of the stream, as for any other console output.
+        delegate.write(b);
+        if (volumeCounter != null) {
+            volumeCounter.addConsoleOutput(1, (b == '\n') ? 1 : 0);
+        }
+        if (b == '\n') {
+            lineSplitter.endLine();
+        } else {
+            singleByte[0] = (byte) b;
+            lineSplitter.append(singleByte, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        delegate.write(b, off, len);
 
-        String line = new String(b, 0, len, writer.getCharset());
-        line = ConsoleNote.removeNotes(line).trim();
-        writer.write(line);
+        final int end = off + len;
+        int start = off;
+        int lines = 0;
+        for (int i = off; i < end; i++) {
+            if (b[i] == '\n') {
+                lineSplitter.append(b, start, i - start);
+                lineSplitter.endLine();
+                start = i + 1;
+                lines++;
+            }
+        }
+        lineSplitter.append(b, start, end - start);
+        if (volumeCounter != null) {
+            volumeCounter.addConsoleOutput(len, lines);
+        }
     }
 
     @Override
     public void flush() throws IOException {
         delegate.flush();
-        super.flush();
     }
 
     @Override
     public void close() throws IOException {
+        // The last line may not be terminated.
+        lineSplitter.endLine();
         delegate.close();
-        super.close();
+        writer.close();
+    }
+
+    /**
+     * Receives the lines of the console.
+     */
+    interface LineWriter {
+
+        void write(String line);
+
+        void close();
     }
 }
@@ -28,12 +28,16 @@ import hudson.Extension;
 import hudson.model.Queue;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
 import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.log.TaskListenerDecorator;
@@ -42,16 +46,54 @@ public class DatadogTaskListenerDecorator extends TaskListenerDecorator {
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(DatadogTaskListenerDecorator.class.getName());
     private transient WorkflowRun run;
+    // Only set when the logs of the steps are sent from the agents running them.
+    private AgentLogSettings agentLogSettings;
+    private String agentLogEnvelope;
+    private String charsetName;
 
     public DatadogTaskListenerDecorator(WorkflowRun run) {
         this.run = run;
+
+        DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if (isStreamingLogs() && datadogConfig.isShipLogsFromAgents()) {
+            try {
+                // The agents cannot read the run nor the global configuration, so they receive a snapshot of them.
+                this.agentLogEnvelope = DatadogLogUploader.buildPayload(new BuildData(run, null)).toString();
+                this.agentLogSettings = AgentLogSettings.fromConfig(datadogConfig, run.getAction(DatadogPipelineAction.class));
+                this.charsetName = run.getCharset().name();
+            } catch (Exception e) {
+                DatadogUtilities.severe(LOGGER, e, "Unable to prepare the logs of " + run.getExternalizableId() + " to be sent from the agents");
+                this.agentLogSettings = null;
+            }
+        }
     }
 
     @Nonnull
     @Override
     public OutputStream decorate(@Nonnull OutputStream outputStream) {
-        DatadogWriter writer = new DatadogWriter(run, outputStream, run.getCharset());
-        return new DatadogOutputStream(outputStream, writer);
+        if (run != null) {
+            if (!isStreamingLogs()) {
+                // Only the console volume of the run is collected.
+                return ConsoleVolumeOutputStream.decorate(run, outputStream);
+            }
+            DatadogWriter writer = new DatadogWriter(run, outputStream, run.getCharset());
+            return new DatadogOutputStream(outputStream, writer);
+        }
+
+        // The decorator has been sent to the agent running the step.
+        // The settings persisted by older versions of the plugin may not have a Datadog Agent to send the logs to.
+        if (agentLogSettings == null || agentLogSettings.getHost() == null) {
+            return outputStream;
+        }
+        AgentLogWriter writer = new AgentLogWriter(agentLogSettings, agentLogEnvelope, AgentLogShipper.get(agentLogSettings));
+        return new DatadogOutputStream(outputStream, Charset.forName(charsetName), agentLogSettings.getMaxLineLength(),
+                agentLogSettings.getLongLineMode(), writer, null);
+    }
+
+    private static boolean isStreamingLogs() {
+        DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        return datadogConfig != null && datadogConfig.isCollectBuildLogs()
+                && datadogConfig.getLogCollectionMode() != LogCollectionMode.POST_BUILD;
     }
 
     @Extension
@@ -60,7 +102,7 @@ public class DatadogTaskListenerDecorator extends TaskListenerDecorator {
         @Override
         @Nullable
         public TaskListenerDecorator of(@Nonnull FlowExecutionOwner owner) {
-            if (!DatadogUtilities.getDatadogGlobalDescriptor().isCollectBuildLogs()) {
+            if (!isStreamingLogs() && !ConsoleVolumeOutputStream.isEnabled()) {
                 return null;
             }
             try {
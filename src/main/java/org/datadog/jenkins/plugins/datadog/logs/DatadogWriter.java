@@ -26,65 +26,158 @@ THE SOFTWARE.
 package org.datadog.jenkins.plugins.datadog.logs;
 
 import hudson.model.Run;
-import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
-import org.datadog.jenkins.plugins.datadog.DatadogClient;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
-import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
-import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
-import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.Set;
 import java.util.logging.Logger;
 
-public class DatadogWriter {
+public class DatadogWriter implements DatadogOutputStream.LineWriter {
 
     private static final Logger logger = Logger.getLogger(DatadogWriter.class.getName());
 
+    // The attributes of the build rarely change while it runs, so the envelope of its log events is only rebuilt periodically.
+    private static final long ENVELOPE_REFRESH_INTERVAL_MILLIS = 10000;
+
     private OutputStream errorStream;
     private Charset charset;
     private Run<?, ?> run;
+    private LogCollectionAction logCollectionAction;
+    private MultiLineAggregator aggregator;
+    private RepeatedLineCollapser collapser;
+    private DatadogPipelineAction pipelineAction;
+    private int logRateLimit;
+    private int logRateLimitBurst;
+    private int maxRepeatedLogLines;
+    private boolean mergeJsonLogLines;
+    // Read by the console thread and by the thread that flushes the expired log events.
+    private volatile Envelope envelope;
 
     public DatadogWriter(Run<?, ?> run, OutputStream error, Charset charset) {
         this.errorStream = error != null ? error : System.err;
         this.charset = charset;
         this.run = run;
+        this.logCollectionAction = LogCollectionAction.of(run);
+        this.collapser = new RepeatedLineCollapser(this::limit);
+
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if(datadogConfig != null) {
+            this.logRateLimit = datadogConfig.getLogRateLimit();
+            this.logRateLimitBurst = datadogConfig.getLogRateLimitBurst();
+            this.maxRepeatedLogLines = datadogConfig.getMaxRepeatedLogLines();
+            this.mergeJsonLogLines = datadogConfig.isMergeJsonLogLines();
+        }
+
+        final MultiLineAggregator.Settings multiLineSettings = MultiLineAggregator.getSettings();
+        if(multiLineSettings != null) {
+            this.aggregator = new MultiLineAggregator(multiLineSettings, this::send);
+            MultiLineAggregator.scheduleFlush(this.aggregator);
+        }
     }
 
     public Charset getCharset() {
         return charset;
     }
 
+    LogCollectionAction getLogCollectionAction() {
+        return logCollectionAction;
+    }
+
+    @Override
     public void write(String line) {
-        try {
-            if (!StringUtils.isNotEmpty(line)) {
-                return;
-            }
+        if (!StringUtils.isNotEmpty(line)) {
+            return;
+        }
+
+        final DatadogPipelineAction action = getPipelineAction();
+        final int maxRepeatedLines = (action != null && action.getMaxRepeatedLogLines() != null) ? action.getMaxRepeatedLogLines() : maxRepeatedLogLines;
+        if (collapser.add(line, maxRepeatedLines)) {
+            logCollectionAction.onCollapsed();
+        }
+    }
 
-            JSONObject payload = new JSONObject();
+    /**
+     * Sends the number of collapsed lines and the log event which is still waiting for its next lines.
+     */
+    @Override
+    public void close() {
+        collapser.flush();
+        if (aggregator != null) {
+            aggregator.close();
+        }
+    }
+
+    private void limit(String line) {
+        final DatadogPipelineAction action = getPipelineAction();
+        final int rateLimit = (action != null && action.getLogRateLimit() != null) ? action.getLogRateLimit() : logRateLimit;
+        if (!logCollectionAction.tryAcquireLine(rateLimit, logRateLimitBurst)) {
+            return;
+        }
 
+        if (aggregator != null) {
+            aggregator.add(line);
+        } else {
+            send(line);
+        }
+    }
+
+    private DatadogPipelineAction getPipelineAction() {
+        // The datadog step may add its action to the pipeline after the console stream has been decorated.
+        if (pipelineAction == null && run instanceof WorkflowRun) {
+            pipelineAction = run.getAction(DatadogPipelineAction.class);
+        }
+        return pipelineAction;
+    }
+
+    private Envelope getEnvelope() {
+        Envelope current = this.envelope;
+        if (current == null || System.currentTimeMillis() - current.createdAt >= ENVELOPE_REFRESH_INTERVAL_MILLIS) {
             BuildData buildData = new BuildData(this.run, null);
-            payload.put("ddtags", String.join(",", TagsUtil.convertTagsToArray(buildData.getTags())));
-            payload = buildData.addLogAttributes(payload);
-            payload.put("message", line);
-            payload.put("ddsource", "jenkins");
-            payload.put("service", "jenkins");
-
-            // Get Datadog Client Instance
-            DatadogClient client = ClientFactory.getClient();
-            if(client == null){
-                return;
+            String envelope = DatadogLogUploader.buildPayload(buildData).toString();
+            current = new Envelope(JsonLogLines.toPayloadPrefix(envelope), JsonLogLines.getKeys(envelope), System.currentTimeMillis());
+            this.envelope = current;
+        }
+        return current;
+    }
+
+    private void send(String message) {
+        try {
+            Envelope envelope = getEnvelope();
+
+            String payload = null;
+            if (mergeJsonLogLines) {
+                payload = JsonLogLines.toStructuredPayload(envelope.payloadPrefix, envelope.keys, message);
             }
-            boolean status = client.sendLogs(payload.toString());
-            if(!status){
-                // we try again in case a connection has to be re-established.
-                client.sendLogs(payload.toString());
+            if (payload == null) {
+                payload = JsonLogLines.toPayload(envelope.payloadPrefix, message);
             }
+
+            // The event is sent by the log shipper, so the console is not slowed down by the log intake.
+            DatadogLogShipper.get().submit(payload, logCollectionAction);
         } catch (Exception e){
             DatadogUtilities.severe(logger, e, null);
         }
     }
 
+    /**
+     * The build attributes shared by the log events of the build.
+     */
+    private static final class Envelope {
+        private final String payloadPrefix;
+        private final Set<String> keys;
+        private final long createdAt;
+
+        private Envelope(String payloadPrefix, Set<String> keys, long createdAt) {
+            this.payloadPrefix = payloadPrefix;
+            this.keys = keys;
+            this.createdAt = createdAt;
+        }
+    }
+
 }
@@ -0,0 +1,317 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds the JSON payloads of the log messages from the attributes of the run and the console lines.
+ * A console line which is a well-formed JSON object is spliced as it is into the payload,
+ * so its fields become attributes of the log message, without parsing it into objects and encoding it again.
+ * The other lines are sent in the message attribute.
+ */
+final class JsonLogLines {
+
+    // Limits the recursion of the scanner on deeply nested values.
+    private static final int MAX_DEPTH = 64;
+
+    private JsonLogLines() {
+    }
+
+    /**
+     * @param envelope the JSON object with the attributes of the log messages
+     * @return the envelope without its closing brace, followed by a separator if it has attributes.
+     */
+    static String toPayloadPrefix(final String envelope) {
+        final String object = envelope.trim();
+        final String prefix = object.substring(0, object.lastIndexOf('}')).trim();
+        return prefix.endsWith("{") ? prefix : prefix + ",";
+    }
+
+    /**
+     * Adds the message to the envelope, without parsing the envelope again for every line.
+     * @param payloadPrefix the prefix returned by {@link #toPayloadPrefix(String)}
+     * @param message the message of the line
+     * @return the JSON payload of the line.
+     */
+    static String toPayload(final String payloadPrefix, final String message) {
+        final StringBuilder payload = new StringBuilder(payloadPrefix.length() + message.length() + 16);
+        payload.append(payloadPrefix).append("\"message\":\"");
+        for(int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            switch(c) {
+                case '"':
+                    payload.append("\\\"");
+                    break;
+                case '\\':
+                    payload.append("\\\\");
+                    break;
+                case '\n':
+                    payload.append("\\n");
+                    break;
+                case '\r':
+                    payload.append("\\r");
+                    break;
+                case '\t':
+                    payload.append("\\t");
+                    break;
+                default:
+                    if(c < ' ') {
+                        payload.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        payload.append(c);
+                    }
+            }
+        }
+        return payload.append("\"}").toString();
+    }
+
+    /**
+     * Merges the fields of a JSON line into the envelope.
+     * @param payloadPrefix the prefix returned by {@link #toPayloadPrefix(String)}
+     * @param reservedKeys the attributes of the envelope, which cannot be overridden by the line, null to never merge
+     * @param line the console line
+     * @return the JSON payload of the line, or null if the line is not a JSON object with at least one field,
+     * or if one of its fields is reserved.
+     */
+    static String toStructuredPayload(final String payloadPrefix, final Set<String> reservedKeys, final String line) {
+        if(reservedKeys == null || line.length() < 7 || line.charAt(0) != '{' || line.charAt(line.length() - 1) != '}') {
+            return null;
+        }
+
+        final Set<String> keys = getKeys(line);
+        if(keys == null || keys.isEmpty()) {
+            return null;
+        }
+        for(final String key : keys) {
+            if(reservedKeys.contains(key)) {
+                return null;
+            }
+        }
+        return payloadPrefix + line.substring(1);
+    }
+
+    /**
+     * @param text the text of a JSON object
+     * @return the keys of the object, or null if the text is not a single well-formed JSON object,
+     * or if one of its keys has escaped characters.
+     */
+    static Set<String> getKeys(final String text) {
+        final Set<String> keys = new HashSet<>();
+        final int end = skipWhitespace(text, scanObject(text, skipWhitespace(text, 0), 0, keys));
+        return (end == text.length()) ? keys : null;
+    }
+
+    /**
+     * Each scan method returns the position following the value, or -1 if the value is not well-formed.
+     */
+    private static int scanValue(final String text, final int start, final int depth) {
+        if(start < 0 || start >= text.length()) {
+            return -1;
+        }
+        switch(text.charAt(start)) {
+            case '{':
+                return scanObject(text, start, depth, null);
+            case '[':
+                return scanArray(text, start, depth);
+            case '"':
+                return scanString(text, start);
+            case 't':
+                return scanLiteral(text, start, "true");
+            case 'f':
+                return scanLiteral(text, start, "false");
+            case 'n':
+                return scanLiteral(text, start, "null");
+            default:
+                return scanNumber(text, start);
+        }
+    }
+
+    private static int scanObject(final String text, final int start, final int depth, final Set<String> keys) {
+        if(start < 0 || start >= text.length() || text.charAt(start) != '{' || depth >= MAX_DEPTH) {
+            return -1;
+        }
+        int i = skipWhitespace(text, start + 1);
+        if(i < text.length() && text.charAt(i) == '}') {
+            return i + 1;
+        }
+        while(true) {
+            final int keyEnd = scanString(text, i);
+            if(keyEnd < 0) {
+                return -1;
+            }
+            if(keys != null) {
+                final String key = text.substring(i + 1, keyEnd - 1);
+                if(key.indexOf('\\') >= 0) {
+                    return -1;
+                }
+                keys.add(key);
+            }
+            i = skipWhitespace(text, keyEnd);
+            if(i >= text.length() || text.charAt(i) != ':') {
+                return -1;
+            }
+            i = skipWhitespace(text, scanValue(text, skipWhitespace(text, i + 1), depth + 1));
+            if(i < 0 || i >= text.length()) {
+                return -1;
+            }
+            if(text.charAt(i) == '}') {
+                return i + 1;
+            }
+            if(text.charAt(i) != ',') {
+                return -1;
+            }
+            i = skipWhitespace(text, i + 1);
+        }
+    }
+
+    private static int scanArray(final String text, final int start, final int depth) {
+        if(depth >= MAX_DEPTH) {
+            return -1;
+        }
+        int i = skipWhitespace(text, start + 1);
+        if(i < text.length() && text.charAt(i) == ']') {
+            return i + 1;
+        }
+        while(true) {
+            i = skipWhitespace(text, scanValue(text, i, depth + 1));
+            if(i < 0 || i >= text.length()) {
+                return -1;
+            }
+            if(text.charAt(i) == ']') {
+                return i + 1;
+            }
+            if(text.charAt(i) != ',') {
+                return -1;
+            }
+            i = skipWhitespace(text, i + 1);
+        }
+    }
+
+    private static int scanString(final String text, final int start) {
+        if(start < 0 || start >= text.length() || text.charAt(start) != '"') {
+            return -1;
+        }
+        int i = start + 1;
+        while(i < text.length()) {
+            final char c = text.charAt(i);
+            if(c == '"') {
+                return i + 1;
+            }
+            if(c < ' ') {
+                return -1;
+            }
+            if(c == '\\') {
+                if(i + 1 >= text.length()) {
+                    return -1;
+                }
+                final char escaped = text.charAt(i + 1);
+                if(escaped == 'u') {
+                    if(i + 6 > text.length()) {
+                        return -1;
+                    }
+                    for(int j = i + 2; j < i + 6; j++) {
+                        if(Character.digit(text.charAt(j), 16) < 0) {
+                            return -1;
+                        }
+                    }
+                    i += 6;
+                    continue;
+                }
+                if("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int scanLiteral(final String text, final int start, final String literal) {
+        return text.startsWith(literal, start) ? start + literal.length() : -1;
+    }
+
+    private static int scanNumber(final String text, final int start) {
+        int i = start;
+        if(i < text.length() && text.charAt(i) == '-') {
+            i++;
+        }
+        if(i < text.length() && text.charAt(i) == '0') {
+            i++;
+        } else {
+            final int digits = scanDigits(text, i);
+            if(digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        if(i < text.length() && text.charAt(i) == '.') {
+            final int digits = scanDigits(text, i + 1);
+            if(digits == i + 1) {
+                return -1;
+            }
+            i = digits;
+        }
+        if(i < text.length() && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if(i < text.length() && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            final int digits = scanDigits(text, i);
+            if(digits == i) {
+                return -1;
+            }
+            i = digits;
+        }
+        return i;
+    }
+
+    private static int scanDigits(final String text, final int start) {
+        int i = start;
+        while(i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(final String text, final int start) {
+        if(start < 0) {
+            return -1;
+        }
+        int i = start;
+        while(i < text.length()) {
+            final char c = text.charAt(i);
+            if(c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the number of log lines of a run that have been shipped to Datadog, and the number of lines
+ * that have been dropped because the log buffer was full or they could not be sent.
+ * It also keeps the number of lines dropped by the rate limit of the run and the number of
+ * repeated lines collapsed, with the rate limiter shared by the console streams of the run.
+ * The counters are updated by the log shipper, and they are stored with the run when it is saved.
+ * The bytes and lines written to the consoles of the run are also counted, whether its logs are collected or not.
+ */
+public class LogCollectionAction extends InvisibleAction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicLong shippedLines = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private AtomicLong rateLimitedLines = new AtomicLong();
+    private AtomicLong collapsedLines = new AtomicLong();
+    private AtomicLong consoleBytes = new AtomicLong();
+    private AtomicLong consoleLines = new AtomicLong();
+    private transient LogRateLimiter rateLimiter;
+    // Console volume of the run when its running stages started, by id of their start node.
+    private transient Map<String, long[]> stageStarts;
+
+    /**
+     * Returns the action of the run, adding it if the run does not have it yet.
+     * @param run the run
+     * @return the action of the run.
+     */
+    public static LogCollectionAction of(final Run<?, ?> run) {
+        // Several console streams of the same run may be decorated at the same time.
+        synchronized (LogCollectionAction.class) {
+            LogCollectionAction action = run.getAction(LogCollectionAction.class);
+            if(action == null) {
+                action = new LogCollectionAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public void onShipped() {
+        shippedLines.incrementAndGet();
+    }
+
+    public void onDropped() {
+        droppedLines.incrementAndGet();
+    }
+
+    public void addShippedLines(final long lines) {
+        shippedLines.addAndGet(lines);
+    }
+
+    public void addDroppedLines(final long lines) {
+        droppedLines.addAndGet(lines);
+    }
+
+    public long getShippedLines() {
+        return shippedLines.get();
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    /**
+     * @param linesPerSecond the maximum number of lines per second of the run, 0 for no limit
+     * @param burst the number of lines the run can send at once
+     * @return true if a line can be sent, false if it is dropped by the rate limit.
+     */
+    public boolean tryAcquireLine(final int linesPerSecond, final int burst) {
+        if(linesPerSecond <= 0) {
+            return true;
+        }
+
+        final long now = System.nanoTime();
+        final LogRateLimiter limiter;
+        synchronized (this) {
+            if(rateLimiter == null || !rateLimiter.hasLimits(linesPerSecond, burst)) {
+                rateLimiter = new LogRateLimiter(linesPerSecond, burst, now);
+            }
+            limiter = rateLimiter;
+        }
+        if(limiter.tryAcquire(now)) {
+            return true;
+        }
+        rateLimitedLines.incrementAndGet();
+        return false;
+    }
+
+    public void onCollapsed() {
+        collapsedLines.incrementAndGet();
+    }
+
+    public long getRateLimitedLines() {
+        return rateLimitedLines.get();
+    }
+
+    public long getCollapsedLines() {
+        return collapsedLines.get();
+    }
+
+    /**
+     * @param bytes the number of bytes written to a console of the run
+     * @param lines the number of lines ended by these bytes
+     */
+    public void addConsoleOutput(final long bytes, final long lines) {
+        consoleBytes.addAndGet(bytes);
+        if(lines > 0) {
+            consoleLines.addAndGet(lines);
+        }
+    }
+
+    public long getConsoleBytes() {
+        return consoleBytes.get();
+    }
+
+    public long getConsoleLines() {
+        return consoleLines.get();
+    }
+
+    /**
+     * @return the bytes and lines written to the consoles of the run so far.
+     */
+    public long[] getConsoleVolume() {
+        return new long[]{consoleBytes.get(), consoleLines.get()};
+    }
+
+    /**
+     * @param nodeId the id of the start node of the stage
+     * @param consoleVolume the console volume of the run when the stage started
+     */
+    public synchronized void onStageStarted(final String nodeId, final long[] consoleVolume) {
+        if(stageStarts == null) {
+            stageStarts = new HashMap<>();
+        }
+        stageStarts.put(nodeId, consoleVolume);
+    }
+
+    /**
+     * @param nodeId the id of the start node of the stage
+     * @param consoleVolume the console volume of the run when the stage ended
+     * @return the bytes and lines written to the consoles of the run while the stage was running,
+     * or null if the start of the stage has not been recorded.
+     */
+    public synchronized long[] onStageCompleted(final String nodeId, final long[] consoleVolume) {
+        final long[] start = (stageStarts != null) ? stageStarts.remove(nodeId) : null;
+        if(start == null) {
+            return null;
+        }
+        return new long[]{consoleVolume[0] - start[0], consoleVolume[1] - start[1]};
+    }
+
+    protected Object readResolve() {
+        // The counters are missing from the runs saved by previous versions.
+        if(rateLimitedLines == null) {
+            rateLimitedLines = new AtomicLong();
+        }
+        if(collapsedLines == null) {
+            collapsedLines = new AtomicLong();
+        }
+        if(consoleBytes == null) {
+            consoleBytes = new AtomicLong();
+        }
+        if(consoleLines == null) {
+            consoleLines = new AtomicLong();
+        }
+        return this;
+    }
+}
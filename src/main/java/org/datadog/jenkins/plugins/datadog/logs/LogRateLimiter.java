@@ -0,0 +1,69 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the number of console lines sent for a build.
+ * The bucket starts full with the burst size, and it is refilled at the rate of the limit.
+ */
+class LogRateLimiter {
+
+    private final int linesPerSecond;
+    private final int burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    LogRateLimiter(final int linesPerSecond, final int burst, final long nowNanos) {
+        this.linesPerSecond = linesPerSecond;
+        this.burst = Math.max(burst, linesPerSecond);
+        this.tokens = this.burst;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * @param nowNanos the current time, from {@link System#nanoTime()}
+     * @return true if a line can be sent, false if it must be dropped.
+     */
+    synchronized boolean tryAcquire(final long nowNanos) {
+        final long elapsedNanos = nowNanos - lastRefillNanos;
+        if(elapsedNanos > 0) {
+            tokens = Math.min(burst, tokens + elapsedNanos * (double) linesPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+        }
+
+        if(tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    boolean hasLimits(final int linesPerSecond, final int burst) {
+        return this.linesPerSecond == linesPerSecond && this.burst == Math.max(burst, linesPerSecond);
+    }
+}
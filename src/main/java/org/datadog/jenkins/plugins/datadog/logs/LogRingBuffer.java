@@ -0,0 +1,117 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue between the console streams of the builds and the log shipper.
+ * Every slot has a sequence number that tells if it can be written or read in the current lap,
+ * so producers and consumers only contend on a compare-and-set of the tail and head positions.
+ * Any thread can poll elements, so producers can drop the oldest element when the buffer is full.
+ * The capacity is rounded up to the next power of two.
+ * @param <E> the type of the elements
+ */
+public class LogRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public LogRingBuffer(final int capacity) {
+        final int size = (capacity <= 1) ? 1 : Integer.highestOneBit(Math.min(capacity, 1 << 30) - 1) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param element the element to add
+     * @return false if the buffer is full.
+     */
+    public boolean offer(final E element) {
+        long position = tail.get();
+        while(true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // Publishes the element to the consumers.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if(difference < 0) {
+                // The slot still keeps the element of the previous lap.
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if the buffer is empty.
+     */
+    public E poll() {
+        long position = head.get();
+        while(true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+            if(difference == 0) {
+                if(head.compareAndSet(position, position + 1)) {
+                    final E element = elements.get(index);
+                    elements.lazySet(index, null);
+                    // Releases the slot for the next lap.
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+            } else if(difference < 0) {
+                // The element of this lap has not been published yet.
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    /**
+     * @return the approximate number of elements in the buffer.
+     */
+    public int size() {
+        final long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, getCapacity()));
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang.StringUtils;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Merges consecutive console lines into a single log event, so a stack trace or a wrapped message
+ * is sent as one log instead of one log per line.
+ * A line containing the start pattern starts a new event, the other lines are appended to the current event.
+ * The current event is sent when a new event starts, when it reaches the maximum number of lines or characters,
+ * when it is closed, or when it has not received any line for the flush timeout if its flush is scheduled.
+ * The events are sent outside of the lock of the aggregator, in the order of their first line.
+ */
+class MultiLineAggregator {
+
+    private static final Logger logger = Logger.getLogger(MultiLineAggregator.class.getName());
+
+    private static final long FLUSH_CHECK_PERIOD_MILLIS = 250;
+    private static final Set<MultiLineAggregator> scheduled = Collections.newSetFromMap(new WeakHashMap<MultiLineAggregator, Boolean>());
+    private static ScheduledExecutorService flushExecutor;
+    private static volatile Settings settings;
+
+    private final Settings eventSettings;
+    private final EventConsumer consumer;
+    private final StringBuilder event = new StringBuilder();
+    // Taken before the lock of the aggregator is released, so the events are sent in order.
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private int eventLines;
+    private long lastLineMillis;
+
+    MultiLineAggregator(final Settings eventSettings, final EventConsumer consumer) {
+        this.eventSettings = eventSettings;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return the settings of the global configuration, or null if the multi-line events are disabled.
+     */
+    static Settings getSettings() {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        if(datadogConfig == null || StringUtils.isBlank(datadogConfig.getLogEventStartPattern()) || datadogConfig.getMaxLogEventLines() <= 1) {
+            return null;
+        }
+
+        Settings current = settings;
+        if(current == null || !current.matches(datadogConfig)) {
+            try {
+                current = new Settings(Pattern.compile(datadogConfig.getLogEventStartPattern()), datadogConfig.getMaxLogEventLines(),
+                        datadogConfig.getMaxLogEventSize(), datadogConfig.getLogEventFlushTimeout());
+            } catch (PatternSyntaxException e) {
+                logger.warning("Invalid log event start pattern, every console line is sent as a log. Error: " + e.getMessage());
+                return null;
+            }
+            settings = current;
+        }
+        return current;
+    }
+
+    /**
+     * Sends the events of the aggregator which did not receive any line for the flush timeout,
+     * until the aggregator is closed.
+     * @param aggregator the aggregator
+     */
+    static void scheduleFlush(final MultiLineAggregator aggregator) {
+        synchronized (scheduled) {
+            scheduled.add(aggregator);
+            if(flushExecutor == null) {
+                // The shared jenkins.util.Timer is not used, the log intake may be slow.
+                flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new NamingThreadFactory(new DaemonThreadFactory(), "Datadog Log Event Flusher"));
+                flushExecutor.scheduleWithFixedDelay(MultiLineAggregator::flushExpiredEvents, FLUSH_CHECK_PERIOD_MILLIS, FLUSH_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void flushExpiredEvents() {
+        final List<MultiLineAggregator> aggregators;
+        synchronized (scheduled) {
+            aggregators = new ArrayList<>(scheduled);
+        }
+        final long now = System.currentTimeMillis();
+        for(final MultiLineAggregator aggregator : aggregators) {
+            try {
+                aggregator.flushIfExpired(now);
+            } catch (Exception e) {
+                DatadogUtilities.severe(logger, e, null);
+            }
+        }
+    }
+
+    /**
+     * @param line a non empty console line
+     * @return true if the line starts a new event.
+     */
+    boolean add(final String line) {
+        String message = null;
+        final boolean newEvent;
+        synchronized (this) {
+            if(eventLines > 0 && (eventSettings.startPattern.matcher(line).find()
+                    || eventLines >= eventSettings.maxLines
+                    || event.length() + 1 + line.length() > eventSettings.maxSize)) {
+                message = takeEvent();
+            }
+
+            newEvent = eventLines == 0;
+            if(!newEvent) {
+                event.append('\n');
+            }
+            event.append(line);
+            eventLines++;
+            lastLineMillis = System.currentTimeMillis();
+        }
+        if(message != null) {
+            send(message);
+        }
+        return newEvent;
+    }
+
+    /**
+     * Sends the current event, if any.
+     */
+    void flush() {
+        final String message;
+        synchronized (this) {
+            message = takeEvent();
+        }
+        if(message != null) {
+            send(message);
+        }
+    }
+
+    void flushIfExpired(final long nowMillis) {
+        final String message;
+        synchronized (this) {
+            if(eventLines == 0 || nowMillis - lastLineMillis < eventSettings.flushTimeoutMillis) {
+                return;
+            }
+            message = takeEvent();
+        }
+        send(message);
+    }
+
+    /**
+     * Must be called with the lock of the aggregator held. If an event is returned, the send lock is
+     * also held by the caller, which must release it by sending the event.
+     * @return the current event, or null if there is none.
+     */
+    private String takeEvent() {
+        if(eventLines == 0) {
+            return null;
+        }
+
+        final String message = event.toString();
+        event.setLength(0);
+        eventLines = 0;
+        sendLock.lock();
+        return message;
+    }
+
+    private void send(final String message) {
+        try {
+            consumer.accept(message);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the current event and stops its scheduled flush.
+     */
+    void close() {
+        synchronized (scheduled) {
+            scheduled.remove(this);
+        }
+        flush();
+    }
+
+    synchronized boolean hasPendingEvent() {
+        return eventLines > 0;
+    }
+
+    /**
+     * @return the number of characters of the current event.
+     */
+    synchronized int getPendingSize() {
+        return event.length();
+    }
+
+    static final class Settings {
+        private final Pattern startPattern;
+        private final int maxLines;
+        private final int maxSize;
+        private final long flushTimeoutMillis;
+
+        Settings(final Pattern startPattern, final int maxLines, final int maxSize, final long flushTimeoutMillis) {
+            this.startPattern = startPattern;
+            this.maxLines = maxLines;
+            this.maxSize = maxSize;
+            this.flushTimeoutMillis = flushTimeoutMillis;
+        }
+
+        private boolean matches(final DatadogGlobalConfiguration datadogConfig) {
+            return startPattern.pattern().equals(datadogConfig.getLogEventStartPattern())
+                    && maxLines == datadogConfig.getMaxLogEventLines()
+                    && maxSize == datadogConfig.getMaxLogEventSize()
+                    && flushTimeoutMillis == datadogConfig.getLogEventFlushTimeout();
+        }
+    }
+
+    interface EventConsumer {
+        /**
+         * @param message the lines of the event, separated by new lines
+         */
+        void accept(String message);
+    }
+}
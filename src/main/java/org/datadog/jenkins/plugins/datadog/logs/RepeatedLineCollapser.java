@@ -0,0 +1,115 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.logs;
+
+/**
+ * Collapses the consecutive similar lines of a console stream, like progress messages.
+ * Lines are similar when they only differ by their numbers. After the maximum number of similar lines,
+ * the next ones are dropped until a different line is received, and they are replaced by a single
+ * "Previous line repeated N more times" line.
+ *
+ * An instance must only be used by one stream.
+ */
+class RepeatedLineCollapser {
+
+    private final LineConsumer consumer;
+    private String previousLine;
+    private int repeatedLines;
+    private int collapsedLines;
+
+    RepeatedLineCollapser(final LineConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @param line the console line
+     * @param maxRepeatedLines the number of similar lines sent before collapsing them, 0 to send every line
+     * @return true if the line has been collapsed.
+     */
+    boolean add(final String line, final int maxRepeatedLines) {
+        if(maxRepeatedLines > 0 && previousLine != null && isSimilar(previousLine, line)) {
+            previousLine = line;
+            repeatedLines++;
+            if(repeatedLines > maxRepeatedLines) {
+                collapsedLines++;
+                return true;
+            }
+            consumer.accept(line);
+            return false;
+        }
+
+        flush();
+        previousLine = line;
+        repeatedLines = 0;
+        consumer.accept(line);
+        return false;
+    }
+
+    /**
+     * Sends the number of lines collapsed since the last line sent, if any.
+     */
+    void flush() {
+        if(collapsedLines > 0) {
+            final int lines = collapsedLines;
+            collapsedLines = 0;
+            consumer.accept("Previous line repeated " + lines + " more " + (lines == 1 ? "time" : "times"));
+        }
+    }
+
+    /**
+     * @return true if both lines are equal once every sequence of digits is considered the same.
+     */
+    static boolean isSimilar(final String first, final String second) {
+        int i = 0;
+        int j = 0;
+        while(i < first.length() && j < second.length()) {
+            final char c1 = first.charAt(i);
+            final char c2 = second.charAt(j);
+            if(isDigit(c1) && isDigit(c2)) {
+                while(i < first.length() && isDigit(first.charAt(i))) {
+                    i++;
+                }
+                while(j < second.length() && isDigit(second.charAt(j))) {
+                    j++;
+                }
+            } else if(c1 == c2) {
+                i++;
+                j++;
+            } else {
+                return false;
+            }
+        }
+        return i == first.length() && j == second.length();
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    interface LineConsumer {
+        void accept(String line);
+    }
+}
@@ -171,13 +171,46 @@ public class BuildData implements Serializable {
         setJenkinsUrl(jenkinsUrl);
 
         // Set Tracing IDs
-        final Span buildSpan = BuildSpanManager.get().get(getBuildTag(""));
+        final Span buildSpan = BuildSpanManager.get().get(run);
         if(buildSpan !=null) {
             setTraceId(buildSpan.context().toTraceId());
             setSpanId(buildSpan.context().toSpanId());
         }
     }
 
+    private BuildData() {
+    }
+
+    /**
+     * Returns a copy which only keeps the fields used to build the traces of the run.
+     * The copy is stored in the run (see {@code BuildSpanAction}), so it is kept as small as possible.
+     * @return a copy of the trace related fields.
+     */
+    public BuildData copyForTraces() {
+        final BuildData copy = new BuildData();
+        copy.buildNumber = this.buildNumber;
+        copy.buildUrl = this.buildUrl;
+        copy.nodeName = this.nodeName;
+        copy.jobName = this.jobName;
+        copy.buildTag = this.buildTag;
+        copy.workspace = this.workspace;
+        copy.branch = this.branch;
+        copy.gitUrl = this.gitUrl;
+        copy.gitCommit = this.gitCommit;
+        copy.gitMessage = this.gitMessage;
+        copy.gitAuthorName = this.gitAuthorName;
+        copy.gitAuthorEmail = this.gitAuthorEmail;
+        copy.gitAuthorDate = this.gitAuthorDate;
+        copy.gitCommitterName = this.gitCommitterName;
+        copy.gitCommitterEmail = this.gitCommitterEmail;
+        copy.gitCommitterDate = this.gitCommitterDate;
+        copy.gitDefaultBranch = this.gitDefaultBranch;
+        copy.hostname = this.hostname;
+        copy.userId = this.userId;
+        copy.startTime = this.startTime;
+        return copy;
+    }
+
     private void populateEnvVariables(EnvVars envVars){
         if (envVars == null) {
             return;
@@ -1,79 +1,239 @@
 package org.datadog.jenkins.plugins.datadog.model;
 
-import static org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode.BuildPipelineNodeKey;
-
-import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
-import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
-import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a Jenkins Pipeline.
  * The stages are represented using an n-ary tree.
+ *
+ * The nodes are indexed by id, and every node keeps the id of the block that encloses it,
+ * so the tree can be assembled with constant time lookups regardless of its depth and width.
+ *
+ * If the pipeline grows too much while it is running, the subtrees that are already
+ * complete can be detached (see {@link #detachCompletedNodes(int)}), so only the nodes
+ * that are still pending are kept in memory.
  */
 public class BuildPipeline {
 
-    private final Map<List<BuildPipelineNodeKey>, BuildPipelineNode> stagesByPath;
+    private static final BuildPipelineNode.BuildPipelineNodeComparator SIBLINGS_COMPARATOR = new BuildPipelineNode.BuildPipelineNodeComparator();
+
+    // Nodes by id, in the order they were first seen.
+    private final Map<String, BuildPipelineNode> nodesById;
+    // Id of the enclosing block of a node, by node id. Top level nodes are not present.
+    private final Map<String, String> parentIdById;
+    // Ids of the nodes that represent a block.
+    private final Set<String> blockIds;
+    // Ids of the blocks that have finished and have not been detached yet.
+    private final List<String> completedBlockIds;
     private BuildPipelineNode root;
+    // Number of pending nodes from which the completed nodes are detached.
+    private int nextDetachCheck = -1;
 
     public BuildPipeline() {
-        this.stagesByPath = new HashMap<>();
+        this.nodesById = new LinkedHashMap<>();
+        this.parentIdById = new HashMap<>();
+        this.blockIds = new HashSet<>();
+        this.completedBlockIds = new ArrayList<>();
         this.root = new BuildPipelineNode("initial", "initial");
     }
 
     public BuildPipelineNode add(final FlowNode node) {
-        final BuildPipelineNode buildNode = buildPipelineNode(node);
+        return add(FlowNodeSnapshot.of(node));
+    }
+
+    /**
+     * Adds a flow node from its snapshot.
+     * @param node the snapshot of the flow node
+     * @return the BuildPipelineNode previously added with the same id, if any.
+     */
+    public BuildPipelineNode add(final FlowNodeSnapshot node) {
+        final BuildPipelineNode buildNode = node.getPipelineNode();
         if(buildNode == null) {
             return null;
         }
 
-        final List<BuildPipelineNodeKey> buildNodeRelations = new ArrayList<>();
-        buildNodeRelations.add(buildNode.getKey());
-        for (final BlockStartNode startNode : node.iterateEnclosingBlocks()) {
-            buildNodeRelations.add(new BuildPipelineNodeKey(startNode.getId(), startNode.getDisplayName()));
+        final BuildPipelineNode previous = nodesById.get(buildNode.getId());
+        BuildPipelineNode child = previous;
+        if(previous == null) {
+            nodesById.put(buildNode.getId(), buildNode);
+            child = buildNode;
+        } else {
+            // The node was already known as the enclosing block of another node.
+            previous.updateData(buildNode);
+        }
+
+        if(node.isBlockEnd()) {
+            blockIds.add(buildNode.getId());
+            completedBlockIds.add(buildNode.getId());
+        }
+
+        // Link the node with its enclosing blocks. The walk stops as soon as it finds
+        // a block that is already linked, so every block is only visited once,
+        // and only the blocks that were not known yet are looked up in the flow graph.
+        for (final String blockId : node.getEnclosingBlockIds()) {
+            if(parentIdById.containsKey(child.getId())) {
+                break;
+            }
+
+            BuildPipelineNode block = nodesById.get(blockId);
+            final boolean linked = block != null && parentIdById.containsKey(blockId);
+            if(block == null) {
+                block = node.getEnclosingBlock(blockId);
+                if(block == null) {
+                    break;
+                }
+                nodesById.put(blockId, block);
+                blockIds.add(blockId);
+            }
+            parentIdById.put(child.getId(), blockId);
+            block.addChild(child);
+            if(linked) {
+                break;
+            }
+            child = block;
         }
+        return previous;
+    }
 
-        Collections.reverse(buildNodeRelations);
-        return stagesByPath.put(buildNodeRelations, buildNode);
+    /**
+     * @return the number of nodes that have been added and not detached yet.
+     */
+    public int getPendingNodes() {
+        return nodesById.size();
     }
 
-    private BuildPipelineNode buildPipelineNode(FlowNode node) {
-        if(node instanceof BlockEndNode) {
-            return new BuildPipelineNode((BlockEndNode) node);
-        } else if(node instanceof StepAtomNode) {
-            return new BuildPipelineNode((StepAtomNode) node);
+    /**
+     * Detaches the nodes whose spans can already be built, if there are more than {@code maxPendingNodes} nodes pending:
+     * the subtrees of the blocks that have finished, and the steps that are followed by a sibling that has already started.
+     * The information of the detached nodes is completed as in {@link #buildTree()}.
+     * Top level nodes are never detached, as they are part of the tree returned by {@link #buildTree()}.
+     * If most of the pending nodes cannot be detached, the next check is deferred
+     * until more nodes have been added, so the pending nodes are not scanned on every call.
+     * @param maxPendingNodes the maximum number of nodes to keep in memory
+     * @return the detached nodes, whose enclosing block is still available in {@code getParent()}.
+     */
+    public List<BuildPipelineNode> detachCompletedNodes(final int maxPendingNodes) {
+        if(nodesById.size() <= Math.max(maxPendingNodes, nextDetachCheck)) {
+            return Collections.emptyList();
+        }
+
+        final List<BuildPipelineNode> detachedNodes = new ArrayList<>();
+        for(final String blockId : completedBlockIds) {
+            final BuildPipelineNode block = nodesById.get(blockId);
+            final BuildPipelineNode parent = getParent(blockId);
+            if(block == null || parent == null) {
+                // Already detached as part of an enclosing block, or top level block.
+                continue;
+            }
+
+            detach(parent, block);
+            completeNode(block, parent, null);
+            sortSiblingsByStartTime(block);
+            completeInformation(block);
+            detachedNodes.add(block);
+        }
+        completedBlockIds.clear();
+
+        final List<BuildPipelineNode> settledSteps = new ArrayList<>();
+        for(final String blockId : blockIds) {
+            final BuildPipelineNode block = nodesById.get(blockId);
+            if(block == null) {
+                continue;
+            }
+
+            final List<BuildPipelineNode> children = block.getChildren();
+            children.sort(SIBLINGS_COMPARATOR);
+            // The last child is still running, or its end time is the end time of the block.
+            for(int i = 0; i < children.size() - 1; i++) {
+                final BuildPipelineNode child = children.get(i);
+                if(!blockIds.contains(child.getId())) {
+                    completeNode(child, block, children.get(i + 1));
+                    settledSteps.add(child);
+                }
+            }
+        }
+
+        for(final BuildPipelineNode step : settledSteps) {
+            detach(step.getParent(), step);
+        }
+        detachedNodes.addAll(settledSteps);
+
+        final int pendingNodes = nodesById.size();
+        nextDetachCheck = (pendingNodes <= maxPendingNodes) ? maxPendingNodes : pendingNodes + Math.max(1, maxPendingNodes / 2);
+        return detachedNodes;
+    }
+
+    private BuildPipelineNode getParent(final String id) {
+        final String parentId = parentIdById.get(id);
+        return (parentId != null) ? nodesById.get(parentId) : null;
+    }
+
+    /**
+     * Removes a node and its descendants from the pipeline.
+     * The end time of the preceding step is set before, as it cannot be inferred
+     * from its siblings once the node has been removed.
+     */
+    private void detach(final BuildPipelineNode parent, final BuildPipelineNode node) {
+        final List<BuildPipelineNode> siblings = parent.getChildren();
+        siblings.sort(SIBLINGS_COMPARATOR);
+        final int index = siblings.indexOf(node);
+        if(index > 0) {
+            final BuildPipelineNode previous = siblings.get(index - 1);
+            if(previous.getEndTime() == -1L && !blockIds.contains(previous.getId())) {
+                previous.setEndTime(node.getStartTime());
+            }
+        }
+        if(index >= 0) {
+            siblings.remove(index);
+        }
+
+        final Deque<BuildPipelineNode> pending = new ArrayDeque<>();
+        pending.push(node);
+        while(!pending.isEmpty()) {
+            final BuildPipelineNode current = pending.pop();
+            nodesById.remove(current.getId());
+            parentIdById.remove(current.getId());
+            blockIds.remove(current.getId());
+            for(final BuildPipelineNode child : current.getChildren()) {
+                pending.push(child);
+            }
         }
-        return null;
     }
 
     /**
      * Reconstruct a Jenkins pipeline tree from the info gathered in the {@code DatadogGraphListener}.
      * Example:
-     * Starting from the stagesByPath:
-     *   Key: (Stage1, Stage2) - Value: (Stage2)
-     *   Key: (Stage1, Stage2, Stage3) - Value: (Stage3)
-     *   Key: (Stage1) - Value: (Stage1)
+     * Starting from the nodes and their enclosing blocks:
+     *   Node: (Stage2) - Parent: (Stage1)
+     *   Node: (Stage3) - Parent: (Stage2)
+     *   Node: (Stage1) - Parent: none
      * it will be returned the following tree:
      *   root
      *     -- stage1
      *          -- stage2
      *               -- stage3
+     * This method must only be called once, when all the nodes have been added.
      **/
     public BuildPipelineNode buildTree() {
-        for(Map.Entry<List<BuildPipelineNodeKey>, BuildPipelineNode> entry : stagesByPath.entrySet()){
-            final List<BuildPipelineNodeKey> pathStages = entry.getKey();
-            final BuildPipelineNode stage = entry.getValue();
-            buildTree(pathStages, root, stage);
+        for(final BuildPipelineNode node : nodesById.values()) {
+            if(getParent(node.getId()) == null) {
+                root.addChild(node);
+            }
         }
 
-        sortSiblingsByStartTime(root.getChildren());
-        completeInformation(root.getChildren(), root);
+        sortSiblingsByStartTime(root);
+        completeInformation(root);
         assignPipelineToRootNode(root);
         return root;
     }
@@ -85,60 +245,67 @@ public class BuildPipeline {
         }
     }
 
-    private void sortSiblingsByStartTime(List<BuildPipelineNode> stages) {
-        for(BuildPipelineNode stage : stages) {
-            sortSiblingsByStartTime(stage.getChildren());
+    private void sortSiblingsByStartTime(final BuildPipelineNode root) {
+        final Deque<BuildPipelineNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while(!pending.isEmpty()) {
+            final List<BuildPipelineNode> children = pending.pop().getChildren();
+            children.sort(SIBLINGS_COMPARATOR);
+            for(final BuildPipelineNode child : children) {
+                pending.push(child);
+            }
         }
-        stages.sort(new BuildPipelineNode.BuildPipelineNodeComparator());
     }
 
-    private void completeInformation(final List<BuildPipelineNode> nodes, final BuildPipelineNode parent) {
-        for(int i = 0; i < nodes.size(); i++) {
-            final BuildPipelineNode node = nodes.get(i);
-            final Long endTime = node.getEndTime();
-            if(endTime == -1L) {
-                if(i + 1 < nodes.size()) {
-                    final BuildPipelineNode sibling = nodes.get(i + 1);
-                    node.setEndTime(sibling.getStartTime());
-                } else {
-                    node.setEndTime(parent.getEndTime());
-                }
-            }
-
-            // Propagate Stage Name to its children
-            if(!BuildPipelineNode.NodeType.STAGE.equals(node.getType())) {
-                if(BuildPipelineNode.NodeType.STAGE.equals(parent.getType())) {
-                    node.setStageName(parent.getName());
-                } else if(parent.getStageName() != null){
-                    node.setStageName(parent.getStageName());
-                }
+    private void completeInformation(final BuildPipelineNode root) {
+        // Parents are always completed before their children,
+        // as the children inherit the end time and stage name of their parents.
+        final Deque<BuildPipelineNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while(!pending.isEmpty()) {
+            final BuildPipelineNode parent = pending.pop();
+            final List<BuildPipelineNode> nodes = parent.getChildren();
+            for(int i = 0; i < nodes.size(); i++) {
+                final BuildPipelineNode node = nodes.get(i);
+                completeNode(node, parent, (i + 1 < nodes.size()) ? nodes.get(i + 1) : null);
+                pending.push(node);
             }
-
-            completeInformation(node.getChildren(), node);
         }
     }
 
-    private void buildTree(List<BuildPipelineNodeKey> pathStages, BuildPipelineNode parent, BuildPipelineNode stage) {
-        if(pathStages.isEmpty()) {
-            return;
+    private void completeNode(final BuildPipelineNode node, final BuildPipelineNode parent, final BuildPipelineNode nextSibling) {
+        final long endTime = node.getEndTime();
+        if(endTime == -1L) {
+            if(nextSibling != null) {
+                node.setEndTime(nextSibling.getStartTime());
+            } else {
+                node.setEndTime(parent.getEndTime());
+            }
         }
 
-        final BuildPipelineNodeKey buildNodeKey = pathStages.get(0);
-        if(pathStages.size() == 1){
-            final BuildPipelineNode child = parent.getChild(buildNodeKey);
-            if (child == null) {
-                parent.addChild(stage);
-            } else {
-                child.updateData(stage);
+        // Propagate Stage Name to its children
+        if(!BuildPipelineNode.NodeType.STAGE.equals(node.getType())) {
+            final String stageName = getEnclosingStageName(parent);
+            if(stageName != null) {
+                node.setStageName(stageName);
             }
+        }
+    }
 
-        } else {
-            BuildPipelineNode child = parent.getChild(buildNodeKey);
-            if(child == null) {
-                child = new BuildPipelineNode(buildNodeKey);
-                parent.addChild(child);
+    /**
+     * Returns the name of the stage that encloses the nodes of a block. The stage names are propagated
+     * top-down by {@link #buildTree()}, but the enclosing blocks of the nodes detached before
+     * may not have their stage name yet, so the enclosing blocks are walked up to the nearest stage.
+     */
+    private static String getEnclosingStageName(final BuildPipelineNode block) {
+        for(BuildPipelineNode current = block; current != null; current = current.getParent()) {
+            if(BuildPipelineNode.NodeType.STAGE.equals(current.getType())) {
+                return current.getName();
+            }
+            if(current.getStageName() != null) {
+                return current.getStageName();
             }
-            buildTree(pathStages.subList(1, pathStages.size()), child, stage);
         }
+        return null;
     }
 }
@@ -12,6 +12,7 @@ import org.jenkinsci.plugins.workflow.actions.ErrorAction;
 import org.jenkinsci.plugins.workflow.actions.LogAction;
 import org.jenkinsci.plugins.workflow.actions.TimingAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
 import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
@@ -19,8 +20,8 @@ import org.jenkinsci.plugins.workflow.graph.StepNode;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,56 +56,72 @@ public class BuildPipelineNode {
         }
     }
 
-    private final BuildPipelineNodeKey key;
-    private final List<BuildPipelineNode> parents;
-    private final List<BuildPipelineNode> children;
+    // A pipeline may have tens of thousands of nodes, so the layout is kept compact:
+    // the children list is only allocated for blocks, the environment variables are the
+    // few traced ones kept by the StepData of the step, which is shared by the steps of the same kind,
+    // and the logs and the error are looked up in the flow graph only when they are needed.
     private final String id;
     private final String name;
+    private BuildPipelineNode parent;
+    private List<BuildPipelineNode> children = Collections.emptyList();
     private String stageName;
 
     private NodeType type;
     private boolean internal;
-    private Map<String, Object> args = new HashMap<>();
-    private Map<String, String> envVars = new HashMap<>();
+    private Map<String, Object> args = Collections.emptyMap();
+    private Map<String, String> envVars = Collections.emptyMap();
     private String workspace;
     private String nodeName;
     private String nodeHostname;
-    private AnnotatedLargeText logText;
+    // Time in milliseconds.
     private long startTime;
-    private long startTimeMicros;
     private long endTime;
-    private long endTimeMicros;
     private String result;
 
     // Flag that indicates if the node must be marked as error.
     private boolean error;
-    // Throwable of the node.
-    // Although the error flag was true, this can be null.
-    private Throwable errorObj;
+
+    // Execution and id of the flow node which keeps the logs and the error of the node.
+    private FlowExecution execution;
+    private String dataNodeId;
 
     //OpenTracing
     private DDId generatedSpanId;
 
     public BuildPipelineNode(final String id, final String name) {
-        this(new BuildPipelineNodeKey(id, name));
+        this.id = id;
+        this.name = name;
     }
 
-    public BuildPipelineNode(final BuildPipelineNodeKey key) {
-        this.key = key;
-        this.parents = new ArrayList<>();
-        this.children = new ArrayList<>();
-        this.id = key.id;
-        this.name = key.name;
+    /**
+     * Creates the node of a block whose end has not been seen yet.
+     * The data is completed by {@link #updateData(BuildPipelineNode)} once the block finishes.
+     * @param startNode the start node of the block
+     */
+    public BuildPipelineNode(final BlockStartNode startNode) {
+        this(startNode.getId(), startNode.getDisplayName());
+        if(DatadogUtilities.isStageNode(startNode)){
+            this.type = NodeType.STAGE;
+            this.internal = false;
+        } else {
+            this.type = NodeType.STEP;
+            this.internal = true;
+        }
+        this.startTime = getTime(startNode);
+        this.endTime = -1L;
+        this.generatedSpanId = getGeneratedSpanId(startNode);
     }
 
     public BuildPipelineNode(final BlockEndNode endNode) {
-        final BlockStartNode startNode = endNode.getStartNode();
-        this.key = new BuildPipelineNodeKey(startNode.getId(), startNode.getDisplayName());
-        this.parents = new ArrayList<>();
-        this.children = new ArrayList<>();
+        this(endNode, (endNode instanceof StepNode) ? getStepData(endNode) : null);
+    }
 
-        this.id = startNode.getId();
-        this.name = startNode.getDisplayName();
+    /**
+     * @param endNode the end node of the block
+     * @param stepData the StepData of the block when it finished, or null if the block is not a step
+     */
+    BuildPipelineNode(final BlockEndNode endNode, final StepData stepData) {
+        this(endNode.getStartNode());
         if(DatadogUtilities.isPipelineNode(endNode)) {
             // The pipeline node must be treated as Step.
             // Only root span must have ci.pipeline.* tags.
@@ -114,35 +131,22 @@ public class BuildPipelineNode {
             // the pipeline node span is a child of the build span.
             this.type = NodeType.STEP;
             this.internal = true;
-        } else if(DatadogUtilities.isStageNode(startNode)){
-            this.type = NodeType.STAGE;
-            this.internal = false;
-        } else{
-            this.type = NodeType.STEP;
-            this.internal = true;
         }
 
-        this.args = ArgumentsAction.getFilteredArguments(startNode);
-
-        if(endNode instanceof StepNode){
-            final StepData stepData = getStepData(endNode);
-            if(stepData != null) {
-                this.envVars = stepData.getEnvVars();
-                this.workspace = stepData.getWorkspace();
-                this.nodeName = stepData.getNodeName();
-                this.nodeHostname = stepData.getNodeHostname();
-                this.generatedSpanId = getGeneratedSpanId(endNode);
-            }
+        this.args = getArgs(endNode.getStartNode());
 
+        if(stepData != null) {
+            this.envVars = stepData.getEnvVars();
+            this.workspace = stepData.getWorkspace();
+            this.nodeName = stepData.getNodeName();
+            this.nodeHostname = stepData.getNodeHostname();
+            this.generatedSpanId = getGeneratedSpanId(endNode);
         }
 
-        this.logText = getLogText(endNode);
-        this.startTime = getTime(startNode);
-        this.startTimeMicros = this.startTime * 1000;
+        this.execution = endNode.getExecution();
+        this.dataNodeId = endNode.getId();
         this.endTime = getTime(endNode);
-        this.endTimeMicros = this.endTime * 1000;
-        this.result = DatadogUtilities.getResultTag(startNode);
-        this.errorObj = getErrorObj(endNode);
+        this.result = DatadogUtilities.getResultTag(endNode.getStartNode());
         if("error".equalsIgnoreCase(this.result)){
             this.error = true;
         }
@@ -158,16 +162,19 @@ public class BuildPipelineNode {
     }
 
     public BuildPipelineNode(final StepAtomNode stepNode) {
-        this.key = new BuildPipelineNodeKey(stepNode.getId(), stepNode.getDisplayName());
-        this.parents = new ArrayList<>();
-        this.children = new ArrayList<>();
+        this(stepNode, getStepData(stepNode));
+    }
+
+    /**
+     * @param stepNode the node of the step
+     * @param stepData the StepData of the step when it finished
+     */
+    BuildPipelineNode(final StepAtomNode stepNode, final StepData stepData) {
+        this(stepNode.getId(), stepNode.getDisplayName());
         this.internal = false;
-        this.id = stepNode.getId();
-        this.name = stepNode.getDisplayName();
         this.type = NodeType.STEP;
-        this.args = ArgumentsAction.getFilteredArguments(stepNode);
+        this.args = getArgs(stepNode);
 
-        final StepData stepData = getStepData(stepNode);
         if(stepData != null) {
             this.envVars = stepData.getEnvVars();
             this.workspace = stepData.getWorkspace();
@@ -176,22 +183,16 @@ public class BuildPipelineNode {
             this.generatedSpanId = getGeneratedSpanId(stepNode);
         }
 
-        this.logText = getLogText(stepNode);
+        this.execution = stepNode.getExecution();
+        this.dataNodeId = stepNode.getId();
         this.startTime = getTime(stepNode);
-        this.startTimeMicros = this.startTime * 1000;
         this.endTime = -1L;
-        this.endTimeMicros = this.endTime * 1000;
         this.result = DatadogUtilities.getResultTag(stepNode);
-        this.errorObj = getErrorObj(stepNode);
         if("error".equalsIgnoreCase(this.result)){
             this.error = true;
         }
     }
 
-    public BuildPipelineNodeKey getKey() {
-        return key;
-    }
-
     public String getId() {
         return id;
     }
@@ -233,7 +234,8 @@ public class BuildPipelineNode {
     }
 
     public AnnotatedLargeText getLogText() {
-        return logText;
+        final FlowNode dataNode = getDataNode();
+        return (dataNode != null) ? getLogText(dataNode) : null;
     }
 
     public long getStartTime() {
@@ -245,54 +247,69 @@ public class BuildPipelineNode {
     }
 
     public long getStartTimeMicros() {
-        return startTimeMicros;
+        return startTime * 1000;
     }
 
     public long getEndTimeMicros() {
-        return endTimeMicros;
+        return endTime * 1000;
     }
 
     public void setEndTime(long endTime) {
         this.endTime = endTime;
-        this.endTimeMicros = this.endTime * 1000;
     }
 
     public String getResult() {
         return result;
     }
 
+    /**
+     * Returns the {@code Throwable} of the node. It is looked up in the flow graph on every call,
+     * so it is not kept in memory while the pipeline is running.
+     * Although the error flag was true, this can be null.
+     * @return the throwable of the node.
+     */
     public Throwable getErrorObj() {
-        return errorObj;
+        if(!error) {
+            return null;
+        }
+
+        final FlowNode dataNode = getDataNode();
+        return (dataNode != null) ? getErrorObj(dataNode) : null;
+    }
+
+    private FlowNode getDataNode() {
+        if(execution == null || dataNodeId == null) {
+            return null;
+        }
+
+        try {
+            return execution.getNode(dataNodeId);
+        } catch (Exception e) {
+            logger.fine("Unable to get the flow node '" + dataNodeId + "'. Error: " + e);
+            return null;
+        }
     }
 
     public DDId getGeneratedSpanId() {
         return generatedSpanId;
     }
 
+    public void setGeneratedSpanId(DDId generatedSpanId) {
+        this.generatedSpanId = generatedSpanId;
+    }
+
     public boolean isError() {
         return error;
     }
 
-    public List<BuildPipelineNode> getParents(){ return parents; }
+    public BuildPipelineNode getParent() {
+        return parent;
+    }
 
     public List<BuildPipelineNode> getChildren() {
         return children;
     }
 
-    public BuildPipelineNode getChild(final BuildPipelineNodeKey id) {
-        if(children.isEmpty()) {
-            return null;
-        }
-
-        for(final BuildPipelineNode child : children) {
-            if(id.equals(child.getKey())){
-                return child;
-            }
-        }
-
-        return null;
-    }
-
     public NodeType getType() {
         return type;
     }
@@ -307,21 +324,27 @@ public class BuildPipelineNode {
         this.workspace = buildNode.workspace;
         this.nodeName = buildNode.nodeName;
         this.nodeHostname = buildNode.nodeHostname;
-        this.logText = buildNode.logText;
+        this.execution = buildNode.execution;
+        this.dataNodeId = buildNode.dataNodeId;
         this.startTime = buildNode.startTime;
-        this.startTimeMicros = buildNode.startTimeMicros;
         this.endTime = buildNode.endTime;
-        this.endTimeMicros = buildNode.endTimeMicros;
         this.result = buildNode.result;
         this.error = buildNode.error;
-        this.errorObj = buildNode.errorObj;
-        this.generatedSpanId = buildNode.generatedSpanId;
-        this.parents.addAll(buildNode.parents);
+        // The spanID may have already been used as parent of the spans sent while the block was running.
+        if(this.generatedSpanId == null) {
+            this.generatedSpanId = buildNode.generatedSpanId;
+        }
+        if(this.parent == null) {
+            this.parent = buildNode.parent;
+        }
     }
 
     public void addChild(final BuildPipelineNode child) {
+        if(children.isEmpty()) {
+            children = new ArrayList<>(2);
+        }
         children.add(child);
-        child.parents.add(this);
+        child.parent = this;
     }
 
     @Override
@@ -329,12 +352,13 @@ public class BuildPipelineNode {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BuildPipelineNode that = (BuildPipelineNode) o;
-        return Objects.equals(key, that.key);
+        return Objects.equals(id, that.id) &&
+                Objects.equals(name, that.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key);
+        return Objects.hash(id, name);
     }
 
 
@@ -351,6 +375,16 @@ public class BuildPipelineNode {
         return -1L;
     }
 
+    /**
+     * Returns the arguments of a certain {@code FlowNode}. Nodes without arguments share the same empty map.
+     * @param flowNode
+     * @return arguments of the flowNode.
+     */
+    private static Map<String, Object> getArgs(FlowNode flowNode) {
+        final Map<String, Object> args = ArgumentsAction.getFilteredArguments(flowNode);
+        return (args == null || args.isEmpty()) ? Collections.<String, Object>emptyMap() : args;
+    }
+
     /**
      * Returns the accessor to the logs of a certain {@code FlowNode}, if it has logs.
      * @param flowNode
@@ -375,8 +409,14 @@ public class BuildPipelineNode {
         return (errorAction != null) ? errorAction.getError() : null;
     }
 
+    /**
+     * Returns the StepData of the last step of the same kind as the node, which is replaced
+     * when the next step of this kind starts.
+     * @param node the node of a step
+     * @return the StepData of the step, or null if it is not available.
+     */
     @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
-    private StepData getStepData(final FlowNode node) {
+    static StepData getStepData(final FlowNode node) {
         final Run<?, ?> run = getRun(node);
         if(run == null) {
             logger.fine("Unable to get StepData from node '"+node.getDisplayName()+"'. Run is null");
@@ -392,7 +432,7 @@ public class BuildPipelineNode {
         return stepDataAction.get(((StepNode) node).getDescriptor());
     }
 
-    private Run<?, ?> getRun(final FlowNode node) {
+    private static Run<?, ?> getRun(final FlowNode node) {
         if(node == null ||  node.getExecution() == null || node.getExecution().getOwner() == null) {
             return null;
         }
@@ -404,39 +444,6 @@ public class BuildPipelineNode {
         }
     }
 
-    public static class BuildPipelineNodeKey {
-        private final String id;
-        private final String name;
-
-        public BuildPipelineNodeKey(final String stageId, final String stageName) {
-            this.id = stageId;
-            this.name = stageName;
-        }
-
-        public String getId() {
-            return id;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            BuildPipelineNodeKey that = (BuildPipelineNodeKey) o;
-            return Objects.equals(id, that.id) &&
-                    Objects.equals(name, that.name);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(id, name);
-        }
-    }
-
-
     static class BuildPipelineNodeComparator implements Comparator<BuildPipelineNode>, Serializable {
 
         @Override
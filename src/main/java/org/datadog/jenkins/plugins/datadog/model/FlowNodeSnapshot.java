@@ -0,0 +1,156 @@
+package org.datadog.jenkins.plugins.datadog.model;
+
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.FlowStartNode;
+import org.jenkinsci.plugins.workflow.graph.StepNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * The data of a flow node needed to build its span, captured when the node is added to the graph.
+ * The flow nodes of a running pipeline are updated by its CPS VM thread, so only the ids of the node
+ * and of its enclosing blocks are captured there, with the StepData of the step, which is replaced
+ * when the next step of the same kind starts. The flow nodes are resolved and their
+ * {@code BuildPipelineNode}s are built by the thread that builds the traces.
+ */
+public final class FlowNodeSnapshot {
+
+    private static final Logger logger = Logger.getLogger(FlowNodeSnapshot.class.getName());
+
+    private final String id;
+    private final boolean flowStart;
+    private final boolean flowEnd;
+    private final boolean blockEnd;
+    private final boolean stepAtom;
+    private final FlowExecution execution;
+    private final StepData stepData;
+    // Ids of the enclosing blocks of the node, from the innermost to the outermost one.
+    private final List<String> enclosingBlockIds;
+    // Steps that finished when the node was added to the graph.
+    private final List<FlowNodeSnapshot> completedSteps;
+    // Built on first use, by the thread that builds the traces.
+    private BuildPipelineNode pipelineNode;
+    private boolean resolved;
+
+    private FlowNodeSnapshot(final FlowNode node, final List<FlowNodeSnapshot> completedSteps) {
+        this.id = node.getId();
+        this.flowStart = node instanceof FlowStartNode;
+        this.flowEnd = node instanceof FlowEndNode;
+        this.blockEnd = node instanceof BlockEndNode;
+        this.stepAtom = node instanceof StepAtomNode;
+        this.execution = node.getExecution();
+        this.completedSteps = completedSteps;
+
+        if(!this.blockEnd && !this.stepAtom) {
+            this.stepData = null;
+            this.enclosingBlockIds = Collections.emptyList();
+            return;
+        }
+
+        this.stepData = (node instanceof StepNode) ? BuildPipelineNode.getStepData(node) : null;
+        this.enclosingBlockIds = node.getAllEnclosingIds();
+    }
+
+    /**
+     * @param node the flow node
+     * @return the snapshot of the node.
+     */
+    public static FlowNodeSnapshot of(final FlowNode node) {
+        return new FlowNodeSnapshot(node, Collections.<FlowNodeSnapshot>emptyList());
+    }
+
+    /**
+     * Takes the snapshot of a new head of the graph. A step is complete once the next node
+     * of the graph has been added, so the snapshot also includes the steps that are parents of the node.
+     * @param node the new head of the graph
+     * @return the snapshot of the node.
+     */
+    public static FlowNodeSnapshot ofNewHead(final FlowNode node) {
+        final List<FlowNodeSnapshot> completedSteps = new ArrayList<>();
+        for(final FlowNode parent : node.getParents()) {
+            if(parent instanceof StepAtomNode) {
+                completedSteps.add(of(parent));
+            }
+        }
+        return new FlowNodeSnapshot(node, Collections.unmodifiableList(completedSteps));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isFlowStart() {
+        return flowStart;
+    }
+
+    public boolean isFlowEnd() {
+        return flowEnd;
+    }
+
+    public boolean isBlockEnd() {
+        return blockEnd;
+    }
+
+    public FlowExecution getExecution() {
+        return execution;
+    }
+
+    /**
+     * Builds the BuildPipelineNode of the node the first time it is called.
+     * It must not be called from the CPS VM thread.
+     * @return the BuildPipelineNode of the node, or null if the node does not have a span.
+     */
+    public BuildPipelineNode getPipelineNode() {
+        if(!resolved) {
+            resolved = true;
+            final FlowNode node = (blockEnd || stepAtom) ? getNode(id) : null;
+            if(node instanceof BlockEndNode) {
+                pipelineNode = new BuildPipelineNode((BlockEndNode) node, stepData);
+            } else if(node instanceof StepAtomNode) {
+                pipelineNode = new BuildPipelineNode((StepAtomNode) node, stepData);
+            }
+        }
+        return pipelineNode;
+    }
+
+    public List<String> getEnclosingBlockIds() {
+        return enclosingBlockIds;
+    }
+
+    /**
+     * Builds the BuildPipelineNode of an enclosing block whose end has not been seen yet.
+     * It must not be called from the CPS VM thread.
+     * @param blockId the id of the enclosing block
+     * @return the BuildPipelineNode of the block, or null if it cannot be found.
+     */
+    public BuildPipelineNode getEnclosingBlock(final String blockId) {
+        final FlowNode node = getNode(blockId);
+        return (node instanceof BlockStartNode) ? new BuildPipelineNode((BlockStartNode) node) : null;
+    }
+
+    public List<FlowNodeSnapshot> getCompletedSteps() {
+        return completedSteps;
+    }
+
+    private FlowNode getNode(final String nodeId) {
+        if(execution == null) {
+            return null;
+        }
+
+        try {
+            return execution.getNode(nodeId);
+        } catch (IOException e) {
+            logger.fine("Unable to find the flow node " + nodeId + ": " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.datadog.jenkins.plugins.datadog.model;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Keeps, per job, the information needed to compute the reliability metrics
+ * (MTTR, MTBF and cycle time) without walking the build history.
+ * The index is updated incrementally every time a build completes and it is
+ * persisted in the root directory of the job.
+ */
+public class JobReliabilityIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static transient final Logger logger = Logger.getLogger(JobReliabilityIndex.class.getName());
+
+    private static final String INDEX_FILE_NAME = "datadog-reliability-index.xml";
+    private static final long NONE = -1L;
+
+    private static final Map<Job<?, ?>, JobReliabilityIndex> indexByJob = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Number of the last completed build recorded in the index.
+    private int lastCompletedNumber = -1;
+    // End time of the last successful build.
+    private long lastSuccessEndTime = NONE;
+    // Start time of the last build that did not fail.
+    private long lastNotFailedStartTime = NONE;
+    // Start time of the first failed build of the current red streak.
+    private long failureStreakStartTime = NONE;
+
+    private transient XmlFile file;
+
+    /**
+     * Returns the reliability index of a certain job, loading it from disk if needed.
+     * @param job the Jenkins job
+     * @return the reliability index of the job.
+     */
+    public static JobReliabilityIndex get(final Job<?, ?> job) {
+        synchronized (indexByJob) {
+            JobReliabilityIndex index = indexByJob.get(job);
+            if (index == null) {
+                index = load(job);
+                indexByJob.put(job, index);
+            }
+            return index;
+        }
+    }
+
+    private static JobReliabilityIndex load(final Job<?, ?> job) {
+        final XmlFile file = getIndexFile(job);
+        JobReliabilityIndex index = null;
+        if (file != null && file.exists()) {
+            try {
+                index = (JobReliabilityIndex) file.read();
+            } catch (IOException | ClassCastException e) {
+                logger.fine("Unable to read the reliability index of " + job.getFullName() + ". Error: " + e);
+            }
+        }
+
+        if (index == null) {
+            index = new JobReliabilityIndex();
+        }
+        index.file = file;
+        return index;
+    }
+
+    private static XmlFile getIndexFile(final Job<?, ?> job) {
+        try {
+            final File rootDir = job.getRootDir();
+            if (rootDir == null) {
+                return null;
+            }
+            return new XmlFile(new File(rootDir, INDEX_FILE_NAME));
+        } catch (Exception e) {
+            // It can only throw an exception when running tests
+            return null;
+        }
+    }
+
+    /**
+     * Computes the reliability metrics of a completed build and records the build in the index.
+     * If the index has never seen a build of this job, it is seeded once from the build history.
+     * @param run the completed build
+     * @return the reliability metrics of the build.
+     */
+    public synchronized ReliabilityMetrics record(final Run<?, ?> run) {
+        if (lastCompletedNumber == -1) {
+            seed(run);
+        }
+
+        if (run.getNumber() <= lastCompletedNumber) {
+            // Builds of the same job completed out of order.
+            // Fall back to the build history for this one and keep the index untouched.
+            return fromHistory(run);
+        }
+
+        final long startTime = DatadogUtilities.getRunStartTimeInMillis(run);
+        final long endTime = startTime + run.getDuration();
+        final Result result = run.getResult();
+
+        long mttr = 0;
+        long mtbf = 0;
+        long cycleTime = 0;
+        if (result == Result.SUCCESS) {
+            if (failureStreakStartTime != NONE) {
+                mttr = startTime - failureStreakStartTime;
+            }
+            if (lastSuccessEndTime != NONE) {
+                cycleTime = endTime - lastSuccessEndTime;
+            }
+        } else if (lastNotFailedStartTime != NONE) {
+            mtbf = startTime - lastNotFailedStartTime;
+        }
+
+        if (result == Result.SUCCESS) {
+            lastSuccessEndTime = endTime;
+            failureStreakStartTime = NONE;
+        } else if (result != Result.NOT_BUILT && failureStreakStartTime == NONE) {
+            failureStreakStartTime = startTime;
+        }
+
+        if (result != Result.FAILURE) {
+            lastNotFailedStartTime = startTime;
+        }
+
+        lastCompletedNumber = run.getNumber();
+        save();
+        return new ReliabilityMetrics(mttr, mtbf, cycleTime);
+    }
+
+    /**
+     * Initializes the index from the build history of the job.
+     * This is only done once per job, the first time a build completes
+     * after the plugin was upgraded or the index file was removed.
+     */
+    private void seed(final Run<?, ?> run) {
+        final Run<?, ?> previousSuccessfulBuild = run.getPreviousSuccessfulBuild();
+        if (previousSuccessfulBuild != null) {
+            lastSuccessEndTime = DatadogUtilities.getRunStartTimeInMillis(previousSuccessfulBuild) + previousSuccessfulBuild.getDuration();
+        }
+
+        final Run<?, ?> previousNotFailedBuild = run.getPreviousNotFailedBuild();
+        if (previousNotFailedBuild != null) {
+            lastNotFailedStartTime = DatadogUtilities.getRunStartTimeInMillis(previousNotFailedBuild);
+        }
+
+        final Run<?, ?> firstFailedRun = getFirstFailedRun(run);
+        if (firstFailedRun != null) {
+            failureStreakStartTime = DatadogUtilities.getRunStartTimeInMillis(firstFailedRun);
+        }
+
+        lastCompletedNumber = run.getNumber() - 1;
+    }
+
+    private static ReliabilityMetrics fromHistory(final Run<?, ?> run) {
+        final long startTime = DatadogUtilities.getRunStartTimeInMillis(run);
+        long mttr = 0;
+        long mtbf = 0;
+        long cycleTime = 0;
+        if (run.getResult() == Result.SUCCESS) {
+            final Run<?, ?> firstFailedRun = getFirstFailedRun(run);
+            if (firstFailedRun != null) {
+                mttr = startTime - DatadogUtilities.getRunStartTimeInMillis(firstFailedRun);
+            }
+            final Run<?, ?> previousSuccessfulBuild = run.getPreviousSuccessfulBuild();
+            if (previousSuccessfulBuild != null) {
+                cycleTime = (startTime + run.getDuration()) -
+                        (DatadogUtilities.getRunStartTimeInMillis(previousSuccessfulBuild) + previousSuccessfulBuild.getDuration());
+            }
+        } else {
+            final Run<?, ?> lastGreenRun = run.getPreviousNotFailedBuild();
+            if (lastGreenRun != null) {
+                mtbf = startTime - DatadogUtilities.getRunStartTimeInMillis(lastGreenRun);
+            }
+        }
+        return new ReliabilityMetrics(mttr, mtbf, cycleTime);
+    }
+
+    private static Run<?, ?> getFirstFailedRun(final Run<?, ?> run) {
+        Run<?, ?> firstFailedRun = null;
+        Run<?, ?> previous = run.getPreviousBuiltBuild();
+        while (isFailedBuild(previous)) {
+            firstFailedRun = previous;
+            previous = previous.getPreviousBuiltBuild();
+        }
+        return firstFailedRun;
+    }
+
+    private static boolean isFailedBuild(final Run<?, ?> run) {
+        return run != null && run.getResult() != Result.SUCCESS;
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            logger.fine("Unable to persist the reliability index in " + file + ". Error: " + e);
+        }
+    }
+
+    public int getLastCompletedNumber() {
+        return lastCompletedNumber;
+    }
+
+    public long getLastSuccessEndTime() {
+        return lastSuccessEndTime;
+    }
+
+    public long getLastNotFailedStartTime() {
+        return lastNotFailedStartTime;
+    }
+
+    public long getFailureStreakStartTime() {
+        return failureStreakStartTime;
+    }
+
+    /**
+     * Reliability metrics of a certain build, in milliseconds.
+     * A value of 0 means that the metric is not applicable.
+     */
+    public static class ReliabilityMetrics {
+        private final long meanTimeToRecovery;
+        private final long meanTimeBetweenFailure;
+        private final long cycleTime;
+
+        public ReliabilityMetrics(final long meanTimeToRecovery, final long meanTimeBetweenFailure, final long cycleTime) {
+            this.meanTimeToRecovery = meanTimeToRecovery;
+            this.meanTimeBetweenFailure = meanTimeBetweenFailure;
+            this.cycleTime = cycleTime;
+        }
+
+        public long getMeanTimeToRecovery() {
+            return meanTimeToRecovery;
+        }
+
+        public long getMeanTimeBetweenFailure() {
+            return meanTimeBetweenFailure;
+        }
+
+        public long getCycleTime() {
+            return cycleTime;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.datadog.jenkins.plugins.datadog.model;
+
+import hudson.model.InvisibleAction;
+
+import java.io.Serializable;
+
+/**
+ * Keeps track of the time a pipeline spent paused (e.g. waiting on an input step).
+ * The value is accumulated while the pipeline runs, so it is available when the
+ * build completes without having to scan the whole flow graph.
+ */
+public class PauseDurationAction extends InvisibleAction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long pauseDurationMillis;
+
+    public PauseDurationAction() {
+        this(0L);
+    }
+
+    public PauseDurationAction(final long pauseDurationMillis) {
+        this.pauseDurationMillis = pauseDurationMillis;
+    }
+
+    public synchronized void addPauseDuration(final long durationMillis) {
+        this.pauseDurationMillis += durationMillis;
+    }
+
+    public synchronized long getPauseDurationMillis() {
+        return pauseDurationMillis;
+    }
+}
@@ -7,10 +7,14 @@ import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class StepData implements Serializable {
 
@@ -18,7 +22,16 @@ public class StepData implements Serializable {
 
     private static transient final Logger logger = Logger.getLogger(StepData.class.getName());
 
-    private final Map<String, String> envVars;
+    // Environment variables read by the traces, and the ones the git client needs to run git
+    // in the node of the step to read the commit info. The rest of them are not kept.
+    private static final List<String> TRACED_ENV_VARS = Arrays.asList("BUILD_URL", "GIT_BRANCH", "GIT_COMMIT", "GIT_URL", "USER",
+            "PATH", "HOME", "GIT_SSH", "GIT_SSH_COMMAND", "GIT_SSH_VARIANT", "GIT_ASKPASS", "SSH_AUTH_SOCK");
+
+    // Once compacted, only the environment variables that are different from the ones of the run are kept.
+    private Map<String, String> envVars;
+    private Set<String> removedEnvVars;
+    private transient Map<String, String> runEnvVars;
+    private transient Map<String, String> resolvedEnvVars;
     private final String nodeName;
     private final String nodeHostname;
     private final String workspace;
@@ -30,8 +43,58 @@ public class StepData implements Serializable {
         this.workspace = getNodeWorkspace(stepContext);
     }
 
-    public Map<String, String> getEnvVars() {
-        return envVars;
+    public synchronized Map<String, String> getEnvVars() {
+        if(runEnvVars == null) {
+            return envVars;
+        }
+
+        if(resolvedEnvVars == null) {
+            final Map<String, String> resolved = new HashMap<>(runEnvVars);
+            if(removedEnvVars != null) {
+                resolved.keySet().removeAll(removedEnvVars);
+            }
+            resolved.putAll(envVars);
+            resolvedEnvVars = Collections.unmodifiableMap(resolved);
+        }
+        return resolvedEnvVars;
+    }
+
+    /**
+     * Keeps only the environment variables that are different from the environment variables of the run.
+     * @param runEnvVars the environment variables of the run
+     */
+    public synchronized void compact(final Map<String, String> runEnvVars) {
+        final Map<String, String> stepEnvVars = filterTracedEnvVars(getEnvVars());
+
+        final Map<String, String> overrides = new HashMap<>();
+        for(final Map.Entry<String, String> entry : stepEnvVars.entrySet()) {
+            if(!entry.getValue().equals(runEnvVars.get(entry.getKey()))) {
+                overrides.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Set<String> removed = null;
+        for(final String key : runEnvVars.keySet()) {
+            if(!stepEnvVars.containsKey(key)) {
+                if(removed == null) {
+                    removed = new HashSet<>();
+                }
+                removed.add(key);
+            }
+        }
+
+        this.envVars = overrides.isEmpty() ? Collections.<String, String>emptyMap() : overrides;
+        this.removedEnvVars = removed;
+        setRunEnvVars(runEnvVars);
+    }
+
+    /**
+     * Sets the environment variables of the run, once the step data has already been compacted.
+     * @param runEnvVars the environment variables of the run
+     */
+    public synchronized void setRunEnvVars(final Map<String, String> runEnvVars) {
+        this.runEnvVars = runEnvVars;
+        this.resolvedEnvVars = null;
     }
 
     public String getNodeName() {
@@ -121,6 +184,21 @@ public class StepData implements Serializable {
             return Collections.emptyMap();
         }
 
-        return envVarsObj.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return filterTracedEnvVars(envVarsObj);
+    }
+
+    private static Map<String, String> filterTracedEnvVars(final Map<String, String> envVars) {
+        if(envVars == null || envVars.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> tracedEnvVars = new HashMap<>();
+        for(final String key : TRACED_ENV_VARS) {
+            final String value = envVars.get(key);
+            if(value != null) {
+                tracedEnvVars.put(key, value);
+            }
+        }
+        return tracedEnvVars;
     }
 }
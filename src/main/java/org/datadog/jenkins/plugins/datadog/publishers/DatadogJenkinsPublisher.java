@@ -34,9 +34,16 @@ import jenkins.model.Jenkins;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogAgentlessTraceWriter;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogHttpClient;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogSenderLane;
+import org.datadog.jenkins.plugins.datadog.listeners.DatadogEventDispatcher;
+import org.datadog.jenkins.plugins.datadog.logs.DatadogLogShipper;
 import org.datadog.jenkins.plugins.datadog.model.PluginData;
+import org.datadog.jenkins.plugins.datadog.traces.BuildSpanManager;
 import org.datadog.jenkins.plugins.datadog.util.TagsUtil;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -90,6 +97,52 @@ public class DatadogJenkinsPublisher extends PeriodicWork {
             client.gauge("jenkins.plugin.failed", pluginData.getFailed(), hostname, tags);
             client.gauge("jenkins.plugin.inactivate", pluginData.getInactive(), hostname, tags);
             client.gauge("jenkins.plugin.withUpdate", pluginData.getUpdatable(), hostname, tags);
+
+            // Event dispatcher health
+            DatadogEventDispatcher dispatcher = DatadogEventDispatcher.getInstance();
+            client.gauge("jenkins.datadog.dispatcher.queue_size", dispatcher.getQueueSize(), hostname, tags);
+            client.gauge("jenkins.datadog.dispatcher.dropped", dispatcher.getAndResetDroppedTasks(), hostname, tags);
+            client.gauge("jenkins.datadog.dispatcher.inline", dispatcher.getAndResetInlineTasks(), hostname, tags);
+            for (Map.Entry<String, DatadogEventDispatcher.CallbackLatency> entry : dispatcher.getAndResetCallbackLatencies().entrySet()) {
+                Map<String, Set<String>> callbackTags = TagsUtil.merge(new HashMap<String, Set<String>>(), tags);
+                callbackTags = TagsUtil.addTagToTags(callbackTags, "callback", entry.getKey());
+                client.gauge("jenkins.datadog.callback.latency.avg", entry.getValue().getAverageMicros(), hostname, callbackTags);
+                client.gauge("jenkins.datadog.callback.latency.max", entry.getValue().getMaxMicros(), hostname, callbackTags);
+            }
+
+            // Build spans waiting for their build to complete
+            BuildSpanManager buildSpanManager = BuildSpanManager.get();
+            client.gauge("jenkins.datadog.build_spans.live", buildSpanManager.getLiveSpans(), hostname, tags);
+            client.gauge("jenkins.datadog.build_spans.evicted", buildSpanManager.getAndResetEvictedSpans(), hostname, tags);
+
+            // Log shipper health
+            DatadogLogShipper logShipper = DatadogLogShipper.getIfStarted();
+            if (logShipper != null) {
+                client.gauge("jenkins.datadog.log_shipper.queue_size", logShipper.getQueueSize(), hostname, tags);
+                client.gauge("jenkins.datadog.log_shipper.shipped", logShipper.getAndResetShippedLines(), hostname, tags);
+                client.gauge("jenkins.datadog.log_shipper.dropped", logShipper.getAndResetDroppedLines(), hostname, tags);
+            }
+
+            // Sender lanes and agentless trace writer health
+            if (client instanceof DatadogHttpClient) {
+                for (Map.Entry<String, DatadogSenderLane<?>> entry : DatadogHttpClient.getSenderLanes().entrySet()) {
+                    Map<String, Set<String>> laneTags = TagsUtil.merge(new HashMap<String, Set<String>>(), tags);
+                    laneTags = TagsUtil.addTagToTags(laneTags, "lane", entry.getKey());
+                    client.gauge("jenkins.datadog.sender.queue_size", entry.getValue().getQueueSize(), hostname, laneTags);
+                    client.gauge("jenkins.datadog.sender.dropped", entry.getValue().getAndResetDroppedPayloads(), hostname, laneTags);
+                }
+
+                DatadogAgentlessTraceWriter traceWriter = ((DatadogHttpClient) client).getAgentlessTraceWriter();
+                if (traceWriter != null) {
+                    client.gauge("jenkins.datadog.trace_writer.queue_size", traceWriter.getQueueSize(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.enqueued.traces", traceWriter.getAndResetEnqueuedTraces(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.enqueued.spans", traceWriter.getAndResetEnqueuedSpans(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.serialization_time", traceWriter.getAndResetSerializationMillis(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.request_latency.avg", traceWriter.getAndResetAverageRequestMillis(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.sent", traceWriter.getAndResetSentTraces(), hostname, tags);
+                    client.gauge("jenkins.datadog.trace_writer.dropped", traceWriter.getAndResetDroppedTraces(), hostname, tags);
+                }
+            }
         } catch (Exception e) {
             DatadogUtilities.severe(logger, e, null);
         }
@@ -13,6 +13,7 @@ import javax.annotation.Nonnull;
 import jenkins.YesNoMaybe;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.logs.DatadogTaskListenerDecorator;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionMode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.log.TaskListenerDecorator;
 import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
@@ -32,6 +33,8 @@ public class DatadogOptions extends Step implements Serializable {
     private static final long serialVersionUID = 1L;
     private boolean collectLogs = false;
     private List<String> tags = new ArrayList<String>();
+    private Integer logRateLimit = null;
+    private Integer maxRepeatedLogLines = null;
 
     /** Constructor. */
     @DataBoundConstructor
@@ -56,9 +59,33 @@ public class DatadogOptions extends Step implements Serializable {
         this.tags = tags;
     }
 
+    public Integer getLogRateLimit() {
+        return logRateLimit;
+    }
+
+    /**
+     * @param logRateLimit the maximum number of console lines per second sent for the pipeline, 0 for no limit
+     */
+    @DataBoundSetter
+    public void setLogRateLimit(Integer logRateLimit) {
+        this.logRateLimit = logRateLimit;
+    }
+
+    public Integer getMaxRepeatedLogLines() {
+        return maxRepeatedLogLines;
+    }
+
+    /**
+     * @param maxRepeatedLogLines the number of similar console lines sent before collapsing them, 0 to send every line
+     */
+    @DataBoundSetter
+    public void setMaxRepeatedLogLines(Integer maxRepeatedLogLines) {
+        this.maxRepeatedLogLines = maxRepeatedLogLines;
+    }
+
     @Override
     public StepExecution start(StepContext context) {
-        DatadogPipelineAction action = new DatadogPipelineAction(this.collectLogs, this.tags);
+        DatadogPipelineAction action = new DatadogPipelineAction(this.collectLogs, this.tags, this.logRateLimit, this.maxRepeatedLogLines);
         return new ExecutionImpl(context, action);
     }
 
@@ -94,7 +121,8 @@ public class DatadogOptions extends Step implements Serializable {
             if (this.action.isCollectLogs()) {
                 if (DatadogUtilities.getDatadogGlobalDescriptor().isCollectBuildLogs()) {
                     taskLogger.println("[Datadog] Logging is already enabled globally, you do not need to specify 'collectLogs: true'");
-                } else {
+                } else if (DatadogUtilities.getDatadogGlobalDescriptor().getLogCollectionMode() != LogCollectionMode.POST_BUILD) {
+                    // In POST_BUILD mode, the log of the run is uploaded once the run is finalized (see DatadogLogUploader).
                     invoker.withContext(TaskListenerDecorator.merge(
                             context.get(TaskListenerDecorator.class), new DatadogTaskListenerDecorator(workflowRun))
                     );
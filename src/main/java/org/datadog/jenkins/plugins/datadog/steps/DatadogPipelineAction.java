@@ -10,10 +10,18 @@ public class DatadogPipelineAction implements Action, Serializable {
 
     private boolean collectLogs;
     private List<String> tags;
+    private Integer logRateLimit;
+    private Integer maxRepeatedLogLines;
 
     public DatadogPipelineAction(boolean collectLogs, List<String> tags) {
+        this(collectLogs, tags, null, null);
+    }
+
+    public DatadogPipelineAction(boolean collectLogs, List<String> tags, Integer logRateLimit, Integer maxRepeatedLogLines) {
         this.collectLogs = collectLogs;
         this.tags = tags;
+        this.logRateLimit = logRateLimit;
+        this.maxRepeatedLogLines = maxRepeatedLogLines;
     }
 
     public List<String> getTags() {
@@ -24,6 +32,20 @@ public class DatadogPipelineAction implements Action, Serializable {
         return collectLogs;
     }
 
+    /**
+     * @return the maximum number of console lines per second of the pipeline, or null to use the global configuration.
+     */
+    public Integer getLogRateLimit() {
+        return logRateLimit;
+    }
+
+    /**
+     * @return the number of similar console lines sent before collapsing them, or null to use the global configuration.
+     */
+    public Integer getMaxRepeatedLogLines() {
+        return maxRepeatedLogLines;
+    }
+
     @CheckForNull
     @Override
     public String getIconFileName() {
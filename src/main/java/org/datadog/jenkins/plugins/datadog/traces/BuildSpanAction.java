@@ -9,16 +9,20 @@ import java.util.Map;
 
 /**
  * Keeps build span propagation
+ * Only the fields of the BuildData used by the traces are kept, as this action is stored in the run.
+ * The action is removed from the run once the build trace has been sent.
  */
 public class BuildSpanAction extends InvisibleAction implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private final BuildData buildData;
+    private BuildData buildData;
     private Map<String, String> buildSpanPropatation;
+    // Number of pipeline spans that have not been sent (see SpanFilter).
+    private int droppedSpans;
 
     public BuildSpanAction(final BuildData buildData){
-        this.buildData = buildData;
+        this.buildData = buildData.copyForTraces();
         this.buildSpanPropatation = new HashMap<>();
     }
 
@@ -29,4 +33,23 @@ public class BuildSpanAction extends InvisibleAction implements Serializable {
     public BuildData getBuildData() {
         return buildData;
     }
+
+    public synchronized int getDroppedSpans() {
+        return droppedSpans;
+    }
+
+    public synchronized void addDroppedSpans(final int spans) {
+        this.droppedSpans += spans;
+    }
+
+    protected Object readResolve() {
+        // Runs created by previous versions of the plugin stored the whole BuildData.
+        if(buildData != null) {
+            buildData = buildData.copyForTraces();
+        }
+        if(buildSpanPropatation == null) {
+            buildSpanPropatation = new HashMap<>();
+        }
+        return this;
+    }
 }
@@ -1,32 +1,167 @@
 package org.datadog.jenkins.plugins.datadog.traces;
 
+import hudson.model.Run;
 import io.opentracing.Span;
 
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 /**
  * Used to propagate the build Span between onStart() and onComplete() methods.
  * This mechanism is needed because the Span object cannot be serialized in a Jenkins Action.
+ *
+ * Spans are registered by the externalizable id of the run, so they can be looked up without building
+ * the BUILD_TAG of the run, and the run itself is only held weakly.
+ * Runs that never reach the onComplete() method (e.g. the Jenkins controller was restarted while building)
+ * would keep their span forever, so the entries are evicted once they have not been used for a while:
+ * after the TTL if the run is not building anymore, after the building TTL otherwise.
+ * The number of entries is also bounded, evicting the oldest ones first.
  */
 public class BuildSpanManager {
 
-    private static final BuildSpanManager INSTANCE = new BuildSpanManager();
-    private final Map<String, Span> spanByBuildTag = new HashMap<>();
+    private static final Logger logger = Logger.getLogger(BuildSpanManager.class.getName());
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DEFAULT_BUILDING_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final BuildSpanManager INSTANCE = new BuildSpanManager(DEFAULT_TTL_MILLIS, DEFAULT_BUILDING_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+
+    private static final Comparator<Map.Entry<String, Entry>> OLDEST_FIRST = new Comparator<Map.Entry<String, Entry>>() {
+        @Override
+        public int compare(Map.Entry<String, Entry> o1, Map.Entry<String, Entry> o2) {
+            return Long.compare(o1.getValue().createdAt, o2.getValue().createdAt);
+        }
+    };
+
+    private final Map<String, Entry> spanByRunId = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long buildingTtlMillis;
+    private final int maxEntries;
+    private final AtomicLong nextEviction = new AtomicLong();
+    private final AtomicLong evictedSpans = new AtomicLong();
+
+    BuildSpanManager(final long ttlMillis, final long buildingTtlMillis, final int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.buildingTtlMillis = buildingTtlMillis;
+        this.maxEntries = maxEntries;
+    }
 
     public static BuildSpanManager get() {
         return INSTANCE;
     }
 
-    public Span put(final String tag, final Span span) {
-        return spanByBuildTag.put(tag, span);
+    public Span put(final Run<?, ?> run, final Span span) {
+        final String runId = run.getExternalizableId();
+        if(runId == null) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Entry previous = spanByRunId.put(runId, new Entry(run, span, now));
+        if(spanByRunId.size() > maxEntries || now >= nextEviction.get()) {
+            evict(now);
+        }
+        return previous != null ? previous.span : null;
+    }
+
+    public Span get(final Run<?, ?> run) {
+        final String runId = run.getExternalizableId();
+        final Entry entry = runId != null ? spanByRunId.get(runId) : null;
+        if(entry == null) {
+            return null;
+        }
+        entry.lastUpdate = System.currentTimeMillis();
+        return entry.span;
+    }
+
+    public Span remove(final Run<?, ?> run) {
+        final String runId = run.getExternalizableId();
+        final Entry entry = runId != null ? spanByRunId.remove(runId) : null;
+        return entry != null ? entry.span : null;
+    }
+
+    /**
+     * @return the number of build spans currently registered.
+     */
+    public int getLiveSpans() {
+        return spanByRunId.size();
+    }
+
+    /**
+     * @return the number of build spans evicted since the last call.
+     */
+    public long getAndResetEvictedSpans() {
+        return evictedSpans.getAndSet(0);
     }
 
-    public Span get(final String tag) {
-        return spanByBuildTag.get(tag);
+    /**
+     * Evicts the spans which have not been used for more than the TTL if their run is not building anymore,
+     * or for more than the building TTL otherwise, and then the oldest spans if there are still too many of them.
+     * Only one thread evicts at a time, the rest of them return immediately.
+     */
+    void evict(final long now) {
+        final long scheduled = nextEviction.get();
+        if(!nextEviction.compareAndSet(scheduled, now + EVICTION_INTERVAL_MILLIS) && spanByRunId.size() <= maxEntries) {
+            return;
+        }
+
+        long evicted = 0;
+        for(final Map.Entry<String, Entry> entry : spanByRunId.entrySet()) {
+            if(entry.getValue().isExpired(now, ttlMillis, buildingTtlMillis)
+                    && spanByRunId.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+
+        final int excess = spanByRunId.size() - maxEntries;
+        if(excess > 0) {
+            final List<Map.Entry<String, Entry>> entries = new ArrayList<>(spanByRunId.entrySet());
+            Collections.sort(entries, OLDEST_FIRST);
+            for(int i = 0; i < excess && i < entries.size(); i++) {
+                final Map.Entry<String, Entry> entry = entries.get(i);
+                if(spanByRunId.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+        }
+
+        if(evicted > 0) {
+            evictedSpans.addAndGet(evicted);
+            logger.fine("Evicted " + evicted + " build spans of runs that were not completed.");
+        }
     }
 
-    public Span remove(final String tag){
-        return spanByBuildTag.remove(tag);
+    private static final class Entry {
+        private final WeakReference<Run<?, ?>> run;
+        private final Span span;
+        private final long createdAt;
+        private volatile long lastUpdate;
+
+        private Entry(final Run<?, ?> run, final Span span, final long createdAt) {
+            this.run = new WeakReference<Run<?, ?>>(run);
+            this.span = span;
+            this.createdAt = createdAt;
+            this.lastUpdate = createdAt;
+        }
+
+        private boolean isExpired(final long now, final long ttlMillis, final long buildingTtlMillis) {
+            final long idleMillis = now - lastUpdate;
+            if(idleMillis > buildingTtlMillis) {
+                return true;
+            }
+            // The run is no longer referenced if it was reloaded, e.g. after a restart of the controller.
+            final Run<?, ?> entryRun = run.get();
+            return idleMillis > ttlMillis && (entryRun == null || !entryRun.isBuilding());
+        }
     }
 }
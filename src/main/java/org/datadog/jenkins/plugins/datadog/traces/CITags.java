@@ -39,6 +39,7 @@ public class CITags {
     public static final String JENKINS_TAG = "jenkins.tag";
     public static final String JENKINS_EXECUTOR_NUMBER = "jenkins.executor.number";
     public static final String JENKINS_RESULT = "jenkins.result";
+    public static final String JENKINS_DROPPED_SPANS = "jenkins.dropped_spans";
 
     public static final String ERROR = "error";
 }
@@ -13,12 +13,14 @@ import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.propagation.Format;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.listeners.DatadogSaveableListener;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
 import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
 import org.datadog.jenkins.plugins.datadog.model.StageBreakdownAction;
 import org.datadog.jenkins.plugins.datadog.model.StageData;
 import org.datadog.jenkins.plugins.datadog.model.TimeInQueueAction;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -58,7 +60,7 @@ public class DatadogTraceBuildLogic {
                 .withStartTimestamp(startTimeMicros)
                 .start();
 
-        getBuildSpanManager().put(buildData.getBuildTag(""), buildSpan);
+        getBuildSpanManager().put(run, buildSpan);
 
         // The buildData object is stored in the BuildSpanAction to be updated
         // by the information that will be calculated when the pipeline listeners
@@ -82,8 +84,35 @@ public class DatadogTraceBuildLogic {
             return;
         }
 
+        try {
+            sendBuildTrace(buildData, run);
+        } finally {
+            removeTraceActions(run);
+        }
+    }
+
+    /**
+     * Removes the actions used to build the traces of the run, as they are not needed once
+     * the build trace has been sent, so they are not stored in the build.xml file of the run.
+     */
+    private void removeTraceActions(final Run<?,?> run) {
+        boolean removed = run.removeActions(BuildSpanAction.class);
+        removed |= run.removeActions(StepDataAction.class);
+        removed |= run.removeActions(StageBreakdownAction.class);
+        if(!removed) {
+            return;
+        }
+
+        try {
+            DatadogSaveableListener.saveInternalChange(run);
+        } catch (IOException e) {
+            logger.fine("Unable to save the run after removing the trace actions. Error: " + e);
+        }
+    }
+
+    private void sendBuildTrace(final BuildData buildData, final Run<?,?> run) {
         // APM Traces
-        final Span buildSpan = getBuildSpanManager().remove(buildData.getBuildTag(""));
+        final Span buildSpan = getBuildSpanManager().remove(run);
         if(buildSpan == null) {
             return;
         }
@@ -194,6 +223,9 @@ public class DatadogTraceBuildLogic {
         // Jenkins specific
         buildSpan.setTag(CITags.JENKINS_TAG, buildData.getBuildTag(""));
         buildSpan.setTag(CITags.JENKINS_EXECUTOR_NUMBER, buildData.getExecutorNumber(""));
+        if(buildSpanAction.getDroppedSpans() > 0) {
+            buildSpan.setTag(CITags.JENKINS_DROPPED_SPANS, buildSpanAction.getDroppedSpans());
+        }
 
         final String jenkinsResult = buildData.getResult("");
         final String pipelineResult = getNormalizedResultForTraces(Result.fromString(jenkinsResult));
@@ -17,27 +17,35 @@ import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.propagation.Format;
 import org.apache.commons.lang.StringUtils;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
 import org.datadog.jenkins.plugins.datadog.model.BuildPipeline;
 import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
 import org.datadog.jenkins.plugins.datadog.model.GitCommitAction;
 import org.datadog.jenkins.plugins.datadog.model.GitRepositoryAction;
 import org.datadog.jenkins.plugins.datadog.model.StageBreakdownAction;
 import org.datadog.jenkins.plugins.datadog.model.StageData;
 import org.datadog.jenkins.plugins.datadog.util.git.GitUtils;
-import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
-import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
-import org.jenkinsci.plugins.workflow.graph.FlowEndNode;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -47,40 +55,73 @@ public class DatadogTracePipelineLogic {
 
     private static final String CI_PROVIDER = "jenkins";
     private static final String HOSTNAME_NONE = "none";
+    // Key used by the Java Tracer to propagate the parent spanID in the TEXT_MAP format.
+    private static final String PARENT_ID_PROPAGATION_KEY = "x-datadog-parent-id";
     private static final Logger logger = Logger.getLogger(DatadogTracePipelineLogic.class.getName());
 
-    private static Field ddSpanField;
-    private static Field ddSpanIdField;
+    // As there is no public API to set the spanID manually,
+    // we'll use method handles over the private fields to do it.
+    // They are resolved once, so setting the spanID does not need reflective access on every span.
+    // See substituteSpanId(...) and sendTrace(...) methods.
+    private static final MethodHandle DD_SPAN_GETTER = findDDSpanGetter();
+    private static final MethodHandle SPAN_ID_SETTER = findSpanIdSetter();
 
-    static {
-        // As there is no public API to set the spanID manually,
-        // we'll use reflection to do it.
-        // See substituteSpanId(...) and sendTrace(...) methods.
+    private static MethodHandle findDDSpanGetter() {
         try {
-            ddSpanField = Class.forName("datadog.opentracing.OTSpan", true, DatadogTracePipelineLogic.class.getClassLoader()).getDeclaredField("delegate");
+            final Field ddSpanField = Class.forName("datadog.opentracing.OTSpan", true, DatadogTracePipelineLogic.class.getClassLoader()).getDeclaredField("delegate");
             ddSpanField.setAccessible(true);
-        } catch (Exception e){
-            ddSpanField = null;
+            return MethodHandles.lookup().unreflectGetter(ddSpanField).asType(MethodType.methodType(DDSpan.class, Span.class));
+        } catch (Exception e) {
             logger.fine("Unable to find the DDSpan.delegate field. Error: " + e.getMessage());
+            return null;
         }
+    }
 
+    private static MethodHandle findSpanIdSetter() {
+        final MethodType setterType = MethodType.methodType(void.class, DDSpanContext.class, DDId.class);
+        final Field ddSpanIdField;
         try {
             ddSpanIdField = DDSpanContext.class.getDeclaredField("spanId");
             ddSpanIdField.setAccessible(true);
         } catch (Exception e) {
-            ddSpanIdField = null;
             logger.fine("Unable to find the DDSpanContext.spanId field. Error: " + e.getMessage());
+            return null;
+        }
+
+        try {
+            return MethodHandles.lookup().unreflectSetter(ddSpanIdField).asType(setterType);
+        } catch (IllegalAccessException e) {
+            // Java 8 does not allow to write final fields through a MethodHandle,
+            // so fall back to the reflective setter of the field.
         }
 
+        try {
+            return MethodHandles.lookup()
+                    .findVirtual(Field.class, "set", MethodType.methodType(void.class, Object.class, Object.class))
+                    .bindTo(ddSpanIdField)
+                    .asType(setterType);
+        } catch (Exception e) {
+            logger.fine("Unable to access the DDSpanContext.spanId field. Error: " + e.getMessage());
+            return null;
+        }
     }
 
+    // Pipeline trees of the running builds, updated as the flow nodes arrive.
+    private static final Map<Run<?, ?>, BuildPipeline> incrementalPipelines = Collections.synchronizedMap(new WeakHashMap<>());
+
     private final Tracer tracer;
 
     public DatadogTracePipelineLogic(Tracer tracer) {
         this.tracer = tracer;
     }
 
-    public void execute(Run run, FlowNode flowNode) {
+    /**
+     * Updates the pipeline tree of the run with a new head of its flow graph, and sends the spans
+     * that are complete.
+     * @param run the run
+     * @param node the snapshot of the flow node, taken when it was added to the graph
+     */
+    public void execute(Run run, FlowNodeSnapshot node) {
         if (!DatadogUtilities.getDatadogGlobalDescriptor().isCollectBuildTraces()) {
             return;
         }
@@ -96,19 +137,122 @@ public class DatadogTracePipelineLogic {
         }
 
         final BuildData buildData = buildSpanAction.getBuildData();
-        if(!isLastNode(flowNode)){
-            final BuildPipelineNode pipelineNode = buildPipelineNode(flowNode);
+        final BuildPipeline pipeline = getIncrementalPipeline(run, node);
+        if(pipeline != null) {
+            for(final FlowNodeSnapshot completedStep : node.getCompletedSteps()) {
+                pipeline.add(completedStep);
+            }
+        }
+
+        if(!node.isFlowEnd()){
+            final BuildPipelineNode pipelineNode = node.getPipelineNode();
             updateStageBreakdown(run, pipelineNode);
-            updateBuildData(buildData, run, pipelineNode, flowNode);
+            updateBuildData(buildData, run, pipelineNode, node.getExecution());
+            if(pipeline != null) {
+                if(node.isBlockEnd()) {
+                    pipeline.add(node);
+                }
+                sendCompletedNodes(pipeline, buildData, buildSpanAction);
+            }
             return;
         }
 
-        final FlowEndNode flowEndNode = (FlowEndNode) flowNode;
+        final BuildPipeline completePipeline;
+        if(pipeline != null) {
+            pipeline.add(node);
+            completePipeline = pipeline;
+        } else {
+            // The pipeline tree was not tracked from the beginning of the run
+            // (e.g. Jenkins was restarted in the middle of the run), so it is built from the whole graph,
+            // which is not updated anymore once the pipeline has finished.
+            completePipeline = buildPipelineFromGraph(node.getExecution());
+        }
+        incrementalPipelines.remove(run);
+
+        final SpanContext spanContext = tracer.extract(Format.Builtin.TEXT_MAP, new BuildTextMapAdapter(buildSpanAction.getBuildSpanPropatation()));
+        final BuildPipelineNode root = completePipeline.buildTree();
+        final SpanFilter filter = SpanFilter.forRun(buildData);
+        try {
+            sendTrace(tracer, buildData, root, spanContext, filter);
+        } catch (Exception e){
+            logger.severe("Unable to send traces. Exception:" + e);
+        }
+        buildSpanAction.addDroppedSpans(filter.getOmittedNodes());
+    }
+
+    /**
+     * Returns the pipeline tree of the run, which is built as the flow nodes arrive.
+     * Tracking starts on the {@code FlowStartNode}. If the start node of the run was not seen,
+     * null is returned and the tree is built from the whole graph at the end of the run.
+     */
+    private BuildPipeline getIncrementalPipeline(final Run<?, ?> run, final FlowNodeSnapshot node) {
+        synchronized (incrementalPipelines) {
+            BuildPipeline pipeline = incrementalPipelines.get(run);
+            if(pipeline == null && node.isFlowStart()) {
+                pipeline = new BuildPipeline();
+                incrementalPipelines.put(run, pipeline);
+            }
+            return pipeline;
+        }
+    }
+
+    /**
+     * Sends the spans of the nodes that have already finished if the run has more pending spans
+     * than the configured maximum, so long pipelines do not need to keep every node in memory
+     * until the end of the run. The rest of the spans are sent when the run finishes.
+     */
+    private void sendCompletedNodes(final BuildPipeline pipeline, final BuildData buildData, final BuildSpanAction buildSpanAction) {
+        final int maxPendingSpans = DatadogUtilities.getDatadogGlobalDescriptor().getMaxPendingSpansPerRun();
+        if(maxPendingSpans <= 0) {
+            return;
+        }
+
+        final List<BuildPipelineNode> detachedNodes = pipeline.detachCompletedNodes(maxPendingSpans);
+        if(detachedNodes.isEmpty()) {
+            return;
+        }
+
+        final SpanFilter filter = SpanFilter.forRun(buildData);
+        for(final BuildPipelineNode node : detachedNodes) {
+            try {
+                sendTrace(tracer, buildData, node, buildParentSpanContext(buildSpanAction, node.getParent(), filter), filter);
+            } catch (Exception e){
+                logger.severe("Unable to send traces. Exception:" + e);
+            }
+        }
+        buildSpanAction.addDroppedSpans(filter.getOmittedNodes());
+
+        if(pipeline.getPendingNodes() > maxPendingSpans) {
+            logger.fine("Unable to keep the pending spans under " + maxPendingSpans + ". Pending spans: " + pipeline.getPendingNodes());
+        }
+    }
+
+    /**
+     * Returns the SpanContext to use as parent of the spans of a node whose enclosing block is still running.
+     * The spanID of the enclosing block is generated in advance, and it is set in its span when the block is sent.
+     * If the span of the enclosing block is omitted, the closest enclosing block whose span is sent is used instead.
+     */
+    private SpanContext buildParentSpanContext(final BuildSpanAction buildSpanAction, final BuildPipelineNode enclosingBlock, final SpanFilter filter) {
+        BuildPipelineNode parent = enclosingBlock;
+        while(filter.isOmitted(parent)) {
+            parent = parent.getParent();
+        }
+
+        if(parent.getGeneratedSpanId() == null) {
+            parent.setGeneratedSpanId(DatadogUtilities.getDatadogGlobalDescriptor().getTraceIdsGenerator().generate());
+        }
+
+        final Map<String, String> propagation = new HashMap<>(buildSpanAction.getBuildSpanPropatation());
+        propagation.put(PARENT_ID_PROPAGATION_KEY, parent.getGeneratedSpanId().toString());
+        return tracer.extract(Format.Builtin.TEXT_MAP, new BuildTextMapAdapter(propagation));
+    }
+
+    private BuildPipeline buildPipelineFromGraph(final FlowExecution execution) {
         final BuildPipeline pipeline = new BuildPipeline();
 
         // As this logic is evaluated in the last node of the graph,
         // getCurrentHeads() method returns all nodes as a plain list.
-        final List<FlowNode> currentHeads = flowEndNode.getExecution().getCurrentHeads();
+        final List<FlowNode> currentHeads = execution.getCurrentHeads();
 
         // Provided that plain list of nodes, the DepthFirstScanner algorithm
         // is used to visit efficiently every node in form of a DAG.
@@ -117,17 +261,10 @@ public class DatadogTracePipelineLogic {
 
         // Every found flow node of the DAG is added to the BuildPipeline instance.
         scanner.forEach(pipeline::add);
-
-        final SpanContext spanContext = tracer.extract(Format.Builtin.TEXT_MAP, new BuildTextMapAdapter(buildSpanAction.getBuildSpanPropatation()));
-        final BuildPipelineNode root = pipeline.buildTree();
-        try {
-            sendTrace(tracer, buildData, root, spanContext);
-        } catch (Exception e){
-            logger.severe("Unable to send traces. Exception:" + e);
-        }
+        return pipeline;
     }
 
-    private void updateBuildData(BuildData buildData, Run<?, ?> run, BuildPipelineNode pipelineNode, FlowNode node) {
+    private void updateBuildData(BuildData buildData, Run<?, ?> run, BuildPipelineNode pipelineNode, FlowExecution execution) {
         if(pipelineNode == null){
             return;
         }
@@ -147,7 +284,7 @@ public class DatadogTracePipelineLogic {
             buildData.setGitCommit(gitCommit);
         }
 
-        final GitCommitAction commitAction = buildGitCommitAction(run,pipelineNode, node);
+        final GitCommitAction commitAction = buildGitCommitAction(run, pipelineNode, execution);
         if(commitAction != null) {
             if(buildData.getGitMessage("").isEmpty()){
                 buildData.setGitMessage(commitAction.getMessage());
@@ -178,7 +315,7 @@ public class DatadogTracePipelineLogic {
             }
         }
 
-        final GitRepositoryAction repositoryAction = buildGitRepositoryAction(run, pipelineNode, node);
+        final GitRepositoryAction repositoryAction = buildGitRepositoryAction(run, pipelineNode, execution);
         if(repositoryAction != null) {
             if(buildData.getGitDefaultBranch("").isEmpty()) {
                 buildData.setGitDefaultBranch(repositoryAction.getDefaultBranch());
@@ -202,12 +339,20 @@ public class DatadogTracePipelineLogic {
     }
 
 
-    private void sendTrace(final Tracer tracer, final BuildData buildData, final BuildPipelineNode current, final SpanContext parentSpanContext) {
+    private void sendTrace(final Tracer tracer, final BuildData buildData, final BuildPipelineNode current, final SpanContext parentSpanContext, final SpanFilter filter) {
         if(!isTraceable(current)){
             logger.severe("Node " + current.getName() + " is not traceable.");
             return;
         }
 
+        if(filter.isOmitted(current)) {
+            filter.onOmitted();
+            for(final BuildPipelineNode child : current.getChildren()) {
+                sendTrace(tracer, buildData, child, parentSpanContext, filter);
+            }
+            return;
+        }
+
         final Tracer.SpanBuilder spanBuilder = tracer.buildSpan(buildOperationName(current)).withStartTimestamp(current.getStartTimeMicros());
 
         if(parentSpanContext != null) {
@@ -247,7 +392,7 @@ public class DatadogTracePipelineLogic {
         }
 
         for(final BuildPipelineNode child : current.getChildren()) {
-            sendTrace(tracer, buildData, child, span.context());
+            sendTrace(tracer, buildData, child, span.context(), filter);
         }
 
         //Logs
@@ -260,6 +405,10 @@ public class DatadogTracePipelineLogic {
         final String prefix = current.getType().getTagName();
         final String buildLevel = current.getType().getBuildLevel();
         final Map<String, String> envVars = current.getEnvVars();
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        // If enabled, the pipeline level tags are only set when their value differs from the one set in the pipeline span.
+        final boolean hoistPipelineTags = datadogConfig.isHoistPipelineTraceTags();
+        final int maxTagLength = datadogConfig.getMaxTraceTagLength();
 
         final Map<String, Object> tags = new HashMap<>();
         tags.put(CITags.CI_PROVIDER_NAME, CI_PROVIDER);
@@ -272,8 +421,10 @@ public class DatadogTracePipelineLogic {
             tags.put(prefix + CITags._URL, url + "execution/node/"+current.getId()+"/");
         }
 
-        final String workspace = current.getWorkspace() != null ? current.getWorkspace() : buildData.getWorkspace("");
-        tags.put(CITags.WORKSPACE_PATH, workspace);
+        if(!isHoisted(hoistPipelineTags, current.getWorkspace(), buildData.getWorkspace(""))) {
+            final String workspace = current.getWorkspace() != null ? current.getWorkspace() : buildData.getWorkspace("");
+            tags.put(CITags.WORKSPACE_PATH, workspace);
+        }
 
         tags.put(CITags._DD_CI_INTERNAL, current.isInternal());
         if(!current.isInternal()) {
@@ -288,30 +439,33 @@ public class DatadogTracePipelineLogic {
         String gitTag = null;
         if(rawGitBranch != null && !rawGitBranch.isEmpty()) {
             gitBranch = normalizeBranch(rawGitBranch);
-            if(gitBranch != null) {
-                tags.put(CITags.GIT_BRANCH, gitBranch);
-            }
-
             gitTag = normalizeTag(rawGitBranch);
-            if(gitTag != null) {
-                tags.put(CITags.GIT_TAG, gitTag);
+            if(!isHoisted(hoistPipelineTags, envVars.get("GIT_BRANCH"), buildData.getBranch(""))) {
+                if(gitBranch != null) {
+                    tags.put(CITags.GIT_BRANCH, gitBranch);
+                }
+                if(gitTag != null) {
+                    tags.put(CITags.GIT_TAG, gitTag);
+                }
             }
         }
 
         final String gitCommit = envVars.get("GIT_COMMIT") !=  null ? envVars.get("GIT_COMMIT") : buildData.getGitCommit("");
-        if(gitCommit != null && !gitCommit.isEmpty()) {
+        if(gitCommit != null && !gitCommit.isEmpty() && !isHoisted(hoistPipelineTags, envVars.get("GIT_COMMIT"), buildData.getGitCommit(""))) {
             tags.put(CITags.GIT_COMMIT__SHA, gitCommit); //Maintain retrocompatibility
             tags.put(CITags.GIT_COMMIT_SHA, gitCommit);
         }
 
         final String gitRepoUrl = envVars.get("GIT_URL") != null ? envVars.get("GIT_URL") : buildData.getGitUrl("");
-        if (gitRepoUrl != null && !gitRepoUrl.isEmpty()) {
+        if (gitRepoUrl != null && !gitRepoUrl.isEmpty() && !isHoisted(hoistPipelineTags, envVars.get("GIT_URL"), buildData.getGitUrl(""))) {
             tags.put(CITags.GIT_REPOSITORY_URL, gitRepoUrl);
         }
 
         // User info
-        final String user = envVars.get("USER") != null ? envVars.get("USER") : buildData.getUserId();
-        tags.put(CITags.USER_NAME, user);
+        if(!isHoisted(hoistPipelineTags, envVars.get("USER"), buildData.getUserId())) {
+            final String user = envVars.get("USER") != null ? envVars.get("USER") : buildData.getUserId();
+            tags.put(CITags.USER_NAME, user);
+        }
 
         //Node info
         if(current.getNodeName() != null) {
@@ -335,30 +489,43 @@ public class DatadogTracePipelineLogic {
         }
 
         // Arguments
+        // Once the arguments of the span add up to maxArgsLength, the rest of them are not sent.
+        // They are iterated in key order, so the same arguments are always sent for the same step.
         final String nodePrefix = current.getType().name().toLowerCase();
-        for(Map.Entry<String, Object> entry : current.getArgs().entrySet()) {
-            tags.put(CI_PROVIDER + "." + nodePrefix + ".args."+entry.getKey(), String.valueOf(entry.getValue()));
+        final int maxArgsLength = datadogConfig.getMaxTraceArgsLengthPerSpan();
+        int argsLength = 0;
+        for(Map.Entry<String, Object> entry : new TreeMap<>(current.getArgs()).entrySet()) {
+            final String value = truncate(String.valueOf(entry.getValue()), maxTagLength);
+            argsLength += getUtf8Length(value);
+            if(maxArgsLength > 0 && argsLength > maxArgsLength) {
+                logger.fine("Step arguments of node " + current.getName() + " exceed " + maxArgsLength + " bytes. The rest of them are not sent.");
+                break;
+            }
 
+            // The script is only sent once, as the script of the span.
             if("script".equals(entry.getKey())){
-                tags.put(prefix + ".script", String.valueOf(entry.getValue()));
+                tags.put(prefix + ".script", value);
+            } else {
+                tags.put(CI_PROVIDER + "." + nodePrefix + ".args."+entry.getKey(), value);
             }
         }
 
         // Errors
-        if(current.isError() && current.getErrorObj() != null){
+        if(current.isError()){
             final Throwable error = current.getErrorObj();
-            tags.put(DDTags.ERROR_MSG, error.getMessage());
-            tags.put(DDTags.ERROR_TYPE, error.getClass().getName());
-
-            final StringWriter errorString = new StringWriter();
-            error.printStackTrace(new PrintWriter(errorString));
-            tags.put(DDTags.ERROR_STACK, errorString.toString());
+            if(error != null) {
+                tags.put(DDTags.ERROR_MSG, truncate(error.getMessage(), maxTagLength));
+                tags.put(DDTags.ERROR_TYPE, error.getClass().getName());
+                tags.put(DDTags.ERROR_STACK, truncate(getStackTrace(error, datadogConfig.getMaxTraceErrorStackDepth()), maxTagLength));
+            }
         }
 
         // Propagate Pipeline Name
-        final JobNameWrapper jobNameWrapper = new JobNameWrapper(buildData.getJobName(""), gitBranch != null ? gitBranch : gitTag);
-        tags.put(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._NAME, jobNameWrapper.getTraceJobName());
-        tags.put(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._ID, buildData.getBuildTag(""));
+        if(!hoistPipelineTags) {
+            final JobNameWrapper jobNameWrapper = new JobNameWrapper(buildData.getJobName(""), gitBranch != null ? gitBranch : gitTag);
+            tags.put(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._NAME, jobNameWrapper.getTraceJobName());
+            tags.put(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._ID, buildData.getBuildTag(""));
+        }
 
         // Propagate Stage Name
         if(!BuildPipelineNode.NodeType.STAGE.equals(current.getType()) && current.getStageName() != null) {
@@ -368,6 +535,107 @@ public class DatadogTracePipelineLogic {
         return tags;
     }
 
+    /**
+     * Check if a pipeline level tag can be omitted in the span of a node, because it is
+     * already set with the same value in the pipeline span.
+     * @param hoistPipelineTags if the pipeline level tags are only set in the pipeline span
+     * @param nodeValue the value of the tag for the node, or null if the node does not override it
+     * @param pipelineValue the value of the tag for the pipeline
+     * @return true if the tag can be omitted in the span of the node
+     */
+    static boolean isHoisted(final boolean hoistPipelineTags, final String nodeValue, final String pipelineValue) {
+        return hoistPipelineTags && (nodeValue == null || nodeValue.equals(pipelineValue));
+    }
+
+    /**
+     * Truncates a value to its first maxLength bytes once encoded in UTF-8, without splitting any character.
+     * @param value the value
+     * @param maxLength the maximum length of the value in bytes, 0 to keep the whole value
+     * @return the value, followed by "..." if it has been truncated
+     */
+    static String truncate(final String value, final int maxLength) {
+        // A char takes up to 3 bytes in UTF-8 (supplementary characters take 4 bytes for 2 chars).
+        if(value == null || maxLength <= 0 || (long) value.length() * 3 <= maxLength) {
+            return value;
+        }
+
+        int length = 0;
+        int end = 0;
+        while(end < value.length()) {
+            final int codePoint = value.codePointAt(end);
+            length += getUtf8Length(codePoint);
+            if(length > maxLength) {
+                return value.substring(0, end) + "...";
+            }
+            end += Character.charCount(codePoint);
+        }
+        return value;
+    }
+
+    /**
+     * @param value the value
+     * @return the length of the value in bytes once encoded in UTF-8.
+     */
+    static int getUtf8Length(final String value) {
+        int length = 0;
+        int i = 0;
+        while(i < value.length()) {
+            final int codePoint = value.codePointAt(i);
+            length += getUtf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return length;
+    }
+
+    private static int getUtf8Length(final int codePoint) {
+        if(codePoint < 0x80) {
+            return 1;
+        } else if(codePoint < 0x800) {
+            return 2;
+        } else if(codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Returns the stack trace of an error in the same format used by {@link Throwable#printStackTrace()},
+     * keeping up to maxDepth stack frames between the error and its causes.
+     * @param error the error
+     * @param maxDepth the maximum number of stack frames, 0 to keep all of them
+     * @return the stack trace of the error
+     */
+    static String getStackTrace(final Throwable error, final int maxDepth) {
+        if(maxDepth <= 0) {
+            final StringWriter errorString = new StringWriter();
+            error.printStackTrace(new PrintWriter(errorString));
+            return errorString.toString();
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        int remainingFrames = maxDepth;
+        Throwable current = error;
+        while(current != null && visited.add(current)) {
+            if(current != error) {
+                sb.append("Caused by: ");
+            }
+            sb.append(current).append('\n');
+
+            final StackTraceElement[] frames = current.getStackTrace();
+            final int shownFrames = Math.min(frames.length, remainingFrames);
+            for(int i = 0; i < shownFrames; i++) {
+                sb.append("\tat ").append(frames[i]).append('\n');
+            }
+            if(shownFrames < frames.length) {
+                sb.append("\t... ").append(frames.length - shownFrames).append(" more\n");
+            }
+            remainingFrames -= shownFrames;
+            current = current.getCause();
+        }
+        return sb.toString();
+    }
+
     private String buildOperationName(BuildPipelineNode current) {
         return CI_PROVIDER + "." + current.getType().name().toLowerCase() + ((current.isInternal()) ? ".internal" : "");
     }
@@ -386,15 +654,6 @@ public class DatadogTracePipelineLogic {
         return true;
     }
 
-    /**
-     * Check if flowNode is the last node of the pipeline.
-     * @param flowNode
-     * @return true if flowNode is the last node of the pipeline
-     */
-    private boolean isLastNode(FlowNode flowNode) {
-        return flowNode instanceof FlowEndNode;
-    }
-
     /**
      * Substitute the current spanID by the generated spanID during the Step execution.
      * This is needed to associate the Steps spans with external spans (e.g. Datadog CLI Bash wrapper)
@@ -402,22 +661,22 @@ public class DatadogTracePipelineLogic {
      * @param generatedSpanId
      */
     private void substituteSpanId(final Span span, final DDId generatedSpanId) {
-        try {
-            if(ddSpanField == null || ddSpanIdField == null) {
-                return;
-            }
+        if(DD_SPAN_GETTER == null || SPAN_ID_SETTER == null) {
+            return;
+        }
 
-            final DDSpan ddSpan = (DDSpan) ddSpanField.get(span);
+        try {
+            final DDSpan ddSpan = (DDSpan) DD_SPAN_GETTER.invokeExact(span);
             final DDSpanContext spanContext = ddSpan.context();
-            ddSpanIdField.set(spanContext, generatedSpanId);
-        } catch (Exception e) {
+            SPAN_ID_SETTER.invokeExact(spanContext, generatedSpanId);
+        } catch (Throwable e) {
             logger.fine("Unable to substitute the spanId in the span: "+span+". Error: " + e.getMessage());
         }
     }
 
-    private GitCommitAction buildGitCommitAction(Run<?, ?> run, BuildPipelineNode pipelineNode, FlowNode node) {
+    private GitCommitAction buildGitCommitAction(Run<?, ?> run, BuildPipelineNode pipelineNode, FlowExecution execution) {
         try {
-            final TaskListener listener = node.getExecution().getOwner().getListener();
+            final TaskListener listener = execution.getOwner().getListener();
             final EnvVars envVars = new EnvVars(pipelineNode.getEnvVars());
             final String gitCommit = pipelineNode.getEnvVars().get("GIT_COMMIT");
             final String nodeName = pipelineNode.getNodeName();
@@ -429,9 +688,9 @@ public class DatadogTracePipelineLogic {
         }
     }
 
-    private GitRepositoryAction buildGitRepositoryAction(Run<?, ?> run, BuildPipelineNode pipelineNode, FlowNode node) {
+    private GitRepositoryAction buildGitRepositoryAction(Run<?, ?> run, BuildPipelineNode pipelineNode, FlowExecution execution) {
         try {
-            final TaskListener listener = node.getExecution().getOwner().getListener();
+            final TaskListener listener = execution.getOwner().getListener();
             final EnvVars envVars = new EnvVars(pipelineNode.getEnvVars());
             final String nodeName = pipelineNode.getNodeName();
             final String workspace = pipelineNode.getWorkspace();
@@ -442,16 +701,6 @@ public class DatadogTracePipelineLogic {
         }
     }
 
-    private BuildPipelineNode buildPipelineNode(FlowNode flowNode) {
-        BuildPipelineNode pipelineNode = null;
-        if(flowNode instanceof BlockEndNode) {
-            pipelineNode = new BuildPipelineNode((BlockEndNode) flowNode);
-        } else if(flowNode instanceof StepAtomNode) {
-            pipelineNode = new BuildPipelineNode((StepAtomNode) flowNode);
-        }
-        return pipelineNode;
-    }
-
     private void updateStageBreakdown(final Run<?,?> run, BuildPipelineNode pipelineNode) {
         final StageBreakdownAction stageBreakdownAction = run.getAction(StageBreakdownAction.class);
         if(stageBreakdownAction == null){
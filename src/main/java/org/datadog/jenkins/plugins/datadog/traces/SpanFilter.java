@@ -0,0 +1,84 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
+
+/**
+ * Decides which nodes of a pipeline are sent as spans.
+ * The spans of the children of an omitted node are sent as children of its closest sent ancestor.
+ * Stage spans and the spans of the top level nodes are always sent.
+ */
+class SpanFilter {
+
+    private static volatile TraceSamplingRules samplingRules = TraceSamplingRules.parse(null);
+
+    private final boolean collapseInternal;
+    private final long minStepDurationMicros;
+    private final boolean sampled;
+    private int omittedNodes;
+
+    SpanFilter(final boolean collapseInternal, final long minStepDurationMillis, final boolean sampled) {
+        this.collapseInternal = collapseInternal;
+        this.minStepDurationMicros = minStepDurationMillis * 1000;
+        this.sampled = sampled;
+    }
+
+    static SpanFilter forRun(final BuildData buildData) {
+        final DatadogGlobalConfiguration datadogConfig = DatadogUtilities.getDatadogGlobalDescriptor();
+        final boolean sampled = getSamplingRules(datadogConfig.getTraceSamplingRules())
+                .isSampled(buildData.getJobName(""), buildData.getBuildTag(""));
+        return new SpanFilter(datadogConfig.isCollapseInternalTraceSpans(), datadogConfig.getMinTraceStepDuration(), sampled);
+    }
+
+    private static TraceSamplingRules getSamplingRules(final String text) {
+        TraceSamplingRules rules = samplingRules;
+        if(!rules.getText().equals(text == null ? "" : text)) {
+            rules = TraceSamplingRules.parse(text);
+            samplingRules = rules;
+        }
+        return rules;
+    }
+
+    /**
+     * Check if the span of a node must not be sent.
+     * Blocks are omitted regardless of their duration and result, so the decision can be
+     * taken before the block finishes (see DatadogTracePipelineLogic.buildParentSpanContext).
+     * @param node the node
+     * @return true if the span of the node must not be sent.
+     */
+    boolean isOmitted(final BuildPipelineNode node) {
+        if(BuildPipelineNode.NodeType.STAGE.equals(node.getType()) || isTopLevel(node)) {
+            return false;
+        }
+
+        if(node.isInternal()) {
+            return collapseInternal || !sampled;
+        }
+
+        if(node.isError()) {
+            return false;
+        }
+
+        if(!sampled) {
+            return true;
+        }
+
+        return minStepDurationMicros > 0 && node.getEndTimeMicros() - node.getStartTimeMicros() < minStepDurationMicros;
+    }
+
+    void onOmitted() {
+        omittedNodes++;
+    }
+
+    int getOmittedNodes() {
+        return omittedNodes;
+    }
+
+    private static boolean isTopLevel(final BuildPipelineNode node) {
+        // While the run is in progress, the top level nodes are not attached to the root of the tree yet.
+        // The root of the tree is the only node without a type.
+        return node.getParent() == null || node.getParent().getType() == null;
+    }
+}
@@ -10,19 +10,43 @@ import java.util.Map;
 
 /**
  * Keeps the Step data during a certain Run.
+ * As this action is stored in the run, the environment variables of every step
+ * are kept as the differences with the environment variables of the run,
+ * which are taken from the first step. The action is removed from the run
+ * once the build trace has been sent.
  */
 public class StepDataAction extends InvisibleAction implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     private final Map<String, StepData> stepDataByDescriptor = new HashMap<>();
+    private Map<String, String> runEnvVars;
 
-    public StepData put(final StepDescriptor descriptor, final StepData stepData) {
+    public synchronized StepData put(final StepDescriptor descriptor, final StepData stepData) {
+        if(runEnvVars == null) {
+            runEnvVars = new HashMap<>(stepData.getEnvVars());
+        }
+        stepData.compact(runEnvVars);
         return stepDataByDescriptor.put(descriptor.toString(), stepData);
     }
 
-    public StepData get(final StepDescriptor descriptor) {
+    public synchronized StepData get(final StepDescriptor descriptor) {
         return stepDataByDescriptor.get(descriptor.toString());
     }
 
+    protected synchronized Object readResolve() {
+        if(runEnvVars == null) {
+            // Runs created by previous versions of the plugin stored
+            // the whole environment variables of every step.
+            runEnvVars = new HashMap<>();
+            for(final StepData stepData : stepDataByDescriptor.values()) {
+                stepData.compact(runEnvVars);
+            }
+        } else {
+            for(final StepData stepData : stepDataByDescriptor.values()) {
+                stepData.setRunEnvVars(runEnvVars);
+            }
+        }
+        return this;
+    }
 }
@@ -0,0 +1,196 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import datadog.trace.api.DDId;
+import datadog.trace.core.DDSpan;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes finished traces using the MessagePack format of the v0.4 traces API:
+ * a payload is an array of traces, and every trace is an array of spans.
+ * Only the subset of MessagePack needed to encode spans is implemented.
+ */
+public final class TraceMsgPackEncoder {
+
+    private TraceMsgPackEncoder() {
+    }
+
+    /**
+     * Encodes a trace as an array of spans.
+     * @param trace the spans of the trace
+     * @return the encoded trace.
+     */
+    public static byte[] encode(final List<DDSpan> trace) {
+        final Buffer buffer = new Buffer(trace.size() * 512);
+        buffer.writeArrayHeader(trace.size());
+        for(final DDSpan span : trace) {
+            writeSpan(buffer, span);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Builds a payload with several traces already encoded using {@link #encode(List)}.
+     * @param encodedTraces the encoded traces
+     * @return the encoded payload.
+     */
+    public static byte[] encodePayload(final List<byte[]> encodedTraces) {
+        int size = 5;
+        for(final byte[] encodedTrace : encodedTraces) {
+            size += encodedTrace.length;
+        }
+
+        final Buffer buffer = new Buffer(size);
+        buffer.writeArrayHeader(encodedTraces.size());
+        for(final byte[] encodedTrace : encodedTraces) {
+            buffer.write(encodedTrace, 0, encodedTrace.length);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeSpan(final Buffer buffer, final DDSpan span) {
+        // String tags go to "meta" and numeric tags go to "metrics".
+        // Sorted maps are used so the same span is always encoded the same way.
+        final Map<String, String> meta = new TreeMap<>();
+        final Map<String, Number> metrics = new TreeMap<>();
+        for(final Map.Entry<String, Object> tag : span.getTags().entrySet()) {
+            if(tag.getValue() instanceof Number) {
+                metrics.put(tag.getKey(), (Number) tag.getValue());
+            } else if(tag.getValue() != null) {
+                meta.put(tag.getKey(), String.valueOf(tag.getValue()));
+            }
+        }
+
+        buffer.writeMapHeader(12);
+        buffer.writeString("service");
+        buffer.writeString(span.getServiceName());
+        buffer.writeString("name");
+        buffer.writeString(toString(span.getOperationName()));
+        buffer.writeString("resource");
+        buffer.writeString(toString(span.getResourceName()));
+        buffer.writeString("trace_id");
+        buffer.writeId(span.getTraceId());
+        buffer.writeString("span_id");
+        buffer.writeId(span.getSpanId());
+        buffer.writeString("parent_id");
+        buffer.writeId(span.getParentId());
+        buffer.writeString("start");
+        buffer.writeLong(span.getStartTime());
+        buffer.writeString("duration");
+        buffer.writeLong(span.getDurationNano());
+        buffer.writeString("type");
+        buffer.writeString(span.getType());
+        buffer.writeString("error");
+        buffer.writeLong(span.getError());
+        buffer.writeString("meta");
+        buffer.writeMapHeader(meta.size());
+        for(final Map.Entry<String, String> entry : meta.entrySet()) {
+            buffer.writeString(entry.getKey());
+            buffer.writeString(entry.getValue());
+        }
+        buffer.writeString("metrics");
+        buffer.writeMapHeader(metrics.size());
+        for(final Map.Entry<String, Number> entry : metrics.entrySet()) {
+            buffer.writeString(entry.getKey());
+            buffer.writeDouble(entry.getValue().doubleValue());
+        }
+    }
+
+    private static String toString(final CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Growable byte buffer with the MessagePack primitives used by the encoder.
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(final int size) {
+            super(size);
+        }
+
+        void writeArrayHeader(final int size) {
+            writeContainerHeader(size, 0x90, 0xdc, 0xdd);
+        }
+
+        void writeMapHeader(final int size) {
+            writeContainerHeader(size, 0x80, 0xde, 0xdf);
+        }
+
+        private void writeContainerHeader(final int size, final int fixPrefix, final int prefix16, final int prefix32) {
+            if(size < 16) {
+                write(fixPrefix | size);
+            } else if(size < 0x10000) {
+                write(prefix16);
+                writeShort(size);
+            } else {
+                write(prefix32);
+                writeInt(size);
+            }
+        }
+
+        void writeString(final String value) {
+            if(value == null) {
+                write(0xc0);
+                return;
+            }
+
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            final int length = bytes.length;
+            if(length < 32) {
+                write(0xa0 | length);
+            } else if(length < 0x100) {
+                write(0xd9);
+                write(length);
+            } else if(length < 0x10000) {
+                write(0xda);
+                writeShort(length);
+            } else {
+                write(0xdb);
+                writeInt(length);
+            }
+            write(bytes, 0, length);
+        }
+
+        void writeId(final DDId id) {
+            // IDs are unsigned 64 bits integers.
+            write(0xcf);
+            writeLongBits(id != null ? id.toLong() : 0L);
+        }
+
+        void writeLong(final long value) {
+            if(value >= 0 && value < 128) {
+                write((int) value);
+            } else {
+                write(0xd3);
+                writeLongBits(value);
+            }
+        }
+
+        void writeDouble(final double value) {
+            write(0xcb);
+            writeLongBits(Double.doubleToLongBits(value));
+        }
+
+        private void writeShort(final int value) {
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeInt(final int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        private void writeLongBits(final long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+    }
+}
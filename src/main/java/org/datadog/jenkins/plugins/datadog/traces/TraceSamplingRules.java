@@ -0,0 +1,111 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Sampling rules of the step spans, by job name.
+ * The rules are a comma separated list of {@code <job name regex>:<sample rate>} entries,
+ * e.g. {@code release/.*:1.0,.*:0.1}. The first rule matching the job name is applied,
+ * and the steps of the jobs not matching any rule are always kept.
+ */
+public class TraceSamplingRules {
+
+    private static final Logger logger = Logger.getLogger(TraceSamplingRules.class.getName());
+
+    private static final TraceSamplingRules KEEP_ALL = new TraceSamplingRules("", Collections.<Rule>emptyList());
+
+    private final String text;
+    private final List<Rule> rules;
+
+    private TraceSamplingRules(final String text, final List<Rule> rules) {
+        this.text = text;
+        this.rules = rules;
+    }
+
+    /**
+     * Parses the sampling rules. Invalid rules are ignored.
+     * @param text the sampling rules
+     * @return the parsed sampling rules.
+     */
+    public static TraceSamplingRules parse(final String text) {
+        if(StringUtils.isBlank(text)) {
+            return KEEP_ALL;
+        }
+
+        final List<Rule> rules = new ArrayList<>();
+        for(final String entry : text.split(",")) {
+            final int separator = entry.lastIndexOf(':');
+            if(separator <= 0) {
+                logger.warning("Invalid trace sampling rule: " + entry);
+                continue;
+            }
+
+            try {
+                final Pattern jobNamePattern = Pattern.compile(entry.substring(0, separator).trim());
+                final double sampleRate = Double.parseDouble(entry.substring(separator + 1).trim());
+                rules.add(new Rule(jobNamePattern, Math.max(0.0, Math.min(1.0, sampleRate))));
+            } catch (PatternSyntaxException | NumberFormatException e) {
+                logger.warning("Invalid trace sampling rule: " + entry + ". Error: " + e.getMessage());
+            }
+        }
+        return new TraceSamplingRules(text, rules);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @param jobName the name of the job
+     * @return the sample rate of the steps of the job.
+     */
+    public double getSampleRate(final String jobName) {
+        for(final Rule rule : rules) {
+            if(rule.jobNamePattern.matcher(jobName).matches()) {
+                return rule.sampleRate;
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * Decides if the steps of a run are kept. The decision only depends on the run,
+     * so it is the same for every chunk of spans sent for the run.
+     * @param jobName the name of the job
+     * @param buildTag the tag of the run
+     * @return true if the step spans of the run are kept.
+     */
+    public boolean isSampled(final String jobName, final String buildTag) {
+        final double sampleRate = getSampleRate(jobName);
+        if(sampleRate >= 1.0) {
+            return true;
+        } else if(sampleRate <= 0.0) {
+            return false;
+        }
+        // The hash of the tag is mixed, as consecutive runs have very close hashes.
+        int hash = buildTag.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) < sampleRate * Integer.MAX_VALUE;
+    }
+
+    private static final class Rule {
+        private final Pattern jobNamePattern;
+        private final double sampleRate;
+
+        private Rule(final Pattern jobNamePattern, final double sampleRate) {
+            this.jobNamePattern = jobNamePattern;
+            this.sampleRate = sampleRate;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import net.sf.json.JSONObject;
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionMode;
+import org.datadog.jenkins.plugins.datadog.logs.LogOverflowPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest;
+
+public class DatadogGlobalConfigurationTest {
+
+    @ClassRule
+    public static JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Before
+    public void setUp() {
+        ClientFactory.setTestClient(new DatadogClientStub());
+    }
+
+    @After
+    public void tearDown() {
+        ClientFactory.setTestClient(null);
+    }
+
+    @Test
+    public void testConfigureShouldKeepTheSettingsWithoutFormFields() throws Exception {
+        final DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setLogCollectionMode(LogCollectionMode.POST_BUILD.name());
+        cfg.setShipLogsFromAgents(true);
+        cfg.setMergeJsonLogLines(true);
+        cfg.setLogRateLimit(50);
+        cfg.setTraceSamplingRules("tests:0.5");
+        cfg.setMaxPendingSpansPerRun(42);
+        cfg.setHoistPipelineTraceTags(true);
+
+        assertTrue(cfg.configure(mock(StaplerRequest.class), buildForm()));
+
+        assertEquals(LogCollectionMode.POST_BUILD, cfg.getLogCollectionMode());
+        assertTrue(cfg.isShipLogsFromAgents());
+        assertTrue(cfg.isMergeJsonLogLines());
+        assertEquals(50, cfg.getLogRateLimit());
+        assertEquals("tests:0.5", cfg.getTraceSamplingRules());
+        assertEquals(42, cfg.getMaxPendingSpansPerRun());
+        assertTrue(cfg.isHoistPipelineTraceTags());
+    }
+
+    @Test
+    public void testConfigureShouldUpdateTheSettingsWithFormFields() throws Exception {
+        final DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setLogCollectionMode(LogCollectionMode.POST_BUILD.name());
+        cfg.setShipLogsFromAgents(true);
+        cfg.setLogRateLimit(50);
+        cfg.setMaxPendingSpansPerRun(42);
+
+        final JSONObject form = buildForm();
+        form.put("logCollectionMode", LogCollectionMode.STREAMING.name());
+        form.put("shipLogsFromAgents", false);
+        form.put("logRateLimit", "100");
+        form.put("maxPendingSpansPerRun", "not a number");
+        assertTrue(cfg.configure(mock(StaplerRequest.class), form));
+
+        assertEquals(LogCollectionMode.STREAMING, cfg.getLogCollectionMode());
+        assertFalse(cfg.isShipLogsFromAgents());
+        assertEquals(100, cfg.getLogRateLimit());
+        assertEquals(42, cfg.getMaxPendingSpansPerRun());
+    }
+
+    @Test
+    public void testLogSettingsAddedByUpgradesKeepTheLogsUnchanged() {
+        // The settings missing from a configuration saved by a previous version use their defaults.
+        final DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setLogRateLimit(null);
+        cfg.setMaxRepeatedLogLines(null);
+        cfg.setLogOverflowPolicy(null);
+
+        assertEquals(0, cfg.getLogRateLimit());
+        assertEquals(0, cfg.getMaxRepeatedLogLines());
+        assertEquals(LogOverflowPolicy.BLOCK, cfg.getLogOverflowPolicy());
+    }
+
+    private static JSONObject buildForm() {
+        final JSONObject form = new JSONObject();
+        form.put("reportWith", "HTTP");
+        form.put("targetApiURL", "https://api.datadoghq.com/api/");
+        form.put("targetLogIntakeURL", "https://http-intake.logs.datadoghq.com/v1/input/");
+        form.put("targetApiKey", "");
+        form.put("targetHost", "localhost");
+        form.put("targetPort", "8125");
+        form.put("targetLogCollectionPort", "");
+        form.put("hostname", "");
+        form.put("blacklist", "");
+        form.put("whitelist", "");
+        form.put("globalTagFile", "");
+        form.put("globalTags", "");
+        form.put("globalJobTags", "");
+        form.put("emitSecurityEvents", true);
+        form.put("emitSystemEvents", true);
+        form.put("collectBuildLogs", false);
+        return form;
+    }
+}
@@ -0,0 +1,105 @@
+package org.datadog.jenkins.plugins.datadog.clients;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import datadog.trace.api.DDId;
+import datadog.trace.core.DDSpan;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class DatadogAgentlessTraceWriterTest {
+
+    private HttpServer server;
+    private final List<byte[]> payloads = Collections.synchronizedList(new ArrayList<byte[]>());
+    private final List<String> traceCounts = Collections.synchronizedList(new ArrayList<String>());
+    private volatile int responseCode = 200;
+
+    @Before
+    public void startStubIntake() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v0.4/traces", (HttpExchange exchange) -> {
+            try (GZIPInputStream body = new GZIPInputStream(exchange.getRequestBody())) {
+                payloads.add(IOUtils.toByteArray(body));
+            }
+            traceCounts.add(exchange.getRequestHeaders().getFirst("X-Datadog-Trace-Count"));
+            exchange.sendResponseHeaders(responseCode, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopStubIntake() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testShouldSendQueuedTracesInASingleRequest() {
+        final DatadogAgentlessTraceWriter writer = newWriter(2);
+        writer.write(Collections.singletonList(mockSpan(1L, 2L)));
+        writer.write(Collections.singletonList(mockSpan(3L, 4L)));
+        writer.write(Collections.singletonList(mockSpan(5L, 6L)));
+
+        assertEquals(2, writer.getQueueSize());
+        assertTrue(writer.flush());
+
+        assertEquals(1, payloads.size());
+        assertEquals("2", traceCounts.get(0));
+        // Array of 2 traces, the first one with a single span encoded as a map of 12 entries.
+        assertArrayEquals(new byte[]{(byte) 0x92, (byte) 0x91, (byte) 0x8c}, Arrays.copyOf(payloads.get(0), 3));
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(2, writer.getAndResetEnqueuedTraces());
+        assertEquals(2, writer.getAndResetEnqueuedSpans());
+        assertEquals(2, writer.getAndResetSentTraces());
+        assertEquals(1, writer.getAndResetDroppedTraces());
+    }
+
+    @Test
+    public void testShouldDropTracesRejectedByTheIntake() {
+        responseCode = 500;
+        final DatadogAgentlessTraceWriter writer = newWriter(10);
+        writer.write(Arrays.asList(mockSpan(1L, 2L), mockSpan(1L, 3L)));
+
+        assertFalse(writer.flush());
+        assertEquals(1, payloads.size());
+        assertEquals(0, writer.getAndResetSentTraces());
+        assertEquals(1, writer.getAndResetDroppedTraces());
+    }
+
+    private DatadogAgentlessTraceWriter newWriter(final int queueCapacity) {
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v0.4/traces";
+        return new DatadogAgentlessTraceWriter(url, null, queueCapacity, 1000L);
+    }
+
+    private static DDSpan mockSpan(final long traceId, final long spanId) {
+        final DDSpan span = mock(DDSpan.class);
+        when(span.getTraceId()).thenReturn(DDId.from(traceId));
+        when(span.getSpanId()).thenReturn(DDId.from(spanId));
+        when(span.getParentId()).thenReturn(DDId.ZERO);
+        when(span.getServiceName()).thenReturn("jenkins");
+        when(span.getOperationName()).thenReturn("jenkins.step");
+        when(span.getResourceName()).thenReturn("sh");
+        when(span.getType()).thenReturn("ci");
+        when(span.getStartTime()).thenReturn(1000L);
+        when(span.getDurationNano()).thenReturn(500L);
+        when(span.getTags()).thenReturn(Collections.<String, Object>singletonMap("ci.provider.name", "jenkins"));
+        return span;
+    }
+}
@@ -35,9 +35,9 @@ import net.sf.json.JSONObject;
 import org.datadog.jenkins.plugins.datadog.DatadogClient;
 import org.datadog.jenkins.plugins.datadog.DatadogEvent;
 import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
 import org.datadog.jenkins.plugins.datadog.traces.DatadogTraceBuildLogic;
 import org.datadog.jenkins.plugins.datadog.traces.DatadogTracePipelineLogic;
-import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.junit.Assert;
 
 import java.util.ArrayList;
@@ -173,6 +173,14 @@ public class DatadogClientStub implements DatadogClient {
         return true;
     }
 
+    @Override
+    public boolean sendLogBatch(List<String> payloads) {
+        for(final String payload : payloads) {
+            sendLogs(payload);
+        }
+        return true;
+    }
+
     @Override
     public boolean startBuildTrace(BuildData buildData, Run<?, ?> run) {
         this.traceBuildLogic.startBuildTrace(buildData, run);
@@ -186,7 +194,7 @@ public class DatadogClientStub implements DatadogClient {
     }
 
     @Override
-    public boolean sendPipelineTrace(Run<?, ?> run, FlowNode flowNode) {
+    public boolean sendPipelineTrace(Run<?, ?> run, FlowNodeSnapshot flowNode) {
         this.tracePipelineLogic.execute(run, flowNode);
         return true;
     }
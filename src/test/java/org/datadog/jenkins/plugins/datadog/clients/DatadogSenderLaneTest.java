@@ -0,0 +1,131 @@
+package org.datadog.jenkins.plugins.datadog.clients;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+public class DatadogSenderLaneTest {
+
+    @Test
+    public void testShouldDropTheOldestPayloadsWhenTheLaneIsFull() throws InterruptedException {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch sent = new CountDownLatch(3);
+        final List<String> payloads = new ArrayList<>();
+        final DatadogSenderLane<String> lane = new DatadogSenderLane<>("Test Sender", 2, 1, batch -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (payloads) {
+                payloads.addAll(batch);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                sent.countDown();
+            }
+        });
+
+        lane.submit("a");
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        lane.submit("b");
+        lane.submit("c");
+        lane.submit("d");
+        assertEquals(2, lane.getQueueSize());
+        assertEquals(1, lane.getAndResetDroppedPayloads());
+        assertEquals(0, lane.getAndResetDroppedPayloads());
+
+        release.countDown();
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+        synchronized (payloads) {
+            assertEquals(Arrays.asList("a", "c", "d"), payloads);
+        }
+    }
+
+    @Test
+    public void testShouldSendThePayloadsInBatches() throws InterruptedException {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch sent = new CountDownLatch(3);
+        final List<Integer> batchSizes = new ArrayList<>();
+        final DatadogSenderLane<Integer> lane = new DatadogSenderLane<>("Test Sender", 100, 10, batch -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (batchSizes) {
+                batchSizes.add(batch.size());
+            }
+            sent.countDown();
+        });
+
+        lane.submit(0);
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 15; i++) {
+            lane.submit(i);
+        }
+        release.countDown();
+
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+        synchronized (batchSizes) {
+            assertEquals(Arrays.asList(1, 10, 5), batchSizes);
+        }
+    }
+
+    @Test
+    public void testShouldLogTheDroppedPayloadsAtTheLevelOfTheLane() throws InterruptedException {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DatadogSenderLane<String> lane = new DatadogSenderLane<>("Test Critical Sender", 1, 1, batch -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Level.WARNING);
+        final List<Level> levels = new ArrayList<>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                levels.add(record.getLevel());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logger.getLogger(DatadogSenderLane.class.getName());
+        logger.addHandler(handler);
+        try {
+            lane.submit("a");
+            assertTrue(sending.await(10, TimeUnit.SECONDS));
+            lane.submit("b");
+            lane.submit("c");
+        } finally {
+            logger.removeHandler(handler);
+            release.countDown();
+        }
+
+        assertEquals(1, lane.getAndResetDroppedPayloads());
+        assertEquals(Arrays.asList(Level.WARNING), levels);
+    }
+}
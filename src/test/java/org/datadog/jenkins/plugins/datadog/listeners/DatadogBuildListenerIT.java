@@ -1,7 +1,9 @@
 package org.datadog.jenkins.plugins.datadog.listeners;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import datadog.trace.common.writer.ListWriter;
 import datadog.trace.core.DDSpan;
@@ -13,8 +15,11 @@ import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogMetric;
+import org.datadog.jenkins.plugins.datadog.logs.LogCollectionMode;
 import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
 import org.datadog.jenkins.plugins.datadog.traces.CITags;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -24,6 +29,7 @@ import org.jvnet.hudson.test.SingleFileSCM;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 public class DatadogBuildListenerIT {
@@ -48,6 +54,14 @@ public class DatadogBuildListenerIT {
         jenkins.getGlobalNodeProperties().remove(EnvironmentVariablesNodeProperty.class);
     }
 
+    @After
+    public void afterEach() {
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollectBuildLogs(false);
+        cfg.setLogCollectionMode(LogCollectionMode.STREAMING.name());
+        DatadogEventDispatcher.setSynchronous(false);
+    }
+
     @Test
     public void testTraces() throws Exception {
         Jenkins jenkins = jenkinsRule.jenkins;
@@ -110,6 +124,52 @@ public class DatadogBuildListenerIT {
         assertEquals(0, tracerWriter.size());
     }
 
+    @Test
+    public void testSuppressedLogLinesWhenStreamingLogs() throws Exception {
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollectBuildLogs(true);
+        cfg.setLogCollectionMode(LogCollectionMode.STREAMING.name());
+        DatadogEventDispatcher.setSynchronous(true);
+
+        jenkinsRule.createFreeStyleProject("buildStreamedLogs").scheduleBuild2(0).get();
+
+        waitForMetric("jenkins.job.log_bytes");
+        assertTrue(hasMetric("jenkins.job.log_lines.rate_limited"));
+        assertTrue(hasMetric("jenkins.job.log_lines.collapsed"));
+    }
+
+    @Test
+    public void testNoSuppressedLogLinesWhenUploadingLogs() throws Exception {
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollectBuildLogs(true);
+        cfg.setLogCollectionMode(LogCollectionMode.POST_BUILD.name());
+        DatadogEventDispatcher.setSynchronous(true);
+
+        jenkinsRule.createFreeStyleProject("buildUploadedLogs").scheduleBuild2(0).get();
+
+        // The console volume is reported, but the lines are not rate limited nor collapsed.
+        waitForMetric("jenkins.job.log_bytes");
+        assertFalse(hasMetric("jenkins.job.log_lines.rate_limited"));
+        assertFalse(hasMetric("jenkins.job.log_lines.collapsed"));
+    }
+
+    private void waitForMetric(String name) throws InterruptedException {
+        // The gauges are sent once the run is finalized, which may happen after its future completes.
+        final long deadline = System.currentTimeMillis() + 10000;
+        while(!hasMetric(name) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(hasMetric(name));
+    }
+
+    private boolean hasMetric(String name) {
+        for(DatadogMetric metric : new ArrayList<>(clientStub.metrics)) {
+            if(name.equals(metric.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     private void assertGitVariables(DDSpan span) {
         assertEquals("Initial commit\n", span.getTag(CITags.GIT_COMMIT_MESSAGE));
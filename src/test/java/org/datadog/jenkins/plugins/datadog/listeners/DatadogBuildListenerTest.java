@@ -25,7 +25,6 @@ THE SOFTWARE.
 
 package org.datadog.jenkins.plugins.datadog.listeners;
 
-import com.cloudbees.workflow.rest.external.StageNodeExt;
 import hudson.EnvVars;
 import hudson.model.*;
 import jenkins.model.Jenkins;
@@ -35,10 +34,11 @@ import org.datadog.jenkins.plugins.datadog.stubs.BuildStub;
 import org.datadog.jenkins.plugins.datadog.stubs.ProjectStub;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogMetric;
+import org.datadog.jenkins.plugins.datadog.model.PauseDurationAction;
 import org.datadog.jenkins.plugins.datadog.stubs.QueueStub;
-import org.datadog.jenkins.plugins.datadog.stubs.RunExtStub;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -57,8 +57,14 @@ public class DatadogBuildListenerTest {
     private WorkflowRun workflowRun;
     EnvVars envVars;
     
+    @After
+    public void tearDown() {
+        DatadogEventDispatcher.setSynchronous(false);
+    }
+
     @Before
     public void setUpMocks() {
+        DatadogEventDispatcher.setSynchronous(true);
         this.client = new DatadogClientStub();
 
         this.datadogBuildListener = new DatadogBuildListenerTestWrapper();
@@ -133,6 +139,8 @@ public class DatadogBuildListenerTest {
         metricExpectedTags2[5] = "result:FAILURE";
         client.assertMetric("jenkins.job.duration", 122, "test-hostname-2", metricExpectedTags2);
         client.assertMetric("jenkins.job.feedbacktime", 122, "test-hostname-2", metricExpectedTags2);
+        // The reliability index of the job remembers the start of the last build that did not fail.
+        client.assertMetric("jenkins.job.mtbf", 2000-1000, "test-hostname-2", metricExpectedTags2);
         client.assertServiceCheck("jenkins.job.status", 2, "test-hostname-2", scExpectedTags1);
         client.assertEvent("Job ParentFullName/JobName build #2 failure on test-hostname-2",
                 Priority.NORMAL, AlertType.ERROR, 2122L);
@@ -140,6 +148,7 @@ public class DatadogBuildListenerTest {
         datadogBuildListener.onCompleted(previousFailedRun2, mock(TaskListener.class));
         client.assertMetric("jenkins.job.duration", 123, "test-hostname-2", metricExpectedTags2);
         client.assertMetric("jenkins.job.feedbacktime", 123, "test-hostname-2", metricExpectedTags2);
+        client.assertMetric("jenkins.job.mtbf", 3000-1000, "test-hostname-2", metricExpectedTags2);
         client.assertMetric("jenkins.job.completed", 2, "test-hostname-2", metricExpectedTags2);
         client.assertServiceCheck("jenkins.job.status", 2, "test-hostname-2", scExpectedTags1);
         client.assertEvent("Job ParentFullName/JobName build #3 failure on test-hostname-2",
@@ -158,6 +167,31 @@ public class DatadogBuildListenerTest {
         client.assertedAllEvents();
     }
 
+    @Test
+    public void testOnCompletedOnFailedRunsReportsTheMeanTimeBetweenFailures() throws Exception {
+        // The successful build completed before the reliability index of the job existed.
+        BuildStub successfulRun = new BuildStub(this.job, Result.SUCCESS, envVars, null,
+                121000L, 1, null, 1000000L, null);
+
+        BuildStub failedRun1 = new BuildStub(this.job, Result.FAILURE, envVars, successfulRun,
+                122000L, 2, successfulRun, 2000000L, successfulRun);
+
+        BuildStub failedRun2 = new BuildStub(this.job, Result.FAILURE, envVars, successfulRun,
+                123000L, 3, failedRun1, 3000000L, successfulRun);
+
+        String[] metricExpectedTags = new String[]{
+            "job:ParentFullName/JobName", "node:test-node", "user_id:anonymous", "jenkins_url:unknown", "branch:test-branch",
+            "result:FAILURE"
+        };
+
+        // The index is seeded from the build history.
+        datadogBuildListener.onCompleted(failedRun1, mock(TaskListener.class));
+        client.assertMetric("jenkins.job.mtbf", 2000-1000, "test-hostname-2", metricExpectedTags);
+
+        datadogBuildListener.onCompleted(failedRun2, mock(TaskListener.class));
+        client.assertMetric("jenkins.job.mtbf", 3000-1000, "test-hostname-2", metricExpectedTags);
+    }
+
     @Test
     public void testOnCompletedWorkflowRun() throws Exception {
         final int stageCount = 5;
@@ -166,7 +200,6 @@ public class DatadogBuildListenerTest {
         final long buildDuration = stageDuration * stageCount;
         final long pauseDuration = pauseDurationPerStage * stageCount;
         final long totalDuration = buildDuration + pauseDuration;
-        final String[] stageNames = {"Stage 1: Checkout SCM", "Stage 2", "Stage 3", "Stage 4", "Stage 5"};
 
         WorkflowJob job = mock(WorkflowJob.class);
         when(job.getFullName()).thenReturn("Pipeline job");
@@ -180,15 +213,8 @@ public class DatadogBuildListenerTest {
         when(workflowRun.getNumber()).thenReturn(0);
         when(workflowRun.getResult()).thenReturn(Result.SUCCESS);
 
-        RunExtStub runExt = new RunExtStub();
-        for(int i = 0; i < stageCount; i++){
-            StageNodeExt stage = mock(StageNodeExt.class);
-            when(stage.getName()).thenReturn(stageNames[i]);
-            when(stage.getPauseDurationMillis()).thenReturn(pauseDurationPerStage);
-            when(stage.getDurationMillis()).thenReturn(stageDuration);
-            runExt.addStage(stage);
-        }
-        ((DatadogBuildListenerTestWrapper)datadogBuildListener).setStubbedRunExt(runExt);
+        // Pause duration accumulated by the DatadogGraphListener while the pipeline was running
+        when(workflowRun.getAction(PauseDurationAction.class)).thenReturn(new PauseDurationAction(pauseDuration));
 
         datadogBuildListener.onCompleted(workflowRun, listener);
 
@@ -0,0 +1,252 @@
+/*
+The MIT License
+
+Copyright (c) 2015-Present Datadog, Inc <opensource@datadoghq.com>
+All rights reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package org.datadog.jenkins.plugins.datadog.listeners;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DatadogEventDispatcherTest {
+
+    private DatadogEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        DatadogEventDispatcher.setSynchronous(false);
+        dispatcher = DatadogEventDispatcher.getInstance();
+        dispatcher.getAndResetDroppedTasks();
+        dispatcher.getAndResetInlineTasks();
+        dispatcher.getAndResetCallbackLatencies();
+    }
+
+    @Test
+    public void testTasksWithTheSameKeyAreProcessedInOrder() throws Exception {
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(200);
+        final Object key = new Object();
+        for (int i = 0; i < 200; i++) {
+            final int task = i;
+            // Both paths share the key, as the listeners do for the callbacks of a run.
+            if (i % 2 == 0) {
+                dispatcher.dispatch("test", key, System.nanoTime(), () -> {
+                    processed.add(task);
+                    done.countDown();
+                });
+            } else {
+                dispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> {
+                    processed.add(task);
+                    done.countDown();
+                });
+            }
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        List<Integer> bounded = new ArrayList<>();
+        List<Integer> sequential = new ArrayList<>();
+        for (Integer task : processed) {
+            (task % 2 == 0 ? bounded : sequential).add(task);
+        }
+        for (int i = 1; i < bounded.size(); i++) {
+            Assert.assertTrue(bounded.get(i - 1) < bounded.get(i));
+        }
+        for (int i = 1; i < sequential.size(); i++) {
+            Assert.assertTrue(sequential.get(i - 1) < sequential.get(i));
+        }
+    }
+
+    @Test
+    public void testBoundedQueueDropsTasksWhenFull() throws Exception {
+        final Object key = new Object();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch("test", key, System.nanoTime(), () -> {
+            started.countDown();
+            await(release);
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        try {
+            for (int i = 0; i < 1010; i++) {
+                dispatcher.dispatch("test", key, System.nanoTime(), () -> { });
+            }
+            Assert.assertEquals(10, dispatcher.getAndResetDroppedTasks());
+            Assert.assertEquals(0, dispatcher.getAndResetDroppedTasks());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testSequentialTasksAreNeverDropped() throws Exception {
+        final Object key = new Object();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2000);
+        dispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> await(release));
+        for (int i = 0; i < 2000; i++) {
+            dispatcher.dispatchSequentially("test", key, System.nanoTime(), done::countDown);
+        }
+        Assert.assertTrue(dispatcher.getQueueSize() >= 2000);
+
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, dispatcher.getAndResetDroppedTasks());
+    }
+
+    @Test
+    public void testFullSequentialQueueBlocksTheCaller() throws Exception {
+        final DatadogEventDispatcher boundedDispatcher = new DatadogEventDispatcher(10, 10000);
+        final Object key = new Object();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        boundedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> await(release));
+
+        final CountDownLatch dispatched = new CountDownLatch(1);
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                final int task = i;
+                boundedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> processed.add(task));
+            }
+            dispatched.countDown();
+        });
+        producer.start();
+
+        // The producer waits once the queue is full.
+        Assert.assertFalse(dispatched.await(500, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(boundedDispatcher.getQueueSize() <= 10);
+
+        release.countDown();
+        Assert.assertTrue(dispatched.await(10, TimeUnit.SECONDS));
+        producer.join();
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (processed.size() < 50 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(50, processed.size());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(i, (int) processed.get(i));
+        }
+    }
+
+    @Test
+    public void testFullSequentialQueueRunsTheTaskInlineAfterTheTimeout() throws Exception {
+        final DatadogEventDispatcher boundedDispatcher = new DatadogEventDispatcher(10, 100);
+        final Object key = new Object();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            boundedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> await(release));
+            for (int i = 0; i < 10; i++) {
+                boundedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> { });
+            }
+
+            final Thread caller = Thread.currentThread();
+            final List<Thread> threads = new ArrayList<>();
+            final long start = System.currentTimeMillis();
+            boundedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> threads.add(Thread.currentThread()));
+
+            Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+            Assert.assertEquals(Collections.singletonList(caller), threads);
+            Assert.assertEquals(1, boundedDispatcher.getAndResetInlineTasks());
+            Assert.assertEquals(0, boundedDispatcher.getAndResetInlineTasks());
+        } finally {
+            release.countDown();
+            boundedDispatcher.close();
+        }
+    }
+
+    @Test
+    public void testShutdownProcessesThePendingTasks() throws Exception {
+        final DatadogEventDispatcher closedDispatcher = new DatadogEventDispatcher(10000, 10000);
+        final Object key = new Object();
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            final int task = i;
+            closedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> processed.add(task));
+        }
+        closedDispatcher.close();
+        Assert.assertEquals(100, processed.size());
+
+        // Once the dispatcher is shut down, the sequential tasks are run by the caller and the others are dropped.
+        closedDispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> processed.add(100));
+        Assert.assertEquals(101, processed.size());
+        Assert.assertEquals(1, closedDispatcher.getAndResetInlineTasks());
+        closedDispatcher.dispatch("test", key, System.nanoTime(), () -> processed.add(101));
+        Assert.assertEquals(1, closedDispatcher.getAndResetDroppedTasks());
+        Assert.assertEquals(101, processed.size());
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopTheQueue() throws Exception {
+        final Object key = new Object();
+        final CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatchSequentially("test", key, System.nanoTime(), () -> {
+            throw new IllegalStateException("failure");
+        });
+        dispatcher.dispatchSequentially("test", key, System.nanoTime(), done::countDown);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCallbackLatencyIsRecordedAndReset() {
+        dispatcher.dispatch("callbackA", null, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5), () -> { });
+        dispatcher.dispatch("callbackA", null, System.nanoTime(), () -> { });
+        dispatcher.dispatchSequentially("callbackB", new Object(), System.nanoTime(), () -> { });
+
+        Map<String, DatadogEventDispatcher.CallbackLatency> latencies = dispatcher.getAndResetCallbackLatencies();
+        Assert.assertEquals(2, latencies.get("callbackA").getCount());
+        Assert.assertTrue(latencies.get("callbackA").getMaxMicros() >= 5000);
+        Assert.assertTrue(latencies.get("callbackA").getAverageMicros() >= 2500);
+        Assert.assertEquals(1, latencies.get("callbackB").getCount());
+        Assert.assertTrue(dispatcher.getAndResetCallbackLatencies().isEmpty());
+    }
+
+    @Test
+    public void testSynchronousModeRunsTasksInline() {
+        final List<String> processed = new ArrayList<>();
+        DatadogEventDispatcher.setSynchronous(true);
+        try {
+            dispatcher.dispatch("test", null, System.nanoTime(), () -> processed.add("bounded"));
+            dispatcher.dispatchSequentially("test", new Object(), System.nanoTime(), () -> processed.add("sequential"));
+        } finally {
+            DatadogEventDispatcher.setSynchronous(false);
+        }
+        Assert.assertEquals(2, processed.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
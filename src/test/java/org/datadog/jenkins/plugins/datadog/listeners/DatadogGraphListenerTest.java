@@ -15,6 +15,7 @@ import datadog.trace.core.DDSpan;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.Label;
+import hudson.model.Run;
 import hudson.model.labels.LabelAtom;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import jenkins.model.Jenkins;
@@ -24,6 +25,7 @@ import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
 import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
+import org.datadog.jenkins.plugins.datadog.model.FlowNodeSnapshot;
 import org.datadog.jenkins.plugins.datadog.traces.CITags;
 import org.jenkinsci.plugins.workflow.actions.LabelAction;
 import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
@@ -36,6 +38,7 @@ import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
 import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -47,6 +50,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class DatadogGraphListenerTest {
@@ -58,6 +62,11 @@ public class DatadogGraphListenerTest {
     private DatadogGraphListener listener;
     private DatadogClientStub clientStub;
 
+    @After
+    public void afterEach() {
+        DatadogEventDispatcher.setSynchronous(false);
+    }
+
     @Before
     public void beforeEach() throws IOException {
         DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
@@ -65,6 +74,7 @@ public class DatadogGraphListenerTest {
         cfg.setTraceServiceName(SAMPLE_SERVICE_NAME);
         cfg.setTraceIdsGenerator(IdGenerationStrategy.RANDOM);
 
+        DatadogEventDispatcher.setSynchronous(true);
         listener = new DatadogGraphListener();
         clientStub = new DatadogClientStub();
         ClientFactory.setTestClient(clientStub);
@@ -426,6 +436,39 @@ public class DatadogGraphListenerTest {
 
 
 
+    @Test
+    public void testNodesOfARunAreProcessedInOrder() throws Exception {
+        // The nodes are processed in the background, as they are in production.
+        DatadogEventDispatcher.setSynchronous(false);
+        final List<String> processedNodes = Collections.synchronizedList(new ArrayList<>());
+        clientStub = new DatadogClientStub() {
+            @Override
+            public boolean sendPipelineTrace(Run<?, ?> run, FlowNodeSnapshot flowNode) {
+                processedNodes.add(flowNode.getId());
+                return super.sendPipelineTrace(run, flowNode);
+            }
+        };
+        ClientFactory.setTestClient(clientStub);
+        clientStub.tracerWriter.start();
+
+        WorkflowJob job = jenkinsRule.jenkins.createProject(WorkflowJob.class, "pipelineNodesOrder");
+        job.setDefinition(new CpsFlowDefinition(
+                "stage('one') { echo 'a' }\n" +
+                "stage('two') { echo 'b'; echo 'c' }\n" +
+                "parallel first: { echo 'd' }, second: { echo 'e' }", true));
+        job.scheduleBuild2(0).get();
+
+        final ListWriter tracerWriter = clientStub.tracerWriter();
+        tracerWriter.waitForTraces(2);
+        assertEquals(2, tracerWriter.size());
+
+        // The ids of the nodes of a run are sequential, in the order they are added to the graph.
+        assertTrue(processedNodes.size() > 10);
+        for (int i = 1; i < processedNodes.size(); i++) {
+            assertTrue(Integer.parseInt(processedNodes.get(i - 1)) < Integer.parseInt(processedNodes.get(i)));
+        }
+    }
+
     @Test
     public void getStageNameTest() {
         String stageName = "Hello world";
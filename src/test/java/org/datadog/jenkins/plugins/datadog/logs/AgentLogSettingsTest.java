@@ -0,0 +1,98 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.util.Secret;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.steps.DatadogPipelineAction;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+
+public class AgentLogSettingsTest {
+
+    @Test
+    public void testShouldNotShipLogsFromAgentsWithTheHttpClient() {
+        final DatadogGlobalConfiguration cfg = mockConfig("HTTP", "localhost", 10518);
+
+        assertNull(AgentLogSettings.fromConfig(cfg, null));
+    }
+
+    @Test
+    public void testShouldNotShipLogsFromAgentsWithoutDatadogAgent() {
+        assertNull(AgentLogSettings.fromConfig(mockConfig("DSD", " ", 10518), null));
+        assertNull(AgentLogSettings.fromConfig(mockConfig("DSD", "localhost", null), null));
+    }
+
+    @Test
+    public void testShouldSnapshotTheSettings() {
+        final AgentLogSettings settings = AgentLogSettings.fromConfig(mockConfig("DSD", "localhost", 10518), null);
+
+        assertNotNull(settings);
+        assertEquals("localhost:10518", settings.getTarget());
+        assertEquals("localhost", settings.getHost());
+        assertEquals(Integer.valueOf(10518), settings.getLogCollectionPort());
+        assertEquals(1000, settings.getBufferSize());
+        assertEquals(2000, settings.getMaxLineLength());
+        assertEquals(LongLogLineMode.TRUNCATE, settings.getLongLineMode());
+        assertEquals(10, settings.getMaxRepeatedLines());
+        assertEquals(100, settings.getRateLimit());
+        assertEquals(200, settings.getRateLimitBurst());
+        assertFalse(settings.isMergeJsonLines());
+    }
+
+    @Test
+    public void testShouldApplyThePipelineOptions() {
+        final DatadogPipelineAction pipelineAction = mock(DatadogPipelineAction.class);
+        when(pipelineAction.getLogRateLimit()).thenReturn(5);
+        when(pipelineAction.getMaxRepeatedLogLines()).thenReturn(0);
+
+        final AgentLogSettings settings = AgentLogSettings.fromConfig(mockConfig("DSD", "localhost", 10518), pipelineAction);
+
+        assertNotNull(settings);
+        assertEquals(5, settings.getRateLimit());
+        assertEquals(0, settings.getMaxRepeatedLines());
+    }
+
+    @Test
+    public void testShouldNotHoldSecrets() throws Exception {
+        // The settings are sent to the agents and persisted with the pipeline.
+        for(final Field field : AgentLogSettings.class.getDeclaredFields()) {
+            assertFalse(field.getName(), Secret.class.isAssignableFrom(field.getType()));
+        }
+
+        final AgentLogSettings settings = AgentLogSettings.fromConfig(mockConfig("DSD", "localhost", 10518), null);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(settings);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals("localhost:10518", ((AgentLogSettings) in.readObject()).getTarget());
+        }
+    }
+
+    private static DatadogGlobalConfiguration mockConfig(final String reportWith, final String host, final Integer logCollectionPort) {
+        final DatadogGlobalConfiguration cfg = mock(DatadogGlobalConfiguration.class);
+        when(cfg.getReportWith()).thenReturn(reportWith);
+        when(cfg.getTargetHost()).thenReturn(host);
+        when(cfg.getTargetLogCollectionPort()).thenReturn(logCollectionPort);
+        when(cfg.getTargetLogIntakeURL()).thenReturn("https://http-intake.logs.datadoghq.com/v1/input/");
+        when(cfg.getLogBufferSize()).thenReturn(1000);
+        when(cfg.getMaxLogLineLength()).thenReturn(2000);
+        when(cfg.getLongLogLineMode()).thenReturn(LongLogLineMode.TRUNCATE);
+        when(cfg.getMaxRepeatedLogLines()).thenReturn(10);
+        when(cfg.getLogRateLimit()).thenReturn(100);
+        when(cfg.getLogRateLimitBurst()).thenReturn(200);
+        when(cfg.isMergeJsonLogLines()).thenReturn(false);
+        return cfg;
+    }
+}
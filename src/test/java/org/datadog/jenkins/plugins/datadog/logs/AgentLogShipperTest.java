@@ -0,0 +1,70 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class AgentLogShipperTest {
+
+    private ServerSocket datadogAgent;
+
+    @Before
+    public void setUp() throws Exception {
+        datadogAgent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        datadogAgent.setSoTimeout(10000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        datadogAgent.close();
+    }
+
+    @Test
+    public void testShouldSendTheLinesToTheDatadogAgent() throws Exception {
+        final AgentLogShipper shipper = AgentLogShipper.get(buildSettings(datadogAgent.getLocalPort()));
+        shipper.submit("{\"message\":\"first\"}");
+        shipper.submit("{\"message\":\"second é\"}");
+
+        try(Socket connection = datadogAgent.accept()) {
+            connection.setSoTimeout(10000);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            // The Datadog Agent receives one log message per line.
+            assertEquals("{\"message\":\"first\"}", reader.readLine());
+            assertEquals("{\"message\":\"second é\"}", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testShouldShareTheShipperOfADestination() throws Exception {
+        final AgentLogShipper shipper = AgentLogShipper.get(buildSettings(datadogAgent.getLocalPort()));
+
+        assertSame(shipper, AgentLogShipper.get(buildSettings(datadogAgent.getLocalPort())));
+        try(ServerSocket otherAgent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            assertNotSame(shipper, AgentLogShipper.get(buildSettings(otherAgent.getLocalPort())));
+        }
+    }
+
+    private static AgentLogSettings buildSettings(final int port) {
+        final DatadogGlobalConfiguration cfg = mock(DatadogGlobalConfiguration.class);
+        when(cfg.getReportWith()).thenReturn("DSD");
+        when(cfg.getTargetHost()).thenReturn(InetAddress.getLoopbackAddress().getHostAddress());
+        when(cfg.getTargetLogCollectionPort()).thenReturn(port);
+        when(cfg.getLogBufferSize()).thenReturn(100);
+        when(cfg.getLongLogLineMode()).thenReturn(LongLogLineMode.SPLIT);
+        return AgentLogSettings.fromConfig(cfg, null);
+    }
+}
@@ -0,0 +1,60 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.console.ConsoleNote;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public class ConsoleLineProcessorTest {
+
+    private static final String NOTE = ConsoleNote.PREAMBLE_STR + "AAAAB+LCAAAAAAAAAP9b85aBtbiVQTM=" + ConsoleNote.POSTAMBLE_STR;
+
+    @Test
+    public void testShouldProcessLinesAsRemoveNotesAndTrim() {
+        final String[] lines = new String[]{
+                "\n",
+                "  foo bar \r\n",
+                NOTE + "[Pipeline] sh\n",
+                "\t" + NOTE + " + echo " + NOTE + "foo" + NOTE + "\n",
+                NOTE + NOTE + "\n",
+                "unterminated " + ConsoleNote.PREAMBLE_STR + "note\n",
+                "colored \u001B[32moutput\u001B[0m\n",
+                "café 日本語 🚀 " + NOTE + "über\n"
+        };
+
+        assertProcessedLines(StandardCharsets.UTF_8, lines);
+        assertProcessedLines(StandardCharsets.UTF_16, lines);
+        assertProcessedLines(StandardCharsets.ISO_8859_1, "  " + NOTE + "café \n");
+    }
+
+    @Test
+    public void testShouldReuseBuffersForLongerLines() {
+        final ConsoleLineProcessor processor = new ConsoleLineProcessor(StandardCharsets.UTF_8);
+        final StringBuilder longLine = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            longLine.append(NOTE).append("éline ").append(i);
+        }
+
+        assertEquals("short", process(processor, StandardCharsets.UTF_8, NOTE + "short"));
+        assertEquals(ConsoleNote.removeNotes(longLine.toString()), process(processor, StandardCharsets.UTF_8, longLine.toString()));
+        assertEquals("short", process(processor, StandardCharsets.UTF_8, NOTE + "short"));
+    }
+
+    private static void assertProcessedLines(final Charset charset, final String... lines) {
+        final ConsoleLineProcessor processor = new ConsoleLineProcessor(charset);
+        for(final String line : lines) {
+            assertEquals(ConsoleNote.removeNotes(line).trim(), process(processor, charset, line));
+        }
+    }
+
+    private static String process(final ConsoleLineProcessor processor, final Charset charset, final String line) {
+        final byte[] bytes = line.getBytes(charset);
+        // The line is followed by other bytes in the buffer of the stream.
+        final byte[] buffer = new byte[bytes.length + 16];
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+        return processor.process(buffer, bytes.length);
+    }
+}
@@ -0,0 +1,62 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ConsoleLineSplitterTest {
+
+    @Test
+    public void testShouldSplitTheLongLines() throws IOException {
+        final List<String> messages = new ArrayList<>();
+        final ConsoleLineSplitter splitter = new ConsoleLineSplitter(new ConsoleLineProcessor(StandardCharsets.UTF_8), 4, LongLogLineMode.SPLIT,
+                (message, endOfLine) -> messages.add(message + (endOfLine ? "$" : "")));
+
+        append(splitter, "abcdefghij");
+        splitter.endLine();
+        append(splitter, "abcd");
+        splitter.endLine();
+
+        assertEquals(Arrays.asList("abcd", "efgh", "ij$", "abcd$"), messages);
+    }
+
+    @Test
+    public void testShouldNotSplitTheCharacters() throws IOException {
+        final List<String> messages = new ArrayList<>();
+        final ConsoleLineSplitter splitter = new ConsoleLineSplitter(new ConsoleLineProcessor(StandardCharsets.UTF_8), 4, LongLogLineMode.SPLIT,
+                (message, endOfLine) -> messages.add(message));
+
+        // Every character is encoded with 3 bytes.
+        append(splitter, "日本語");
+        splitter.endLine();
+
+        assertEquals(Arrays.asList("日", "本", "語"), messages);
+    }
+
+    @Test
+    public void testShouldTruncateTheLongLines() throws IOException {
+        final List<String> messages = new ArrayList<>();
+        final ConsoleLineSplitter splitter = new ConsoleLineSplitter(new ConsoleLineProcessor(StandardCharsets.UTF_8), 4, LongLogLineMode.TRUNCATE,
+                (message, endOfLine) -> messages.add(message));
+
+        for(int i = 0; i < 1000; i++) {
+            append(splitter, "abcdefghij");
+        }
+        splitter.endLine();
+        append(splitter, "next");
+        splitter.endLine();
+
+        assertEquals(Arrays.asList("abcd" + ConsoleLineProcessor.TRUNCATED_MARKER, "next"), messages);
+    }
+
+    private static void append(final ConsoleLineSplitter splitter, final String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        splitter.append(bytes, 0, bytes.length);
+    }
+}
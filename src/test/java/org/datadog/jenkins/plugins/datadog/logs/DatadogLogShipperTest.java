@@ -0,0 +1,120 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class DatadogLogShipperTest {
+
+    @After
+    public void tearDown() {
+        ClientFactory.setTestClient(null);
+    }
+
+    @Test
+    public void testShouldDropTheOldestLines() {
+        final DatadogLogShipper shipper = new DatadogLogShipper(2);
+        final LogCollectionAction oldRun = new LogCollectionAction();
+        final LogCollectionAction newRun = new LogCollectionAction();
+        shipper.submit(new DatadogLogShipper.LogEntry("1", oldRun), LogOverflowPolicy.DROP_OLDEST, 0);
+        shipper.submit(new DatadogLogShipper.LogEntry("2", oldRun), LogOverflowPolicy.DROP_OLDEST, 0);
+        shipper.submit(new DatadogLogShipper.LogEntry("3", newRun), LogOverflowPolicy.DROP_OLDEST, 0);
+
+        assertEquals(2, shipper.getQueueSize());
+        assertEquals(1, oldRun.getDroppedLines());
+        assertEquals(0, newRun.getDroppedLines());
+        assertEquals(1, shipper.getAndResetDroppedLines());
+    }
+
+    @Test
+    public void testShouldDropTheNewestLines() {
+        final DatadogLogShipper shipper = new DatadogLogShipper(1);
+        final LogCollectionAction oldRun = new LogCollectionAction();
+        final LogCollectionAction newRun = new LogCollectionAction();
+        shipper.submit(new DatadogLogShipper.LogEntry("1", oldRun), LogOverflowPolicy.DROP_NEWEST, 0);
+        shipper.submit(new DatadogLogShipper.LogEntry("2", newRun), LogOverflowPolicy.DROP_NEWEST, 0);
+
+        assertEquals(1, shipper.getQueueSize());
+        assertEquals(0, oldRun.getDroppedLines());
+        assertEquals(1, newRun.getDroppedLines());
+    }
+
+    @Test
+    public void testShouldDropTheNewestLinesAfterBlocking() {
+        // The shipper is not started, so the buffer never has room for the new line.
+        final DatadogLogShipper shipper = new DatadogLogShipper(1);
+        final LogCollectionAction action = new LogCollectionAction();
+        shipper.submit(new DatadogLogShipper.LogEntry("1", action), LogOverflowPolicy.BLOCK, 0);
+
+        final long start = System.nanoTime();
+        shipper.submit(new DatadogLogShipper.LogEntry("2", action), LogOverflowPolicy.BLOCK, 50);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, shipper.getQueueSize());
+        assertEquals(1, action.getDroppedLines());
+    }
+
+    @Test
+    public void testShouldShipTheLinesInBatches() {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+        final DatadogClientStub client = new DatadogClientStub() {
+            @Override
+            public boolean sendLogBatch(List<String> payloads) {
+                batches.add(payloads.size());
+                return super.sendLogBatch(payloads);
+            }
+        };
+        ClientFactory.setTestClient(client);
+
+        final DatadogLogShipper shipper = new DatadogLogShipper(3000);
+        final LogCollectionAction action = new LogCollectionAction();
+        for(int i = 0; i < 2500; i++) {
+            shipper.submit(new DatadogLogShipper.LogEntry("{\"message\":\"" + i + "\"}", action), LogOverflowPolicy.DROP_NEWEST, 0);
+        }
+        shipper.start();
+
+        assertTrue(shipper.flush(10000));
+        assertEquals(2500, client.logLines.size());
+        assertEquals(2500, action.getShippedLines());
+        assertEquals(2500, shipper.getAndResetShippedLines());
+        assertEquals(3, batches.size());
+        for(final int batch : batches) {
+            assertTrue(batch <= 1000);
+        }
+    }
+
+    @Test
+    public void testShouldDropTheBatchesThatCannotBeSent() {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+        ClientFactory.setTestClient(new DatadogClientStub() {
+            @Override
+            public boolean sendLogBatch(List<String> payloads) {
+                batches.add(payloads.size());
+                return false;
+            }
+        });
+
+        final DatadogLogShipper shipper = new DatadogLogShipper(10);
+        final LogCollectionAction action = new LogCollectionAction();
+        for(int i = 0; i < 5; i++) {
+            shipper.submit(new DatadogLogShipper.LogEntry("{}", action), LogOverflowPolicy.DROP_NEWEST, 0);
+        }
+        shipper.start();
+
+        assertTrue(shipper.flush(10000));
+        // The batch is sent again once, in case the connection has to be re-established.
+        assertEquals(2, batches.size());
+        assertEquals(0, action.getShippedLines());
+        assertEquals(5, action.getDroppedLines());
+        assertEquals(5, shipper.getAndResetDroppedLines());
+    }
+}
@@ -0,0 +1,117 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+
+import hudson.console.ConsoleNote;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class DatadogLogUploaderTest {
+
+    private static final String NOTE = ConsoleNote.PREAMBLE_STR + "AAAAB+LCAAAAAAAAAP9b85aBtbiVQTM=" + ConsoleNote.POSTAMBLE_STR;
+
+    @Test
+    public void testShouldReadTheLinesAcrossChunks() throws IOException {
+        final String longLine = String.join("", Collections.nCopies(100, "x"));
+        final String log = NOTE + "[Pipeline] sh\n" + longLine + "\n\n  café " + NOTE + "done";
+        final List<String> lines = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        DatadogLogUploader.readLines(channel(log, 0), 0, new ConsoleLineProcessor(StandardCharsets.UTF_8), null, 64, LongLogLineMode.SPLIT, 64, (batch, endOffset) -> {
+            lines.addAll(batch);
+            offsets.add(endOffset);
+        });
+
+        // Lines longer than the maximum length are split.
+        assertEquals(Arrays.asList("[Pipeline] sh", longLine.substring(0, 64), longLine.substring(64), "café done"), lines);
+        assertEquals(Arrays.asList((long) log.getBytes(StandardCharsets.UTF_8).length), offsets);
+    }
+
+    @Test
+    public void testShouldResumeFromTheOffset() throws IOException {
+        final String log = "first\nsecond\nthird\n";
+        final int offset = "first\n".length();
+        final List<String> lines = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        DatadogLogUploader.readLines(channel(log, offset), offset, new ConsoleLineProcessor(StandardCharsets.UTF_8), null, 65536, LongLogLineMode.SPLIT, 1024, (batch, endOffset) -> {
+            lines.addAll(batch);
+            offsets.add(endOffset);
+        });
+
+        assertEquals(Arrays.asList("second", "third"), lines);
+        assertEquals(Arrays.asList((long) log.length()), offsets);
+    }
+
+    @Test
+    public void testShouldSendTheLinesInBatches() throws IOException {
+        final StringBuilder log = new StringBuilder();
+        for(int i = 0; i < 2500; i++) {
+            log.append("line ").append(i).append('\n');
+        }
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        DatadogLogUploader.readLines(channel(log.toString(), 0), 0, new ConsoleLineProcessor(StandardCharsets.UTF_8), null, 65536, LongLogLineMode.SPLIT, 4096, (batch, endOffset) -> {
+            batchSizes.add(batch.size());
+            offsets.add(endOffset);
+        });
+
+        assertEquals(Arrays.asList(1000, 1000, 500), batchSizes);
+        assertEquals((long) log.indexOf("line 1000\n"), (long) offsets.get(0));
+        assertEquals((long) log.length(), (long) offsets.get(2));
+    }
+
+    @Test
+    public void testShouldNotSplitMultiLineEventsAcrossBatches() throws IOException {
+        final StringBuilder log = new StringBuilder();
+        for(int i = 0; i < 999; i++) {
+            log.append("line ").append(i).append('\n');
+        }
+        log.append("java.lang.IllegalStateException: boom\n\tat Foo.bar(Foo.java:1)\n\tat Foo.main(Foo.java:2)\nnext\n");
+        final MultiLineAggregator.Settings settings = new MultiLineAggregator.Settings(Pattern.compile("^(?!at )"), 500, 65536, 1000);
+        final List<List<String>> batches = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        DatadogLogUploader.readLines(channel(log.toString(), 0), 0, new ConsoleLineProcessor(StandardCharsets.UTF_8), settings, 65536, LongLogLineMode.SPLIT, 4096, (batch, endOffset) -> {
+            batches.add(new ArrayList<>(batch));
+            offsets.add(endOffset);
+        });
+
+        assertEquals(2, batches.size());
+        assertEquals(1000, batches.get(0).size());
+        assertEquals("java.lang.IllegalStateException: boom\nat Foo.bar(Foo.java:1)\nat Foo.main(Foo.java:2)", batches.get(0).get(999));
+        // The event which is not complete yet is read again when the upload is resumed.
+        assertEquals((long) log.indexOf("next\n"), (long) offsets.get(0));
+        assertEquals(Arrays.asList("next"), batches.get(1));
+        assertEquals((long) log.length(), (long) offsets.get(1));
+    }
+
+    @Test
+    public void testShouldTruncateTheLongLines() throws IOException {
+        final String longLine = String.join("", Collections.nCopies(10000, "x"));
+        final String log = "first\n" + longLine + "\nlast\n";
+        final List<String> lines = new ArrayList<>();
+
+        DatadogLogUploader.readLines(channel(log, 0), 0, new ConsoleLineProcessor(StandardCharsets.UTF_8), null, 100, LongLogLineMode.TRUNCATE, 64, (batch, endOffset) -> {
+            lines.addAll(batch);
+        });
+
+        assertEquals(Arrays.asList("first", longLine.substring(0, 100) + ConsoleLineProcessor.TRUNCATED_MARKER, "last"), lines);
+    }
+
+    private static ReadableByteChannel channel(final String log, final int offset) {
+        final byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+        return Channels.newChannel(new ByteArrayInputStream(bytes, offset, bytes.length - offset));
+    }
+}
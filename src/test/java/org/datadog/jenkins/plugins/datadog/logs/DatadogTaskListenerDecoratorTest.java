@@ -0,0 +1,133 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sf.json.JSONObject;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class DatadogTaskListenerDecoratorTest {
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+    private ServerSocket datadogAgent;
+
+    @Before
+    public void setUp() throws Exception {
+        ClientFactory.setTestClient(new DatadogClientStub());
+        datadogAgent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        datadogAgent.setSoTimeout(10000);
+
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollectBuildLogs(true);
+        cfg.setLogCollectionMode(LogCollectionMode.STREAMING.name());
+        cfg.setShipLogsFromAgents(true);
+        cfg.setTargetHost(InetAddress.getLoopbackAddress().getHostAddress());
+        cfg.setTargetLogCollectionPort(datadogAgent.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setShipLogsFromAgents(false);
+        cfg.setCollectBuildLogs(false);
+        cfg.setReportWith("HTTP");
+        datadogAgent.close();
+        ClientFactory.setTestClient(null);
+    }
+
+    @Test
+    public void testShouldShipTheLinesFromTheAgent() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setReportWith("DSD");
+        final WorkflowRun run = runPipeline("agentLogs");
+
+        final DatadogTaskListenerDecorator decorator = sendToAgent(new DatadogTaskListenerDecorator(run));
+        final ByteArrayOutputStream console = new ByteArrayOutputStream();
+        final OutputStream stream = decorator.decorate(console);
+        assertNotSame(console, stream);
+        stream.write("hello from the agent\n".getBytes(StandardCharsets.UTF_8));
+        stream.close();
+
+        // The console is not modified.
+        assertEquals("hello from the agent\n", new String(console.toByteArray(), StandardCharsets.UTF_8));
+        try(Socket connection = datadogAgent.accept()) {
+            connection.setSoTimeout(10000);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            final String line = reader.readLine();
+            assertNotNull(line);
+            final JSONObject payload = JSONObject.fromObject(line);
+            assertEquals("hello from the agent", payload.getString("message"));
+            assertTrue(payload.toString().contains("agentLogs"));
+        }
+    }
+
+    @Test
+    public void testShouldNotShipTheLinesFromTheAgentWithTheHttpClient() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setReportWith("HTTP");
+        final WorkflowRun run = runPipeline("agentLogsHttp");
+
+        final DatadogTaskListenerDecorator decorator = sendToAgent(new DatadogTaskListenerDecorator(run));
+        final ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        // The API key is not sent to the agents, so they cannot ship the lines.
+        assertSame(console, decorator.decorate(console));
+    }
+
+    @Test
+    public void testShouldNotShipTheLinesFromTheAgentIfDisabled() throws Exception {
+        final DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setReportWith("DSD");
+        cfg.setShipLogsFromAgents(false);
+        final WorkflowRun run = runPipeline("agentLogsDisabled");
+
+        final DatadogTaskListenerDecorator decorator = sendToAgent(new DatadogTaskListenerDecorator(run));
+        final ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+        assertSame(console, decorator.decorate(console));
+    }
+
+    private static WorkflowRun runPipeline(final String jobName) throws Exception {
+        final WorkflowJob job = j.jenkins.createProject(WorkflowJob.class, jobName);
+        job.setDefinition(new CpsFlowDefinition("echo 'hello'", true));
+        return j.buildAndAssertSuccess(job);
+    }
+
+    /**
+     * Serializes the decorator, as it is done when a step runs on an agent.
+     */
+    private static DatadogTaskListenerDecorator sendToAgent(final DatadogTaskListenerDecorator decorator) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(decorator);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (DatadogTaskListenerDecorator) in.readObject();
+        }
+    }
+}
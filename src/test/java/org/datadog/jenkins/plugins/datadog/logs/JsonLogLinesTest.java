@@ -0,0 +1,83 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class JsonLogLinesTest {
+
+    private static final String ENVELOPE = "{\"ddtags\":\"job:tests\",\"ddsource\":\"jenkins\"}";
+
+    @Test
+    public void testShouldAddTheMessageToTheEnvelope() {
+        final String prefix = JsonLogLines.toPayloadPrefix(ENVELOPE);
+
+        final String message = "quote \" backslash \\ tab \t bell \u0007 café 🚀";
+        final JSONObject payload = JSONObject.fromObject(JsonLogLines.toPayload(prefix, message));
+
+        assertEquals(message, payload.getString("message"));
+        assertEquals("job:tests", payload.getString("ddtags"));
+        assertEquals("jenkins", payload.getString("ddsource"));
+    }
+
+    @Test
+    public void testShouldAddTheMessageToAnEmptyEnvelope() {
+        final String prefix = JsonLogLines.toPayloadPrefix(" { } ");
+
+        assertEquals("{\"message\":\"foo\"}", JsonLogLines.toPayload(prefix, "foo"));
+    }
+
+    @Test
+    public void testShouldSpliceJsonLines() {
+        final String prefix = JsonLogLines.toPayloadPrefix(ENVELOPE);
+        final String line = "{\"level\":\"info\", \"message\":\"done\\n\",\"duration\":-1.5e3,\"tags\":[1,{\"a\":null},true]}";
+
+        final String payload = JsonLogLines.toStructuredPayload(prefix, JsonLogLines.getKeys(ENVELOPE), line);
+
+        assertEquals("{\"ddtags\":\"job:tests\",\"ddsource\":\"jenkins\"," + line.substring(1), payload);
+        final JSONObject object = JSONObject.fromObject(payload);
+        assertEquals("info", object.getString("level"));
+        assertEquals("done\n", object.getString("message"));
+        assertEquals("jenkins", object.getString("ddsource"));
+    }
+
+    @Test
+    public void testShouldNotSpliceOtherLines() {
+        final String prefix = JsonLogLines.toPayloadPrefix(ENVELOPE);
+        final Set<String> keys = JsonLogLines.getKeys(ENVELOPE);
+
+        for(final String line : Arrays.asList(
+                "plain text",
+                "{}",
+                "{\"a\":1} {\"b\":2}",
+                "{\"a\":1,}",
+                "{\"a\":01}",
+                "{\"a\":\"\\x\"}",
+                "{\"a\":tru}",
+                "{\"a\":[1,2}",
+                "{\"a\":\"unterminated}",
+                "{\"ddsource\":\"my-tool\"}",
+                "{\"dd\\u0073ource\":\"my-tool\"}")) {
+            assertNull(line, JsonLogLines.toStructuredPayload(prefix, keys, line));
+        }
+        assertNull(JsonLogLines.toStructuredPayload(prefix, null, "{\"a\":1}"));
+    }
+
+    @Test
+    public void testShouldReturnTheKeysOfAnObject() {
+        assertEquals(new HashSet<>(Arrays.asList("ddtags", "ddsource")), JsonLogLines.getKeys(ENVELOPE));
+        assertNull(JsonLogLines.getKeys("[1]"));
+
+        final StringBuilder nested = new StringBuilder("{\"a\":");
+        for(int i = 0; i < 1000; i++) {
+            nested.append('[');
+        }
+        assertNull(JsonLogLines.getKeys(nested.toString()));
+    }
+}
@@ -0,0 +1,40 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class LogCollectionActionTest {
+
+    @Test
+    public void testShouldCountTheConsoleOutputOfTheStages() {
+        final LogCollectionAction action = new LogCollectionAction();
+        action.addConsoleOutput(100, 2);
+        action.onStageStarted("5", action.getConsoleVolume());
+        action.addConsoleOutput(10, 0);
+        action.onStageStarted("8", action.getConsoleVolume());
+        action.addConsoleOutput(20, 3);
+
+        assertArrayEquals(new long[]{20, 3}, action.onStageCompleted("8", action.getConsoleVolume()));
+        action.addConsoleOutput(5, 1);
+        assertArrayEquals(new long[]{35, 4}, action.onStageCompleted("5", action.getConsoleVolume()));
+        assertNull(action.onStageCompleted("5", action.getConsoleVolume()));
+        assertNull(action.onStageCompleted("12", action.getConsoleVolume()));
+
+        assertEquals(135, action.getConsoleBytes());
+        assertEquals(6, action.getConsoleLines());
+    }
+
+    @Test
+    public void testShouldCountTheLinesOfTheConsoleOutput() {
+        final byte[] output = "foo\nbar\n\nbaz".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(3, ConsoleVolumeOutputStream.countLines(output, 0, output.length));
+        assertEquals(1, ConsoleVolumeOutputStream.countLines(output, 4, 4));
+        assertEquals(0, ConsoleVolumeOutputStream.countLines(output, 10, 3));
+    }
+}
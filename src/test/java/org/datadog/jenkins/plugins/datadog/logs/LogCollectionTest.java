@@ -135,6 +135,8 @@ public class LogCollectionTest {
     }
 
     private void assertLogs(final String expectedMessage, final boolean checkTraces) {
+        // The log lines are shipped asynchronously.
+        Assert.assertTrue(DatadogLogShipper.get().flush(10000));
         boolean hasExpectedMessage = false;
         List<JSONObject> logLines = stubClient.logLines;
         for(final JSONObject logLine : logLines) {
@@ -0,0 +1,41 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LogRateLimiterTest {
+
+    @Test
+    public void testShouldAllowTheBurstThenTheRate() {
+        final long start = 0;
+        final LogRateLimiter limiter = new LogRateLimiter(10, 50, start);
+
+        for(int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire(start));
+        }
+        assertFalse(limiter.tryAcquire(start));
+
+        // 10 lines per second are allowed once the burst is exhausted.
+        final long later = start + TimeUnit.MILLISECONDS.toNanos(500);
+        for(int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(later));
+        }
+        assertFalse(limiter.tryAcquire(later));
+    }
+
+    @Test
+    public void testShouldNotRefillAboveTheBurst() {
+        final long start = 0;
+        final LogRateLimiter limiter = new LogRateLimiter(10, 20, start);
+
+        final long later = start + TimeUnit.MINUTES.toNanos(1);
+        for(int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(later));
+        }
+        assertFalse(limiter.tryAcquire(later));
+    }
+}
@@ -0,0 +1,90 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void testShouldRoundTheCapacityToAPowerOfTwo() {
+        assertEquals(1, new LogRingBuffer<String>(0).getCapacity());
+        assertEquals(4, new LogRingBuffer<String>(4).getCapacity());
+        assertEquals(8, new LogRingBuffer<String>(5).getCapacity());
+    }
+
+    @Test
+    public void testShouldKeepTheOrderAcrossLaps() {
+        final LogRingBuffer<Integer> buffer = new LogRingBuffer<>(4);
+        int next = 0;
+        for(int lap = 0; lap < 3; lap++) {
+            for(int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(lap * 4 + i));
+            }
+            assertFalse(buffer.offer(-1));
+            assertEquals(4, buffer.size());
+
+            for(int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(next++), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    public void testShouldNotLoseElementsWithConcurrentProducers() throws InterruptedException {
+        final LogRingBuffer<Integer> buffer = new LogRingBuffer<>(64);
+        final int producers = 4;
+        final int elementsPerProducer = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < elementsPerProducer; i++) {
+                    while(!buffer.offer(producer * elementsPerProducer + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        final Set<Integer> consumed = new HashSet<>();
+        final int[] lastByProducer = new int[]{-1, -1, -1, -1};
+        while(consumed.size() < producers * elementsPerProducer) {
+            final Integer element = buffer.poll();
+            if(element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(consumed.add(element));
+            // Elements of the same producer are consumed in order.
+            final int producer = element / elementsPerProducer;
+            assertTrue(element > lastByProducer[producer]);
+            lastByProducer[producer] = element;
+        }
+
+        for(final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.poll());
+    }
+}
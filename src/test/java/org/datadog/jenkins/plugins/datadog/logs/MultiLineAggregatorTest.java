@@ -0,0 +1,85 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class MultiLineAggregatorTest {
+
+    private static final Pattern STACK_TRACE_START = Pattern.compile("^(?!at |Caused by: |\\.\\.\\. \\d+ more)");
+
+    @Test
+    public void testShouldMergeTheLinesOfAStackTrace() {
+        final List<String> events = new ArrayList<>();
+        final MultiLineAggregator aggregator = new MultiLineAggregator(new MultiLineAggregator.Settings(STACK_TRACE_START, 500, 65536, 1000), events::add);
+
+        assertTrue(aggregator.add("[Pipeline] sh"));
+        assertTrue(aggregator.add("java.lang.RuntimeException: boom"));
+        assertFalse(aggregator.add("at Foo.bar(Foo.java:10)"));
+        assertFalse(aggregator.add("Caused by: java.io.IOException: closed"));
+        assertFalse(aggregator.add("... 3 more"));
+        assertTrue(aggregator.add("Finished: FAILURE"));
+        aggregator.flush();
+
+        assertEquals(Arrays.asList(
+                "[Pipeline] sh",
+                "java.lang.RuntimeException: boom\nat Foo.bar(Foo.java:10)\nCaused by: java.io.IOException: closed\n... 3 more",
+                "Finished: FAILURE"), events);
+        assertFalse(aggregator.hasPendingEvent());
+    }
+
+    @Test
+    public void testShouldLimitTheLinesAndTheSizeOfTheEvents() {
+        final List<String> events = new ArrayList<>();
+        final MultiLineAggregator aggregator = new MultiLineAggregator(new MultiLineAggregator.Settings(STACK_TRACE_START, 3, 20, 1000), events::add);
+
+        aggregator.add("Error");
+        for(int i = 0; i < 3; i++) {
+            aggregator.add("at " + i);
+        }
+        aggregator.add("Error");
+        aggregator.add("at " + String.join("", Collections.nCopies(20, "x")));
+        aggregator.flush();
+
+        assertEquals(Arrays.asList("Error\nat 0\nat 1", "at 2", "Error", "at xxxxxxxxxxxxxxxxxxxx"), events);
+    }
+
+    @Test
+    public void testShouldFlushTheEventsAfterTheTimeout() {
+        final List<String> events = new ArrayList<>();
+        final MultiLineAggregator aggregator = new MultiLineAggregator(new MultiLineAggregator.Settings(STACK_TRACE_START, 500, 65536, 1000), events::add);
+
+        aggregator.add("Error");
+        aggregator.flushIfExpired(System.currentTimeMillis());
+        assertTrue(events.isEmpty());
+
+        aggregator.flushIfExpired(System.currentTimeMillis() + 1000);
+        assertEquals(Arrays.asList("Error"), events);
+
+        aggregator.add("at Foo.bar(Foo.java:10)");
+        aggregator.close();
+        assertEquals(Arrays.asList("Error", "at Foo.bar(Foo.java:10)"), events);
+    }
+
+    @Test
+    public void testShouldSendTheEventsOutsideOfTheLockOfTheAggregator() {
+        final List<Boolean> lockHeld = new ArrayList<>();
+        final MultiLineAggregator[] aggregator = new MultiLineAggregator[1];
+        aggregator[0] = new MultiLineAggregator(new MultiLineAggregator.Settings(STACK_TRACE_START, 500, 65536, 1000),
+                message -> lockHeld.add(Thread.holdsLock(aggregator[0])));
+
+        aggregator[0].add("Error");
+        aggregator[0].add("Finished: FAILURE");
+        aggregator[0].flushIfExpired(System.currentTimeMillis() + 1000);
+
+        assertEquals(Arrays.asList(false, false), lockHeld);
+    }
+}
@@ -0,0 +1,71 @@
+package org.datadog.jenkins.plugins.datadog.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RepeatedLineCollapserTest {
+
+    @Test
+    public void testShouldCollapseSimilarLines() {
+        final List<String> lines = new ArrayList<>();
+        final RepeatedLineCollapser collapser = new RepeatedLineCollapser(lines::add);
+
+        int collapsed = 0;
+        for(int i = 0; i <= 100; i++) {
+            if(collapser.add("Downloading: " + i + "% (" + i * 10 + " kB)", 2)) {
+                collapsed++;
+            }
+        }
+        collapser.add("Download complete", 2);
+
+        assertEquals(98, collapsed);
+        assertEquals(Arrays.asList(
+                "Downloading: 0% (0 kB)",
+                "Downloading: 1% (10 kB)",
+                "Downloading: 2% (20 kB)",
+                "Previous line repeated 98 more times",
+                "Download complete"), lines);
+    }
+
+    @Test
+    public void testShouldSendEveryLineWithoutLimit() {
+        final List<String> lines = new ArrayList<>();
+        final RepeatedLineCollapser collapser = new RepeatedLineCollapser(lines::add);
+
+        for(int i = 0; i < 5; i++) {
+            assertFalse(collapser.add(".", 0));
+        }
+        collapser.flush();
+
+        assertEquals(5, lines.size());
+    }
+
+    @Test
+    public void testShouldSendTheCollapsedLinesWhenFlushed() {
+        final List<String> lines = new ArrayList<>();
+        final RepeatedLineCollapser collapser = new RepeatedLineCollapser(lines::add);
+
+        collapser.add("tick 1", 1);
+        collapser.add("tick 2", 1);
+        assertTrue(collapser.add("tick 3", 1));
+        collapser.flush();
+
+        assertEquals(Arrays.asList("tick 1", "tick 2", "Previous line repeated 1 more time"), lines);
+    }
+
+    @Test
+    public void testShouldCompareTheLinesWithoutTheirNumbers() {
+        assertTrue(RepeatedLineCollapser.isSimilar("Progress 1/10", "Progress 10/10"));
+        assertTrue(RepeatedLineCollapser.isSimilar("....", "...."));
+        assertFalse(RepeatedLineCollapser.isSimilar("....", "....."));
+        assertFalse(RepeatedLineCollapser.isSimilar("Progress 1/10", "Progress 1/10 done"));
+        assertFalse(RepeatedLineCollapser.isSimilar("Progress 1", "Progress a"));
+    }
+}
@@ -16,10 +16,22 @@ import static org.datadog.jenkins.plugins.datadog.traces.DatadogTracesUtilities.
 import static org.datadog.jenkins.plugins.datadog.traces.DatadogTracesUtilities.SAMPLE_TIME;
 import static org.datadog.jenkins.plugins.datadog.traces.DatadogTracesUtilities.getDummyPipeline;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.FlowStartNode;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class BuildPipelineTest {
@@ -57,6 +69,173 @@ public class BuildPipelineTest {
         assertNode(atomTwo, SAMPLE_STEP_ATOM_NODE_TWO_ID, SAMPLE_STEP_ATOM_NODE_TWO_NAME, (SAMPLE_TIME + 200) * 1000, SAMPLE_TIME * 1000, 0);
     }
 
+    @Test
+    public void testShouldBuildPipelineWithManySiblings() {
+        //Given
+        final int size = 500;
+        final FlowStartNode flowStartNode = mock(FlowStartNode.class);
+        when(flowStartNode.getId()).thenReturn("start");
+        when(flowStartNode.getDisplayName()).thenReturn("Start of Pipeline");
+
+        final BuildPipeline pipeline = new BuildPipeline();
+        // Steps are added in reverse order, so the siblings must be sorted by start time.
+        for(int i = size; i > 0; i--) {
+            pipeline.add(mockStepAtomNode(String.valueOf(i), SAMPLE_TIME + i, flowStartNode));
+        }
+
+        //When
+        final BuildPipelineNode pipelineRoot = pipeline.buildTree();
+
+        //Then
+        final List<BuildPipelineNode> steps = pipelineRoot.getChildren();
+        assertEquals("start", pipelineRoot.getId());
+        assertEquals(size, steps.size());
+        for(int i = 0; i < size - 1; i++) {
+            final BuildPipelineNode step = steps.get(i);
+            assertEquals(String.valueOf(i + 1), step.getId());
+            assertEquals(steps.get(i + 1).getStartTimeMicros(), step.getEndTimeMicros());
+        }
+    }
+
+    @Test
+    public void testShouldDetachCompletedBlockWhenTooManyPendingNodes() {
+        //Given
+        final Map<String, FlowNode> flowNodeById = getDummyPipeline();
+        final BuildPipeline pipeline = new BuildPipeline();
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_ATOM_NODE_ONE_ID));
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_ATOM_NODE_TWO_ID));
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_END_NODE_ID));
+
+        //When
+        final List<BuildPipelineNode> detachedNodes = pipeline.detachCompletedNodes(2);
+
+        //Then
+        assertEquals(1, detachedNodes.size());
+        final BuildPipelineNode block = detachedNodes.get(0);
+        assertNode(block, SAMPLE_STEP_START_NODE_ID, SAMPLE_STEP_START_NODE_NAME, SAMPLE_TIME * 1000, SAMPLE_TIME * 1000, 2);
+        assertEquals(SAMPLE_BLOCK_START_NODE_ID, block.getParent().getId());
+        assertNode(block.getChildren().get(0), SAMPLE_STEP_ATOM_NODE_ONE_ID, SAMPLE_STEP_ATOM_NODE_ONE_NAME, (SAMPLE_TIME + 100) * 1000, (SAMPLE_TIME + 200) * 1000, 0);
+        assertNode(block.getChildren().get(1), SAMPLE_STEP_ATOM_NODE_TWO_ID, SAMPLE_STEP_ATOM_NODE_TWO_NAME, (SAMPLE_TIME + 200) * 1000, SAMPLE_TIME * 1000, 0);
+        // Only the enclosing blocks that are still running are kept.
+        assertEquals(2, pipeline.getPendingNodes());
+    }
+
+    @Test
+    public void testShouldNotDetachNodesUnderTheLimit() {
+        //Given
+        final Map<String, FlowNode> flowNodeById = getDummyPipeline();
+        final BuildPipeline pipeline = new BuildPipeline();
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_ATOM_NODE_ONE_ID));
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_ATOM_NODE_TWO_ID));
+        pipeline.add(flowNodeById.get(SAMPLE_STEP_END_NODE_ID));
+
+        //When
+        final List<BuildPipelineNode> detachedNodes = pipeline.detachCompletedNodes(5);
+
+        //Then
+        assertEquals(0, detachedNodes.size());
+        assertEquals(5, pipeline.getPendingNodes());
+    }
+
+    @Test
+    public void testShouldDetachFinishedStepsWhenTooManyPendingNodes() {
+        //Given
+        final FlowStartNode flowStartNode = mock(FlowStartNode.class);
+        when(flowStartNode.getId()).thenReturn("start");
+        when(flowStartNode.getDisplayName()).thenReturn("Start of Pipeline");
+
+        final BuildPipeline pipeline = new BuildPipeline();
+        for(int i = 1; i <= 10; i++) {
+            pipeline.add(mockStepAtomNode(String.valueOf(i), SAMPLE_TIME + i, flowStartNode));
+        }
+
+        //When
+        final List<BuildPipelineNode> settledSteps = pipeline.detachCompletedNodes(5);
+
+        //Then
+        assertEquals(9, settledSteps.size());
+        for(int i = 0; i < settledSteps.size(); i++) {
+            final BuildPipelineNode step = settledSteps.get(i);
+            assertEquals(String.valueOf(i + 1), step.getId());
+            assertEquals((SAMPLE_TIME + i + 2) * 1000, step.getEndTimeMicros());
+            assertEquals("start", step.getParent().getId());
+        }
+        // The last step and the pipeline node are still pending.
+        assertEquals(2, pipeline.getPendingNodes());
+        assertEquals(0, pipeline.detachCompletedNodes(5).size());
+    }
+
+    @Test
+    public void testShouldSetStageNameOfDetachedNodesInsideNonStageBlocks() {
+        //Given
+        final FlowStartNode flowStartNode = mock(FlowStartNode.class);
+        when(flowStartNode.getId()).thenReturn("start");
+        when(flowStartNode.getDisplayName()).thenReturn("Start of Pipeline");
+
+        final StepStartNode stageStartNode = mock(StepStartNode.class);
+        when(stageStartNode.getId()).thenReturn("stage");
+        when(stageStartNode.getDisplayName()).thenReturn("Build");
+        when(stageStartNode.getAction(LabelAction.class)).thenReturn(new LabelAction("Build"));
+
+        // Blocks that are not stages, e.g. timeout or withEnv.
+        final StepStartNode outerStartNode = mock(StepStartNode.class);
+        when(outerStartNode.getId()).thenReturn("outer");
+        when(outerStartNode.getDisplayName()).thenReturn("timeout");
+        final StepStartNode innerStartNode = mock(StepStartNode.class);
+        when(innerStartNode.getId()).thenReturn("inner");
+        when(innerStartNode.getDisplayName()).thenReturn("withEnv");
+
+        final List<BlockStartNode> innerBlocks = Arrays.asList(innerStartNode, outerStartNode, stageStartNode, flowStartNode);
+        final List<BlockStartNode> outerBlocks = Arrays.asList(outerStartNode, stageStartNode, flowStartNode);
+
+        final BuildPipeline pipeline = new BuildPipeline();
+        for(int i = 1; i <= 3; i++) {
+            pipeline.add(mockStepAtomNode("inner" + i, SAMPLE_TIME + i, innerBlocks));
+        }
+        final StepEndNode innerEndNode = mock(StepEndNode.class);
+        when(innerEndNode.getId()).thenReturn("innerEnd");
+        when(innerEndNode.getStartNode()).thenReturn(innerStartNode);
+        when(innerEndNode.iterateEnclosingBlocks()).thenReturn(outerBlocks);
+        pipeline.add(innerEndNode);
+        for(int i = 4; i <= 10; i++) {
+            pipeline.add(mockStepAtomNode("outer" + i, SAMPLE_TIME + i, outerBlocks));
+        }
+
+        //When
+        final List<BuildPipelineNode> detachedNodes = pipeline.detachCompletedNodes(5);
+
+        //Then
+        // The completed withEnv block, and the steps of the timeout block followed by another step.
+        assertEquals(7, detachedNodes.size());
+        final BuildPipelineNode innerBlock = detachedNodes.get(0);
+        assertEquals("inner", innerBlock.getId());
+        assertEquals("Build", innerBlock.getStageName());
+        assertEquals(3, innerBlock.getChildren().size());
+        for(final BuildPipelineNode step : innerBlock.getChildren()) {
+            assertEquals("Build", step.getStageName());
+        }
+        for(final BuildPipelineNode step : detachedNodes.subList(1, detachedNodes.size())) {
+            assertEquals("outer", step.getParent().getId());
+            assertEquals("Build", step.getStageName());
+        }
+    }
+
+    private StepAtomNode mockStepAtomNode(String id, long startTime, FlowStartNode flowStartNode) {
+        return mockStepAtomNode(id, startTime, Collections.<BlockStartNode>singletonList(flowStartNode));
+    }
+
+    private StepAtomNode mockStepAtomNode(String id, long startTime, List<BlockStartNode> enclosingBlocks) {
+        final TimingAction timingAction = mock(TimingAction.class);
+        when(timingAction.getStartTime()).thenReturn(startTime);
+
+        final StepAtomNode stepAtomNode = mock(StepAtomNode.class);
+        when(stepAtomNode.getId()).thenReturn(id);
+        when(stepAtomNode.getDisplayName()).thenReturn("Step " + id);
+        when(stepAtomNode.iterateEnclosingBlocks()).thenReturn(enclosingBlocks);
+        when(stepAtomNode.getAction(TimingAction.class)).thenReturn(timingAction);
+        return stepAtomNode;
+    }
+
     private void assertNode(BuildPipelineNode node, String expectedId, String expectedName, long expectedStartTimeMicros, long expectedEndTimeMicros, int expectedChildrenSize) {
         assertEquals(expectedId, node.getId());
         assertEquals(expectedName, node.getName());
@@ -0,0 +1,80 @@
+package org.datadog.jenkins.plugins.datadog.model;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JobReliabilityIndexTest {
+
+    @Test
+    public void testShouldSeedTheIndexFromTheBuildHistory() {
+        Run<?, ?> run1 = mockRun(1, 1000, 100, Result.SUCCESS, null, null, null);
+        Run<?, ?> run2 = mockRun(2, 2000, 100, Result.FAILURE, run1, run1, run1);
+        Run<?, ?> run3 = mockRun(3, 3000, 100, Result.FAILURE, run2, run1, run1);
+        Run<?, ?> run4 = mockRun(4, 4000, 100, Result.SUCCESS, run3, run1, run1);
+
+        JobReliabilityIndex index = new JobReliabilityIndex();
+        JobReliabilityIndex.ReliabilityMetrics metrics = index.record(run4);
+
+        // Recovered from the red streak started by build #2.
+        Assert.assertEquals(2000, metrics.getMeanTimeToRecovery());
+        Assert.assertEquals(0, metrics.getMeanTimeBetweenFailure());
+        Assert.assertEquals(4100 - 1100, metrics.getCycleTime());
+        Assert.assertEquals(4, index.getLastCompletedNumber());
+        Assert.assertEquals(4100, index.getLastSuccessEndTime());
+        Assert.assertEquals(-1, index.getFailureStreakStartTime());
+    }
+
+    @Test
+    public void testShouldUpdateTheIndexIncrementally() {
+        Run<?, ?> run1 = mockRun(1, 1000, 100, Result.SUCCESS, null, null, null);
+        Run<?, ?> run2 = mockRun(2, 2000, 100, Result.FAILURE, run1, run1, run1);
+        Run<?, ?> run3 = mockRun(3, 3000, 100, Result.SUCCESS, run2, run1, run1);
+
+        JobReliabilityIndex index = new JobReliabilityIndex();
+        index.record(run1);
+        JobReliabilityIndex.ReliabilityMetrics failure = index.record(run2);
+        JobReliabilityIndex.ReliabilityMetrics recovery = index.record(run3);
+
+        Assert.assertEquals(1000, failure.getMeanTimeBetweenFailure());
+        Assert.assertEquals(1000, recovery.getMeanTimeToRecovery());
+        Assert.assertEquals(3100 - 1100, recovery.getCycleTime());
+        Assert.assertEquals(3000, index.getLastNotFailedStartTime());
+    }
+
+    @Test
+    public void testShouldFallBackToTheHistoryForBuildsCompletedOutOfOrder() {
+        Run<?, ?> run1 = mockRun(1, 1000, 100, Result.SUCCESS, null, null, null);
+        Run<?, ?> run2 = mockRun(2, 2000, 5000, Result.FAILURE, run1, run1, run1);
+        Run<?, ?> run3 = mockRun(3, 3000, 100, Result.SUCCESS, run1, run1, run1);
+
+        JobReliabilityIndex index = new JobReliabilityIndex();
+        index.record(run1);
+        index.record(run3);
+        // Build #2 completes after build #3.
+        JobReliabilityIndex.ReliabilityMetrics metrics = index.record(run2);
+
+        Assert.assertEquals(1000, metrics.getMeanTimeBetweenFailure());
+        Assert.assertEquals(3, index.getLastCompletedNumber());
+        Assert.assertEquals(3000, index.getLastNotFailedStartTime());
+        Assert.assertEquals(-1, index.getFailureStreakStartTime());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Run<?, ?> mockRun(int number, long startTime, long duration, Result result,
+                                     Run previousBuilt, Run previousSuccessful, Run previousNotFailed) {
+        Run run = mock(Run.class);
+        when(run.getNumber()).thenReturn(number);
+        when(run.getStartTimeInMillis()).thenReturn(startTime);
+        when(run.getDuration()).thenReturn(duration);
+        when(run.getResult()).thenReturn(result);
+        when(run.getPreviousBuiltBuild()).thenReturn(previousBuilt);
+        when(run.getPreviousSuccessfulBuild()).thenReturn(previousSuccessful);
+        when(run.getPreviousNotFailedBuild()).thenReturn(previousNotFailed);
+        return run;
+    }
+}
@@ -8,8 +8,11 @@ import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
 import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
 import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
 import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.datadog.jenkins.plugins.datadog.listeners.DatadogEventDispatcher;
+import org.datadog.jenkins.plugins.datadog.logs.DatadogLogShipper;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -23,9 +26,15 @@ public class DatadogOptionsTest {
     public static JenkinsRule j = new JenkinsRule();
     private static DatadogClientStub stubClient = new DatadogClientStub();
 
+    @AfterClass
+    public static void tearDown() {
+        DatadogEventDispatcher.setSynchronous(false);
+    }
+
     @BeforeClass
     public static void setup() throws Exception {
         ClientFactory.setTestClient(stubClient);
+        DatadogEventDispatcher.setSynchronous(true);
         DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
         ExtensionList.clearLegacyInstances();
         cfg.setCollectBuildLogs(false);
@@ -67,6 +76,8 @@ public class DatadogOptionsTest {
     }
 
     private void assertLogs(final String expectedMessage, final boolean checkTraces) {
+        // The log lines are shipped asynchronously.
+        Assert.assertTrue(DatadogLogShipper.get().flush(10000));
         boolean hasExpectedMessage = false;
         List<JSONObject> logLines = stubClient.logLines;
         for(final JSONObject logLine : logLines) {
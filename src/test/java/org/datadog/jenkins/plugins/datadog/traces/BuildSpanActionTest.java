@@ -0,0 +1,39 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.util.XStream2;
+import org.datadog.jenkins.plugins.datadog.model.BuildData;
+import org.junit.Test;
+
+public class BuildSpanActionTest {
+
+    @Test
+    public void testShouldKeepOnlyTheTraceFieldsOfTheBuildDataStoredByPreviousVersions() {
+        //Given
+        // Previous versions stored the whole BuildData, and did not count the dropped spans.
+        final String xml = "<org.datadog.jenkins.plugins.datadog.traces.BuildSpanAction>" +
+                "<buildData>" +
+                "<buildNumber>7</buildNumber>" +
+                "<jobName>pipeline</jobName>" +
+                "<branch>master</branch>" +
+                "<javaHome>/usr/lib/jvm</javaHome>" +
+                "<executorNumber>1</executorNumber>" +
+                "</buildData>" +
+                "</org.datadog.jenkins.plugins.datadog.traces.BuildSpanAction>";
+
+        //When
+        final BuildSpanAction action = (BuildSpanAction) new XStream2().fromXML(xml);
+
+        //Then
+        final BuildData buildData = action.getBuildData();
+        assertEquals("7", buildData.getBuildNumber(""));
+        assertEquals("pipeline", buildData.getJobName(""));
+        assertEquals("master", buildData.getBranch(""));
+        assertEquals("", buildData.getJavaHome(""));
+        assertEquals("", buildData.getExecutorNumber(""));
+        assertTrue(action.getBuildSpanPropatation().isEmpty());
+        assertEquals(0, action.getDroppedSpans());
+    }
+}
@@ -0,0 +1,103 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Run;
+import io.opentracing.Span;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BuildSpanManagerTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long BUILDING_TTL = TimeUnit.HOURS.toMillis(24);
+    private static final AtomicInteger runNumber = new AtomicInteger();
+
+    @Test
+    public void testShouldEvictExpiredSpansOfFinishedRuns() {
+        final BuildSpanManager manager = new BuildSpanManager(TTL, BUILDING_TTL, 100);
+        final Run<?, ?> finishedRun = mockRun(false);
+        final Run<?, ?> buildingRun = mockRun(true);
+        final Span finishedSpan = mock(Span.class);
+        final Span buildingSpan = mock(Span.class);
+        manager.put(finishedRun, finishedSpan);
+        manager.put(buildingRun, buildingSpan);
+        assertSame(finishedSpan, manager.get(finishedRun));
+
+        manager.evict(System.currentTimeMillis() + TTL + 1);
+
+        assertNull(manager.get(finishedRun));
+        assertSame(buildingSpan, manager.get(buildingRun));
+        assertEquals(1, manager.getLiveSpans());
+        assertEquals(1, manager.getAndResetEvictedSpans());
+        assertEquals(0, manager.getAndResetEvictedSpans());
+    }
+
+    @Test
+    public void testShouldEvictOldestSpansWhenTooManyEntries() throws Exception {
+        final BuildSpanManager manager = new BuildSpanManager(TTL, BUILDING_TTL, 2);
+        final Run<?, ?> oldestRun = mockRun(true);
+        manager.put(oldestRun, mock(Span.class));
+        Thread.sleep(2);
+        final Run<?, ?> run = mockRun(true);
+        manager.put(run, mock(Span.class));
+        Thread.sleep(2);
+        final Run<?, ?> newestRun = mockRun(true);
+        manager.put(newestRun, mock(Span.class));
+
+        assertEquals(2, manager.getLiveSpans());
+        assertNull(manager.get(oldestRun));
+        assertEquals(1, manager.getAndResetEvictedSpans());
+        assertNull(manager.remove(oldestRun));
+    }
+
+    @Test
+    public void testShouldEvictIdleSpansOfRunsStillBuilding() throws Exception {
+        final BuildSpanManager manager = new BuildSpanManager(TTL, BUILDING_TTL, 100);
+        final Run<?, ?> idleRun = mockRun(true);
+        final Run<?, ?> activeRun = mockRun(true);
+        final Span activeSpan = mock(Span.class);
+        manager.put(idleRun, mock(Span.class));
+        manager.put(activeRun, activeSpan);
+
+        manager.evict(System.currentTimeMillis() + BUILDING_TTL - 1);
+        assertEquals(2, manager.getLiveSpans());
+
+        // Looking up the span is an update of the entry.
+        Thread.sleep(5);
+        final long lastUpdate = System.currentTimeMillis();
+        assertSame(activeSpan, manager.get(activeRun));
+        manager.evict(lastUpdate + BUILDING_TTL - 1);
+        assertEquals(1, manager.getLiveSpans());
+        assertNull(manager.get(idleRun));
+        assertSame(activeSpan, manager.get(activeRun));
+    }
+
+    @Test
+    public void testShouldLookUpTheSpansByRunId() {
+        final BuildSpanManager manager = new BuildSpanManager(TTL, BUILDING_TTL, 100);
+        final Run<?, ?> run = mockRun(true);
+        final Span span = mock(Span.class);
+        manager.put(run, span);
+
+        // The same run loaded again, e.g. after a restart of the controller.
+        final Run<?, ?> reloadedRun = mock(Run.class);
+        when(reloadedRun.getExternalizableId()).thenReturn(run.getExternalizableId());
+        assertSame(span, manager.get(reloadedRun));
+        assertSame(span, manager.remove(reloadedRun));
+        assertEquals(0, manager.getLiveSpans());
+    }
+
+    private static Run<?, ?> mockRun(final boolean building) {
+        final Run<?, ?> run = mock(Run.class);
+        when(run.isBuilding()).thenReturn(building);
+        when(run.getExternalizableId()).thenReturn("job#" + runNumber.incrementAndGet());
+        return run;
+    }
+}
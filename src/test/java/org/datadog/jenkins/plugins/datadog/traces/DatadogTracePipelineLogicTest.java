@@ -0,0 +1,446 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import datadog.trace.api.DDTags;
+import datadog.trace.api.IdGenerationStrategy;
+import datadog.trace.common.writer.ListWriter;
+import datadog.trace.core.DDSpan;
+import hudson.model.Result;
+import org.datadog.jenkins.plugins.datadog.DatadogGlobalConfiguration;
+import org.datadog.jenkins.plugins.datadog.DatadogUtilities;
+import org.datadog.jenkins.plugins.datadog.clients.ClientFactory;
+import org.datadog.jenkins.plugins.datadog.clients.DatadogClientStub;
+import org.datadog.jenkins.plugins.datadog.listeners.DatadogEventDispatcher;
+import org.datadog.jenkins.plugins.datadog.model.BuildPipelineNode;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DatadogTracePipelineLogicTest {
+
+    private static final String MESSAGE_ARG = "jenkins.step.args.message";
+    private static final String NESTED_BLOCKS_SCRIPT =
+            "stage('build') {\n" +
+            "  timeout(5) {\n" +
+            "    echo 'a'\n" +
+            "    echo 'b'\n" +
+            "    echo 'c'\n" +
+            "    echo 'd'\n" +
+            "  }\n" +
+            "}";
+
+    @ClassRule
+    public static JenkinsRule jenkinsRule = new JenkinsRule();
+    private DatadogClientStub clientStub;
+
+    @Before
+    public void beforeEach() {
+        DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollectBuildTraces(true);
+        cfg.setTraceIdsGenerator(IdGenerationStrategy.RANDOM);
+        cfg.setHoistPipelineTraceTags(false);
+        cfg.setMaxTraceTagLength(5000);
+        cfg.setMaxTraceArgsLengthPerSpan(20000);
+        cfg.setMaxTraceErrorStackDepth(50);
+        cfg.setCollapseInternalTraceSpans(false);
+        cfg.setMinTraceStepDuration(0);
+        cfg.setTraceSamplingRules("");
+        cfg.setMaxPendingSpansPerRun(10000);
+
+        DatadogEventDispatcher.setSynchronous(true);
+        clientStub = new DatadogClientStub();
+        ClientFactory.setTestClient(clientStub);
+        clientStub.tracerWriter.start();
+    }
+
+    @After
+    public void afterEach() {
+        DatadogEventDispatcher.setSynchronous(false);
+    }
+
+    @Test
+    public void testTruncateShouldKeepShortValues() {
+        assertNull(DatadogTracePipelineLogic.truncate(null, 3));
+        assertEquals("abc", DatadogTracePipelineLogic.truncate("abc", 3));
+        assertEquals("abcdef", DatadogTracePipelineLogic.truncate("abcdef", 0));
+        assertEquals("éé", DatadogTracePipelineLogic.truncate("éé", 4));
+    }
+
+    @Test
+    public void testTruncateShouldLimitBytes() {
+        assertEquals("abc...", DatadogTracePipelineLogic.truncate("abcdef", 3));
+        // Each of these characters takes 2 bytes in UTF-8.
+        assertEquals("é...", DatadogTracePipelineLogic.truncate("éé", 3));
+        // Each of these characters takes 3 bytes in UTF-8.
+        assertEquals("€€...", DatadogTracePipelineLogic.truncate("€€€", 8));
+    }
+
+    @Test
+    public void testTruncateShouldNotSplitSupplementaryCharacters() {
+        // A supplementary character is made of 2 chars, and takes 4 bytes in UTF-8.
+        final String value = "a😀😀";
+
+        assertEquals("a...", DatadogTracePipelineLogic.truncate(value, 4));
+        assertEquals("a😀...", DatadogTracePipelineLogic.truncate(value, 5));
+        assertEquals(value, DatadogTracePipelineLogic.truncate(value, 9));
+    }
+
+    @Test
+    public void testShouldMeasureUtf8Length() {
+        assertEquals(0, DatadogTracePipelineLogic.getUtf8Length(""));
+        assertEquals(3, DatadogTracePipelineLogic.getUtf8Length("abc"));
+        assertEquals(5, DatadogTracePipelineLogic.getUtf8Length("aéé"));
+        assertEquals(3, DatadogTracePipelineLogic.getUtf8Length("€"));
+        assertEquals(4, DatadogTracePipelineLogic.getUtf8Length("😀"));
+    }
+
+    @Test
+    public void testStackTraceShouldKeepUpToMaxDepthFrames() {
+        final Exception cause = newException("cause", 4);
+        final Exception error = newException("error", 3);
+        error.initCause(cause);
+
+        final String stackTrace = DatadogTracePipelineLogic.getStackTrace(error, 5);
+
+        assertEquals(5, countFrames(stackTrace));
+        assertTrue(stackTrace.startsWith("java.lang.Exception: error\n"));
+        assertTrue(stackTrace.contains("Caused by: java.lang.Exception: cause\n"));
+        assertTrue(stackTrace.endsWith("\t... 2 more\n"));
+    }
+
+    @Test
+    public void testStackTraceShouldOmitCausesOnceMaxDepthIsReached() {
+        final Exception error = newException("error", 3);
+        error.initCause(newException("cause", 4));
+
+        final String stackTrace = DatadogTracePipelineLogic.getStackTrace(error, 2);
+
+        assertEquals(2, countFrames(stackTrace));
+        assertTrue(stackTrace.contains("\t... 1 more\n"));
+        assertTrue(stackTrace.contains("Caused by: java.lang.Exception: cause\n\t... 4 more\n"));
+    }
+
+    @Test
+    public void testStackTraceShouldKeepAllFramesWithoutMaxDepth() {
+        final Exception error = newException("error", 3);
+        error.initCause(newException("cause", 4));
+
+        assertEquals(7, countFrames(DatadogTracePipelineLogic.getStackTrace(error, 0)));
+    }
+
+    @Test
+    public void testStackTraceShouldStopOnCircularCauses() {
+        final Exception error = newException("error", 1);
+        final Exception cause = newException("cause", 1);
+        error.initCause(cause);
+        cause.initCause(error);
+
+        assertEquals(2, countFrames(DatadogTracePipelineLogic.getStackTrace(error, 10)));
+    }
+
+    @Test
+    public void testShouldHoistPipelineTagsWithTheSameValue() {
+        assertTrue(DatadogTracePipelineLogic.isHoisted(true, null, "master"));
+        assertTrue(DatadogTracePipelineLogic.isHoisted(true, "master", "master"));
+        assertFalse(DatadogTracePipelineLogic.isHoisted(true, "feature", "master"));
+        assertFalse(DatadogTracePipelineLogic.isHoisted(false, null, "master"));
+        assertFalse(DatadogTracePipelineLogic.isHoisted(false, "master", "master"));
+    }
+
+    @Test
+    public void testShouldSetPipelineTagsInStepSpans() throws Exception {
+        final List<DDSpan> spans = runPipeline("pipelineTagsNotHoisted", "echo 'hello'");
+
+        final DDSpan stepSpan = findSpanWithTag(spans, MESSAGE_ARG);
+        assertEquals("pipelineTagsNotHoisted", stepSpan.getTag(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._NAME));
+        assertEquals("jenkins-pipelineTagsNotHoisted-1", stepSpan.getTag(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._ID));
+    }
+
+    @Test
+    public void testShouldHoistPipelineTagsFromStepSpans() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setHoistPipelineTraceTags(true);
+
+        final List<DDSpan> spans = runPipeline("pipelineTagsHoisted", "echo 'hello'");
+
+        final DDSpan stepSpan = findSpanWithTag(spans, MESSAGE_ARG);
+        assertNull(stepSpan.getTag(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._NAME));
+        assertNull(stepSpan.getTag(BuildPipelineNode.NodeType.PIPELINE.getTagName() + CITags._ID));
+        // The step does not run in a workspace of its own.
+        assertFalse(stepSpan.getTags().containsKey(CITags.WORKSPACE_PATH));
+        // The tags of the node itself are always set.
+        assertEquals("hello", stepSpan.getTag(MESSAGE_ARG));
+        assertEquals(BuildPipelineNode.NodeType.STEP.getBuildLevel(), stepSpan.getTag(CITags._DD_CI_BUILD_LEVEL));
+    }
+
+    @Test
+    public void testShouldTruncateStepArgumentsInBytes() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMaxTraceTagLength(10);
+
+        final List<DDSpan> spans = runPipeline("pipelineTruncatedArgs", "echo 'éééééé'");
+
+        final DDSpan stepSpan = findSpanWithTag(spans, MESSAGE_ARG);
+        assertEquals("ééééé...", stepSpan.getTag(MESSAGE_ARG));
+    }
+
+    @Test
+    public void testShouldDropStepArgumentsOverTheSpanLimit() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMaxTraceArgsLengthPerSpan(10);
+
+        final List<DDSpan> spans = runPipeline("pipelineDroppedArgs",
+                "echo 'éééé'\n" +
+                "echo 'éééééé'");
+
+        final List<String> messages = new ArrayList<>();
+        for(final DDSpan span : spans) {
+            if(span.getTags().containsKey(MESSAGE_ARG)) {
+                messages.add((String) span.getTag(MESSAGE_ARG));
+            }
+        }
+        // The second message takes 12 bytes in UTF-8, even if it only has 6 characters.
+        assertEquals(1, messages.size());
+        assertEquals("éééé", messages.get(0));
+    }
+
+    @Test
+    public void testShouldSendTheStepArgumentsInKeyOrderWithinTheSpanLimit() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMaxTraceArgsLengthPerSpan(7);
+
+        final List<DDSpan> spans = runPipeline("pipelineSortedArgs",
+                "sleep(time: 1, unit: 'SECONDS')");
+
+        // The time takes 1 byte and the unit 7 bytes, so only the time fits.
+        final DDSpan sleepSpan = findSpanWithTag(spans, "jenkins.step.args.time");
+        assertEquals("1", sleepSpan.getTag("jenkins.step.args.time"));
+        assertFalse(hasSpanWithTag(spans, "jenkins.step.args.unit"));
+    }
+
+    @Test
+    public void testShouldSendTheScriptOnce() throws Exception {
+        final List<DDSpan> spans = runPipeline("pipelineScript",
+                "if (isUnix()) { sh 'exit 0' } else { bat 'exit 0' }");
+
+        final DDSpan scriptSpan = findSpanWithTag(spans, "ci.job.script");
+        assertEquals("exit 0", scriptSpan.getTag("ci.job.script"));
+        assertFalse(hasSpanWithTag(spans, "jenkins.step.args.script"));
+    }
+
+    @Test
+    public void testShouldLimitTheErrorStackDepth() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMaxTraceErrorStackDepth(3);
+
+        final List<DDSpan> spans = runPipeline("pipelineErrorStack", "error 'boom'");
+
+        final DDSpan errorSpan = findSpanWithTag(spans, DDTags.ERROR_STACK);
+        assertEquals("boom", errorSpan.getTag(DDTags.ERROR_MSG));
+        assertEquals(3, countFrames((String) errorSpan.getTag(DDTags.ERROR_STACK)));
+    }
+
+    @Test
+    public void testShouldSendAllSpansByDefault() throws Exception {
+        final List<DDSpan> spans = runPipeline("pipelineAllSpans", NESTED_BLOCKS_SCRIPT);
+
+        // The steps are children of the body of the timeout block.
+        final DDSpan stepSpan = findSpanWithTag(spans, MESSAGE_ARG);
+        assertEquals("jenkins.step.internal", getParent(spans, stepSpan).getOperationName());
+        assertNull(getBuildSpan(spans).getTag(CITags.JENKINS_DROPPED_SPANS));
+    }
+
+    @Test
+    public void testShouldCollapseInternalSpans() throws Exception {
+        final int allSpans = runPipeline("pipelineNotCollapsed", NESTED_BLOCKS_SCRIPT).size();
+        DatadogUtilities.getDatadogGlobalDescriptor().setCollapseInternalTraceSpans(true);
+
+        final List<DDSpan> spans = runPipeline("pipelineCollapsed", NESTED_BLOCKS_SCRIPT);
+
+        final DDSpan stageSpan = findSpanWithOperation(spans, "jenkins.stage");
+        for(final DDSpan span : spans) {
+            if(span.getTags().containsKey(MESSAGE_ARG)) {
+                // The spans of the children of the omitted blocks are reattached to their closest sent ancestor.
+                assertEquals(stageSpan.context().getSpanId(), span.context().getParentId());
+            }
+        }
+        assertEquals(allSpans - spans.size(), getBuildSpan(spans).getTag(CITags.JENKINS_DROPPED_SPANS));
+    }
+
+    @Test
+    public void testShouldCollapseInternalSpansOfStreamedNodes() throws Exception {
+        final DatadogGlobalConfiguration cfg = DatadogUtilities.getDatadogGlobalDescriptor();
+        cfg.setCollapseInternalTraceSpans(true);
+        cfg.setMaxPendingSpansPerRun(1);
+
+        final List<DDSpan> spans = runPipeline("pipelineCollapsedStreamed", NESTED_BLOCKS_SCRIPT);
+
+        // The spans of the finished steps were sent while their enclosing blocks were still running.
+        assertTrue(clientStub.tracerWriter().size() > 2);
+        final DDSpan stageSpan = findSpanWithOperation(spans, "jenkins.stage");
+        int steps = 0;
+        for(final DDSpan span : spans) {
+            if(span.getTags().containsKey(MESSAGE_ARG)) {
+                assertEquals(stageSpan.context().getSpanId(), span.context().getParentId());
+                steps++;
+            }
+        }
+        assertEquals(4, steps);
+        assertTrue((Integer) getBuildSpan(spans).getTag(CITags.JENKINS_DROPPED_SPANS) > 0);
+    }
+
+    @Test
+    public void testShouldOmitStepsShorterThanTheMinimumDuration() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMinTraceStepDuration(1000);
+
+        final List<DDSpan> spans = runPipeline("pipelineMinStepDuration",
+                "stage('build') {\n" +
+                "  echo 'fast'\n" +
+                "  sleep(time: 1500, unit: 'MILLISECONDS')\n" +
+                "}");
+
+        assertFalse(hasSpanWithTag(spans, MESSAGE_ARG));
+        assertTrue(hasSpanWithTag(spans, "jenkins.step.args.time"));
+        assertEquals(1, getBuildSpan(spans).getTag(CITags.JENKINS_DROPPED_SPANS));
+    }
+
+    @Test
+    public void testShouldKeepErrorSpansShorterThanTheMinimumDuration() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setMinTraceStepDuration(60000);
+
+        final List<DDSpan> spans = runPipeline("pipelineMinStepDurationError",
+                "stage('build') {\n" +
+                "  echo 'fast'\n" +
+                "  catchError { error 'boom' }\n" +
+                "}");
+
+        assertFalse(hasSpanWithTag(spans, MESSAGE_ARG));
+        assertEquals("boom", findSpanWithTag(spans, DDTags.ERROR_MSG).getTag(DDTags.ERROR_MSG));
+    }
+
+    @Test
+    public void testShouldAlwaysKeepStageAndTopLevelSpans() throws Exception {
+        DatadogUtilities.getDatadogGlobalDescriptor().setTraceSamplingRules(".*:0");
+
+        final List<DDSpan> spans = runPipeline("pipelineNotSampled",
+                "echo 'top'\n" +
+                "stage('build') { echo 'nested' }");
+
+        // The top level node is the block of the whole pipeline.
+        final DDSpan pipelineSpan = findSpanWithOperation(spans, "jenkins.step.internal");
+        assertEquals("Start of Pipeline", pipelineSpan.getResourceName());
+        final DDSpan stageSpan = findSpanWithOperation(spans, "jenkins.stage");
+        assertEquals("build", stageSpan.getResourceName());
+        assertEquals(pipelineSpan.context().getSpanId(), stageSpan.context().getParentId());
+        assertFalse(hasSpanWithTag(spans, MESSAGE_ARG));
+        assertTrue((Integer) getBuildSpan(spans).getTag(CITags.JENKINS_DROPPED_SPANS) > 0);
+    }
+
+    /**
+     * Runs a pipeline and returns the spans sent for it, including the build span.
+     */
+    private List<DDSpan> runPipeline(final String jobName, final String script) throws Exception {
+        final ListWriter tracerWriter = clientStub.tracerWriter();
+        tracerWriter.clear();
+
+        final WorkflowJob job = jenkinsRule.jenkins.createProject(WorkflowJob.class, jobName);
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        final WorkflowRun run = job.scheduleBuild2(0).get();
+        assertNotNull(run);
+        assertTrue(Result.SUCCESS.equals(run.getResult()) || Result.FAILURE.equals(run.getResult()));
+
+        // The build span is sent once the run has finished, after the spans of its nodes.
+        final long deadline = System.currentTimeMillis() + 10000;
+        List<DDSpan> spans = getSpans(tracerWriter);
+        while(!hasSpanWithOperation(spans, "jenkins.build") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            spans = getSpans(tracerWriter);
+        }
+        return spans;
+    }
+
+    private static List<DDSpan> getSpans(final ListWriter tracerWriter) {
+        final List<DDSpan> spans = new ArrayList<>();
+        for(final List<DDSpan> trace : tracerWriter) {
+            spans.addAll(trace);
+        }
+        return spans;
+    }
+
+    private static DDSpan getBuildSpan(final List<DDSpan> spans) {
+        return findSpanWithOperation(spans, "jenkins.build");
+    }
+
+    private static DDSpan getParent(final List<DDSpan> spans, final DDSpan span) {
+        for(final DDSpan candidate : spans) {
+            if(candidate.context().getSpanId().equals(span.context().getParentId())) {
+                return candidate;
+            }
+        }
+        throw new AssertionError("No parent for span " + span.getOperationName());
+    }
+
+    private static boolean hasSpanWithOperation(final List<DDSpan> spans, final String operationName) {
+        for(final DDSpan span : spans) {
+            if(operationName.equals(span.getOperationName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DDSpan findSpanWithOperation(final List<DDSpan> spans, final String operationName) {
+        for(final DDSpan span : spans) {
+            if(operationName.equals(span.getOperationName())) {
+                return span;
+            }
+        }
+        throw new AssertionError("No span with operation " + operationName);
+    }
+
+    private static boolean hasSpanWithTag(final List<DDSpan> spans, final String tag) {
+        for(final DDSpan span : spans) {
+            if(span.getTags().containsKey(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DDSpan findSpanWithTag(final List<DDSpan> spans, final String tag) {
+        for(final DDSpan span : spans) {
+            if(span.getTags().containsKey(tag)) {
+                return span;
+            }
+        }
+        throw new AssertionError("No span with tag " + tag);
+    }
+
+    private static Exception newException(final String message, final int depth) {
+        final Exception error = new Exception(message);
+        final StackTraceElement[] frames = new StackTraceElement[depth];
+        for(int i = 0; i < depth; i++) {
+            frames[i] = new StackTraceElement("Sample", "method" + i, "Sample.java", i + 1);
+        }
+        error.setStackTrace(frames);
+        return error;
+    }
+
+    private static int countFrames(final String stackTrace) {
+        int frames = 0;
+        for(final String line : stackTrace.split("\n")) {
+            if(line.startsWith("\tat ")) {
+                frames++;
+            }
+        }
+        return frames;
+    }
+}
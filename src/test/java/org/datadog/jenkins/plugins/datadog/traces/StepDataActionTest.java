@@ -0,0 +1,109 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.util.XStream2;
+import org.datadog.jenkins.plugins.datadog.model.StepData;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class StepDataActionTest {
+
+    @Test
+    public void testShouldKeepTheEnvVarsOfTheTracesAndTheGitClient() throws Exception {
+        //Given
+        final EnvVars envVars = new EnvVars();
+        envVars.put("GIT_BRANCH", "master");
+        envVars.put("PATH", "/usr/local/bin:/usr/bin");
+        envVars.put("HOME", "/home/jenkins");
+        envVars.put("GIT_SSH_COMMAND", "ssh -i key");
+        envVars.put("SECRET_TOKEN", "secret");
+        final StepContext stepContext = mock(StepContext.class);
+        when(stepContext.get(EnvVars.class)).thenReturn(envVars);
+
+        //When
+        final StepDataAction action = new StepDataAction();
+        action.put(mockDescriptor("sh"), new StepData(stepContext));
+
+        //Then
+        final Map<String, String> stepEnvVars = action.get(mockDescriptor("sh")).getEnvVars();
+        assertEquals("master", stepEnvVars.get("GIT_BRANCH"));
+        assertEquals("/usr/local/bin:/usr/bin", stepEnvVars.get("PATH"));
+        assertEquals("/home/jenkins", stepEnvVars.get("HOME"));
+        assertEquals("ssh -i key", stepEnvVars.get("GIT_SSH_COMMAND"));
+        assertFalse(stepEnvVars.containsKey("SECRET_TOKEN"));
+    }
+
+    @Test
+    public void testShouldMigrateTheStepDataStoredByPreviousVersions() {
+        //Given
+        // Previous versions stored the whole environment variables of every step.
+        final String xml = "<org.datadog.jenkins.plugins.datadog.traces.StepDataAction>" +
+                "<stepDataByDescriptor><entry><string>sh</string>" +
+                "<org.datadog.jenkins.plugins.datadog.model.StepData>" +
+                "<envVars>" +
+                "<entry><string>GIT_BRANCH</string><string>master</string></entry>" +
+                "<entry><string>PATH</string><string>/usr/bin</string></entry>" +
+                "<entry><string>SECRET_TOKEN</string><string>secret</string></entry>" +
+                "</envVars>" +
+                "<nodeName>agent</nodeName>" +
+                "<workspace>/workspace</workspace>" +
+                "</org.datadog.jenkins.plugins.datadog.model.StepData>" +
+                "</entry></stepDataByDescriptor>" +
+                "</org.datadog.jenkins.plugins.datadog.traces.StepDataAction>";
+
+        //When
+        final StepDataAction action = (StepDataAction) new XStream2().fromXML(xml);
+
+        //Then
+        final StepData stepData = action.get(mockDescriptor("sh"));
+        assertEquals("agent", stepData.getNodeName());
+        assertEquals("/workspace", stepData.getWorkspace());
+        assertEquals("master", stepData.getEnvVars().get("GIT_BRANCH"));
+        assertEquals("/usr/bin", stepData.getEnvVars().get("PATH"));
+        assertNull(stepData.getEnvVars().get("SECRET_TOKEN"));
+    }
+
+    @Test
+    public void testShouldRestoreTheCompactedStepData() throws Exception {
+        //Given
+        final EnvVars runEnvVars = new EnvVars();
+        runEnvVars.put("GIT_BRANCH", "master");
+        runEnvVars.put("BUILD_URL", "http://jenkins/job/1/");
+        final EnvVars stepEnvVars = new EnvVars(runEnvVars);
+        stepEnvVars.put("GIT_BRANCH", "feature");
+        stepEnvVars.remove("BUILD_URL");
+
+        final StepDataAction action = new StepDataAction();
+        action.put(mockDescriptor("checkout"), new StepData(mockStepContext(runEnvVars)));
+        action.put(mockDescriptor("sh"), new StepData(mockStepContext(stepEnvVars)));
+
+        //When
+        final XStream2 xstream = new XStream2();
+        final StepDataAction restored = (StepDataAction) xstream.fromXML(xstream.toXML(action));
+
+        //Then
+        assertEquals(runEnvVars, restored.get(mockDescriptor("checkout")).getEnvVars());
+        assertEquals(stepEnvVars, restored.get(mockDescriptor("sh")).getEnvVars());
+    }
+
+    private StepContext mockStepContext(EnvVars envVars) throws Exception {
+        final StepContext stepContext = mock(StepContext.class);
+        when(stepContext.get(EnvVars.class)).thenReturn(envVars);
+        return stepContext;
+    }
+
+    private StepDescriptor mockDescriptor(String name) {
+        final StepDescriptor descriptor = mock(StepDescriptor.class);
+        when(descriptor.toString()).thenReturn(name);
+        return descriptor;
+    }
+}
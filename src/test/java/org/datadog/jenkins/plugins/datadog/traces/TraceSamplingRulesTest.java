@@ -0,0 +1,53 @@
+package org.datadog.jenkins.plugins.datadog.traces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TraceSamplingRulesTest {
+
+    @Test
+    public void testShouldApplyTheFirstMatchingRule() {
+        final TraceSamplingRules rules = TraceSamplingRules.parse("release/.*:1.0, .*-nightly:0.25,.*:0.1");
+
+        assertEquals(1.0, rules.getSampleRate("release/main"), 0.0);
+        assertEquals(0.25, rules.getSampleRate("tests-nightly"), 0.0);
+        assertEquals(0.1, rules.getSampleRate("tests"), 0.0);
+    }
+
+    @Test
+    public void testShouldKeepEveryRunWithoutRules() {
+        final TraceSamplingRules rules = TraceSamplingRules.parse(" ");
+
+        assertEquals("", rules.getText());
+        assertEquals(1.0, rules.getSampleRate("tests"), 0.0);
+        assertTrue(rules.isSampled("tests", "jenkins-tests-1"));
+    }
+
+    @Test
+    public void testShouldIgnoreInvalidRules() {
+        final TraceSamplingRules rules = TraceSamplingRules.parse("[:0.5,tests,tests:rate,deploy:0");
+
+        assertEquals(1.0, rules.getSampleRate("tests"), 0.0);
+        assertEquals(0.0, rules.getSampleRate("deploy"), 0.0);
+        assertFalse(rules.isSampled("deploy", "jenkins-deploy-1"));
+    }
+
+    @Test
+    public void testShouldSampleRunsDeterministically() {
+        final TraceSamplingRules rules = TraceSamplingRules.parse("tests:0.5");
+
+        int sampled = 0;
+        for(int i = 0; i < 1000; i++) {
+            final String buildTag = "jenkins-tests-" + i;
+            final boolean isSampled = rules.isSampled("tests", buildTag);
+            assertEquals(isSampled, rules.isSampled("tests", buildTag));
+            if(isSampled) {
+                sampled++;
+            }
+        }
+        assertTrue("Sampled runs: " + sampled, sampled > 400 && sampled < 600);
+    }
+}